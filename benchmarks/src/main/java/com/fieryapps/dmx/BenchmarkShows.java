@@ -0,0 +1,132 @@
+package com.fieryapps.dmx;
+
+import java.io.StringReader;
+import java.util.Random;
+
+import org.yaml.snakeyaml.Yaml;
+
+import com.fieryapps.dmx.beans.Show;
+import com.fieryapps.dmx.model.CompiledShow;
+import com.fieryapps.dmx.model.ShowCompiler;
+
+/**
+ * Generates synthetic show files of a given size for the benchmarks.
+ *
+ * <p>Every scene has a track with four steps in every universe. Each step fades for one
+ * second and holds for one second, every fourth channel is a dimmer channel and every eighth
+ * channel is a switch channel. Scene <code>n</code> (starting with 0) is triggered by the key
+ * {@link #FIRST_TRIGGER_KEY} <code>+ n</code> and plays in layer <code>n % layers</code>.</p>
+ */
+public final class BenchmarkShows {
+	
+	/** trigger key of the first scene */
+	public static final int FIRST_TRIGGER_KEY = 1000;
+	/** fade time of every step in nanoseconds */
+	public static final long FADE_TIME = 1000000000L;
+	/** hold time of every step in nanoseconds */
+	public static final long HOLD_TIME = 1000000000L;
+	
+	private static final int STEPS = 4;
+	
+	private BenchmarkShows() {
+	}
+	
+	/**
+	 * Create the YAML text of a show.
+	 * 
+	 * @param channels number of channels in every universe, from 1 to 512
+	 * @param universes number of universes
+	 * @param scenes number of scenes
+	 * @return the show file as YAML
+	 */
+	public static String yaml(int channels, int universes, int scenes) {
+		return yaml(channels, universes, scenes, 1);
+	}
+	
+	/**
+	 * Create the YAML text of a show with scenes in several layers.
+	 * 
+	 * @param channels number of channels in every universe, from 1 to 512
+	 * @param universes number of universes
+	 * @param scenes number of scenes
+	 * @param layers number of layers the scenes are distributed to
+	 * @return the show file as YAML
+	 */
+	public static String yaml(int channels, int universes, int scenes, int layers) {
+		// fixed seed, so all runs use the same show
+		Random random = new Random(42);
+		StringBuilder yaml = new StringBuilder();
+		yaml.append("name: Benchmark\n");
+		yaml.append("universe: 1\n");
+		yaml.append("frameRate: 44\n");
+		yaml.append("startScene: 1\n");
+		yaml.append("renderThreads: 1\n");
+		yaml.append("dimmerChannels: ").append(everyNth(channels, 4)).append('\n');
+		if (universes > 1) {
+			yaml.append("universes:\n");
+			for (int u = 2; u <= universes; u++) {
+				yaml.append("- universe: ").append(u).append('\n');
+				yaml.append("  dimmerChannels: ").append(everyNth(channels, 4)).append('\n');
+			}
+		}
+		yaml.append("scenes:\n");
+		for (int s = 0; s < scenes; s++) {
+			yaml.append("- name: Scene ").append(s + 1).append('\n');
+			yaml.append("  triggerKeys: [").append(FIRST_TRIGGER_KEY + s).append("]\n");
+			yaml.append("  layer: ").append(s % layers).append('\n');
+			yaml.append("  repeat: yes\n");
+			yaml.append("  order: linear\n");
+			yaml.append("  switchChannels: ").append(everyNth(channels, 8)).append('\n');
+			appendSteps(yaml, "  ", channels, random);
+			if (universes > 1) {
+				yaml.append("  universes:\n");
+				for (int u = 2; u <= universes; u++) {
+					yaml.append("  - universe: ").append(u).append('\n');
+					yaml.append("    switchChannels: ").append(everyNth(channels, 8))
+							.append('\n');
+					appendSteps(yaml, "    ", channels, random);
+				}
+			}
+		}
+		return yaml.toString();
+	}
+	
+	/**
+	 * Load and compile a show from its YAML text, like the engine does on startup.
+	 * 
+	 * @param yaml the show file as YAML
+	 * @return the compiled show
+	 */
+	public static CompiledShow compile(String yaml) {
+		Show show = new Yaml().loadAs(new StringReader(yaml), Show.class);
+		return ShowCompiler.compile(show);
+	}
+	
+	private static void appendSteps(StringBuilder yaml, String indent, int channels, 
+			Random random) {
+		yaml.append(indent).append("steps:\n");
+		for (int i = 0; i < STEPS; i++) {
+			yaml.append(indent).append("- fade: ").append(FADE_TIME / 1000000L).append('\n');
+			yaml.append(indent).append("  hold: ").append(HOLD_TIME / 1000000L).append('\n');
+			yaml.append(indent).append("  values: [");
+			for (int c = 0; c < channels; c++) {
+				if (c > 0) {
+					yaml.append(", ");
+				}
+				yaml.append(random.nextInt(256));
+			}
+			yaml.append("]\n");
+		}
+	}
+	
+	private static String everyNth(int channels, int n) {
+		StringBuilder addresses = new StringBuilder("[");
+		for (int address = n; address <= channels; address += n) {
+			if (address > n) {
+				addresses.append(", ");
+			}
+			addresses.append(address);
+		}
+		return addresses.append(']').toString();
+	}
+}
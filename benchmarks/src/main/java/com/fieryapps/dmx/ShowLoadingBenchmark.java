@@ -0,0 +1,71 @@
+package com.fieryapps.dmx;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fieryapps.dmx.model.CompiledShow;
+import com.fieryapps.dmx.model.ShowCache;
+
+/**
+ * Measures parsing the YAML show file and compiling it for rendering, compared to loading
+ * the compiled show from the show cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShowLoadingBenchmark {
+	
+	@Param({"32", "512"})
+	private int channels;
+	
+	@Param({"1", "4"})
+	private int universes;
+	
+	@Param({"10", "100"})
+	private int scenes;
+	
+	private String yaml;
+	private byte[] hash;
+	private File cacheFile;
+	
+	@Setup
+	public void createShow() throws IOException {
+		yaml = BenchmarkShows.yaml(channels, universes, scenes);
+		hash = ShowCache.hash(yaml.getBytes(StandardCharsets.UTF_8));
+		cacheFile = File.createTempFile("benchmark", ShowCache.EXTENSION);
+		ShowCache.write(cacheFile, hash, BenchmarkShows.compile(yaml));
+	}
+	
+	@TearDown
+	public void deleteCache() {
+		cacheFile.delete();
+	}
+	
+	@Benchmark
+	public CompiledShow loadShow() {
+		return BenchmarkShows.compile(yaml);
+	}
+	
+	@Benchmark
+	public CompiledShow loadCachedShow() throws IOException {
+		return ShowCache.read(cacheFile, hash);
+	}
+}
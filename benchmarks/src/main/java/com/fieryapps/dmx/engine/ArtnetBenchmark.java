@@ -0,0 +1,88 @@
+package com.fieryapps.dmx.engine;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures encoding the ArtDmx packets of a frame and sending them to the loopback 
+ * interface as one batch, optionally followed by an ArtSync packet.
+ * 
+ * <p>The receiving socket is never read, so the kernel drops packets once its buffer is 
+ * full. This keeps the measurement independent of a receiver.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArtnetBenchmark {
+	
+	@Param({"32", "512"})
+	private int channels;
+	
+	@Param({"1", "4", "16"})
+	private int universes;
+	
+	@Param({"false", "true"})
+	private boolean sync;
+	
+	private DatagramChannel receiver;
+	private ArtnetDmxStream stream;
+	private short[] frame;
+	
+	@Setup
+	public void openStream() throws IOException {
+		receiver = DatagramChannel.open();
+		receiver.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		int port = ((InetSocketAddress) receiver.getLocalAddress()).getPort();
+		stream = new ArtnetDmxStream(InetAddress.getLoopbackAddress().getHostAddress(), 0, 
+				new short[0], new String[0], sync, port);
+		frame = new short[channels];
+		Random random = new Random(42);
+		for (int i = 0; i < frame.length; i++) {
+			frame[i] = (short) random.nextInt(256);
+		}
+	}
+	
+	@TearDown
+	public void closeStream() throws IOException {
+		stream.close();
+		receiver.close();
+	}
+	
+	@Benchmark
+	public void encode(Blackhole blackhole) {
+		for (short universe = 1; universe <= universes; universe++) {
+			ByteBuffer packet = stream.encode(universe, frame);
+			blackhole.consume(packet);
+		}
+	}
+	
+	@Benchmark
+	public void send() {
+		for (short universe = 1; universe <= universes; universe++) {
+			stream.streamDmx(universe, frame);
+		}
+		stream.flush();
+	}
+}
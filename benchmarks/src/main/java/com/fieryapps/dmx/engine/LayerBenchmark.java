@@ -0,0 +1,65 @@
+package com.fieryapps.dmx.engine;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fieryapps.dmx.BenchmarkShows;
+import com.fieryapps.dmx.metrics.Metrics;
+import com.fieryapps.dmx.model.CompiledShow;
+
+/**
+ * Measures rendering and merging a frame while all layers of a show fade.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LayerBenchmark {
+	
+	@Param({"1", "2", "8"})
+	private int layers;
+	
+	@Param({"1", "4"})
+	private int universes;
+	
+	private Engine engine;
+	private long fadeTime;
+	
+	@Setup
+	public void startEngine() {
+		CompiledShow show = BenchmarkShows.compile(BenchmarkShows.yaml(512, universes, layers, 
+				layers));
+		engine = new Engine(show, null, new Metrics());
+		// start one scene in every layer above the base layer
+		long start = System.nanoTime();
+		for (int i = 1; i < layers; i++) {
+			engine.trigger(BenchmarkShows.FIRST_TRIGGER_KEY + i, start);
+		}
+		engine.computeCurrentFrame(start);
+		fadeTime = start + BenchmarkShows.FADE_TIME / 2;
+	}
+	
+	@TearDown
+	public void stopEngine() {
+		engine.shutdownRenderPool();
+	}
+	
+	@Benchmark
+	public void renderLayers() {
+		engine.computeCurrentFrame(fadeTime);
+	}
+}
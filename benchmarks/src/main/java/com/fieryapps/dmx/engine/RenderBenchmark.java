@@ -0,0 +1,71 @@
+package com.fieryapps.dmx.engine;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fieryapps.dmx.BenchmarkShows;
+import com.fieryapps.dmx.metrics.Metrics;
+import com.fieryapps.dmx.model.CompiledShow;
+
+/**
+ * Measures rendering a frame of all universes while fading and while holding a step.
+ * 
+ * <p>The frame time is fixed within the fade or hold time of the first step, so every 
+ * invocation does the same amount of work.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+	
+	@Param({"32", "512"})
+	private int channels;
+	
+	@Param({"1", "4", "16"})
+	private int universes;
+	
+	private Engine engine;
+	private long fadeTime;
+	private long holdTime;
+	
+	@Setup
+	public void startEngine() {
+		CompiledShow show = BenchmarkShows.compile(BenchmarkShows.yaml(channels, universes, 1));
+		engine = new Engine(show, null, new Metrics());
+		// the first rendered frame starts the first step of the start scene
+		long start = System.nanoTime();
+		engine.computeCurrentFrame(start);
+		fadeTime = start + BenchmarkShows.FADE_TIME / 2;
+		holdTime = start + BenchmarkShows.FADE_TIME + BenchmarkShows.HOLD_TIME / 2;
+	}
+	
+	@TearDown
+	public void stopEngine() {
+		engine.shutdownRenderPool();
+	}
+	
+	@Benchmark
+	public void renderFade() {
+		engine.computeCurrentFrame(fadeTime);
+	}
+	
+	@Benchmark
+	public void renderHold() {
+		engine.computeCurrentFrame(holdTime);
+	}
+}
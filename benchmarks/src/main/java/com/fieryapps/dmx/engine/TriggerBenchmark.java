@@ -0,0 +1,69 @@
+package com.fieryapps.dmx.engine;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fieryapps.dmx.BenchmarkShows;
+import com.fieryapps.dmx.metrics.Metrics;
+import com.fieryapps.dmx.model.CompiledScene;
+
+/**
+ * Measures finding the scene triggered by a key press.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TriggerBenchmark {
+	
+	@Param({"10", "100", "1000"})
+	private int scenes;
+	
+	private Engine engine;
+	private int firstKey;
+	private int lastKey;
+	private int unknownKey;
+	
+	@Setup
+	public void startEngine() {
+		engine = new Engine(BenchmarkShows.compile(BenchmarkShows.yaml(8, 1, scenes)), null, 
+				new Metrics());
+		firstKey = BenchmarkShows.FIRST_TRIGGER_KEY;
+		lastKey = BenchmarkShows.FIRST_TRIGGER_KEY + scenes - 1;
+		unknownKey = BenchmarkShows.FIRST_TRIGGER_KEY + scenes;
+	}
+	
+	@TearDown
+	public void stopEngine() {
+		engine.shutdownRenderPool();
+	}
+	
+	@Benchmark
+	public CompiledScene firstScene() {
+		return engine.findScene(firstKey);
+	}
+	
+	@Benchmark
+	public CompiledScene lastScene() {
+		return engine.findScene(lastKey);
+	}
+	
+	@Benchmark
+	public CompiledScene unknownKey() {
+		return engine.findScene(unknownKey);
+	}
+}
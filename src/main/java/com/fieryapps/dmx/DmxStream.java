@@ -2,4 +2,10 @@ package com.fieryapps.dmx;
 
 public interface DmxStream extends AutoCloseable {
 	void streamDmx(short universe, short[] currentFrame);
+	
+	/**
+	 * Called after the frames of all universes of a show have been passed to 
+	 * {@link #streamDmx(short, short[])} for the current frame.
+	 */
+	void flush();
 }
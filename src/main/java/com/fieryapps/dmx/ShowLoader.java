@@ -0,0 +1,103 @@
+package com.fieryapps.dmx;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.yaml.snakeyaml.Yaml;
+
+import com.fieryapps.dmx.beans.Show;
+import com.fieryapps.dmx.model.CompiledShow;
+import com.fieryapps.dmx.model.ShowCache;
+import com.fieryapps.dmx.model.ShowCompiler;
+
+/**
+ * Loads the compiled show of a YAML show file, either from the show cache or by parsing and
+ * compiling the show file.
+ */
+final class ShowLoader {
+	
+	private final File showFile;
+	private final File cacheFile;
+	private final boolean useCache;
+	// hash of the show file content that was loaded last
+	private byte[] loadedHash;
+	
+	/**
+	 * @param showFile the YAML show file
+	 * @param useCache <code>false</code> to always compile the show file
+	 */
+	ShowLoader(File showFile, boolean useCache) {
+		this.showFile = showFile;
+		this.cacheFile = ShowCache.cacheFileFor(showFile);
+		this.useCache = useCache;
+	}
+	
+	File getShowFile() {
+		return showFile;
+	}
+	
+	/**
+	 * Load the compiled show from the show cache. If the show file changed since the cache 
+	 * was written, the YAML show file is read into Java Beans and compiled for rendering 
+	 * and the cache is updated.
+	 * 
+	 * @return the compiled show
+	 * @throws IOException if the show file cannot be read
+	 * @throws IllegalArgumentException if the show file contains invalid settings
+	 */
+	CompiledShow load() throws IOException {
+		return load(null, Files.readAllBytes(showFile.toPath()));
+	}
+	
+	/**
+	 * Load the show again after the show file was modified. Only scenes that changed are 
+	 * compiled again.
+	 * 
+	 * @param previous the currently played show
+	 * @return the modified show or <code>null</code> if the content of the show file did not 
+	 *         change
+	 * @throws IOException if the show file cannot be read
+	 * @throws IllegalArgumentException if the show file contains invalid settings
+	 */
+	CompiledShow reload(CompiledShow previous) throws IOException {
+		byte[] content = Files.readAllBytes(showFile.toPath());
+		if (Arrays.equals(loadedHash, ShowCache.hash(content))) {
+			return null;
+		}
+		return load(previous, content);
+	}
+	
+	private CompiledShow load(CompiledShow previous, byte[] content) throws IOException {
+		byte[] hash = ShowCache.hash(content);
+		CompiledShow compiledShow = null;
+		
+		if (useCache) {
+			try {
+				compiledShow = ShowCache.read(cacheFile, hash);
+			} catch (IOException e) {
+				System.err.println("Error reading show cache '" + cacheFile + "': " 
+						+ e.getMessage());
+			}
+		}
+		
+		if (compiledShow == null) {
+			Show show = new Yaml().loadAs(new ByteArrayInputStream(content), Show.class);
+			compiledShow = ShowCompiler.compile(show, previous);
+			
+			if (useCache) {
+				try {
+					ShowCache.write(cacheFile, hash, compiledShow);
+				} catch (IOException e) {
+					// the show still runs, it is just compiled again on the next start
+					System.err.println("Error writing show cache '" + cacheFile + "': " 
+							+ e.getMessage());
+				}
+			}
+		}
+		loadedHash = hash;
+		return compiledShow;
+	}
+}
@@ -0,0 +1,139 @@
+package com.fieryapps.dmx;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+import org.yaml.snakeyaml.error.YAMLException;
+
+import com.fieryapps.dmx.engine.Engine;
+import com.fieryapps.dmx.model.CompiledScene;
+import com.fieryapps.dmx.model.CompiledShow;
+
+/**
+ * Watches the show file and passes a recompiled show to the engine whenever the file is 
+ * saved.
+ * 
+ * <p>Parsing and compiling runs on the watcher thread, so the engine keeps rendering frames 
+ * while the show is reloaded. If the modified show file contains errors, the engine keeps 
+ * playing the current show.</p>
+ */
+final class ShowWatcher implements Runnable, AutoCloseable {
+	
+	// editors often save a file in several steps, wait until the file no longer changes
+	private static final long SETTLE_TIME = 200;
+	
+	private final ShowLoader loader;
+	private final Engine engine;
+	private final WatchService watchService;
+	private final Path fileName;
+	private final Thread thread;
+	// the most recently loaded show
+	private CompiledShow show;
+	
+	/**
+	 * Start watching the show file.
+	 * 
+	 * @param loader loader of the show file
+	 * @param engine the engine to pass reloaded shows to
+	 * @param show the show currently played by the engine
+	 */
+	ShowWatcher(ShowLoader loader, Engine engine, CompiledShow show) throws IOException {
+		this.loader = loader;
+		this.engine = engine;
+		this.show = show;
+		Path path = loader.getShowFile().getAbsoluteFile().toPath();
+		fileName = path.getFileName();
+		watchService = FileSystems.getDefault().newWatchService();
+		// editors that replace the file by renaming a temporary file create a new entry
+		path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, 
+				StandardWatchEventKinds.ENTRY_MODIFY);
+		thread = new Thread(this, "Show watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	@Override
+	public void run() {
+		try {
+			while (true) {
+				if (isShowFileChanged(watchService.take())) {
+					// wait until the editor has finished writing the file
+					WatchKey key = watchService.poll(SETTLE_TIME, TimeUnit.MILLISECONDS);
+					while (key != null) {
+						key.pollEvents();
+						key.reset();
+						key = watchService.poll(SETTLE_TIME, TimeUnit.MILLISECONDS);
+					}
+					reload();
+				}
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// the watcher has been closed
+		}
+	}
+	
+	private boolean isShowFileChanged(WatchKey key) {
+		boolean changed = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (fileName.equals(event.context())) {
+				changed = true;
+			}
+		}
+		key.reset();
+		return changed;
+	}
+	
+	private void reload() {
+		File showFile = loader.getShowFile();
+		try {
+			CompiledShow newShow = loader.reload(show);
+			if (newShow == null) {
+				return;
+			}
+			System.out.println("\nReloading show file '" + showFile + "', " 
+					+ countCompiledScenes(newShow) + " of " + newShow.getScenes().length 
+					+ " scenes changed");
+			show = newShow;
+			engine.reloadShow(newShow);
+		} catch (IOException e) {
+			System.err.println("\nError reloading show file '" + showFile + "': " 
+					+ e.getMessage());
+		} catch (IllegalArgumentException | YAMLException e) {
+			System.err.println("\nError in show file '" + showFile + "', keeping current show: " 
+					+ e.getMessage());
+		}
+	}
+	
+	/**
+	 * Count the scenes that are not shared with the previous show.
+	 */
+	private int countCompiledScenes(CompiledShow newShow) {
+		int count = 0;
+		for (CompiledScene scene : newShow.getScenes()) {
+			boolean reused = false;
+			for (CompiledScene previousScene : show.getScenes()) {
+				if (scene == previousScene) {
+					reused = true;
+					break;
+				}
+			}
+			if (!reused) {
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+	}
+}
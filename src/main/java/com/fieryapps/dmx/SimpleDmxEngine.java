@@ -21,19 +21,33 @@
  */
 package com.fieryapps.dmx;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 
-import org.yaml.snakeyaml.Yaml;
-
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
-import com.fieryapps.dmx.beans.Scene;
-import com.fieryapps.dmx.beans.Show;
+import com.fieryapps.dmx.engine.ChecksumDmxStream;
 import com.fieryapps.dmx.engine.DmxStreams;
 import com.fieryapps.dmx.engine.Engine;
+import com.fieryapps.dmx.engine.EngineConsole;
+import com.fieryapps.dmx.engine.FrameFileDmxStream;
+import com.fieryapps.dmx.engine.HeadlessRenderer;
+import com.fieryapps.dmx.engine.RecordingDmxStream;
+import com.fieryapps.dmx.engine.RecordingPlayer;
+import com.fieryapps.dmx.engine.ShowHost;
+import com.fieryapps.dmx.engine.TriggerScript;
+import com.fieryapps.dmx.metrics.Metrics;
+import com.fieryapps.dmx.metrics.MetricsHttpServer;
+import com.fieryapps.dmx.model.CompiledScene;
+import com.fieryapps.dmx.model.CompiledShow;
 
 /**
  * Entry point for the SimpleDmxEngine. Parses command line parameters
@@ -42,38 +56,325 @@ import com.fieryapps.dmx.engine.Engine;
 public class SimpleDmxEngine 
 {
 	
-	@Parameter(names = {"-s", "--show"}, description = "Full path to the YAML show file to use", 
-			required = true)
-	private String showFile;
+	@Parameter(names = {"-s", "--show"}, description = "Full path to the YAML show file to use, "
+			+ "repeat to run several shows in one process", required = true)
+	private List<String> showFiles;
+	
+	@Parameter(names = {"--host-threads"}, description = "Number of threads rendering the "
+			+ "frames of several shows, by default one per show up to the number of processors")
+	private int hostThreads;
+	
+	@Parameter(names = {"--metrics-port"}, description = "Serve metrics as plain text on this "
+			+ "local HTTP port")
+	private Integer metricsPort;
+	
+	@Parameter(names = {"--trigger-port"}, description = "Receive trigger keys as UDP "
+			+ "datagrams on this port")
+	private Integer triggerPort;
+	
+	@Parameter(names = {"--trigger-address"}, description = "Local address to receive "
+			+ "trigger keys and timecode on")
+	private String triggerAddress = "127.0.0.1";
+	
+	@Parameter(names = {"--timecode-port"}, description = "Play timeline scenes at the "
+			+ "position of Art-Net timecode received on this UDP port")
+	private Integer timecodePort;
+	
+	@Parameter(names = {"--monitor-port"}, description = "Stream all frames to monitor viewers "
+			+ "connecting to this local TCP port")
+	private Integer monitorPort;
+	
+	@Parameter(names = {"--headless"}, description = "Render the show as fast as possible "
+			+ "without output and print a checksum of all frames")
+	private boolean headless;
+	
+	@Parameter(names = {"--duration"}, description = "Duration of the headless show in seconds")
+	private double duration = 3600;
+	
+	@Parameter(names = {"--triggers"}, description = "Script of key presses for the headless "
+			+ "show")
+	private String triggersFile;
+	
+	@Parameter(names = {"--frames"}, description = "Write all frames of the headless show to "
+			+ "this file")
+	private String framesFile;
+	
+	@Parameter(names = {"--seed"}, description = "Seed of random step orders in the headless "
+			+ "show")
+	private long seed;
+	
+	@Parameter(names = {"--expect-checksum"}, description = "Exit with an error if the checksum "
+			+ "of the headless show differs")
+	private String expectedChecksum;
+	
+	@Parameter(names = {"--record"}, description = "Record all frames of the show to this file")
+	private String recordFile;
+	
+	@Parameter(names = {"--play"}, description = "Play a recording through the output of the "
+			+ "show instead of running the show")
+	private String playFile;
+	
+	@Parameter(names = {"--seek"}, description = "Start playing the recording at this time in "
+			+ "seconds")
+	private double seekTime;
+	
+	@Parameter(names = {"--no-cache"}, description = "Always compile the YAML show file "
+			+ "instead of loading the compiled show cache")
+	private boolean noCache;
+	
+	@Parameter(names = {"--no-reload"}, description = "Do not reload the show when the show "
+			+ "file is modified")
+	private boolean noReload;
 	
 	/**
-	 * Open the show file and read the settings from the show file into Java Beans. Once the show
-	 * file is loaded, the engine is started.
+	 * Load the compiled show and start the engine.
 	 */
 	public void run() {
-		Show show = null;
-
-		try (InputStream input = new FileInputStream(showFile)) {
-			Yaml yaml = new Yaml();
-			show = yaml.loadAs(input, Show.class);
+		if (showFiles.size() > 1) {
+			if (headless || playFile != null || recordFile != null) {
+				System.err.println("Headless rendering, recording and playback support a single "
+						+ "show only");
+				System.exit(1);
+			}
+			runHost();
+			return;
+		}
+		
+		ShowLoader loader = new ShowLoader(new File(showFiles.get(0)), !noCache);
+		CompiledShow compiledShow = load(loader);
+		
+		if (headless) {
+			renderHeadless(compiledShow);
+			return;
+		}
+		if (playFile != null) {
+			playRecording(compiledShow);
+			return;
+		}
+		
+		// metrics are always available via JMX, the HTTP endpoint is optional
+		Metrics metrics = new Metrics();
+		metrics.registerMBeans();
+		
+		try (MetricsHttpServer metricsServer = metricsPort == null ? null 
+						: new MetricsHttpServer(metrics, metricsPort);
+				DmxStream dmxStream = DmxStreams.createStreamFor(compiledShow, metrics, 
+						recordFile == null ? null : new File(recordFile), monitorPort == null ? null
+						: new InetSocketAddress(InetAddress.getLoopbackAddress(), monitorPort))) {
+			if (monitorPort != null) {
+				System.out.println("Streaming frames to monitor viewers on port " + monitorPort);
+			}
+			Engine engine = new Engine(compiledShow, dmxStream, metrics);
+			if (triggerPort != null) {
+				int port = engine.addTriggerPort(new InetSocketAddress(triggerAddress, 
+						triggerPort));
+				System.out.println("Receiving trigger keys on " + triggerAddress + ":" + port);
+			}
+			if (timecodePort != null) {
+				int port = engine.addTimecodePort(new InetSocketAddress(triggerAddress, 
+						timecodePort));
+				System.out.println("Receiving timecode on " + triggerAddress + ":" + port);
+			}
+			
+			printKeysMappings(compiledShow);
+			try (ShowWatcher watcher = noReload ? null 
+					: new ShowWatcher(loader, engine, compiledShow);
+					EngineConsole console = new EngineConsole(engine)) {
+				engine.run();
+			}
+			System.out.println(engine.getTimingSummary());
+		} catch (Exception e) {
+			System.err.println("Error starting application: " + e.getMessage());
+			e.printStackTrace(System.err);
+			System.exit(1);
+		}
+	}
+	
+	/**
+	 * Load a compiled show and exit if it can not be loaded.
+	 */
+	private static CompiledShow load(ShowLoader loader) {
+		String showFile = loader.getShowFile().getPath();
+		try {
+			return loader.load();
 		} catch (IOException e) {
 			System.err.println("Error opening show file '" + showFile + "': " + e.getMessage());
-			System.exit(1);
+		} catch (IllegalArgumentException e) {
+			System.err.println("Error in show file '" + showFile + "': " + e.getMessage());
+		}
+		System.exit(1);
+		return null;
+	}
+	
+	/**
+	 * Run several shows on a shared {@link ShowHost}. The keyboard controls the first show, 
+	 * the other shows are controlled with trigger ports.
+	 */
+	private void runHost() {
+		List<ShowLoader> loaders = new ArrayList<ShowLoader>();
+		List<CompiledShow> shows = new ArrayList<CompiledShow>();
+		for (String showFile : showFiles) {
+			ShowLoader loader = new ShowLoader(new File(showFile), !noCache);
+			loaders.add(loader);
+			shows.add(load(loader));
 		}
 		
-		try (DmxStream dmxStream = DmxStreams.createStreamFor(show)) {
-			Engine engine = new Engine(show, dmxStream);
+		Metrics metrics = new Metrics();
+		metrics.registerMBeans();
+		int threads = hostThreads > 0 ? hostThreads 
+				: Math.min(shows.size(), Runtime.getRuntime().availableProcessors());
+		
+		ShowHost host = new ShowHost(threads);
+		// outputs and show watchers of all shows, closed once all engines have stopped
+		List<AutoCloseable> resources = new ArrayList<AutoCloseable>();
+		try (MetricsHttpServer metricsServer = metricsPort == null ? null 
+				: new MetricsHttpServer(metrics, metricsPort)) {
+			Engine[] engines = new Engine[shows.size()];
+			for (int i = 0; i < engines.length; i++) {
+				CompiledShow show = shows.get(i);
+				// metrics of every show are told apart by the name of the show file
+				Metrics showMetrics = metrics.withLabel("show", 
+						loaders.get(i).getShowFile().getName());
+				DmxStream dmxStream = DmxStreams.createStreamFor(show, showMetrics, null, 
+						monitorPort == null ? null : new InetSocketAddress(
+								InetAddress.getLoopbackAddress(), monitorPort + i));
+				resources.add(dmxStream);
+				engines[i] = host.createEngine(show, dmxStream, showMetrics);
+				System.out.print("Show " + (i + 1) + ": " + showFiles.get(i));
+				if (triggerPort != null) {
+					int port = engines[i].addTriggerPort(new InetSocketAddress(triggerAddress, 
+							triggerPort + i));
+					System.out.print(", trigger keys on " + triggerAddress + ":" + port);
+				}
+				if (timecodePort != null) {
+					int port = engines[i].addTimecodePort(new InetSocketAddress(triggerAddress, 
+							timecodePort + i));
+					System.out.print(", timecode on " + triggerAddress + ":" + port);
+				}
+				if (monitorPort != null) {
+					System.out.print(", monitor port " + (monitorPort + i));
+				}
+				System.out.println();
+				if (!noReload) {
+					resources.add(new ShowWatcher(loaders.get(i), engines[i], show));
+				}
+			}
 			
-			printKeysMappings(show);
-			engine.run();
+			printKeysMappings(shows.get(0));
+			for (Engine engine : engines) {
+				host.start(engine);
+			}
+			try (EngineConsole console = new EngineConsole(engines[0])) {
+				// quitting the first show stops all shows
+				host.awaitStopped(engines[0]);
+			}
+			host.close();
+			for (Engine engine : engines) {
+				System.out.println(engine.getTimingSummary());
+			}
 		} catch (Exception e) {
 			System.err.println("Error starting application: " + e.getMessage());
 			e.printStackTrace(System.err);
 			System.exit(1);
+		} finally {
+			try {
+				host.close();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			for (AutoCloseable resource : resources) {
+				try {
+					resource.close();
+				} catch (Exception e) {
+					e.printStackTrace(System.err);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Render the show with a virtual clock and print the checksum of all frames.
+	 */
+	private void renderHeadless(CompiledShow compiledShow) {
+		TriggerScript script = TriggerScript.empty();
+		if (triggersFile != null) {
+			try (Reader input = new InputStreamReader(new FileInputStream(triggersFile), 
+					StandardCharsets.UTF_8)) {
+				script = TriggerScript.parse(input);
+			} catch (IOException e) {
+				System.err.println("Error opening trigger script '" + triggersFile + "': " 
+						+ e.getMessage());
+				System.exit(1);
+			} catch (IllegalArgumentException e) {
+				System.err.println("Error in trigger script '" + triggersFile + "': " 
+						+ e.getMessage());
+				System.exit(1);
+			}
+		}
+		
+		String checksum = null;
+		try (ChecksumDmxStream output = new ChecksumDmxStream(
+				createHeadlessOutput(compiledShow))) {
+			long start = System.nanoTime();
+			long frames = new HeadlessRenderer(compiledShow, output, seed).render(script, 
+					Math.round(duration * 1e9));
+			long elapsed = (System.nanoTime() - start) / 1000000L;
+			checksum = output.getChecksum();
+			System.out.format("Rendered %d frames (%.1f seconds of show) in %d ms%n", frames, 
+					frames * compiledShow.getFramePeriod() / 1e9, elapsed);
+			System.out.println("Checksum: " + checksum);
+		} catch (Exception e) {
+			System.err.println("Error rendering show: " + e.getMessage());
+			System.exit(1);
+		}
+		
+		if (expectedChecksum != null && !expectedChecksum.equalsIgnoreCase(checksum)) {
+			System.err.println("Checksum does not match expected checksum " 
+					+ expectedChecksum);
+			System.exit(1);
+		}
+	}
+	
+	/**
+	 * @return the stream writing the frames of the headless show to files, or 
+	 *         <code>null</code>
+	 */
+	private DmxStream createHeadlessOutput(CompiledShow compiledShow) throws IOException {
+		DmxStream output = framesFile == null ? null : new FrameFileDmxStream(framesFile);
+		if (recordFile != null) {
+			// frames are recorded at the times of the virtual clock
+			output = new RecordingDmxStream(new File(recordFile), output, 
+					compiledShow.getFramePeriod());
+		}
+		return output;
+	}
+	
+	/**
+	 * Play a recording through the output of the show.
+	 */
+	private void playRecording(CompiledShow compiledShow) {
+		RecordingPlayer player = null;
+		try {
+			player = new RecordingPlayer(new File(playFile));
+		} catch (IOException e) {
+			System.err.println("Error opening recording '" + playFile + "': " + e.getMessage());
+			System.exit(1);
+		}
+		
+		try (DmxStream dmxStream = DmxStreams.createStreamFor(compiledShow)) {
+			player.seek(Math.round(seekTime * 1e9));
+			System.out.format("Playing recording of %d frames (%.1f seconds) from %.1f "
+					+ "seconds%n", player.getFrames(), player.getDuration() / 1e9, 
+					player.getPosition() / 1e9);
+			long frames = player.play(dmxStream);
+			System.out.println("Played " + frames + " frames");
+		} catch (Exception e) {
+			System.err.println("Error playing recording: " + e.getMessage());
+			System.exit(1);
 		}
 	}
 	
-	private void printKeysMappings(Show show) {
+	private void printKeysMappings(CompiledShow show) {
 		System.out.println("Master Keys:");
 		System.out.println("\t[-]\t=> Dimmer -10%");
 		System.out.println("\t[+]\t=> Dimmer +10%");
@@ -81,15 +382,15 @@ public class SimpleDmxEngine
 		
 		System.out.println("Trigger Keys:");
 		
-		for (Scene scene : show.getScenes()) {
+		for (CompiledScene scene : show.getScenes()) {
 			System.out.print("\t[");
 			
-			List<Integer> triggerKeys = scene.getTriggerKeys();
-			for (int i = 0; i < triggerKeys.size(); i++) {
+			int[] triggerKeys = scene.getTriggerKeys();
+			for (int i = 0; i < triggerKeys.length; i++) {
 				if (i > 0) {
 					System.out.print(", ");
 				}
-				int triggerKey = triggerKeys.get(i);
+				int triggerKey = triggerKeys[i];
 				
 				if (triggerKey < 33) {
 					System.out.print("0x" + Integer.toHexString(triggerKey));
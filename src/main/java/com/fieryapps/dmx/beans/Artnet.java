@@ -1,11 +1,21 @@
 package com.fieryapps.dmx.beans;
 
+import java.util.List;
+
 public class Artnet {
 	/**
 	 * if provided, DMX is sent with unicast directly to this address
 	 */
 	private String address;
 	private int subnet;
+	/**
+	 * nodes receiving single universes, all other universes are sent to the address above
+	 */
+	private List<ArtnetNode> nodes;
+	/**
+	 * if true, every frame is followed by an ArtSync packet so all nodes output it together
+	 */
+	private boolean sync;
 	
 	public String getAddress() {
 		return address;
@@ -22,4 +32,20 @@ public class Artnet {
 	public void setSubnet(int subnet) {
 		this.subnet = subnet;
 	}
+	
+	public List<ArtnetNode> getNodes() {
+		return nodes;
+	}
+	
+	public void setNodes(List<ArtnetNode> nodes) {
+		this.nodes = nodes;
+	}
+	
+	public boolean isSync() {
+		return sync;
+	}
+	
+	public void setSync(boolean sync) {
+		this.sync = sync;
+	}
 }
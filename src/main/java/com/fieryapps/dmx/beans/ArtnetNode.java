@@ -0,0 +1,29 @@
+package com.fieryapps.dmx.beans;
+
+import java.util.List;
+
+/**
+ * An Art-Net node receiving some of the universes of a show.
+ */
+public class ArtnetNode {
+	// unicast address of the node
+	private String address;
+	// universes sent to this node
+	private List<Short> universes;
+	
+	public String getAddress() {
+		return address;
+	}
+	
+	public void setAddress(String address) {
+		this.address = address;
+	}
+	
+	public List<Short> getUniverses() {
+		return universes;
+	}
+	
+	public void setUniverses(List<Short> universes) {
+		this.universes = universes;
+	}
+}
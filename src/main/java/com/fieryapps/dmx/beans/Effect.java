@@ -0,0 +1,89 @@
+package com.fieryapps.dmx.beans;
+
+import java.util.List;
+
+/**
+ * This bean stores the settings of an effect played by a scene.
+ */
+public class Effect {
+	// type can be 'sine', 'saw', 'square', 'chase' or 'rainbow'
+	private String type;
+	// universe of the channels, the main universe of the show if not set
+	private Short universe;
+	// DMX addresses played by the effect, for rainbows the red address of every fixture
+	private List<Short> channels;
+	// duration of a cycle in milliseconds
+	private long period;
+	// phase difference spread across all channels in degrees
+	private Double spread;
+	// value at the bottom of the wave
+	private short min = 0;
+	// value at the top of the wave
+	private short max = 255;
+	// number of channels a chase lights at the same time
+	private int width = 1;
+	
+	public String getType() {
+		return type;
+	}
+	
+	public void setType(String type) {
+		this.type = type;
+	}
+	
+	public Short getUniverse() {
+		return universe;
+	}
+	
+	public void setUniverse(Short universe) {
+		this.universe = universe;
+	}
+	
+	public List<Short> getChannels() {
+		return channels;
+	}
+	
+	public void setChannels(List<Short> channels) {
+		this.channels = channels;
+	}
+	
+	public long getPeriod() {
+		return period;
+	}
+	
+	public void setPeriod(long period) {
+		this.period = period;
+	}
+	
+	public Double getSpread() {
+		return spread;
+	}
+	
+	public void setSpread(Double spread) {
+		this.spread = spread;
+	}
+	
+	public short getMin() {
+		return min;
+	}
+	
+	public void setMin(short min) {
+		this.min = min;
+	}
+	
+	public short getMax() {
+		return max;
+	}
+	
+	public void setMax(short max) {
+		this.max = max;
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	public void setWidth(int width) {
+		this.width = width;
+	}
+}
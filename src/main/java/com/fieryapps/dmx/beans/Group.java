@@ -0,0 +1,48 @@
+package com.fieryapps.dmx.beans;
+
+import java.util.List;
+
+/**
+ * A named group of channels whose intensity is scaled by its own submaster.
+ */
+public class Group {
+	private String name;
+	// universe of the channels, the main universe of the show if not set
+	private Short universe;
+	// DMX addresses of the channels in the group
+	private List<Short> channels;
+	// initial value of the submaster from 0 to 255
+	private short master = 255;
+	
+	public String getName() {
+		return name;
+	}
+	
+	public void setName(String name) {
+		this.name = name;
+	}
+	
+	public Short getUniverse() {
+		return universe;
+	}
+	
+	public void setUniverse(Short universe) {
+		this.universe = universe;
+	}
+	
+	public List<Short> getChannels() {
+		return channels;
+	}
+	
+	public void setChannels(List<Short> channels) {
+		this.channels = channels;
+	}
+	
+	public short getMaster() {
+		return master;
+	}
+	
+	public void setMaster(short master) {
+		this.master = master;
+	}
+}
@@ -0,0 +1,78 @@
+package com.fieryapps.dmx.beans;
+
+import java.util.Map;
+
+/**
+ * Settings for sending DMX as sACN (ANSI E1.31).
+ */
+public class Sacn {
+	/**
+	 * if provided, DMX is sent with unicast to this address instead of multicast
+	 */
+	private String address;
+	/**
+	 * name of the network interface to send multicast on, the default interface if not set
+	 */
+	private String networkInterface;
+	/**
+	 * name of this source shown by receivers, the name of the show if not set
+	 */
+	private String sourceName;
+	/**
+	 * component identifier (CID) of this source as a UUID, which must differ from every other
+	 * source on the network, a random one for every start if not set
+	 */
+	private String cid;
+	// priority of all universes from 0 to 200
+	private short priority = 100;
+	// priorities of single universes, overriding the priority above
+	private Map<Short, Short> priorities;
+	
+	public String getAddress() {
+		return address;
+	}
+	
+	public void setAddress(String address) {
+		this.address = address;
+	}
+	
+	public String getNetworkInterface() {
+		return networkInterface;
+	}
+	
+	public void setNetworkInterface(String networkInterface) {
+		this.networkInterface = networkInterface;
+	}
+	
+	public String getSourceName() {
+		return sourceName;
+	}
+	
+	public void setSourceName(String sourceName) {
+		this.sourceName = sourceName;
+	}
+	
+	public String getCid() {
+		return cid;
+	}
+	
+	public void setCid(String cid) {
+		this.cid = cid;
+	}
+	
+	public short getPriority() {
+		return priority;
+	}
+	
+	public void setPriority(short priority) {
+		this.priority = priority;
+	}
+	
+	public Map<Short, Short> getPriorities() {
+		return priorities;
+	}
+	
+	public void setPriorities(Map<Short, Short> priorities) {
+		this.priorities = priorities;
+	}
+}
@@ -35,10 +35,20 @@ public class Scene {
 	private boolean repeat;
 	// order can be 'linear' or 'random'
 	private String order;
+	// fade curve can be 'linear', 's-curve' or 'square'
+	private String curve;
 	// a list of steps within this scene
 	private List<Step> steps;
 	// a list of DMX addresses that will not fade when fade time is greater than zero
 	private List<Short> switchChannels;
+	// steps played in additional universes of the show
+	private List<UniverseSteps> universes;
+	// layer playing the scene, 0 is the base layer and higher layers are played on top
+	private int layer;
+	// effects played on top of the steps
+	private List<Effect> effects;
+	// steps start at absolute times and the scene can be positioned at any time
+	private boolean timeline;
 	
 	public List<Integer> getTriggerKeys() {
 		return triggerKeys;
@@ -64,6 +74,14 @@ public class Scene {
 		this.order = order;
 	}
 	
+	public String getCurve() {
+		return curve;
+	}
+	
+	public void setCurve(String curve) {
+		this.curve = curve;
+	}
+	
 	public List<Step> getSteps() {
 		return steps;
 	}
@@ -87,4 +105,36 @@ public class Scene {
 	public void setName(String name) {
 		this.name = name;
 	}
+	
+	public List<UniverseSteps> getUniverses() {
+		return universes;
+	}
+	
+	public void setUniverses(List<UniverseSteps> universes) {
+		this.universes = universes;
+	}
+	
+	public int getLayer() {
+		return layer;
+	}
+	
+	public void setLayer(int layer) {
+		this.layer = layer;
+	}
+	
+	public List<Effect> getEffects() {
+		return effects;
+	}
+	
+	public void setEffects(List<Effect> effects) {
+		this.effects = effects;
+	}
+	
+	public boolean isTimeline() {
+		return timeline;
+	}
+	
+	public void setTimeline(boolean timeline) {
+		this.timeline = timeline;
+	}
 }
@@ -30,14 +30,29 @@ public class Show {
 	// name of the light show
 	private String name;
 	private Artnet artnet;
+	private Sacn sacn;
 	// the OLA universe id to send DMX values to
 	private short universe;
 	// duration of a frame in milliseconds
 	private short frameDuration;
+	// frames per second, overrides frameDuration if set
+	private double frameRate;
+	// 'drop' or 'catch-up', defines how late frames are handled
+	private String latePolicy;
+	// time in microseconds to busy wait before a frame instead of sleeping
+	private int spinMicros;
 	// the id of the first scene to play after starting SimpleDmxEngine
 	private short startScene;
 	// list of all DMX addresses that control a dimmer
 	private List<Short> dimmerChannels;
+	// additional universes played by this show
+	private List<UniverseSettings> universes;
+	// channel groups with their own submasters
+	private List<Group> groups;
+	// milliseconds after which unchanged frames are sent again, 0 sends every frame
+	private Integer keepAlive;
+	// number of threads used to render universes, 1 renders all universes serially
+	private int renderThreads;
 	// list of all scenes within the show
 	private List<Scene> scenes;
 	
@@ -49,6 +64,22 @@ public class Show {
 		this.name = name;
 	}
 	
+	public List<Group> getGroups() {
+		return groups;
+	}
+	
+	public void setGroups(List<Group> groups) {
+		this.groups = groups;
+	}
+	
+	public Sacn getSacn() {
+		return sacn;
+	}
+	
+	public void setSacn(Sacn sacn) {
+		this.sacn = sacn;
+	}
+	
 	public Artnet getArtnet() {
 		return artnet;
 	}
@@ -73,6 +104,30 @@ public class Show {
 		this.frameDuration = frameDuration;
 	}
 	
+	public double getFrameRate() {
+		return frameRate;
+	}
+	
+	public void setFrameRate(double frameRate) {
+		this.frameRate = frameRate;
+	}
+	
+	public String getLatePolicy() {
+		return latePolicy;
+	}
+	
+	public void setLatePolicy(String latePolicy) {
+		this.latePolicy = latePolicy;
+	}
+	
+	public int getSpinMicros() {
+		return spinMicros;
+	}
+	
+	public void setSpinMicros(int spinMicros) {
+		this.spinMicros = spinMicros;
+	}
+	
 	public short getStartScene() {
 		return startScene;
 	}
@@ -96,4 +151,28 @@ public class Show {
 	public void setDimmerChannels(List<Short> dimmerChannels) {
 		this.dimmerChannels = dimmerChannels;
 	}
+	
+	public List<UniverseSettings> getUniverses() {
+		return universes;
+	}
+	
+	public void setUniverses(List<UniverseSettings> universes) {
+		this.universes = universes;
+	}
+	
+	public int getRenderThreads() {
+		return renderThreads;
+	}
+	
+	public void setRenderThreads(int renderThreads) {
+		this.renderThreads = renderThreads;
+	}
+	
+	public Integer getKeepAlive() {
+		return keepAlive;
+	}
+	
+	public void setKeepAlive(Integer keepAlive) {
+		this.keepAlive = keepAlive;
+	}
 }
@@ -22,6 +22,7 @@
 package com.fieryapps.dmx.beans;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * This bean stores the DMX values for a single step within a scene
@@ -32,8 +33,14 @@ public class Step {
 	private long fade;
 	// time to hold this step
 	private long hold;
+	// fade curve of this step, overrides the curve of the scene
+	private String curve;
 	// list of values for all DMX addresses
 	private List<Short> values;
+	// values of single DMX addresses, all other addresses keep their previous values
+	private Map<Short, Short> set;
+	// start of this step in milliseconds from the start of a timeline scene
+	private Long at;
 	
 	public long getFade() {
 		return fade;
@@ -51,6 +58,14 @@ public class Step {
 		this.hold = hold;
 	}
 	
+	public String getCurve() {
+		return curve;
+	}
+	
+	public void setCurve(String curve) {
+		this.curve = curve;
+	}
+	
 	public List<Short> getValues() {
 		return values;
 	}
@@ -58,4 +73,20 @@ public class Step {
 	public void setValues(List<Short> values) {
 		this.values = values;
 	}
+	
+	public Map<Short, Short> getSet() {
+		return set;
+	}
+	
+	public void setSet(Map<Short, Short> set) {
+		this.set = set;
+	}
+	
+	public Long getAt() {
+		return at;
+	}
+	
+	public void setAt(Long at) {
+		this.at = at;
+	}
 }
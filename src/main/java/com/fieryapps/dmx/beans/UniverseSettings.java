@@ -0,0 +1,29 @@
+package com.fieryapps.dmx.beans;
+
+import java.util.List;
+
+/**
+ * This bean stores the patch of an additional DMX universe of a show.
+ */
+public class UniverseSettings {
+	// the universe id to send DMX values to
+	private short universe;
+	// list of all DMX addresses in this universe that control a dimmer
+	private List<Short> dimmerChannels;
+	
+	public short getUniverse() {
+		return universe;
+	}
+	
+	public void setUniverse(short universe) {
+		this.universe = universe;
+	}
+	
+	public List<Short> getDimmerChannels() {
+		return dimmerChannels;
+	}
+	
+	public void setDimmerChannels(List<Short> dimmerChannels) {
+		this.dimmerChannels = dimmerChannels;
+	}
+}
@@ -0,0 +1,39 @@
+package com.fieryapps.dmx.beans;
+
+import java.util.List;
+
+/**
+ * This bean stores the steps a scene plays in an additional DMX universe.
+ */
+public class UniverseSteps {
+	// the universe id, must be declared in the universes of the show
+	private short universe;
+	// a list of steps played in this universe
+	private List<Step> steps;
+	// a list of DMX addresses that will not fade when fade time is greater than zero
+	private List<Short> switchChannels;
+	
+	public short getUniverse() {
+		return universe;
+	}
+	
+	public void setUniverse(short universe) {
+		this.universe = universe;
+	}
+	
+	public List<Step> getSteps() {
+		return steps;
+	}
+	
+	public void setSteps(List<Step> steps) {
+		this.steps = steps;
+	}
+	
+	public List<Short> getSwitchChannels() {
+		return switchChannels;
+	}
+	
+	public void setSwitchChannels(List<Short> switchChannels) {
+		this.switchChannels = switchChannels;
+	}
+}
@@ -1,40 +1,275 @@
 package com.fieryapps.dmx.engine;
 
-import ch.bildspur.artnet.ArtNetClient;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
+
 import com.fieryapps.dmx.DmxStream;
+import com.fieryapps.dmx.model.CompiledOutput;
 
+/**
+ * Sends DMX frames as Art-Net ArtDmx packets.
+ *
+ * <p>Every universe has its own preallocated direct buffer which holds the complete packet.
+ * Only the sequence number and the DMX data are updated for each frame, so streaming does not
+ * allocate any memory once all universes have been sent for the first time.</p>
+ *
+ * <p>Universes can be routed to their own Art-Net node, all other universes are sent to the
+ * default address or broadcast. Every node has its own connected {@link DatagramChannel}, so
+ * the destination is resolved once and each packet is a single system call. Packets are sent
+ * as one batch when the frame is flushed. With synchronisation enabled, an ArtSync packet to
+ * every node of the batch follows, so all nodes output the frame at the same time instead of
+ * whenever their universes arrive.</p>
+ */
 class ArtnetDmxStream implements DmxStream {
-	private final ArtNetClient client = new ArtNetClient();
-	private final String address;
+	/** UDP port used by Art-Net */
+	static final int ARTNET_PORT = 0x1936;
+
+	private static final String BROADCAST_ADDRESS = "255.255.255.255";
+	private static final byte[] ID = {'A', 'r', 't', '-', 'N', 'e', 't', 0};
+	private static final int OP_DMX = 0x5000;
+	private static final int OP_SYNC = 0x5200;
+	private static final int PROTOCOL_VERSION = 14;
+	private static final int SEQUENCE_OFFSET = 12;
+	private static final int HEADER_LENGTH = 18;
+	private static final int SYNC_LENGTH = 14;
+	private static final int DMX_LENGTH = 512;
+
 	private final int subnet;
-	
-	public ArtnetDmxStream(String address, int subnet) {
-		this.address = address;
+	// channels to all nodes, the default address or broadcast first
+	private final DatagramChannel[] nodes;
+	// nodes of the routed universes, in the order of the routed universes
+	private final short[] routedUniverses;
+	private final int[] routedNodes;
+	private final boolean sync;
+	private final ByteBuffer syncPacket;
+	// nodes that have been sent packets in the current batch
+	private final boolean[] nodesSent;
+	// universes seen so far and their packet buffers, sequence numbers and nodes
+	private short[] universes = new short[0];
+	private ByteBuffer[] packets = new ByteBuffer[0];
+	private byte[] sequences = new byte[0];
+	private int[] universeNodes = new int[0];
+	// universes with a packet waiting for the next batch
+	private boolean[] pending = new boolean[0];
+	private boolean sendFailed;
+
+	/**
+	 * Open a stream with the Art-Net settings of a show.
+	 */
+	public ArtnetDmxStream(CompiledOutput output) throws IOException {
+		this(output.getAddress(), output.getSubnet(), output.getRoutedUniverses(), 
+				output.getRouteAddresses(), output.isSync(), ARTNET_PORT);
+	}
+
+	/**
+	 * Open a stream sending all universes to a specific port, used for testing.
+	 *
+	 * @param address if not <code>null</code>, DMX is sent with unicast to this address
+	 * @param subnet the Art-Net subnet of all universes
+	 * @param port the UDP port to send to
+	 */
+	ArtnetDmxStream(String address, int subnet, int port) throws IOException {
+		this(address, subnet, new short[0], new String[0], false, port);
+	}
+
+	/**
+	 * @param address if not <code>null</code>, universes without a route are sent with 
+	 *        unicast to this address
+	 * @param subnet the Art-Net subnet of all universes
+	 * @param routedUniverses universes sent to their own node
+	 * @param routeAddresses the unicast addresses of the nodes of the routed universes
+	 * @param sync send an ArtSync packet after every batch
+	 * @param port the UDP port to send to
+	 */
+	ArtnetDmxStream(String address, int subnet, short[] routedUniverses, 
+			String[] routeAddresses, boolean sync, int port) throws IOException {
 		this.subnet = subnet;
-		client.start();
+		this.routedUniverses = routedUniverses;
+		this.sync = sync;
+		// universes routed to the same address share a node
+		String[] addresses = new String[routeAddresses.length + 1];
+		addresses[0] = address;
+		int nodeCount = 1;
+		routedNodes = new int[routedUniverses.length];
+		for (int i = 0; i < routeAddresses.length; i++) {
+			int node = 1;
+			while (node < nodeCount && !addresses[node].equals(routeAddresses[i])) {
+				node++;
+			}
+			if (node == nodeCount) {
+				addresses[nodeCount++] = routeAddresses[i];
+			}
+			routedNodes[i] = node;
+		}
+		nodes = new DatagramChannel[nodeCount];
+		nodesSent = new boolean[nodeCount];
+		try {
+			for (int i = 0; i < nodeCount; i++) {
+				nodes[i] = open(addresses[i], port);
+			}
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+		syncPacket = createSyncPacket();
 	}
-	
+
+	private static DatagramChannel open(String address, int port) throws IOException {
+		DatagramChannel channel = DatagramChannel.open();
+		if (address == null) {
+			channel.setOption(StandardSocketOptions.SO_BROADCAST, true);
+			channel.connect(new InetSocketAddress(BROADCAST_ADDRESS, port));
+		} else {
+			channel.connect(new InetSocketAddress(address, port));
+		}
+		return channel;
+	}
+
+	/**
+	 * Prepare the packet of a universe, it is sent with the next batch.
+	 */
 	@Override
 	public void streamDmx(short universe, short[] currentFrame) {
-		byte[] dmxData = toBytes(currentFrame);
-		
-		if (address != null) {
-			client.unicastDmx(address, subnet, universe, dmxData);
-		} else {
-			client.broadcastDmx(subnet, universe, dmxData);
+		encode(universe, currentFrame);
+	}
+
+	/**
+	 * Send the packets of all universes streamed since the last batch, followed by an 
+	 * ArtSync packet to every node if synchronisation is enabled.
+	 */
+	@Override
+	public void flush() {
+		for (int i = 0; i < pending.length; i++) {
+			if (pending[i]) {
+				pending[i] = false;
+				send(nodes[universeNodes[i]], packets[i]);
+				nodesSent[universeNodes[i]] = true;
+			}
 		}
+		for (int i = 0; i < nodes.length; i++) {
+			if (nodesSent[i]) {
+				nodesSent[i] = false;
+				if (sync) {
+					syncPacket.clear();
+					send(nodes[i], syncPacket);
+				}
+			}
+		}
+	}
+
+	private void send(DatagramChannel node, ByteBuffer packet) {
+		try {
+			node.write(packet);
+		} catch (IOException e) {
+			// report the first error only instead of flooding the console every frame
+			if (!sendFailed) {
+				sendFailed = true;
+				System.err.println("\nError sending Art-Net packet: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Write the next sequence number and the DMX data of a frame into the packet buffer of
+	 * the universe and mark it for the next batch.
+	 *
+	 * @param universe the universe of the frame
+	 * @param currentFrame the DMX values of the frame
+	 * @return the packet buffer, ready to be written
+	 */
+	ByteBuffer encode(short universe, short[] currentFrame) {
+		int index = indexOf(universe);
+		ByteBuffer packet = packets[index];
+
+		// sequence numbers run from 1 to 255, 0 would disable reordering on the receiver
+		byte sequence = (byte) (sequences[index] == (byte) 255 ? 1 : sequences[index] + 1);
+		sequences[index] = sequence;
+		packet.put(SEQUENCE_OFFSET, sequence);
+		int length = Math.min(currentFrame.length, DMX_LENGTH);
+		for (int i = 0; i < length; i++) {
+			packet.put(HEADER_LENGTH + i, (byte) currentFrame[i]);
+		}
+
+		packet.clear();
+		pending[index] = true;
+		return packet;
 	}
-	
-	private byte[] toBytes(short[] currentFrame) {
-		byte[] dmxData = new byte[currentFrame.length];
-		for (int i = 0; i < currentFrame.length; i++) {
-			dmxData[i] = (byte) currentFrame[i];
+
+	/**
+	 * Find the packet buffer of a universe and create it on first use.
+	 */
+	private int indexOf(short universe) {
+		for (int i = 0; i < universes.length; i++) {
+			if (universes[i] == universe) {
+				return i;
+			}
+		}
+		int index = universes.length;
+		universes = Arrays.copyOf(universes, index + 1);
+		packets = Arrays.copyOf(packets, index + 1);
+		sequences = Arrays.copyOf(sequences, index + 1);
+		universeNodes = Arrays.copyOf(universeNodes, index + 1);
+		pending = Arrays.copyOf(pending, index + 1);
+		universes[index] = universe;
+		packets[index] = createPacket(universe);
+		for (int i = 0; i < routedUniverses.length; i++) {
+			if (routedUniverses[i] == universe) {
+				universeNodes[index] = routedNodes[i];
+			}
 		}
-		return dmxData;
+		return index;
 	}
-	
+
+	private ByteBuffer createPacket(short universe) {
+		ByteBuffer packet = ByteBuffer.allocateDirect(HEADER_LENGTH + DMX_LENGTH);
+		// the 15 bit port address is made up of net, subnet and universe
+		int portAddress = ((subnet << 4) + universe) & 0x7FFF;
+		packet.put(ID);
+		packet.put((byte) OP_DMX);
+		packet.put((byte) (OP_DMX >> 8));
+		packet.put((byte) (PROTOCOL_VERSION >> 8));
+		packet.put((byte) PROTOCOL_VERSION);
+		// sequence and physical port
+		packet.put((byte) 0);
+		packet.put((byte) 0);
+		packet.put((byte) portAddress);
+		packet.put((byte) (portAddress >> 8));
+		packet.put((byte) (DMX_LENGTH >> 8));
+		packet.put((byte) DMX_LENGTH);
+		return packet;
+	}
+
+	private static ByteBuffer createSyncPacket() {
+		ByteBuffer packet = ByteBuffer.allocateDirect(SYNC_LENGTH);
+		packet.put(ID);
+		packet.put((byte) OP_SYNC);
+		packet.put((byte) (OP_SYNC >> 8));
+		packet.put((byte) (PROTOCOL_VERSION >> 8));
+		packet.put((byte) PROTOCOL_VERSION);
+		// two auxiliary bytes which are always 0
+		packet.put((byte) 0);
+		packet.put((byte) 0);
+		return packet;
+	}
+
 	@Override
-	public void close() {
-		client.stop();
+	public void close() throws IOException {
+		IOException error = null;
+		for (DatagramChannel node : nodes) {
+			try {
+				if (node != null) {
+					node.close();
+				}
+			} catch (IOException e) {
+				error = e;
+			}
+		}
+		if (error != null) {
+			throw error;
+		}
 	}
 }
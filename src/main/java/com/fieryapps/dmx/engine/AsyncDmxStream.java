@@ -0,0 +1,160 @@
+package com.fieryapps.dmx.engine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import com.fieryapps.dmx.DmxStream;
+import com.fieryapps.dmx.metrics.Counter;
+import com.fieryapps.dmx.metrics.Histogram;
+import com.fieryapps.dmx.metrics.Metrics;
+
+/**
+ * Decouples the render thread from network I/O of another {@link DmxStream}.
+ *
+ * <p>The render thread copies the frames of all universes into a preallocated frame set and
+ * publishes the set on {@link #flush()}. A dedicated sender thread passes the most recently
+ * published frame set on to the wrapped stream. Three frame sets rotate between the render
+ * thread, the sender thread and the hand over slot, so neither thread ever waits for the
+ * other. If the output is slower than the render thread, intermediate frames are dropped and
+ * the latest frame wins.</p>
+ *
+ * <p>Frames that are replaced before being sent are counted per universe in
+ * <code>dmx_frames_dropped_total</code>. Exceptions thrown by the wrapped stream are counted
+ * in <code>dmx_send_errors_total</code>, only the first one is printed.</p>
+ */
+final class AsyncDmxStream implements DmxStream {
+
+	// marks the hand over slot as containing a frame set that has not been sent yet
+	private static final int FRESH = 4;
+	private static final int INDEX_MASK = 3;
+	// the sender checks for shutdown at least this often, in nanoseconds
+	private static final long IDLE_TIMEOUT = 100000000L;
+
+	private final DmxStream stream;
+	private final String name;
+	private final FrameSet[] frameSets = {new FrameSet(), new FrameSet(), new FrameSet()};
+	// index of the hand over frame set, combined with the FRESH flag
+	private final AtomicInteger handOver = new AtomicInteger(2);
+	private final UniverseCounters droppedUniverseFrames;
+	// time to pass a frame set to the wrapped stream
+	private final Histogram sendTime;
+	// only written by the sender thread
+	private final Counter sendErrors;
+	private boolean sendFailed;
+	private final Thread sender;
+	private volatile boolean stop;
+	// frame set written by the render thread
+	private int back = 0;
+	// frame set read by the sender thread
+	private int front = 1;
+
+	/**
+	 * Wrap a stream and start the sender thread.
+	 *
+	 * @param stream the stream to send frames with
+	 * @param name name of the output, used for the sender thread and metrics
+	 * @param metrics registry for send times, dropped frames and send errors
+	 */
+	AsyncDmxStream(DmxStream stream, String name, Metrics metrics) {
+		this.stream = stream;
+		this.name = name;
+		droppedUniverseFrames = new UniverseCounters(metrics, "dmx_frames_dropped_total", name);
+		sendTime = metrics.histogram("dmx_send_time_nanoseconds", "output", name);
+		sendErrors = metrics.counter("dmx_send_errors_total", "output", name);
+		sender = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				sendFrames();
+			}
+		}, "DMX output " + name);
+		sender.setDaemon(true);
+		sender.start();
+	}
+
+	@Override
+	public void streamDmx(short universe, short[] currentFrame) {
+		frameSets[back].put(universe, currentFrame);
+	}
+
+	/**
+	 * Publish all frames passed to {@link #streamDmx(short, short[])} since the last call
+	 * and wake up the sender thread.
+	 */
+	@Override
+	public void flush() {
+		int previous = handOver.getAndSet(back | FRESH);
+		back = previous & INDEX_MASK;
+		if ((previous & FRESH) != 0) {
+			// the sender did not pick up the previous frame set in time
+			FrameSet dropped = frameSets[back];
+			for (int i = 0; i < dropped.count; i++) {
+				droppedUniverseFrames.get(dropped.universes[i]).increment();
+			}
+		}
+		frameSets[back].count = 0;
+		LockSupport.unpark(sender);
+	}
+
+	/**
+	 * Main loop of the sender thread.
+	 */
+	private void sendFrames() {
+		while (!stop) {
+			if ((handOver.get() & FRESH) == 0) {
+				LockSupport.parkNanos(this, IDLE_TIMEOUT);
+				continue;
+			}
+			front = handOver.getAndSet(front) & INDEX_MASK;
+			FrameSet frameSet = frameSets[front];
+			long start = System.nanoTime();
+			try {
+				for (int i = 0; i < frameSet.count; i++) {
+					stream.streamDmx(frameSet.universes[i], frameSet.frames[i]);
+				}
+				stream.flush();
+			} catch (RuntimeException e) {
+				sendErrors.increment();
+				// report the first error only instead of flooding the console every frame
+				if (!sendFailed) {
+					sendFailed = true;
+					System.err.println("\nError sending frames to output " + name + ":");
+					e.printStackTrace(System.err);
+				}
+			}
+			sendTime.record(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public void close() throws Exception {
+		stop = true;
+		LockSupport.unpark(sender);
+		sender.join();
+		stream.close();
+	}
+
+	/**
+	 * Copies of the frames of all universes for a single frame.
+	 */
+	private static final class FrameSet {
+		private short[] universes = new short[0];
+		private short[][] frames = new short[0][];
+		// number of universes written for the current frame
+		private int count;
+
+		void put(short universe, short[] frame) {
+			if (count == universes.length) {
+				// first frame with this number of universes, grow the frame set once
+				universes = Arrays.copyOf(universes, count + 1);
+				frames = Arrays.copyOf(frames, count + 1);
+				frames[count] = new short[frame.length];
+			} else if (frames[count].length != frame.length) {
+				frames[count] = new short[frame.length];
+			}
+			universes[count] = universe;
+			System.arraycopy(frame, 0, frames[count], 0, frame.length);
+			count++;
+		}
+	}
+}
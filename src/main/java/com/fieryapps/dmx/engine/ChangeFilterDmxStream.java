@@ -0,0 +1,101 @@
+package com.fieryapps.dmx.engine;
+
+import java.util.Arrays;
+
+import com.fieryapps.dmx.DmxStream;
+import com.fieryapps.dmx.metrics.Metrics;
+
+/**
+ * Passes only changed frames on to another {@link DmxStream}.
+ *
+ * <p>Most of the time a show holds a step and the frames of a universe do not change. This
+ * stream remembers the last frame sent for every universe and suppresses identical frames.
+ * Unchanged frames are still refreshed after the keep alive interval, so receivers that
+ * expect a steady stream of packets keep their outputs active.</p>
+ */
+final class ChangeFilterDmxStream implements DmxStream {
+
+	private final DmxStream stream;
+	private final long keepAlive;
+	// universes seen so far and their last sent frames, in the same order
+	private short[] universes = new short[0];
+	private short[][] lastFrames = new short[0][];
+	private long[] lastSendTimes = new long[0];
+	private final UniverseCounters sentFrames;
+	private final UniverseCounters suppressedFrames;
+
+	/**
+	 * Create a new filter.
+	 *
+	 * @param stream the stream to send changed frames to
+	 * @param keepAlive time in nanoseconds after which an unchanged frame is sent again
+	 * @param metrics registry for the frame counters
+	 * @param output name of the output
+	 */
+	ChangeFilterDmxStream(DmxStream stream, long keepAlive, Metrics metrics, String output) {
+		this.stream = stream;
+		this.keepAlive = keepAlive;
+		sentFrames = new UniverseCounters(metrics, "dmx_frames_sent_total", output);
+		suppressedFrames = new UniverseCounters(metrics, "dmx_frames_suppressed_total", output);
+	}
+
+	@Override
+	public void streamDmx(short universe, short[] currentFrame) {
+		long now = System.nanoTime();
+		int index = indexOf(universe, now);
+		short[] lastFrame = lastFrames[index];
+
+		if (now - lastSendTimes[index] >= keepAlive || !Arrays.equals(currentFrame, lastFrame)) {
+			System.arraycopy(currentFrame, 0, lastFrame, 0, lastFrame.length);
+			lastSendTimes[index] = now;
+			sentFrames.get(universe).increment();
+			stream.streamDmx(universe, currentFrame);
+		} else {
+			suppressedFrames.get(universe).increment();
+		}
+	}
+
+	/**
+	 * Find the state of a universe and create it on first use.
+	 */
+	private int indexOf(short universe, long now) {
+		for (int i = 0; i < universes.length; i++) {
+			if (universes[i] == universe) {
+				return i;
+			}
+		}
+		int index = universes.length;
+		universes = Arrays.copyOf(universes, index + 1);
+		lastFrames = Arrays.copyOf(lastFrames, index + 1);
+		lastSendTimes = Arrays.copyOf(lastSendTimes, index + 1);
+		universes[index] = universe;
+		lastFrames[index] = new short[512];
+		// make sure the first frame is always sent
+		lastSendTimes[index] = now - keepAlive;
+		return index;
+	}
+
+	/**
+	 * @return the number of frames passed on for all universes
+	 */
+	long getSentFrames() {
+		return sentFrames.sum();
+	}
+
+	/**
+	 * @return the number of unchanged frames that were not passed on for all universes
+	 */
+	long getSuppressedFrames() {
+		return suppressedFrames.sum();
+	}
+
+	@Override
+	public void flush() {
+		stream.flush();
+	}
+
+	@Override
+	public void close() throws Exception {
+		stream.close();
+	}
+}
@@ -0,0 +1,77 @@
+package com.fieryapps.dmx.engine;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.fieryapps.dmx.DmxStream;
+
+/**
+ * Calculates a SHA-256 checksum of all frames, optionally passing them on to another stream.
+ *
+ * <p>The checksum covers the universe id and the DMX values of every frame in the order they
+ * were streamed, so two renderings of a show have the same checksum if and only if they
+ * produced the same frames.</p>
+ */
+public final class ChecksumDmxStream implements DmxStream {
+	
+	private final DmxStream stream;
+	private final MessageDigest digest;
+	private byte[] buffer = new byte[0];
+	
+	/**
+	 * @param stream the stream to pass frames on to, may be <code>null</code>
+	 */
+	public ChecksumDmxStream(DmxStream stream) {
+		this.stream = stream;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform supports SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	@Override
+	public void streamDmx(short universe, short[] currentFrame) {
+		if (buffer.length != currentFrame.length + 2) {
+			buffer = new byte[currentFrame.length + 2];
+		}
+		buffer[0] = (byte) (universe >> 8);
+		buffer[1] = (byte) universe;
+		for (int i = 0; i < currentFrame.length; i++) {
+			buffer[i + 2] = (byte) currentFrame[i];
+		}
+		digest.update(buffer);
+		if (stream != null) {
+			stream.streamDmx(universe, currentFrame);
+		}
+	}
+	
+	@Override
+	public void flush() {
+		if (stream != null) {
+			stream.flush();
+		}
+	}
+	
+	/**
+	 * Finish the checksum. No frames may be streamed after calling this method.
+	 * 
+	 * @return the checksum of all frames as hexadecimal string
+	 */
+	public String getChecksum() {
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest()) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16))
+					.append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+	
+	@Override
+	public void close() throws Exception {
+		if (stream != null) {
+			stream.close();
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package com.fieryapps.dmx.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.fieryapps.dmx.metrics.SharedCounter;
+
+/**
+ * Bounded queue of commands from any number of threads to the engine thread.
+ *
+ * <p>Commands are stored in preallocated ring buffers like the events of a
+ * {@link TriggerQueue}. Producers claim a slot by advancing the tail with a compare and set,
+ * and every slot carries a sequence number which tells the engine thread whether the slot
+ * has been written and the producers whether it has been read. Neither side takes a lock and
+ * no objects are allocated per command. Commands are dropped if the engine falls behind by
+ * more than the capacity of the queue.</p>
+ */
+final class CommandQueue {
+	/** trigger the action of a key, the argument is the key */
+	static final int TRIGGER_KEY = 0;
+	/** start or stop a scene, the argument is the index of the scene */
+	static final int TRIGGER_SCENE = 1;
+	/** set the master dimmer, the argument is the dimmer value from 0 to 10 */
+	static final int SET_DIMMER = 2;
+	/** pause playback if the argument is 1, continue if it is 0 */
+	static final int PAUSE = 3;
+	/** render the next frame while paused */
+	static final int STEP = 4;
+	/** stop the engine */
+	static final int STOP = 5;
+	/** set a group submaster, the argument is the group number << 8 | the value 0 - 255 */
+	static final int SET_GROUP_MASTER = 6;
+	/** move all timeline scenes, the argument is the position in milliseconds */
+	static final int SEEK = 7;
+
+	private final int[] commands;
+	private final int[] arguments;
+	// time every command was issued in nanoseconds, see System.nanoTime()
+	private final long[] timestamps;
+	// position + 1 once a slot is written, position + capacity once it is read
+	private final AtomicLongArray sequences;
+	private final int mask;
+	// number of commands read by the engine thread, only written by the engine thread
+	private long head;
+	// number of slots claimed by the producers
+	private final AtomicLong tail = new AtomicLong();
+	// updated by all producers, so no drop is lost while they contend
+	private final SharedCounter droppedCommands;
+
+	/**
+	 * @param capacity maximum number of pending commands, must be a power of two
+	 * @param droppedCommands counts commands dropped because the queue was full
+	 */
+	CommandQueue(int capacity, SharedCounter droppedCommands) {
+		if (Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+		}
+		commands = new int[capacity];
+		arguments = new int[capacity];
+		timestamps = new long[capacity];
+		sequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			sequences.set(i, i);
+		}
+		mask = capacity - 1;
+		this.droppedCommands = droppedCommands;
+	}
+
+	/**
+	 * Add a command, may be called from any thread.
+	 *
+	 * @param command the command, for example {@link #TRIGGER_KEY}
+	 * @param argument the argument of the command
+	 * @param timestamp the time the command was issued in nanoseconds
+	 * @return <code>false</code> if the queue is full and the command was dropped
+	 */
+	boolean offer(int command, int argument, long timestamp) {
+		long position;
+		int index;
+		while (true) {
+			position = tail.get();
+			index = (int) position & mask;
+			long available = sequences.get(index) - position;
+			if (available == 0) {
+				if (tail.compareAndSet(position, position + 1)) {
+					break;
+				}
+			} else if (available < 0) {
+				// the slot still holds a command of the previous round
+				droppedCommands.increment();
+				return false;
+			}
+			// another producer claimed the slot, try the next one
+		}
+		commands[index] = command;
+		arguments[index] = argument;
+		timestamps[index] = timestamp;
+		// publishes the command to the engine thread
+		sequences.lazySet(index, position + 1);
+		return true;
+	}
+
+	/**
+	 * @return <code>true</code> if there is no pending command that has been completely
+	 *         written, called by the engine thread only
+	 */
+	boolean isEmpty() {
+		return sequences.get((int) head & mask) != head + 1;
+	}
+
+	/**
+	 * @return the oldest pending command
+	 */
+	int peekCommand() {
+		return commands[(int) head & mask];
+	}
+
+	/**
+	 * @return the argument of the oldest pending command
+	 */
+	int peekArgument() {
+		return arguments[(int) head & mask];
+	}
+
+	/**
+	 * @return the time the oldest pending command was issued in nanoseconds
+	 */
+	long peekTimestamp() {
+		return timestamps[(int) head & mask];
+	}
+
+	/**
+	 * Remove the oldest pending command, called by the engine thread only.
+	 */
+	void remove() {
+		// the slot can be written again in the next round
+		sequences.lazySet((int) head & mask, head + mask + 1);
+		head++;
+	}
+}
@@ -1,20 +1,70 @@
 package com.fieryapps.dmx.engine;
 
+import java.io.File;
+import java.net.InetSocketAddress;
+
 import com.fieryapps.dmx.DmxStream;
-import com.fieryapps.dmx.beans.Artnet;
-import com.fieryapps.dmx.beans.Show;
+import com.fieryapps.dmx.metrics.Metrics;
+import com.fieryapps.dmx.model.CompiledOutput;
+import com.fieryapps.dmx.model.CompiledShow;
 
 public final class DmxStreams {
-	public static DmxStream createStreamFor(Show show) throws Exception {
+	
+	public static DmxStream createStreamFor(CompiledShow show) throws Exception {
+		return createStreamFor(show, new Metrics());
+	}
+	
+	public static DmxStream createStreamFor(CompiledShow show, Metrics metrics) 
+			throws Exception {
+		return createStreamFor(show, metrics, null);
+	}
+	
+	public static DmxStream createStreamFor(CompiledShow show, Metrics metrics, File recording) 
+			throws Exception {
+		return createStreamFor(show, metrics, recording, null);
+	}
+	
+	/**
+	 * Create the output of a show and optionally record all frames and stream them to
+	 * monitor viewers.
+	 * 
+	 * @param show the show defining the output
+	 * @param metrics registry for output metrics
+	 * @param recording file to record all frames to, or <code>null</code>
+	 * @param monitor local address to accept monitor viewers on, or <code>null</code>
+	 */
+	public static DmxStream createStreamFor(CompiledShow show, Metrics metrics, File recording,
+			InetSocketAddress monitor) throws Exception {
 		if (show == null) {
 			throw new NullPointerException("Show must not be null");
 		}
 		
-		Artnet artnet = show.getArtnet();
-		if (artnet != null) {
-			return new ArtnetDmxStream(artnet.getAddress(), artnet.getSubnet());
+		DmxStream stream;
+		String name;
+		CompiledOutput output = show.getOutput();
+		if (output.getType() == CompiledOutput.TYPE_ARTNET) {
+			stream = new ArtnetDmxStream(output);
+			name = "Art-Net";
+		} else if (output.getType() == CompiledOutput.TYPE_SACN) {
+			stream = new SacnDmxStream(show);
+			name = "sACN";
+		} else {
+			stream = new OlaClientDmxStream(metrics);
+			name = "OLA";
 		}
 		
-		return new OlaClientDmxStream();
+		if (output.getKeepAliveTime() > 0) {
+			// only send frames that changed or need to be refreshed
+			stream = new ChangeFilterDmxStream(stream, output.getKeepAliveTime(), metrics, name);
+		}
+		if (recording != null) {
+			// record every frame before unchanged frames are filtered
+			stream = new RecordingDmxStream(recording, stream);
+		}
+		if (monitor != null) {
+			stream = new MonitorDmxStream(monitor, show.getUniverses(), stream, metrics);
+		}
+		// network I/O, recording and monitoring run on a separate thread and never delays rendering
+		return new AsyncDmxStream(stream, name, metrics);
 	}
 }
@@ -23,307 +23,882 @@ package com.fieryapps.dmx.engine;
 
 
 import java.io.IOException;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ThreadLocalRandom;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.fieryapps.dmx.DmxStream;
-
-import jline.TerminalFactory;
-import jline.console.ConsoleReader;
-
-import com.fieryapps.dmx.beans.Scene;
-import com.fieryapps.dmx.beans.Show;
-import com.fieryapps.dmx.beans.Step;
+import com.fieryapps.dmx.metrics.Counter;
+import com.fieryapps.dmx.metrics.Histogram;
+import com.fieryapps.dmx.metrics.Metrics;
+import com.fieryapps.dmx.model.CompiledScene;
+import com.fieryapps.dmx.model.CompiledShow;
+import com.fieryapps.dmx.model.ShowCompiler;
 
 /**
  * This is the main DMX engine. It will loop with the configured frame rate and render DMX 
- * frames. These frames are then sent to OLA for hardware output.
- *
+ * frames for all universes of the show. These frames are then sent to OLA for hardware output.
+ * 
+ * <p>Scenes are played in layers. Triggering a scene replaces the scene of its layer, while 
+ * the scenes of all other layers keep playing. Triggering the scene of a layer above the base 
+ * layer again stops that layer.</p>
+ * 
+ * <p>The engine does not use the terminal, so it can be embedded into other applications. 
+ * Any thread can control a running engine with {@link #triggerKey(int)}, 
+ * {@link #triggerScene(int)}, {@link #setDimmer(int)}, {@link #pause()}, {@link #step()}, 
+ * {@link #seek(long)} and {@link #stop()}. These commands are passed to the render thread 
+ * through a preallocated lock free queue and are applied at the start of the next frame. The 
+ * render thread publishes the resulting state as an immutable {@link EngineStatus}, so 
+ * neither side waits for the other. The {@link EngineConsole} reads the keyboard and prints 
+ * the status this way.</p>
+ * 
+ * <p>Timeline scenes follow the time since they were started, unless a timecode port is 
+ * added. Then all timeline scenes follow the position of the received timecode.</p>
  */
-public class Engine {
+public class Engine implements Runnable {
 	
-	private final Show show;
+	// below this number of universes, forking render tasks costs more than it saves
+	private static final int MIN_PARALLEL_UNIVERSES = 4;
+	// maximum number of pending events of a trigger input
+	private static final int TRIGGER_QUEUE_CAPACITY = 64;
+	// maximum number of pending commands of all threads controlling the engine
+	private static final int COMMAND_QUEUE_CAPACITY = 1024;
+	
+	// the show currently played, replaced when a reloaded show is applied
+	private CompiledShow show;
+	// reloaded show waiting to be applied at the start of the next frame
+	private final AtomicReference<CompiledShow> reloadedShow = 
+			new AtomicReference<CompiledShow>();
 	private final DmxStream dmxStream;
+	private final FrameScheduler scheduler;
+	// time to render the frames of all universes
+	private final Histogram renderTime;
+	private final Counter droppedFrames;
+	private final Counter sceneChanges;
+	// time from receiving a trigger until the triggered frame is passed to the output
+	private final Histogram triggerLatency;
+	private final Metrics metrics;
+	
+	// one mixer for every universe, in the order of the compiled show
+	private final LayerMixer[] mixers;
+	// pool to render universes in parallel, null if universes are rendered serially
+	private final ForkJoinPool renderPool;
+	// indicates that the render pool is shared with other engines and must not be shut down
+	private final boolean sharedRenderPool;
+	private final RenderTask renderTask;
+	// grand master changing overall brightness in 10 steps and the group submasters
+	private Submasters masters;
+	// scene of the base layer
+	private CompiledScene currentScene;
+	// scene of every layer, null if the layer is not playing
+	private final CompiledScene[] layerScenes = new CompiledScene[ShowCompiler.MAX_LAYERS];
+	// playing layers in the order their scenes were started, merged in this order
+	private final int[] layerOrder = new int[ShowCompiler.MAX_LAYERS];
+	private int activeLayers;
+	// deadline of the frame currently rendered in nanoseconds
+	private long frameTime;
+	// deadline of the frame currently sent in nanoseconds
+	private long deadline;
+	// frozen while paused, the show time of a frame is its deadline minus this offset
+	private long pauseOffset;
+	private boolean paused;
+	// indicates that a single frame is rendered while paused
+	private boolean stepPending;
+	// the first universe played by the current scene, used for status output
+	private UniverseRenderer leadRenderer;
+	// pending commands of all threads controlling the engine
+	private final CommandQueue commands;
+	// pending events of all trigger inputs
+	private TriggerQueue[] triggerQueues = new TriggerQueue[0];
+	private UdpTriggerListener[] triggerListeners = new UdpTriggerListener[0];
+	// external clock of the timeline scenes, null to use the time since a scene was started
+	private TimecodeListener timecode;
+	// arrival times of the triggers handled in the current frame
+	private long[] triggerTimes;
+	private int triggerCount;
+	// latest published state, replaced with every change
+	private volatile EngineStatus status;
+	private long statusSequence;
+	private volatile boolean stopped;
+	
+	/**
+	 * Initialize the engine with a loaded show file and a DmxStream.
+	 * 
+	 * @param show represents the compiled show file
+	 */
+	public Engine(CompiledShow show, DmxStream dmxStream) {
+		this(show, dmxStream, new Metrics());
+	}
 	
-	private final short[] currentFrame = new short[512];
-	private long fadeFrames;
-	private long holdFrames;
-	private short nextStep;
-	// indicates whether the current step already has been rendered
-	private boolean rendered;
-	// master dimmer to change overall brightness in 10 steps
-	private short dimmer;
-	private Scene currentScene;
-	private final ConcurrentLinkedQueue<Integer> keyQueue;
-	private final KeyboardReader reader;
-	private boolean stop;
-	
-	/**
-	 * Initialize the engine with a loaded show file, a DmxStream and start
-	 * a new thread to monitor keyboard input.
+	/**
+	 * Initialize the engine and record its timing in the supplied metrics.
+	 * 
+	 * @param show represents the compiled show file
+	 * @param dmxStream the output for rendered frames
+	 * @param metrics registry for render, timing and transition metrics
+	 */
+	public Engine(CompiledShow show, DmxStream dmxStream, Metrics metrics) {
+		this(show, dmxStream, metrics, null);
+	}
+	
+	/**
+	 * Initialize the engine and optionally render universes in a pool shared with other 
+	 * engines.
 	 * 
-	 * @param show represents the show file
+	 * @param show represents the compiled show file
+	 * @param dmxStream the output for rendered frames
+	 * @param metrics registry for render, timing and transition metrics
+	 * @param renderPool pool to render universes in parallel, which is not shut down by this 
+	 *        engine, or <code>null</code> to create a pool if the show needs one
 	 */
-	public Engine(Show show, DmxStream dmxStream) {
+	Engine(CompiledShow show, DmxStream dmxStream, Metrics metrics, ForkJoinPool renderPool) {
 		this.show = show;
-		for (int i = 0; i < 512; i++) {
-			currentFrame[i] = 0;
-		}
-		fadeFrames = 1000;
-		holdFrames = 0;
-		nextStep = 0;
-		dimmer = 10;
-		rendered = false;
-		stop = false;
-		currentScene = show.getScenes().get(show.getStartScene() - 1);
-		progressStep(true);
+		short[] universes = show.getUniverses();
+		mixers = new LayerMixer[universes.length];
+		long seed = System.nanoTime();
+		for (int i = 0; i < universes.length; i++) {
+			mixers[i] = new LayerMixer(universes[i], i, metrics.counter(
+					"dmx_step_changes_total", "universe", String.valueOf(universes[i])));
+			mixers[i].setRandomSeed(seed + i);
+		}
+		int parallelism = getRenderParallelism(show);
+		sharedRenderPool = renderPool != null;
+		if (parallelism > 1) {
+			this.renderPool = sharedRenderPool ? renderPool : new ForkJoinPool(parallelism);
+			renderTask = new RenderTask(0, mixers.length);
+		} else {
+			this.renderPool = null;
+			renderTask = null;
+		}
+		scheduler = new FrameScheduler(show.getFramePeriod(), show.getLatePolicy(), 
+				show.getSpinTime());
+		metrics.register("dmx_frame_lateness_nanoseconds", scheduler.getLateness());
+		renderTime = metrics.histogram("dmx_render_time_nanoseconds");
+		droppedFrames = metrics.counter("dmx_frames_skipped_total");
+		sceneChanges = metrics.counter("dmx_scene_changes_total");
+		triggerLatency = metrics.histogram("dmx_trigger_latency_nanoseconds");
+		this.metrics = metrics;
+		commands = new CommandQueue(COMMAND_QUEUE_CAPACITY, 
+				metrics.sharedCounter("dmx_triggers_dropped_total", "source", "commands"));
+		triggerTimes = new long[COMMAND_QUEUE_CAPACITY];
+		masters = new Submasters(show);
+		stopped = false;
+		startScene(show.getScenes()[show.getStartScene()]);
 		
 		this.dmxStream = dmxStream;
-		
-		keyQueue = new ConcurrentLinkedQueue<Integer>();
-		reader = new KeyboardReader(keyQueue);
-		Thread t = new Thread(reader);
-		t.setDaemon(true);
-		t.start();
+	}
+	
+	private TriggerQueue createTriggerQueue(String source) {
+		return new TriggerQueue(TRIGGER_QUEUE_CAPACITY, 
+				metrics.counter("dmx_triggers_dropped_total", "source", source));
+	}
+	
+	/**
+	 * Receive trigger keys as UDP datagrams in addition to the keyboard. Must be called 
+	 * before the engine is started.
+	 * 
+	 * @param address the local address and port to listen on
+	 * @return the local port the listener is bound to
+	 * @throws IOException if the port cannot be opened
+	 * @see UdpTriggerListener
+	 */
+	public int addTriggerPort(InetSocketAddress address) throws IOException {
+		TriggerQueue queue = createTriggerQueue("udp");
+		UdpTriggerListener listener = new UdpTriggerListener(address, queue);
+		triggerListeners = Arrays.copyOf(triggerListeners, triggerListeners.length + 1);
+		triggerListeners[triggerListeners.length - 1] = listener;
+		triggerQueues = Arrays.copyOf(triggerQueues, triggerQueues.length + 1);
+		triggerQueues[triggerQueues.length - 1] = queue;
+		triggerTimes = new long[COMMAND_QUEUE_CAPACITY 
+				+ triggerQueues.length * TRIGGER_QUEUE_CAPACITY];
+		return listener.getPort();
+	}
+	
+	/**
+	 * Play timeline scenes at the position of Art-Net timecode received as UDP datagrams,
+	 * instead of the time since they were started. Must be called before the engine is 
+	 * started.
+	 * 
+	 * @param address the local address and port to listen on
+	 * @return the local port the listener is bound to
+	 * @throws IOException if the port cannot be opened
+	 * @see TimecodeListener
+	 */
+	public int addTimecodePort(InetSocketAddress address) throws IOException {
+		if (timecode != null) {
+			throw new IllegalStateException("A timecode port has already been added");
+		}
+		timecode = new TimecodeListener(address);
+		return timecode.getPort();
+	}
+	
+	/**
+	 * Trigger the action of a key, as if it was pressed on the keyboard. May be called from 
+	 * any thread.
+	 * 
+	 * @param key the key code
+	 * @return <code>false</code> if too many commands are pending and the key was dropped
+	 */
+	public boolean triggerKey(int key) {
+		return commands.offer(CommandQueue.TRIGGER_KEY, key, System.nanoTime());
+	}
+	
+	/**
+	 * Start a scene, or stop it if it plays in a layer above the base layer. May be called 
+	 * from any thread.
+	 * 
+	 * @param scene the number of the scene, starting with 1
+	 * @return <code>false</code> if too many commands are pending and the scene was dropped
+	 */
+	public boolean triggerScene(int scene) {
+		return commands.offer(CommandQueue.TRIGGER_SCENE, scene, System.nanoTime());
+	}
+	
+	/**
+	 * Set the master dimmer. May be called from any thread.
+	 * 
+	 * @param dimmer the dimmer value from 0 (dark) to 10 (full brightness)
+	 * @return <code>false</code> if too many commands are pending and the value was dropped
+	 */
+	public boolean setDimmer(int dimmer) {
+		if (dimmer < 0 || dimmer > 10) {
+			throw new IllegalArgumentException("Dimmer must be within 0 - 10: " + dimmer);
+		}
+		return commands.offer(CommandQueue.SET_DIMMER, dimmer, System.nanoTime());
+	}
+	
+	/**
+	 * Set the submaster of a channel group. May be called from any thread.
+	 * 
+	 * @param group the number of the group in the show, starting with 1
+	 * @param value the submaster from 0 (dark) to 255 (full brightness)
+	 * @return <code>false</code> if too many commands are pending and the value was dropped
+	 */
+	public boolean setGroupMaster(int group, int value) {
+		if (value < 0 || value > Submasters.FULL_MASTER) {
+			throw new IllegalArgumentException("Group master must be within 0 - 255: " 
+					+ value);
+		}
+		if (group < 1 || group > 0x7FFFFF) {
+			throw new IllegalArgumentException("Invalid group: " + group);
+		}
+		return commands.offer(CommandQueue.SET_GROUP_MASTER, (group << 8) | value, 
+				System.nanoTime());
+	}
+	
+	/**
+	 * Move all playing timeline scenes to a position. Other scenes are not affected. May be 
+	 * called from any thread.
+	 * 
+	 * @param position the time since the start of the timeline in milliseconds
+	 * @return <code>false</code> if too many commands are pending and the command was dropped
+	 */
+	public boolean seek(long position) {
+		if (position < 0 || position > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Invalid timeline position: " + position);
+		}
+		return commands.offer(CommandQueue.SEEK, (int) position, System.nanoTime());
+	}
+	
+	/**
+	 * Freeze all fades, holds and effects. The last frame is still sent to the output. May be 
+	 * called from any thread.
+	 * 
+	 * @return <code>false</code> if too many commands are pending and the command was dropped
+	 */
+	public boolean pause() {
+		return commands.offer(CommandQueue.PAUSE, 1, System.nanoTime());
+	}
+	
+	/**
+	 * Continue playing where the show was paused. May be called from any thread.
+	 * 
+	 * @return <code>false</code> if too many commands are pending and the command was dropped
+	 */
+	public boolean resume() {
+		return commands.offer(CommandQueue.PAUSE, 0, System.nanoTime());
+	}
+	
+	/**
+	 * Advance a paused show by a single frame. May be called from any thread.
+	 * 
+	 * @return <code>false</code> if too many commands are pending and the command was dropped
+	 */
+	public boolean step() {
+		return commands.offer(CommandQueue.STEP, 0, System.nanoTime());
+	}
+	
+	/**
+	 * Stop the engine after the current frame. May be called from any thread.
+	 * 
+	 * @return <code>false</code> if too many commands are pending and the command was dropped
+	 */
+	public boolean stop() {
+		return commands.offer(CommandQueue.STOP, 0, System.nanoTime());
+	}
+	
+	/**
+	 * @return the state after the last change, may be called from any thread
+	 */
+	public EngineStatus getStatus() {
+		return status;
+	}
+	
+	/**
+	 * @return statistics about the frame timing since the engine was started
+	 */
+	public String getTimingSummary() {
+		return scheduler.getSummary();
 	}
 	
 	/**
 	 * The main execution loop for the DMX engine.
 	 * 
-	 * <p>It will check for new key presses by the user, calculate the DMX 
-	 * values for a frame and then wait for the remainder of the frame time.</p>
+	 * <p>It will wait for the deadline of the next frame, check for new key presses by the 
+	 * user and calculate and send the DMX values for a frame.</p>
 	 */
+	@Override
 	public void run() {
-		long startTime;
-		long timeDelta;
-		
-		while (!stop) {
-			startTime = System.nanoTime();
-			checkUserInput();
-			computeCurrentFrame();
-			dmxStream.streamDmx(show.getUniverse(), currentFrame);
-			// time is converted to ms
-			timeDelta = Math.round((System.nanoTime() - startTime) / 1000000d);
-			if (timeDelta < show.getFrameDuration()) { 
-				try {
-					Thread.sleep(show.getFrameDuration() - timeDelta);
-				} catch(InterruptedException e) {
-					e.printStackTrace(System.err);
+		scheduler.start();
+		try {
+			while (!stopped) {
+				renderScheduledFrame(scheduler.awaitNextFrame());
+			}
+		} finally {
+			release();
+		}
+	}
+	
+	/**
+	 * Start the frame schedule of an engine driven by a {@link ShowHost}, the first frame is 
+	 * due immediately.
+	 */
+	void startFrames() {
+		scheduler.start();
+	}
+	
+	/**
+	 * @return the deadline of the next frame in nanoseconds
+	 */
+	long getNextDeadline() {
+		return scheduler.getNextDeadline();
+	}
+	
+	/**
+	 * Render the next frame without waiting for its deadline. Called by a {@link ShowHost} 
+	 * once the deadline has passed.
+	 * 
+	 * @param now the current time in nanoseconds
+	 * @return <code>false</code> if the engine has been stopped
+	 */
+	boolean renderNextFrame(long now) {
+		renderScheduledFrame(scheduler.beginFrame(now));
+		return !stopped;
+	}
+	
+	private void renderScheduledFrame(long deadline) {
+		droppedFrames.add(scheduler.getDroppedFrames() - droppedFrames.getCount());
+		renderFrame(deadline);
+		recordTriggerLatency(System.nanoTime());
+	}
+	
+	/**
+	 * Stop the render threads and trigger listeners once the engine has stopped.
+	 */
+	void release() {
+		shutdownRenderPool();
+		for (UdpTriggerListener listener : triggerListeners) {
+			try {
+				listener.close();
+			} catch (IOException e) {
+				e.printStackTrace(System.err);
+			}
+		}
+		if (timecode != null) {
+			try {
+				timecode.close();
+			} catch (IOException e) {
+				e.printStackTrace(System.err);
+			}
+		}
+	}
+	
+	/**
+	 * Handle pending input, render the frames of all universes and pass them to the output.
+	 * 
+	 * @param deadline the deadline of the frame in nanoseconds
+	 */
+	void renderFrame(long deadline) {
+		this.deadline = deadline;
+		applyReloadedShow();
+		checkUserInput();
+		if (timecode != null) {
+			long position = timecode.getPosition(deadline);
+			if (position >= 0) {
+				for (LayerMixer mixer : mixers) {
+					mixer.seek(position);
 				}
-			} else {
-				System.out.print("\rSlow frame encountered: " + timeDelta + " ms");
 			}
 		}
+		if (!paused || stepPending) {
+			if (stepPending) {
+				// continue one frame after the last rendered frame
+				pauseOffset = deadline - frameTime - show.getFramePeriod();
+				stepPending = false;
+			}
+			long renderStart = System.nanoTime();
+			computeCurrentFrame(deadline - pauseOffset);
+			renderTime.record(System.nanoTime() - renderStart);
+		}
+		for (LayerMixer mixer : mixers) {
+			dmxStream.streamDmx(mixer.getUniverse(), mixer.getCurrentFrame());
+		}
+		dmxStream.flush();
+	}
+	
+	/**
+	 * Trigger the action of a key directly, without an input queue. Must be called from the 
+	 * thread rendering the frames.
+	 * 
+	 * @param key the pressed key
+	 * @param timestamp the time the key was pressed in nanoseconds
+	 */
+	void trigger(int key, long timestamp) {
+		handleKey(key, timestamp);
+	}
+	
+	/**
+	 * @return <code>true</code> if the user has quit the show
+	 */
+	boolean isStopped() {
+		return stopped;
+	}
+	
+	/**
+	 * Seed the random step order of all universes, to render a show reproducibly.
+	 * 
+	 * @param seed the seed of the random step order
+	 */
+	void setRandomSeed(long seed) {
+		for (int i = 0; i < mixers.length; i++) {
+			mixers[i].setRandomSeed(seed + i);
+		}
+	}
+	
+	/**
+	 * Calculate the number of threads to render the universes of a show with.
+	 * 
+	 * @param show the compiled show
+	 * @return the number of render threads, 1 if the universes are rendered one after another 
+	 *         on the thread rendering the frame
+	 */
+	static int getRenderParallelism(CompiledShow show) {
+		int universes = show.getUniverses().length;
+		if (universes < MIN_PARALLEL_UNIVERSES) {
+			return 1;
+		}
+		int renderThreads = show.getRenderThreads() > 0 ? show.getRenderThreads() 
+				: Runtime.getRuntime().availableProcessors();
+		return Math.max(1, Math.min(renderThreads, universes));
+	}
+	
+	/**
+	 * Stop the render threads, if universes are rendered in parallel in a pool of this engine.
+	 */
+	void shutdownRenderPool() {
+		if (renderPool != null && !sharedRenderPool) {
+			renderPool.shutdown();
+		}
 	}
 
 	/**
-	 * Switch to a new step in the current scene or in a new scene. 
+	 * Replace the show with a modified version. The new show is applied at the start of the 
+	 * next frame, so a frame is always rendered from a single version of the show.
 	 * 
-	 * <p>If <code>newScene</code> is <code>true</code> which
-	 * means that the user has selected a new scene, we will activate the first step in that
-	 * scene.</p>
+	 * <p>This method may be called from any thread.</p>
 	 * 
-	 * <p>Else continue with the next step within the current scene. If this scene is set to
-	 * repeating mode, we will jump back to step 0 once the last step has finished playing. If
-	 * repeat is not enabled, the last step will hold until the user selects a new scene.</p>
+	 * @param show the reloaded show
+	 */
+	public void reloadShow(CompiledShow show) {
+		reloadedShow.set(show);
+	}
+	
+	/**
+	 * Apply a reloaded show, if there is one. Every layer whose scene still exists continues 
+	 * playing it in all universes at the current position.
+	 */
+	private void applyReloadedShow() {
+		CompiledShow newShow = reloadedShow.getAndSet(null);
+		if (newShow == null) {
+			return;
+		}
+		if (!Arrays.equals(show.getUniverses(), newShow.getUniverses())) {
+			publishStatus("Cannot reload show, restart to apply changed universes");
+			return;
+		}
+		String message = "Show reloaded";
+		if (show.getFramePeriod() != newShow.getFramePeriod() 
+				|| show.getRenderThreads() != newShow.getRenderThreads()) {
+			message += ", restart to apply changed frame rate or render threads";
+		}
+		show = newShow;
+		// groups and dimmer channels might have changed, the masters keep their values
+		masters = new Submasters(newShow, masters);
+		
+		for (int i = 0; i < activeLayers; i++) {
+			int layer = layerOrder[i];
+			CompiledScene scene = findScene(layerScenes[layer].getName());
+			if (scene == null || scene.getLayer() != layer) {
+				// keep playing the removed scene until the user selects another one
+				continue;
+			}
+			layerScenes[layer] = scene;
+			for (LayerMixer mixer : mixers) {
+				mixer.reloadScene(scene);
+			}
+			if (layer == 0) {
+				currentScene = scene;
+				updateLeadRenderer();
+			}
+		}
+		publishStatus(message);
+	}
+	
+	/**
+	 * Start playing a new scene in all universes used by this scene. The scene replaces the 
+	 * scene of its layer and is merged on top of all other layers.
 	 * 
-	 * @param newScene indicates whether the user has triggered a new scene
+	 * @param scene the scene selected by the user
 	 */
-	private void progressStep(boolean newScene) {
-		if (newScene) {
-			// render first step in new scene
-			nextStep = 0;
-		} else {
-			// progress to next step within the current scene
-			if (currentScene.getOrder().equalsIgnoreCase("random")) {
-				// select a random next step excluding the current step
-				short step = (short)ThreadLocalRandom.current().nextInt(currentScene.getSteps()
-						.size());
-				while (nextStep == step) {
-					step = (short)ThreadLocalRandom.current().nextInt(currentScene.getSteps()
-							.size());
-				}
-				nextStep = step;
-			} else {
-				if (nextStep < (currentScene.getSteps().size() - 1)) {
-					// progress to next step
-					nextStep++;
-				} else if (currentScene.isRepeat()) {
-					// repeat the scene starting with the first step
-					nextStep = 0;
-				} else {
-					// remain in the last step of the scene
-					return;
-				}
+	void startScene(CompiledScene scene) {
+		int layer = scene.getLayer();
+		removeLayer(layer);
+		layerScenes[layer] = scene;
+		layerOrder[activeLayers++] = layer;
+		sceneChanges.increment();
+		for (LayerMixer mixer : mixers) {
+			mixer.startScene(scene);
+		}
+		if (layer == 0) {
+			currentScene = scene;
+			updateLeadRenderer();
+		}
+		publishStatus(null);
+	}
+	
+	/**
+	 * Stop playing the scene of a layer above the base layer.
+	 * 
+	 * @param layer the layer to stop
+	 */
+	void stopLayer(int layer) {
+		removeLayer(layer);
+		layerScenes[layer] = null;
+		publishStatus(null);
+	}
+	
+	/**
+	 * Remove a layer from the merge order, if it is playing.
+	 */
+	private void removeLayer(int layer) {
+		for (int i = 0; i < activeLayers; i++) {
+			if (layerOrder[i] == layer) {
+				System.arraycopy(layerOrder, i + 1, layerOrder, i, activeLayers - i - 1);
+				activeLayers--;
+				return;
 			}
 		}
-		
-		// we have a new step determined
-		rendered = false;
-		// how many frames do we need to hold and fade in this step?
-		holdFrames = Math.round(currentScene.getSteps().get(nextStep).getHold() 
-				/ (1d * show.getFrameDuration()));
-		fadeFrames = Math.round(currentScene.getSteps().get(nextStep).getFade() 
-				/ (1d * show.getFrameDuration()));
-		
-		System.out.format("\rPlaying scene: %-20s Step: %02d/%02d",
-				currentScene.getName(), nextStep + 1, currentScene.getSteps().size());
 	}
 	
 	/**
-	 * Calculate the current DMX value for each DMX address in the current frame.
+	 * Select the first universe played by the base layer for the status output.
 	 */
-	private void computeCurrentFrame() {
-		Step targetStep = currentScene.getSteps().get(nextStep);
-		
-		if (fadeFrames > 0) {
-			// we are still fading to the target values
-			for (int i = 0; i < targetStep.getValues().size(); i++) {	
-				if (show.getDimmerChannels().contains((short) (i + 1))) {
-					// this is a dimmer channel, the target value needs to be modified 
-					// by the dimmer value
-					short targetValue = (short)Math.round(targetStep.getValues().get(i) 
-							* dimmer / 10f);
-					currentFrame[i] += Math.round((targetValue - currentFrame[i]) / (1f * fadeFrames));
-				} else {
-					if (currentScene.getSwitchChannels().contains((short)(i + 1))) {
-						// don't fade this channel
-						currentFrame[i] = targetStep.getValues().get(i);
-					} else {
-						// this is a fader channel, fade value
-						currentFrame[i] += Math.round((targetStep.getValues().get(i) 
-								- currentFrame[i]) / (1f * fadeFrames));
-					}
-				}
+	private void updateLeadRenderer() {
+		leadRenderer = null;
+		for (LayerMixer mixer : mixers) {
+			if (mixer.getLayer(0).isAdvancing()) {
+				leadRenderer = mixer.getLayer(0);
+				return;
 			}
-			fadeFrames--;
-		} else {
-			// we are not fading
-			if (!rendered) {
-				// frame has not yet been rendered, copy values from show file
-				for (int i = 0; i < targetStep.getValues().size(); i++) {
-					currentFrame[i] = targetStep.getValues().get(i);
+		}
+	}
+	
+	/**
+	 * Publish the current state as a new {@link EngineStatus}. Only called when the state
+	 * changes, so no snapshot is created for frames that merely continue a fade or hold.
+	 * 
+	 * @param message a message about the change, or <code>null</code>
+	 */
+	private void publishStatus(String message) {
+		leadRenderer.pollStepChanged();
+		List<String> overlays = Collections.emptyList();
+		if (activeLayers > 1) {
+			overlays = new ArrayList<>(activeLayers - 1);
+			for (int i = 0; i < activeLayers; i++) {
+				if (layerOrder[i] != 0) {
+					overlays.add(layerScenes[layerOrder[i]].getName());
 				}
-				rendered = true;
 			}
-			// modify dimmer values even if the frame has already been rendered because
-			// user might change the dimmer setting at any time
-			for (short dmxAddress: show.getDimmerChannels()) {
-				currentFrame[dmxAddress - 1] = (short)Math.round(
-						targetStep.getValues().get(dmxAddress - 1) * dimmer / 10f);
+			overlays = Collections.unmodifiableList(overlays);
+		}
+		List<Integer> groupMasters = Collections.emptyList();
+		if (masters.getGroupCount() > 0) {
+			groupMasters = new ArrayList<>(masters.getGroupCount());
+			for (int i = 0; i < masters.getGroupCount(); i++) {
+				groupMasters.add(masters.getMaster(i));
 			}
-			if (holdFrames > 0) {
-				holdFrames--;
-			} else {
-				// hold time has elapsed, progress with next step
-				progressStep(false);
+			groupMasters = Collections.unmodifiableList(groupMasters);
+		}
+		status = new EngineStatus(++statusSequence, currentScene.getName(), 
+				leadRenderer.getStep(), leadRenderer.getStepCount(), overlays, 
+				masters.getGrandMaster(), groupMasters, paused, stopped, message);
+	}
+	
+	/**
+	 * Calculate the current DMX values of all universes, either serially or in parallel 
+	 * on the render pool.
+	 * 
+	 * @param frameTime the deadline of the frame in nanoseconds
+	 */
+	void computeCurrentFrame(long frameTime) {
+		this.frameTime = frameTime;
+		if (renderPool == null) {
+			for (LayerMixer mixer : mixers) {
+				mixer.render(frameTime, masters, layerOrder, activeLayers);
 			}
+		} else {
+			renderTask.reinitialize();
+			renderPool.invoke(renderTask);
+		}
+		if (leadRenderer.pollStepChanged()) {
+			publishStatus(null);
 		}
 	}
 	
 	/**
-	 * Read the next key press from the keyboard queue and trigger appropriate actions.
+	 * Handle the pending commands and key presses of all trigger inputs. At most the capacity
+	 * of every queue is handled per frame, so threads adding input faster than it is handled
+	 * cannot keep the render thread from rendering the frame.
 	 */
 	private void checkUserInput() {
-		Integer key = keyQueue.poll();
-		if (key != null) {
-			switch (key) {
-				case (int) 'q':
-					System.out.println("\nShutting down...");
-					stop = true;
-					reader.stopThread();
-					break;
-				
-				case (int) '+':
-					if (dimmer < 10) {
-						dimmer++;
-						System.out.print("\rDimmer: " + 10 * dimmer + "%");
-					}
-					break;
-				
-				case (int) '-':
-					if (dimmer > 0) {
-						dimmer--;
-						System.out.print("\rDimmer: " + 10 * dimmer + "%");
-					}
-					break;
-				
-				default:
-					boolean actionTriggered = false;
-					for (Scene scene : show.getScenes()) {
-						if (scene.getTriggerKeys().contains(key)) {
-							currentScene = scene;
-							progressStep(true);
-							actionTriggered = true;
-							break;
-						}
-					}
-					if (!actionTriggered) {
-						System.out.print("\rUnknown key pressed: " + key);
-					}
-					break;
+		for (int i = 0; i < COMMAND_QUEUE_CAPACITY && !commands.isEmpty(); i++) {
+			int command = commands.peekCommand();
+			int argument = commands.peekArgument();
+			long timestamp = commands.peekTimestamp();
+			// removed first, so a command that cannot be handled is not handled again
+			commands.remove();
+			handleCommand(command, argument, timestamp);
+		}
+		for (TriggerQueue queue : triggerQueues) {
+			for (int i = 0; i < TRIGGER_QUEUE_CAPACITY && !queue.isEmpty(); i++) {
+				handleKey(queue.peekKey(), queue.peekTimestamp());
+				queue.remove();
 			}
 		}
 	}
 	
 	/**
-	 * Helper class to run in a separate thread as JLine does not support non 
-	 * blocking keyboard reading.
-	 * 
-	 * <p>Keyboard is captured via a {@link ConsoleReader} and key presses are stored in 
-	 * a {@link ConcurrentLinkedQueue} which is shared with the main thread.</p>
+	 * Apply a command of the {@link CommandQueue}.
 	 */
-	private static class KeyboardReader implements Runnable {
-		
-		private final ConcurrentLinkedQueue<Integer> keyQueue;
-		private volatile boolean stop;
-		private ConsoleReader console;
-		
-		/**
-		 * Setup Keyboard input storing key presses in the supplied {@link ConcurrentLinkedQueue}.
-		 * 
-		 * @param keyQueue queue to store key presses in
-		 */
-		public KeyboardReader(ConcurrentLinkedQueue<Integer> keyQueue) {
-			this.keyQueue = keyQueue;
-			stop = false;
-			try {
-				TerminalFactory.get().init();
-				console = new ConsoleReader();
-			} catch (Exception e) {
-				e.printStackTrace(System.err);
-			}
+	private void handleCommand(int command, int argument, long timestamp) {
+		switch (command) {
+			case CommandQueue.TRIGGER_KEY:
+				handleKey(argument, timestamp);
+				break;
+			
+			case CommandQueue.TRIGGER_SCENE:
+				if (argument >= 1 && argument <= show.getScenes().length) {
+					triggerScene(show.getScenes()[argument - 1], timestamp);
+				} else {
+					publishStatus("Unknown scene: " + argument);
+				}
+				break;
+			
+			case CommandQueue.SET_DIMMER:
+				masters.setGrandMaster(argument);
+				publishStatus(null);
+				break;
+			
+			case CommandQueue.SET_GROUP_MASTER:
+				int group = argument >>> 8;
+				if (group <= masters.getGroupCount()) {
+					masters.setMaster(group - 1, argument & 0xFF);
+					publishStatus(null);
+				} else {
+					publishStatus("Unknown group: " + group);
+				}
+				break;
+			
+			case CommandQueue.PAUSE:
+				if (paused && argument == 0) {
+					// continue one frame after the last rendered frame
+					pauseOffset = deadline - frameTime - show.getFramePeriod();
+				}
+				paused = argument != 0;
+				publishStatus(null);
+				break;
+			
+			case CommandQueue.STEP:
+				stepPending = paused;
+				break;
+			
+			case CommandQueue.SEEK:
+				for (LayerMixer mixer : mixers) {
+					mixer.seek(argument * 1000000L);
+				}
+				publishStatus(null);
+				break;
+			
+			case CommandQueue.STOP:
+				quit();
+				break;
+			
+			default:
+				throw new IllegalStateException("Unknown command: " + command);
 		}
-
-		/**
-		 * Capture key presses using blocking operations within an endless loop.
-		 */
-		public void run() {
-			try {
-				while (!stop) {
-					int key = console.readCharacter();
-					if (key >= 0) {
-						keyQueue.offer(key);
-					}
+	}
+	
+	/**
+	 * Trigger the action of a key.
+	 * 
+	 * @param key the pressed key
+	 * @param timestamp the time the key was received in nanoseconds
+	 */
+	private void handleKey(int key, long timestamp) {
+		switch (key) {
+			case (int) 'q':
+				quit();
+				break;
+			
+			case (int) '+':
+				if (masters.getGrandMaster() < Submasters.FULL_GRAND_MASTER) {
+					masters.setGrandMaster(masters.getGrandMaster() + 1);
+					publishStatus(null);
 				}
-			} catch (IOException e) {
-				e.printStackTrace(System.err);
-			} finally {
-				try {
-					TerminalFactory.get().restore();
-				} catch (Exception e) {
-					e.printStackTrace(System.err);
+				break;
+			
+			case (int) '-':
+				if (masters.getGrandMaster() > 0) {
+					masters.setGrandMaster(masters.getGrandMaster() - 1);
+					publishStatus(null);
+				}
+				break;
+			
+			default:
+				CompiledScene scene = findScene(key);
+				if (scene != null) {
+					triggerScene(scene, timestamp);
+				} else {
+					publishStatus("Unknown key pressed: " + key);
 				}
+				break;
+		}
+	}
+	
+	/**
+	 * Start a scene, or stop its layer if it is the scene of a layer above the base layer.
+	 */
+	private void triggerScene(CompiledScene scene, long timestamp) {
+		if (scene.getLayer() > 0 && layerScenes[scene.getLayer()] == scene) {
+			// the scene of an upper layer toggles the layer
+			stopLayer(scene.getLayer());
+		} else {
+			startScene(scene);
+		}
+		// the latency is only recorded for as many triggers as the queues hold
+		if (triggerCount < triggerTimes.length) {
+			triggerTimes[triggerCount++] = timestamp;
+		}
+	}
+	
+	private void quit() {
+		stopped = true;
+		publishStatus(null);
+	}
+	
+	/**
+	 * Record the latency of all triggers handled in the frame that was just sent.
+	 * 
+	 * @param now the current time in nanoseconds
+	 */
+	void recordTriggerLatency(long now) {
+		if (triggerCount > 0) {
+			for (int i = 0; i < triggerCount; i++) {
+				triggerLatency.record(now - triggerTimes[i]);
 			}
+			triggerCount = 0;
 		}
+	}
+	
+	/**
+	 * Find a scene by its name.
+	 * 
+	 * @param name the name of the scene
+	 * @return the first scene with this name or <code>null</code>
+	 */
+	private CompiledScene findScene(String name) {
+		for (CompiledScene scene : show.getScenes()) {
+			if (scene.getName() == null ? name == null : scene.getName().equals(name)) {
+				return scene;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Find the scene triggered by a key.
+	 * 
+	 * @param key the key pressed by the user
+	 * @return the first scene with a matching trigger key or <code>null</code>
+	 */
+	CompiledScene findScene(int key) {
+		return show.getSceneForKey(key);
+	}
+	
+	/**
+	 * Fork/join task rendering and merging the layers of a range of universes.
+	 * 
+	 * <p>The tree of tasks is created once and reinitialized for every frame, so parallel 
+	 * rendering does not allocate any tasks while the show is running.</p>
+	 */
+	private final class RenderTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final int universe;
+		private final RenderTask left;
+		private final RenderTask right;
 		
 		/**
-		 * Stop the keyboard reader thread.
+		 * Create a task for all universes from <code>from</code> (inclusive) to 
+		 * <code>to</code> (exclusive).
 		 */
-		public void stopThread() {
-			stop = true;
+		RenderTask(int from, int to) {
+			universe = from;
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				left = new RenderTask(from, middle);
+				right = new RenderTask(middle, to);
+			} else {
+				left = null;
+				right = null;
+			}
 		}
 		
+		@Override
+		protected void compute() {
+			if (left == null) {
+				mixers[universe].render(frameTime, masters, layerOrder, activeLayers);
+			} else {
+				left.reinitialize();
+				right.reinitialize();
+				invokeAll(left, right);
+			}
+		}
 	}
-
 }
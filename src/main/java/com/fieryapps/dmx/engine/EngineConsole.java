@@ -0,0 +1,167 @@
+package com.fieryapps.dmx.engine;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Objects;
+
+import jline.TerminalFactory;
+import jline.console.ConsoleReader;
+
+/**
+ * Keyboard control and status output of an {@link Engine} on the terminal.
+ *
+ * <p>Key presses are read on a separate thread, as JLine does not support non blocking
+ * keyboard reading, and passed to the engine with {@link Engine#triggerKey(int)}. Another
+ * thread polls the {@link EngineStatus} of the engine and prints every change, so the render
+ * thread never writes to the console.</p>
+ */
+public final class EngineConsole implements AutoCloseable {
+
+	// time between two checks of the engine status in milliseconds
+	private static final long POLL_INTERVAL = 20;
+
+	private final Engine engine;
+	private final PrintStream out;
+	private final Thread keyboardThread;
+	private final Thread statusThread;
+	private volatile boolean stop;
+
+	/**
+	 * Start reading the keyboard and printing the status of an engine.
+	 *
+	 * @param engine the engine to control
+	 */
+	public EngineConsole(Engine engine) {
+		this(engine, System.out, true);
+	}
+
+	/**
+	 * Start printing the status of an engine, and optionally reading the keyboard.
+	 *
+	 * @param engine the engine to control
+	 * @param out the stream to print the status to
+	 * @param keyboard <code>false</code> to only print the status, used for testing
+	 */
+	EngineConsole(Engine engine, PrintStream out, boolean keyboard) {
+		this.engine = engine;
+		this.out = out;
+		keyboardThread = !keyboard ? null : new Thread(new Runnable() {
+			@Override
+			public void run() {
+				readKeys();
+			}
+		}, "keyboard");
+		statusThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				printStatus();
+			}
+		}, "status");
+		statusThread.setDaemon(true);
+		if (keyboardThread != null) {
+			keyboardThread.setDaemon(true);
+			keyboardThread.start();
+		}
+		statusThread.start();
+	}
+
+	/**
+	 * Capture key presses using blocking operations until 'q' is pressed.
+	 */
+	private void readKeys() {
+		try {
+			TerminalFactory.get().init();
+			ConsoleReader console = new ConsoleReader();
+			while (!stop) {
+				int key = console.readCharacter();
+				if (key >= 0) {
+					engine.triggerKey(key);
+				}
+				if (key == 'q') {
+					break;
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace(System.err);
+		} finally {
+			restoreTerminal();
+		}
+	}
+
+	/**
+	 * Print every change of the engine status until the engine stops.
+	 */
+	private void printStatus() {
+		EngineStatus previous = null;
+		while (!stop) {
+			EngineStatus status = engine.getStatus();
+			if (status != previous) {
+				print(status, previous);
+				previous = status;
+				if (status.isStopped()) {
+					return;
+				}
+			}
+			try {
+				Thread.sleep(POLL_INTERVAL);
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+
+	private void print(EngineStatus status, EngineStatus previous) {
+		if (status.isStopped()) {
+			out.print("\nShutting down...\n");
+			return;
+		}
+		if (status.getMessage() != null) {
+			out.format("\r%-70s", status.getMessage());
+		}
+		if (previous != null && status.getDimmer() != previous.getDimmer()) {
+			out.format("\rDimmer: %d%%", 10 * status.getDimmer());
+		}
+		if (previous == null || status.getStep() != previous.getStep()
+				// scene names are optional
+				|| !Objects.equals(status.getScene(), previous.getScene())
+				|| !status.getOverlays().equals(previous.getOverlays())
+				|| status.isPaused() != previous.isPaused()) {
+			StringBuilder overlays = new StringBuilder();
+			for (String overlay : status.getOverlays()) {
+				overlays.append(" + ").append(overlay);
+			}
+			if (status.isPaused()) {
+				overlays.append(" (paused)");
+			}
+			out.format("\rPlaying scene: %-20s Step: %02d/%02d%-30s", status.getScene(),
+					status.getStep(), status.getStepCount(), overlays);
+		}
+	}
+
+	private static void restoreTerminal() {
+		try {
+			TerminalFactory.get().restore();
+		} catch (Exception e) {
+			e.printStackTrace(System.err);
+		}
+	}
+
+	/**
+	 * Stop printing the status and restore the terminal. The keyboard thread ends with the
+	 * application, as reading a key can not be interrupted.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			// give the status thread the chance to print the final status
+			statusThread.join(POLL_INTERVAL * 5);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		stop = true;
+		statusThread.interrupt();
+		if (keyboardThread != null) {
+			restoreTerminal();
+		}
+	}
+}
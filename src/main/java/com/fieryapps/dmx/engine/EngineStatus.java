@@ -0,0 +1,106 @@
+package com.fieryapps.dmx.engine;
+
+import java.util.List;
+
+/**
+ * Immutable snapshot of the state of an {@link Engine}.
+ *
+ * <p>The engine publishes a new snapshot whenever a scene or step changes or a command was
+ * applied, so any thread can read a consistent state without synchronizing with the render
+ * thread. Snapshots are numbered, so a newer snapshot can be told from an older one.</p>
+ */
+public final class EngineStatus {
+
+	private final long sequence;
+	private final String scene;
+	private final int step;
+	private final int stepCount;
+	private final List<String> overlays;
+	private final int dimmer;
+	private final List<Integer> groupMasters;
+	private final boolean paused;
+	private final boolean stopped;
+	private final String message;
+
+	EngineStatus(long sequence, String scene, int step, int stepCount, List<String> overlays,
+			int dimmer, List<Integer> groupMasters, boolean paused, boolean stopped, 
+			String message) {
+		this.sequence = sequence;
+		this.scene = scene;
+		this.step = step;
+		this.stepCount = stepCount;
+		this.overlays = overlays;
+		this.dimmer = dimmer;
+		this.groupMasters = groupMasters;
+		this.paused = paused;
+		this.stopped = stopped;
+		this.message = message;
+	}
+
+	/**
+	 * @return the number of this snapshot, increasing with every published snapshot
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return the name of the scene playing in the base layer
+	 */
+	public String getScene() {
+		return scene;
+	}
+
+	/**
+	 * @return the current step of the base layer scene, starting with 1
+	 */
+	public int getStep() {
+		return step;
+	}
+
+	public int getStepCount() {
+		return stepCount;
+	}
+
+	/**
+	 * @return the names of the scenes playing in the layers above the base layer, in the
+	 *         order they were started; the list can not be modified
+	 */
+	public List<String> getOverlays() {
+		return overlays;
+	}
+
+	/**
+	 * @return the master dimmer value from 0 to 10
+	 */
+	public int getDimmer() {
+		return dimmer;
+	}
+
+	/**
+	 * @return the submaster of every group from 0 to 255, in the order of the show; the list
+	 *         can not be modified
+	 */
+	public List<Integer> getGroupMasters() {
+		return groupMasters;
+	}
+
+	public boolean isPaused() {
+		return paused;
+	}
+
+	/**
+	 * @return <code>true</code> if the engine has been stopped
+	 */
+	public boolean isStopped() {
+		return stopped;
+	}
+
+	/**
+	 * @return a message about the change that caused this snapshot, for example a reloaded
+	 *         show or an unknown trigger key, or <code>null</code>
+	 */
+	public String getMessage() {
+		return message;
+	}
+}
@@ -0,0 +1,54 @@
+package com.fieryapps.dmx.engine;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import com.fieryapps.dmx.DmxStream;
+
+/**
+ * Writes all frames to a file, e.g. to compare renderings of a show with external tools.
+ *
+ * <p>Frames are written one after another in the order they were streamed. Every frame is 
+ * stored as the universe id (two bytes, big endian) followed by one byte for every DMX 
+ * value.</p>
+ */
+public final class FrameFileDmxStream implements DmxStream {
+	
+	private final DataOutputStream out;
+	private byte[] buffer = new byte[0];
+	
+	/**
+	 * @param fileName the file to write, an existing file is replaced
+	 */
+	public FrameFileDmxStream(String fileName) throws IOException {
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 
+				1 << 16));
+	}
+	
+	@Override
+	public void streamDmx(short universe, short[] currentFrame) {
+		if (buffer.length != currentFrame.length) {
+			buffer = new byte[currentFrame.length];
+		}
+		for (int i = 0; i < currentFrame.length; i++) {
+			buffer[i] = (byte) currentFrame[i];
+		}
+		try {
+			out.writeShort(universe);
+			out.write(buffer);
+		} catch (IOException e) {
+			throw new IllegalStateException("Error writing frame file: " + e.getMessage(), e);
+		}
+	}
+	
+	@Override
+	public void flush() {
+	}
+	
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
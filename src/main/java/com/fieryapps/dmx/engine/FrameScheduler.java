@@ -0,0 +1,133 @@
+package com.fieryapps.dmx.engine;
+
+import java.util.concurrent.locks.LockSupport;
+
+import com.fieryapps.dmx.metrics.Histogram;
+import com.fieryapps.dmx.model.LatePolicy;
+
+/**
+ * Paces the render loop of the engine with absolute frame deadlines.
+ *
+ * <p>Deadlines are calculated in nanoseconds from the start of the show, so neither rounding
+ * nor oversleeping adds up over time. The scheduler parks the render thread until shortly
+ * before the deadline and optionally busy waits for the remaining time to reduce jitter.</p>
+ *
+ * <p>If a frame starts late, the {@link LatePolicy} decides whether the missed frames are
+ * rendered back to back or skipped. The lateness of every frame is recorded in a
+ * {@link Histogram}.</p>
+ */
+final class FrameScheduler {
+
+	// never catch up more than this number of frames, skip the remaining ones
+	private static final int MAX_CATCH_UP_FRAMES = 10;
+
+	private final long framePeriod;
+	private final LatePolicy latePolicy;
+	private final long spinTime;
+	private final Histogram lateness = new Histogram();
+	private long nextDeadline;
+	private long frames;
+	private long droppedFrames;
+
+	/**
+	 * Create a new scheduler.
+	 *
+	 * @param framePeriod duration of a frame in nanoseconds
+	 * @param latePolicy handling of late frames
+	 * @param spinTime time in nanoseconds to busy wait before a deadline instead of parking
+	 */
+	FrameScheduler(long framePeriod, LatePolicy latePolicy, long spinTime) {
+		this.framePeriod = framePeriod;
+		this.latePolicy = latePolicy;
+		this.spinTime = spinTime;
+	}
+
+	/**
+	 * Start the schedule. The first frame is due immediately.
+	 */
+	void start() {
+		nextDeadline = System.nanoTime();
+	}
+
+	/**
+	 * Wait until the next frame is due.
+	 *
+	 * @return the deadline of the frame in {@link System#nanoTime()} units
+	 */
+	long awaitNextFrame() {
+		long deadline = nextDeadline;
+		long remaining = deadline - System.nanoTime();
+		// parking may return early, so park again until only the spin time is left
+		while (remaining > spinTime) {
+			LockSupport.parkNanos(remaining - spinTime);
+			remaining = deadline - System.nanoTime();
+		}
+		long now = System.nanoTime();
+		while (now - deadline < 0) {
+			now = System.nanoTime();
+		}
+		return beginFrame(now);
+	}
+
+	/**
+	 * Start the next frame without waiting, for callers that are woken up at the deadline by
+	 * a timer shared with other schedules.
+	 *
+	 * @param now the current time in nanoseconds, not before the deadline of the frame
+	 * @return the deadline of the frame in {@link System#nanoTime()} units
+	 */
+	long beginFrame(long now) {
+		long deadline = nextDeadline;
+		long late = Math.max(0, now - deadline);
+		lateness.record(late);
+		frames++;
+
+		nextDeadline = deadline + framePeriod;
+		long missed = late / framePeriod;
+		if (missed > 0 && (latePolicy == LatePolicy.DROP || missed > MAX_CATCH_UP_FRAMES)) {
+			// skip all frames that are already overdue
+			nextDeadline += missed * framePeriod;
+			droppedFrames += missed;
+		}
+		return deadline;
+	}
+
+	/**
+	 * @return the deadline of the next frame in {@link System#nanoTime()} units
+	 */
+	long getNextDeadline() {
+		return nextDeadline;
+	}
+
+	long getFramePeriod() {
+		return framePeriod;
+	}
+
+	/**
+	 * @return the number of frames started so far
+	 */
+	long getFrames() {
+		return frames;
+	}
+
+	long getDroppedFrames() {
+		return droppedFrames;
+	}
+
+	/**
+	 * @return the time in nanoseconds every frame started after its deadline
+	 */
+	Histogram getLateness() {
+		return lateness;
+	}
+
+	/**
+	 * @return a single line summary of the frame timing
+	 */
+	String getSummary() {
+		return String.format("Frames: %d, dropped: %d, lateness avg: %.3f ms, "
+				+ "99%%: %.3f ms, max: %.3f ms", frames, droppedFrames,
+				lateness.getMean() / 1e6, lateness.getPercentile(99) / 1e6,
+				lateness.getMax() / 1e6);
+	}
+}
@@ -0,0 +1,65 @@
+package com.fieryapps.dmx.engine;
+
+import com.fieryapps.dmx.DmxStream;
+import com.fieryapps.dmx.metrics.Metrics;
+import com.fieryapps.dmx.model.CompiledShow;
+
+/**
+ * Renders a show as fast as possible with a virtual clock.
+ *
+ * <p>The renderer drives the same {@link Engine} as a live show, but instead of waiting for
+ * the deadline of every frame, the clock simply advances by one frame period per frame. Key
+ * presses are read from a {@link TriggerScript} and random step orders are seeded, so
+ * rendering the same show with the same script and seed always produces the same frames.
+ * The terminal is not used.</p>
+ */
+public final class HeadlessRenderer {
+	
+	private final CompiledShow show;
+	private final DmxStream output;
+	private final long seed;
+	
+	/**
+	 * @param show the show to render
+	 * @param output the output for the rendered frames
+	 * @param seed seed of random step orders
+	 */
+	public HeadlessRenderer(CompiledShow show, DmxStream output, long seed) {
+		this.show = show;
+		this.output = output;
+		this.seed = seed;
+	}
+	
+	/**
+	 * Render the show, starting with the start scene at time 0.
+	 * 
+	 * <p>A key press is handled in the first frame at or after the time of the key press. 
+	 * Rendering stops after the duration or when the script quits the show with the 
+	 * <code>q</code> key.</p>
+	 * 
+	 * @param script the key presses to replay
+	 * @param duration the duration of the show in nanoseconds
+	 * @return the number of rendered frames
+	 */
+	public long render(TriggerScript script, long duration) {
+		Engine engine = new Engine(show, output, new Metrics());
+		engine.setRandomSeed(seed);
+		long framePeriod = show.getFramePeriod();
+		int nextTrigger = 0;
+		long frames = 0;
+		try {
+			for (long time = 0; time < duration && !engine.isStopped(); time += framePeriod) {
+				while (nextTrigger < script.size() && script.getTime(nextTrigger) <= time) {
+					engine.trigger(script.getKey(nextTrigger), script.getTime(nextTrigger));
+					nextTrigger++;
+				}
+				engine.renderFrame(time);
+				engine.recordTriggerLatency(time);
+				frames++;
+			}
+		} finally {
+			engine.shutdownRenderPool();
+		}
+		return frames;
+	}
+}
@@ -0,0 +1,159 @@
+package com.fieryapps.dmx.engine;
+
+import com.fieryapps.dmx.metrics.Counter;
+import com.fieryapps.dmx.model.CompiledScene;
+import com.fieryapps.dmx.model.CompiledTrack;
+import com.fieryapps.dmx.model.ShowCompiler;
+
+/**
+ * Renders all layers of a single universe and merges them into one frame.
+ *
+ * <p>Every layer plays its own scene with its own {@link UniverseRenderer}. The base layer
+ * provides the values of all addresses, the other layers are merged on top of it in the
+ * order their scenes were started. Dimmer channels are merged highest takes precedence
+ * (HTP), all other channels latest takes precedence (LTP): the layer started last that sets
+ * an address wins.</p>
+ *
+ * <p>The merge uses the masks of the {@link CompiledTrack} of every layer instead of
+ * branching per address, so merging eight layers of a full universe is a few thousand
+ * arithmetic operations. While only the base layer plays, its frame is sent as it is and
+ * nothing is merged.</p>
+ */
+final class LayerMixer {
+
+	private final short universe;
+	// index of the universe within the show
+	private final int index;
+	private final Counter stepChanges;
+	// renderers are created when a layer is used for the first time
+	private final UniverseRenderer[] layers = new UniverseRenderer[ShowCompiler.MAX_LAYERS];
+	private final short[] mixedFrame = new short[ShowCompiler.UNIVERSE_SIZE];
+	// either the frame of the base layer or the merged frame
+	private short[] currentFrame;
+	private long seed;
+
+	/**
+	 * @param universe the universe id
+	 * @param index the index of the universe within the show
+	 * @param stepChanges counts all steps started in this universe
+	 */
+	LayerMixer(short universe, int index, Counter stepChanges) {
+		this.universe = universe;
+		this.index = index;
+		this.stepChanges = stepChanges;
+		currentFrame = getLayer(0).getCurrentFrame();
+	}
+
+	short getUniverse() {
+		return universe;
+	}
+
+	/**
+	 * @return the merged values of all layers of the last rendered frame
+	 */
+	short[] getCurrentFrame() {
+		return currentFrame;
+	}
+
+	/**
+	 * @param layer the layer, starting with 0 for the base layer
+	 * @return the renderer of the layer
+	 */
+	UniverseRenderer getLayer(int layer) {
+		if (layers[layer] == null) {
+			layers[layer] = new UniverseRenderer(universe, stepChanges);
+			layers[layer].setRandomSeed(seed + ((long) layer << 32));
+		}
+		return layers[layer];
+	}
+
+	/**
+	 * Seed the selection of random steps of all layers.
+	 *
+	 * @param seed the seed, any value
+	 */
+	void setRandomSeed(long seed) {
+		this.seed = seed;
+		for (int i = 0; i < layers.length; i++) {
+			if (layers[i] != null) {
+				layers[i].setRandomSeed(seed + ((long) i << 32));
+			}
+		}
+	}
+
+	/**
+	 * Start playing a scene in its layer.
+	 */
+	void startScene(CompiledScene scene) {
+		getLayer(scene.getLayer()).startScene(scene, index);
+	}
+
+	/**
+	 * Continue playing a modified version of a scene in its layer.
+	 */
+	void reloadScene(CompiledScene scene) {
+		getLayer(scene.getLayer()).reloadScene(scene, index);
+	}
+
+	/**
+	 * Move the timeline scenes of all layers to a position with the next frame.
+	 *
+	 * @param position the time since the start of the timelines in nanoseconds
+	 */
+	void seek(long position) {
+		for (UniverseRenderer layer : layers) {
+			if (layer != null) {
+				layer.seek(position);
+			}
+		}
+	}
+
+	/**
+	 * Render all active layers and merge them.
+	 *
+	 * @param frameTime the deadline of the frame in nanoseconds
+	 * @param masters the grand master and group submasters of the show
+	 * @param order the active layers in the order their scenes were started
+	 * @param count the number of active layers
+	 */
+	void render(long frameTime, Submasters masters, int[] order, int count) {
+		for (int i = 0; i < count; i++) {
+			layers[order[i]].render(frameTime, masters);
+		}
+		if (count == 1) {
+			// only the base layer is playing
+			currentFrame = layers[0].getCurrentFrame();
+			return;
+		}
+
+		System.arraycopy(layers[0].getCurrentFrame(), 0, mixedFrame, 0, mixedFrame.length);
+		// the base layer already is in the merged frame if it was started first
+		for (int i = order[0] == 0 ? 1 : 0; i < count; i++) {
+			UniverseRenderer layer = layers[order[i]];
+			if (layer.isAdvancing()) {
+				// a scene without a track in this universe does not set any address
+				merge(mixedFrame, layer.getCurrentFrame(), layer.getTrack());
+			}
+		}
+		currentFrame = mixedFrame;
+	}
+
+	/**
+	 * Merge the values of a layer into a frame. Dimmer channels keep the highest value, all
+	 * other channels set by the track of the layer take the value of the layer.
+	 *
+	 * @param frame the merged values of all previous layers
+	 * @param values the values of the layer
+	 * @param track the track played by the layer
+	 */
+	static void merge(short[] frame, short[] values, CompiledTrack track) {
+		short[] owned = track.getOwnedMask();
+		short[] intensity = track.getIntensityMask();
+		for (int i = 0; i < frame.length; i++) {
+			int value = values[i] & owned[i];
+			int latest = (frame[i] & ~owned[i]) | value;
+			int highest = Math.max(frame[i], value);
+			frame[i] = (short) ((highest & intensity[i]) | (latest & ~intensity[i]));
+		}
+	}
+}
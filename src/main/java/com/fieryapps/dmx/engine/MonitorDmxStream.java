@@ -0,0 +1,417 @@
+package com.fieryapps.dmx.engine;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.fieryapps.dmx.DmxStream;
+import com.fieryapps.dmx.metrics.Counter;
+import com.fieryapps.dmx.metrics.Metrics;
+
+/**
+ * Streams the frames of all universes to viewers connected over TCP, optionally passing them
+ * on to another stream.
+ *
+ * <p>Frames are handed to the monitor thread through three preallocated buffers: the output
+ * thread fills one, swaps it with the latest complete frame and never waits for the monitor
+ * thread, which takes the latest frame in the same way. Streaming therefore neither blocks nor
+ * allocates, no matter how many viewers are connected or how slow they are.</p>
+ *
+ * <p>Every viewer has at most one unacknowledged frame. A frame only contains the DMX values
+ * that differ from the last frame the viewer acknowledged, and the next frame is sent once
+ * the viewer acknowledged the previous one. A slow viewer skips the frames that were rendered
+ * in between, so the data buffered per viewer never exceeds a single frame.</p>
+ *
+ * <h3>Protocol</h3>
+ * <p>All numbers are big endian. After connecting, the server sends the magic number
+ * <code>DMXM</code> and the protocol version (4 bytes each), followed by frames. Every frame
+ * consists of:</p>
+ * <ul>
+ * <li>the length of the rest of the frame (4 bytes)</li>
+ * <li>the sequence number of the frame, starting with 1 (8 bytes)</li>
+ * <li>the number of universes in the frame (2 bytes)</li>
+ * <li>for every changed universe, the universe id and the number of runs (2 bytes each)
+ * followed by the runs. A run consists of the index of its first DMX value and the number
+ * of values (2 bytes each) followed by the values (1 byte each), like in a recording of the
+ * {@link RecordingDmxStream}.</li>
+ * </ul>
+ * <p>The viewer acknowledges a frame by sending its sequence number (8 bytes). The first
+ * frame contains the differences to a frame with all values set to 0.</p>
+ */
+public final class MonitorDmxStream implements DmxStream {
+
+	/** magic number at the start of the stream */
+	static final int MAGIC = 0x444D584D;
+	static final int PROTOCOL_VERSION = 1;
+
+	// unchanged values between two changed values are included in the run if the gap is
+	// shorter than the header of a new run
+	private static final int MAX_GAP = 4;
+	private static final int UNIVERSE_SIZE = 512;
+
+	private final DmxStream stream;
+	private final ServerSocketChannel server;
+	private final Selector selector;
+	private final Thread thread;
+	// universes shown to viewers, in the order of the show
+	private final short[] universes;
+	// frame written by the output thread
+	private Frame back;
+	// latest complete frame, exchanged by the output and the monitor thread
+	private final AtomicReference<Frame> ready;
+	private long sequence;
+	private volatile int viewers;
+	private final Counter sentFrames;
+	private final Counter skippedFrames;
+
+	/**
+	 * Frame buffer shared by the output and the monitor thread.
+	 */
+	private static final class Frame {
+		private final byte[][] values;
+		private long sequence;
+
+		Frame(int universes) {
+			values = new byte[universes][UNIVERSE_SIZE];
+		}
+	}
+
+	/**
+	 * Open the monitor port and start serving viewers.
+	 *
+	 * @param address the local address and port to listen on
+	 * @param universes the universes shown to viewers
+	 * @param stream the stream to pass all frames to, may be <code>null</code>
+	 * @param metrics registry for the sent and skipped frames
+	 * @throws IOException if the port can not be opened
+	 */
+	public MonitorDmxStream(InetSocketAddress address, short[] universes, DmxStream stream,
+			Metrics metrics) throws IOException {
+		this.universes = universes.clone();
+		this.stream = stream;
+		back = new Frame(universes.length);
+		ready = new AtomicReference<>(new Frame(universes.length));
+		sentFrames = metrics.counter("dmx_monitor_frames_sent_total");
+		skippedFrames = metrics.counter("dmx_monitor_frames_skipped_total");
+		selector = Selector.open();
+		server = ServerSocketChannel.open();
+		try {
+			server.bind(address);
+			server.configureBlocking(false);
+			server.register(selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException e) {
+			server.close();
+			selector.close();
+			throw e;
+		}
+		final Frame front = new Frame(universes.length);
+		thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				serve(front);
+			}
+		}, "monitor " + getPort());
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * @return the local port viewers connect to
+	 */
+	public int getPort() {
+		try {
+			return ((InetSocketAddress) server.getLocalAddress()).getPort();
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * @return the number of connected viewers
+	 */
+	int getViewers() {
+		return viewers;
+	}
+
+	@Override
+	public void streamDmx(short universe, short[] currentFrame) {
+		for (int i = 0; i < universes.length; i++) {
+			if (universes[i] == universe) {
+				byte[] values = back.values[i];
+				int length = Math.min(currentFrame.length, UNIVERSE_SIZE);
+				for (int j = 0; j < length; j++) {
+					values[j] = (byte) currentFrame[j];
+				}
+				break;
+			}
+		}
+		if (stream != null) {
+			stream.streamDmx(universe, currentFrame);
+		}
+	}
+
+	@Override
+	public void flush() {
+		if (viewers > 0) {
+			Frame frame = back;
+			frame.sequence = ++sequence;
+			// the previous frame was either not taken or released by the monitor thread, which
+			// only reads the frame it holds, so the published frame can still be read here
+			back = ready.getAndSet(frame);
+			copyValues(frame, back);
+			selector.wakeup();
+		}
+		if (stream != null) {
+			stream.flush();
+		}
+	}
+
+	/**
+	 * Copy all values of a frame, so universes that are not streamed with every frame keep
+	 * their values.
+	 */
+	private static void copyValues(Frame from, Frame to) {
+		for (int i = 0; i < from.values.length; i++) {
+			System.arraycopy(from.values[i], 0, to.values[i], 0, UNIVERSE_SIZE);
+		}
+	}
+
+	/**
+	 * Accept viewers and send them frames until the stream is closed.
+	 *
+	 * @param front the frame buffer owned by the monitor thread
+	 */
+	private void serve(Frame front) {
+		try {
+			while (server.isOpen()) {
+				selector.select();
+				for (SelectionKey key : selector.selectedKeys()) {
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						accept();
+					} else {
+						Viewer viewer = (Viewer) key.attachment();
+						if (!viewer.handle(key)) {
+							disconnect(key);
+						}
+					}
+				}
+				selector.selectedKeys().clear();
+
+				if (ready.get().sequence > front.sequence) {
+					front = ready.getAndSet(front);
+				}
+				for (SelectionKey key : selector.keys()) {
+					if (key.attachment() != null && key.isValid()
+							&& !((Viewer) key.attachment()).send(key, front)) {
+						disconnect(key);
+					}
+				}
+			}
+		} catch (IOException | ClosedSelectorException e) {
+			if (server.isOpen()) {
+				System.err.println("\nMonitor stopped: " + e.getMessage());
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = server.accept();
+		if (channel == null) {
+			return;
+		}
+		channel.configureBlocking(false);
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		Viewer viewer = new Viewer(channel);
+		channel.register(selector, SelectionKey.OP_READ, viewer);
+		viewers++;
+	}
+
+	private void disconnect(SelectionKey key) {
+		key.cancel();
+		try {
+			key.channel().close();
+		} catch (IOException e) {
+			// the viewer is gone anyway
+		}
+		viewers--;
+	}
+
+	/**
+	 * Connection to a single viewer, only used by the monitor thread.
+	 */
+	private final class Viewer {
+		private final SocketChannel channel;
+		// encoded frames waiting to be written, at most one frame
+		private final ByteBuffer output;
+		private final ByteBuffer ack = ByteBuffer.allocate(8);
+		// values of the last acknowledged frame and of the frame waiting for its ack
+		private byte[][] acknowledged;
+		private byte[][] sent;
+		private long acknowledgedSequence;
+		// sequence of the frame waiting for its ack, 0 if there is none
+		private long sentSequence;
+
+		Viewer(SocketChannel channel) {
+			this.channel = channel;
+			acknowledged = new byte[universes.length][UNIVERSE_SIZE];
+			sent = new byte[universes.length][UNIVERSE_SIZE];
+			// header, plus universe id, run count and runs separated by at least MAX_GAP
+			// unchanged values, so all run headers take less space than the values
+			output = ByteBuffer.allocateDirect(14 + universes.length * (4 + 2 * UNIVERSE_SIZE));
+			output.putInt(MAGIC);
+			output.putInt(PROTOCOL_VERSION);
+			output.flip();
+		}
+
+		/**
+		 * Read acknowledgements and continue writing.
+		 *
+		 * @return <code>false</code> if the viewer disconnected
+		 */
+		boolean handle(SelectionKey key) throws IOException {
+			if (key.isReadable()) {
+				int read;
+				while ((read = channel.read(ack)) > 0) {
+					if (!ack.hasRemaining()) {
+						acknowledge(ack.getLong(0));
+						ack.clear();
+					}
+				}
+				if (read < 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private void acknowledge(long frame) {
+			if (frame == sentSequence) {
+				byte[][] values = acknowledged;
+				acknowledged = sent;
+				sent = values;
+				acknowledgedSequence = frame;
+				sentSequence = 0;
+			}
+		}
+
+		/**
+		 * Write pending data and send the latest frame if the previous one was acknowledged.
+		 *
+		 * @return <code>false</code> if the viewer disconnected
+		 */
+		boolean send(SelectionKey key, Frame frame) {
+			try {
+				if (!output.hasRemaining() && sentSequence == 0
+						&& frame.sequence > acknowledgedSequence && encode(frame)) {
+					sentFrames.increment();
+				}
+				if (output.hasRemaining()) {
+					channel.write(output);
+				}
+				key.interestOps(output.hasRemaining()
+						? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+				return true;
+			} catch (IOException e) {
+				return false;
+			}
+		}
+
+		/**
+		 * Encode the differences between a frame and the acknowledged frame.
+		 *
+		 * @return <code>false</code> if nothing changed and no frame was encoded
+		 */
+		private boolean encode(Frame frame) {
+			output.clear();
+			output.putInt(0);
+			output.putLong(frame.sequence);
+			output.putShort((short) 0);
+			int changedUniverses = 0;
+			for (int i = 0; i < universes.length; i++) {
+				if (encodeRuns(universes[i], frame.values[i], acknowledged[i])) {
+					changedUniverses++;
+				}
+				System.arraycopy(frame.values[i], 0, sent[i], 0, UNIVERSE_SIZE);
+			}
+			if (changedUniverses == 0) {
+				// the viewer already shows these values
+				acknowledgedSequence = frame.sequence;
+				output.position(0).limit(0);
+				return false;
+			}
+			if (acknowledgedSequence > 0) {
+				skippedFrames.add(frame.sequence - acknowledgedSequence - 1);
+			}
+			output.putInt(0, output.position() - 4);
+			output.putShort(12, (short) changedUniverses);
+			output.flip();
+			sentSequence = frame.sequence;
+			return true;
+		}
+
+		/**
+		 * Append the runs of changed values of a universe.
+		 *
+		 * @return <code>false</code> if no value changed and nothing was appended
+		 */
+		private boolean encodeRuns(short universe, byte[] values, byte[] base) {
+			int start = output.position();
+			output.putShort(universe);
+			output.putShort((short) 0);
+			int runs = 0;
+			int i = 0;
+			while (i < values.length) {
+				if (values[i] == base[i]) {
+					i++;
+					continue;
+				}
+				// find the end of the run, including short gaps of unchanged values
+				int end = i + 1;
+				int gap = 0;
+				for (int j = end; j < values.length && gap < MAX_GAP; j++) {
+					if (values[j] == base[j]) {
+						gap++;
+					} else {
+						gap = 0;
+						end = j + 1;
+					}
+				}
+				output.putShort((short) i);
+				output.putShort((short) (end - i));
+				output.put(values, i, end - i);
+				runs++;
+				i = end;
+			}
+			if (runs == 0) {
+				output.position(start);
+				return false;
+			}
+			output.putShort(start + 2, (short) runs);
+			return true;
+		}
+	}
+
+	@Override
+	public void close() throws Exception {
+		server.close();
+		selector.wakeup();
+		thread.join(1000);
+		for (SelectionKey key : selector.keys()) {
+			key.channel().close();
+		}
+		selector.close();
+		if (stream != null) {
+			stream.close();
+		}
+	}
+}
@@ -1,21 +1,337 @@
 package com.fieryapps.dmx.engine;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 import com.fieryapps.dmx.DmxStream;
-import ola.OlaClient;
+import com.fieryapps.dmx.metrics.Counter;
+import com.fieryapps.dmx.metrics.Metrics;
 
+/**
+ * Sends DMX frames to the OLA daemon (olad) over its RPC protocol.
+ *
+ * <p>Every universe is sent as a <code>StreamDmxData</code> stream request, which olad does
+ * not answer, so requests are never waited for. Like the Art-Net output, every universe has a
+ * preallocated direct buffer holding its complete RPC message. The messages of all universes
+ * streamed since the last frame are written back to back with a single gathering write when
+ * the frame is flushed.</p>
+ *
+ * <p>The connection to olad is kept open. If olad closes it, for example because it is
+ * restarted, or a write does not complete within {@link #IO_TIMEOUT}, the stream drops the
+ * connection and reconnects on a later flush with an exponential backoff of
+ * {@link #MIN_BACKOFF} up to {@link #MAX_BACKOFF}. Frames are dropped while olad is not
+ * reachable. After connecting, the last frame of every universe is sent again, so olad is
+ * up to date even if unchanged universes are only refreshed with the keep alive time.</p>
+ */
 final class OlaClientDmxStream implements DmxStream {
-	private final OlaClient olaClient;
-	
-	public OlaClientDmxStream() throws Exception {
-		this.olaClient = new OlaClient();
+	/** TCP port of the RPC server of olad */
+	static final int OLA_PORT = 9010;
+	/** time in nanoseconds to wait before connecting again after the first failure */
+	static final long MIN_BACKOFF = 100000000L;
+	/** longest time in nanoseconds to wait before connecting again */
+	static final long MAX_BACKOFF = 5000000000L;
+	/** time in nanoseconds to wait for a connection or a write to complete */
+	static final long IO_TIMEOUT = 1000000000L;
+
+	private static final String OLA_HOST = "127.0.0.1";
+	// the RPC header holds the protocol version in the upper 4 bits and the message size
+	private static final int PROTOCOL_VERSION = 1;
+	private static final int SIZE_MASK = 0x0FFFFFFF;
+	private static final int HEADER_LENGTH = 4;
+	private static final int TYPE_STREAM_REQUEST = 10;
+	private static final byte[] METHOD = "StreamDmxData".getBytes(StandardCharsets.US_ASCII);
+	private static final int DMX_LENGTH = 512;
+	// header, RPC fields and DMX data fields with their largest possible varints
+	private static final int MAX_MESSAGE_LENGTH = HEADER_LENGTH + 2 + 6 + 2 + METHOD.length
+			+ 4 + 6 + 3 + DMX_LENGTH;
+	// protobuf field tags, the field number shifted left by 3 plus the wire type
+	private static final int TAG_TYPE = 1 << 3;
+	private static final int TAG_ID = 2 << 3;
+	private static final int TAG_NAME = 3 << 3 | 2;
+	private static final int TAG_BUFFER = 4 << 3 | 2;
+	private static final int TAG_UNIVERSE = 1 << 3;
+	private static final int TAG_DATA = 2 << 3 | 2;
+
+	private final InetSocketAddress address;
+	private final Selector selector;
+	private final Counter reconnects;
+	private final Counter droppedFrames;
+	// olad never answers stream requests, anything received anyway is discarded
+	private final ByteBuffer discard = ByteBuffer.allocateDirect(1024);
+	private SocketChannel channel;
+	private SelectionKey key;
+	private boolean connected;
+	private int sequence;
+	private long backoff = MIN_BACKOFF;
+	private long nextAttempt = System.nanoTime();
+	private boolean connectFailed;
+	// universes seen so far and their message buffers
+	private short[] universes = new short[0];
+	private ByteBuffer[] messages = new ByteBuffer[0];
+	// universes with a message waiting for the next batch
+	private boolean[] pending = new boolean[0];
+	private ByteBuffer[] batch = new ByteBuffer[0];
+
+	/**
+	 * Open a stream to olad on the local host.
+	 */
+	public OlaClientDmxStream(Metrics metrics) throws IOException {
+		this(new InetSocketAddress(OLA_HOST, OLA_PORT), metrics);
 	}
-	
+
+	/**
+	 * Open a stream to an RPC server at a specific address, used for testing. If the server
+	 * is not reachable yet, the stream keeps trying to connect while frames are flushed.
+	 *
+	 * @param address the address of the RPC server
+	 * @param metrics registry for the reconnect and dropped frame counters
+	 */
+	OlaClientDmxStream(InetSocketAddress address, Metrics metrics) throws IOException {
+		this.address = address;
+		selector = Selector.open();
+		reconnects = metrics.counter("dmx_ola_reconnects_total");
+		droppedFrames = metrics.counter("dmx_ola_frames_dropped_total");
+		connect();
+	}
+
+	/**
+	 * Prepare the message of a universe, it is sent with the next batch.
+	 */
 	@Override
 	public void streamDmx(short universe, short[] currentFrame) {
-		olaClient.streamDmx(universe, currentFrame);
+		encode(universe, currentFrame);
+	}
+
+	/**
+	 * Send the messages of all universes streamed since the last batch without waiting for
+	 * olad, connecting first if the stream is not connected.
+	 */
+	@Override
+	public void flush() {
+		if (channel == null && !connect()) {
+			droppedFrames.increment();
+			return;
+		}
+		int count = 0;
+		for (int i = 0; i < pending.length; i++) {
+			if (pending[i]) {
+				pending[i] = false;
+				batch[count++] = messages[i];
+			}
+		}
+		try {
+			discardReceived();
+			write(count);
+		} catch (IOException e) {
+			disconnect();
+			droppedFrames.increment();
+			System.err.println("\nLost connection to OLA: " + e.getMessage()
+					+ ", reconnecting");
+		}
+	}
+
+	/**
+	 * Write the first messages of the batch, waiting as long as the socket buffer is full.
+	 */
+	private void write(int count) throws IOException {
+		long deadline = System.nanoTime() + IO_TIMEOUT;
+		int first = 0;
+		while (true) {
+			while (first < count && !batch[first].hasRemaining()) {
+				first++;
+			}
+			if (first == count) {
+				return;
+			}
+			if (channel.write(batch, first, count - first) == 0) {
+				await(SelectionKey.OP_WRITE, deadline);
+			}
+		}
+	}
+
+	private void discardReceived() throws IOException {
+		int read;
+		do {
+			discard.clear();
+			read = channel.read(discard);
+		} while (read > 0);
+		if (read < 0) {
+			throw new EOFException("Connection closed by OLA");
+		}
+	}
+
+	/**
+	 * Wait until the channel is ready for an operation.
+	 */
+	private void await(int operation, long deadline) throws IOException {
+		key.interestOps(operation);
+		while (true) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				throw new SocketTimeoutException("Timeout waiting for OLA");
+			}
+			int ready = selector.select(Math.max(1, remaining / 1000000));
+			selector.selectedKeys().clear();
+			if (ready > 0) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Connect to olad unless the backoff of the last attempt has not passed yet.
+	 *
+	 * @return <code>true</code> if the stream is connected
+	 */
+	private boolean connect() {
+		long now = System.nanoTime();
+		if (now - nextAttempt < 0) {
+			return false;
+		}
+		try {
+			channel = SocketChannel.open();
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			key = channel.register(selector, SelectionKey.OP_CONNECT);
+			if (!channel.connect(address)) {
+				long deadline = now + IO_TIMEOUT;
+				while (!channel.finishConnect()) {
+					await(SelectionKey.OP_CONNECT, deadline);
+				}
+			}
+		} catch (IOException e) {
+			disconnect();
+			// report the first failure only instead of flooding the console every backoff
+			if (!connectFailed) {
+				connectFailed = true;
+				System.err.println("\nError connecting to OLA at " + address + ": "
+						+ e.getMessage() + ". Make sure olad is running.");
+			}
+			nextAttempt = now + backoff;
+			backoff = Math.min(2 * backoff, MAX_BACKOFF);
+			return false;
+		}
+		if (connected) {
+			reconnects.increment();
+		}
+		connected = true;
+		connectFailed = false;
+		backoff = MIN_BACKOFF;
+		// send the last frame of every universe, olad may have been restarted
+		for (int i = 0; i < messages.length; i++) {
+			messages[i].rewind();
+			pending[i] = true;
+		}
+		return true;
+	}
+
+	private void disconnect() {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// the connection is abandoned anyway
+			}
+			channel = null;
+			key = null;
+		}
+	}
+
+	/**
+	 * Write the RPC message with the DMX data of a frame into the message buffer of the
+	 * universe and mark it for the next batch.
+	 *
+	 * @param universe the universe of the frame
+	 * @param currentFrame the DMX values of the frame
+	 * @return the message buffer, ready to be written
+	 */
+	ByteBuffer encode(short universe, short[] currentFrame) {
+		int index = indexOf(universe);
+		ByteBuffer message = messages[index];
+		int length = Math.min(currentFrame.length, DMX_LENGTH);
+		// universe ids are unsigned, a negative varint would take 10 bytes
+		int universeId = universe & 0xFFFF;
+		int dmxDataSize = 1 + varintSize(universeId) + 1 + varintSize(length) + length;
+		int id = sequence++ & 0x7FFFFFFF;
+		int size = 2 + 1 + varintSize(id) + 1 + 1 + METHOD.length
+				+ 1 + varintSize(dmxDataSize) + dmxDataSize;
+
+		message.clear();
+		message.putInt((PROTOCOL_VERSION << 28) | (size & SIZE_MASK));
+		// RpcMessage with the type, the id, the method name and the request
+		message.put((byte) TAG_TYPE);
+		message.put((byte) TYPE_STREAM_REQUEST);
+		message.put((byte) TAG_ID);
+		putVarint(message, id);
+		message.put((byte) TAG_NAME);
+		message.put((byte) METHOD.length);
+		message.put(METHOD);
+		message.put((byte) TAG_BUFFER);
+		putVarint(message, dmxDataSize);
+		// DmxData with the universe and the DMX values
+		message.put((byte) TAG_UNIVERSE);
+		putVarint(message, universeId);
+		message.put((byte) TAG_DATA);
+		putVarint(message, length);
+		for (int i = 0; i < length; i++) {
+			message.put((byte) currentFrame[i]);
+		}
+		message.flip();
+		pending[index] = true;
+		return message;
 	}
-	
+
+	private static int varintSize(int value) {
+		int size = 1;
+		while ((value & ~0x7F) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	private static void putVarint(ByteBuffer buffer, int value) {
+		while ((value & ~0x7F) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	/**
+	 * Find the message buffer of a universe and create it on first use.
+	 */
+	private int indexOf(short universe) {
+		for (int i = 0; i < universes.length; i++) {
+			if (universes[i] == universe) {
+				return i;
+			}
+		}
+		int index = universes.length;
+		universes = Arrays.copyOf(universes, index + 1);
+		messages = Arrays.copyOf(messages, index + 1);
+		pending = Arrays.copyOf(pending, index + 1);
+		batch = new ByteBuffer[index + 1];
+		universes[index] = universe;
+		// olad runs on the same host and reads the header in its native byte order
+		messages[index] = ByteBuffer.allocateDirect(MAX_MESSAGE_LENGTH)
+				.order(ByteOrder.nativeOrder());
+		return index;
+	}
+
 	@Override
-	public void close() {
+	public void close() throws IOException {
+		disconnect();
+		selector.close();
 	}
 }
@@ -0,0 +1,281 @@
+package com.fieryapps.dmx.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import com.fieryapps.dmx.DmxStream;
+
+/**
+ * Records all frames into a file, optionally passing them on to another stream.
+ *
+ * <p>Every frame is stored as a record with its time since the start of the recording. A
+ * record only contains the runs of DMX values that changed since the previous frame of the
+ * same universe, so a universe that holds a step takes four bytes per frame. Once per
+ * {@link #KEYFRAME_INTERVAL} a keyframe with the complete values of all universes is
+ * stored, which allows the {@link RecordingPlayer} to seek without reading the recording
+ * from the start.</p>
+ *
+ * <p>The file is written through memory mapped regions of {@link #REGION_SIZE} bytes. A
+ * frame is encoded into a preallocated buffer and then copied into the mapped region, so
+ * recording does not allocate memory or call into the operating system per frame.</p>
+ *
+ * <h3>File format</h3>
+ * <p>All numbers are big endian. The file starts with the magic number <code>DMXR</code> and
+ * the format version (4 bytes each), followed by the records. Every record consists of:</p>
+ * <ul>
+ * <li>the length of the rest of the record (4 bytes, 0 marks the end of the recording)</li>
+ * <li>the record type, {@link #KEYFRAME} or {@link #DELTA} (1 byte)</li>
+ * <li>the time of the frame in nanoseconds since the start of the recording (8 bytes)</li>
+ * <li>the number of universes in the record (2 bytes)</li>
+ * <li>for every universe, the universe id and the number of runs (2 bytes each) followed by
+ * the runs. A run consists of the index of its first DMX value and the number of values
+ * (2 bytes each) followed by the values (1 byte each).</li>
+ * </ul>
+ */
+public final class RecordingDmxStream implements DmxStream {
+
+	/** magic number at the start of a recording */
+	static final int MAGIC = 0x444D5852;
+	static final int FORMAT_VERSION = 1;
+	static final int HEADER_LENGTH = 8;
+	/** record type containing all values of all universes */
+	static final byte KEYFRAME = 1;
+	/** record type containing the changed values since the previous frame */
+	static final byte DELTA = 2;
+	/** time between two keyframes in nanoseconds */
+	static final long KEYFRAME_INTERVAL = 1000000000L;
+	/** size of the regions of the file that are mapped at once */
+	static final int REGION_SIZE = 1 << 24;
+
+	// unchanged values between two changed values are included in the run if the gap is
+	// shorter than the header of a new run
+	private static final int MAX_GAP = 4;
+
+	private final DmxStream stream;
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	// time between two frames for recordings with a virtual clock, 0 to use the system clock
+	private final long framePeriod;
+	// mapped region of the file that is currently written
+	private MappedByteBuffer region;
+	// position of the mapped region within the file
+	private long regionStart;
+	// the current frame is encoded into this buffer before it is copied to the file
+	private ByteBuffer record = ByteBuffer.allocate(4096);
+	// values of the previous frame of every universe, in the order universes were seen
+	private short[] universes = new short[0];
+	private byte[][] previousFrames = new byte[0][];
+	// number of universes in the current record
+	private int recordUniverses;
+	private boolean keyframe;
+	private long startTime;
+	private long lastKeyframe;
+	private long frames;
+
+	/**
+	 * Record all frames with the time they are flushed.
+	 *
+	 * @param recording the file to write, an existing file is replaced
+	 * @param stream the stream to pass frames on to, may be <code>null</code>
+	 */
+	public RecordingDmxStream(File recording, DmxStream stream) throws IOException {
+		this(recording, stream, 0);
+	}
+
+	/**
+	 * Record all frames, optionally with a virtual clock.
+	 *
+	 * @param recording the file to write, an existing file is replaced
+	 * @param stream the stream to pass frames on to, may be <code>null</code>
+	 * @param framePeriod the time between two frames in nanoseconds if frames are rendered
+	 *        with a virtual clock, or 0 to record the time frames are flushed
+	 */
+	public RecordingDmxStream(File recording, DmxStream stream, long framePeriod)
+			throws IOException {
+		this.stream = stream;
+		this.framePeriod = framePeriod;
+		file = new RandomAccessFile(recording, "rw");
+		file.setLength(0);
+		channel = file.getChannel();
+		region = channel.map(FileChannel.MapMode.READ_WRITE, 0, REGION_SIZE);
+		region.putInt(MAGIC);
+		region.putInt(FORMAT_VERSION);
+		beginRecord();
+	}
+
+	@Override
+	public void streamDmx(short universe, short[] currentFrame) {
+		int index = indexOf(universe);
+		byte[] previous = previousFrames[index];
+		// a new universe is stored completely, later frames are deltas against it
+		boolean full = keyframe || previous == null || previous.length != currentFrame.length;
+		if (previous == null || previous.length != currentFrame.length) {
+			previous = new byte[currentFrame.length];
+			previousFrames[index] = previous;
+		}
+		// universe id, run count and runs, which are separated by at least MAX_GAP unchanged
+		// values, so all run headers together take less space than the values
+		ensureRecordCapacity(8 + 2 * currentFrame.length);
+
+		record.putShort(universe);
+		int runCountPosition = record.position();
+		record.putShort((short) 0);
+		int runs = 0;
+		int i = 0;
+		while (i < currentFrame.length) {
+			if (!full && (byte) currentFrame[i] == previous[i]) {
+				i++;
+				continue;
+			}
+			// find the end of the run, including short gaps of unchanged values
+			int start = i;
+			int end = i + 1;
+			if (full) {
+				end = currentFrame.length;
+			} else {
+				int gap = 0;
+				for (int j = end; j < currentFrame.length && gap < MAX_GAP; j++) {
+					if ((byte) currentFrame[j] == previous[j]) {
+						gap++;
+					} else {
+						gap = 0;
+						end = j + 1;
+					}
+				}
+			}
+			record.putShort((short) start);
+			record.putShort((short) (end - start));
+			for (int j = start; j < end; j++) {
+				byte value = (byte) currentFrame[j];
+				record.put(value);
+				previous[j] = value;
+			}
+			runs++;
+			i = end;
+		}
+
+		if (runs == 0 && !full) {
+			// leave unchanged universes out of the record
+			record.position(runCountPosition - 2);
+		} else {
+			record.putShort(runCountPosition, (short) runs);
+			recordUniverses++;
+		}
+
+		if (stream != null) {
+			stream.streamDmx(universe, currentFrame);
+		}
+	}
+
+	@Override
+	public void flush() {
+		long time;
+		if (framePeriod > 0) {
+			time = frames * framePeriod;
+		} else if (frames == 0) {
+			startTime = System.nanoTime();
+			time = 0;
+		} else {
+			time = System.nanoTime() - startTime;
+		}
+		record.put(4, keyframe ? KEYFRAME : DELTA);
+		record.putLong(5, time);
+		record.putShort(13, (short) recordUniverses);
+		record.putInt(0, record.position() - 4);
+		write();
+		frames++;
+		if (keyframe) {
+			lastKeyframe = time;
+		}
+		keyframe = time - lastKeyframe >= KEYFRAME_INTERVAL;
+		beginRecord();
+
+		if (stream != null) {
+			stream.flush();
+		}
+	}
+
+	private void beginRecord() {
+		record.clear();
+		// length, type, time and number of universes are written on flush
+		record.position(15);
+		recordUniverses = 0;
+		// the first frame is a keyframe because there are no previous values yet
+		keyframe |= frames == 0;
+	}
+
+	/**
+	 * Copy the current record into the file, mapping the next region of the file if the
+	 * current one is full. The end of the recording is always marked with a record length of
+	 * 0, which a new mapped region provides automatically.
+	 */
+	private void write() {
+		record.flip();
+		// keep room for the end mark
+		if (region.remaining() < record.remaining() + 4) {
+			regionStart += region.position();
+			try {
+				region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart,
+						Math.max(REGION_SIZE, record.remaining() + 4));
+			} catch (IOException e) {
+				throw new IllegalStateException("Error writing recording: " + e.getMessage(), e);
+			}
+		}
+		region.put(record);
+	}
+
+	private void ensureRecordCapacity(int bytes) {
+		if (record.remaining() < bytes) {
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(record.capacity() * 2,
+					record.position() + bytes));
+			record.flip();
+			larger.put(record);
+			record = larger;
+		}
+	}
+
+	/**
+	 * Find the index of a universe, adding it without a previous frame on first use.
+	 */
+	private int indexOf(short universe) {
+		for (int i = 0; i < universes.length; i++) {
+			if (universes[i] == universe) {
+				return i;
+			}
+		}
+		int index = universes.length;
+		universes = Arrays.copyOf(universes, index + 1);
+		previousFrames = Arrays.copyOf(previousFrames, index + 1);
+		universes[index] = universe;
+		return index;
+	}
+
+	/**
+	 * @return the number of recorded frames
+	 */
+	public long getFrames() {
+		return frames;
+	}
+
+	@Override
+	public void close() throws Exception {
+		try {
+			// cut off the unused part of the last mapped region, keeping the end mark
+			long length = regionStart + region.position() + 4;
+			region.force();
+			region = null;
+			channel.truncate(length);
+			channel.close();
+			file.close();
+		} finally {
+			if (stream != null) {
+				stream.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,253 @@
+package com.fieryapps.dmx.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+import com.fieryapps.dmx.DmxStream;
+
+/**
+ * Plays a recording of a {@link RecordingDmxStream} through another stream.
+ *
+ * <p>The recording is memory mapped and decoded in place, so playing even a long recording
+ * needs little memory and no allocation per frame. Frames are sent at their recorded times
+ * relative to absolute deadlines, so the timing of the rehearsal is preserved and waiting
+ * does not add up over time.</p>
+ *
+ * <p>When opening a recording, the positions of all keyframes are collected by skipping from
+ * record to record. Seeking starts decoding at the last keyframe before the target time, so
+ * at most {@link RecordingDmxStream#KEYFRAME_INTERVAL} of frames are decoded per seek.</p>
+ */
+public final class RecordingPlayer {
+
+	private final MappedByteBuffer recording;
+	// end of the last complete record
+	private final int end;
+	// times and positions of all keyframes, in the order they were recorded
+	private long[] keyframeTimes = new long[16];
+	private int[] keyframePositions = new int[16];
+	private int keyframes;
+	private long frames;
+	private long duration;
+	// position of the next record to play
+	private int position = RecordingDmxStream.HEADER_LENGTH;
+	// values of all universes up to the last decoded frame
+	private short[] universes = new short[0];
+	private short[][] values = new short[0][];
+	private int universeCount;
+	private volatile boolean stop;
+
+	/**
+	 * Open a recording.
+	 *
+	 * @param file the recording
+	 * @throws IOException if the file can not be read or is not a recording
+	 */
+	public RecordingPlayer(File file) throws IOException {
+		try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+			long length = input.length();
+			if (length > Integer.MAX_VALUE) {
+				throw new IOException("Recording is larger than 2 GB");
+			}
+			// the mapping remains valid after closing the file
+			recording = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+		}
+		if (recording.limit() < RecordingDmxStream.HEADER_LENGTH
+				|| recording.getInt(0) != RecordingDmxStream.MAGIC) {
+			throw new IOException("Not a DMX recording");
+		}
+		if (recording.getInt(4) != RecordingDmxStream.FORMAT_VERSION) {
+			throw new IOException("Unsupported recording version " + recording.getInt(4));
+		}
+		end = index();
+	}
+
+	/**
+	 * Collect the keyframes and find the end of the recording. A recording that was not
+	 * closed properly ends with the last complete record.
+	 *
+	 * @return the position after the last record
+	 */
+	private int index() {
+		int current = RecordingDmxStream.HEADER_LENGTH;
+		while (current <= recording.limit() - 4) {
+			int length = recording.getInt(current);
+			if (length < 11 || length > recording.limit() - current - 4) {
+				break;
+			}
+			long time = recording.getLong(current + 5);
+			if (recording.get(current + 4) == RecordingDmxStream.KEYFRAME) {
+				if (keyframes == keyframeTimes.length) {
+					keyframeTimes = Arrays.copyOf(keyframeTimes, keyframes * 2);
+					keyframePositions = Arrays.copyOf(keyframePositions, keyframes * 2);
+				}
+				keyframeTimes[keyframes] = time;
+				keyframePositions[keyframes] = current;
+				keyframes++;
+			}
+			duration = time;
+			frames++;
+			current += 4 + length;
+		}
+		return current;
+	}
+
+	/**
+	 * @return the time of the last frame in nanoseconds
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	/**
+	 * @return the number of frames in the recording
+	 */
+	public long getFrames() {
+		return frames;
+	}
+
+	/**
+	 * @return the time of the next frame to play in nanoseconds, or the duration if all frames
+	 *         have been played
+	 */
+	public long getPosition() {
+		return position < end ? recording.getLong(position + 5) : duration;
+	}
+
+	/**
+	 * Continue playing with the first frame at or after the given time. The values of all
+	 * universes are restored from the preceding frames, so the first frame played after
+	 * seeking is complete.
+	 *
+	 * @param time time since the start of the recording in nanoseconds
+	 */
+	public void seek(long time) {
+		// find the last keyframe at or before the target time
+		int low = 0;
+		int high = keyframes - 1;
+		int keyframe = -1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (keyframeTimes[middle] <= time) {
+				keyframe = middle;
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		// a keyframe contains all universes seen so far, forget the values of later frames
+		universeCount = 0;
+		position = keyframe < 0 ? RecordingDmxStream.HEADER_LENGTH
+				: keyframePositions[keyframe];
+		while (position < end && recording.getLong(position + 5) < time) {
+			decodeFrame();
+		}
+	}
+
+	/**
+	 * Play all remaining frames through a stream at their recorded times. Playing starts
+	 * immediately with the next frame and ends at the end of the recording or when
+	 * {@link #stop()} is called. Playing again continues with the next frame.
+	 *
+	 * @param output the stream to send the frames to
+	 * @return the number of frames sent
+	 */
+	public long play(DmxStream output) {
+		stop = false;
+		long start = System.nanoTime();
+		long firstFrame = getPosition();
+		long sent = 0;
+		while (position < end && !stop) {
+			long deadline = start + recording.getLong(position + 5) - firstFrame;
+			long remaining = deadline - System.nanoTime();
+			// parking may return early, so park again until the frame is due
+			while (remaining > 0 && !stop) {
+				LockSupport.parkNanos(remaining);
+				remaining = deadline - System.nanoTime();
+			}
+			if (stop) {
+				break;
+			}
+			decodeFrame();
+			for (int i = 0; i < universeCount; i++) {
+				output.streamDmx(universes[i], values[i]);
+			}
+			output.flush();
+			sent++;
+		}
+		return sent;
+	}
+
+	/**
+	 * Stop playing. May be called from any thread.
+	 */
+	public void stop() {
+		stop = true;
+	}
+
+	/**
+	 * Apply the record at the current position to the values of all universes and move on to
+	 * the next record.
+	 */
+	void decodeFrame() {
+		int length = recording.getInt(position);
+		int universesInRecord = recording.getShort(position + 13);
+		int current = position + 15;
+		for (int i = 0; i < universesInRecord; i++) {
+			int index = indexOf(recording.getShort(current));
+			int runs = recording.getShort(current + 2);
+			current += 4;
+			for (int j = 0; j < runs; j++) {
+				int start = recording.getShort(current);
+				int count = recording.getShort(current + 2);
+				current += 4;
+				short[] frame = values[index];
+				if (frame.length < start + count) {
+					// the first record of a universe contains all of its values
+					frame = Arrays.copyOf(frame, start + count);
+					values[index] = frame;
+				}
+				for (int k = 0; k < count; k++) {
+					frame[start + k] = (short) (recording.get(current + k) & 0xFF);
+				}
+				current += count;
+			}
+		}
+		position += 4 + length;
+	}
+
+	/**
+	 * Find the index of a universe, adding it without values on first use.
+	 */
+	private int indexOf(short universe) {
+		for (int i = 0; i < universeCount; i++) {
+			if (universes[i] == universe) {
+				return i;
+			}
+		}
+		if (universeCount == universes.length) {
+			universes = Arrays.copyOf(universes, universeCount + 1);
+			values = Arrays.copyOf(values, universeCount + 1);
+		}
+		universes[universeCount] = universe;
+		values[universeCount] = new short[0];
+		return universeCount++;
+	}
+
+	/**
+	 * @return the values of a universe after the last decoded frame, or <code>null</code> if
+	 *         the universe has not been recorded yet
+	 */
+	short[] getValues(short universe) {
+		for (int i = 0; i < universeCount; i++) {
+			if (universes[i] == universe) {
+				return values[i];
+			}
+		}
+		return null;
+	}
+}
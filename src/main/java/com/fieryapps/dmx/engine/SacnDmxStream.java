@@ -0,0 +1,251 @@
+package com.fieryapps.dmx.engine;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+import com.fieryapps.dmx.DmxStream;
+import com.fieryapps.dmx.model.CompiledShow;
+
+/**
+ * Sends DMX frames as sACN (ANSI E1.31) data packets.
+ *
+ * <p>By default every universe is sent to its own multicast group
+ * <code>239.255.&lt;high byte&gt;.&lt;low byte&gt;</code>, so receivers only get the
+ * universes they subscribed to. With a unicast address, all universes are sent to this
+ * address instead.</p>
+ *
+ * <p>Like the {@link ArtnetDmxStream}, every universe has its own preallocated direct buffer
+ * which holds the complete packet including its priority and destination. Only the sequence
+ * number and the DMX data are updated for each frame, so streaming does not allocate any
+ * memory once all universes have been sent for the first time. When the stream is closed,
+ * receivers are told that the stream terminated, so they release the universes at once
+ * instead of waiting for a timeout.</p>
+ */
+class SacnDmxStream implements DmxStream {
+	/** UDP port used by sACN */
+	static final int SACN_PORT = 5568;
+	/** priority of universes without a configured priority */
+	static final int DEFAULT_PRIORITY = 100;
+
+	private static final byte[] ID = {'A', 'S', 'C', '-', 'E', '1', '.', '1', '7', 0, 0, 0};
+	private static final int VECTOR_ROOT_DATA = 0x00000004;
+	private static final int VECTOR_FRAMING_DATA = 0x00000002;
+	private static final int VECTOR_DMP_SET_PROPERTY = 0x02;
+	private static final int FLAGS = 0x7000;
+	private static final int SOURCE_NAME_LENGTH = 64;
+	private static final int PRIORITY_OFFSET = 108;
+	private static final int SEQUENCE_OFFSET = 111;
+	private static final int OPTIONS_OFFSET = 112;
+	private static final int HEADER_LENGTH = 126;
+	private static final int DMX_LENGTH = 512;
+	private static final byte OPTION_STREAM_TERMINATED = 0x40;
+	// receivers are told three times that the stream terminated
+	private static final int TERMINATION_PACKETS = 3;
+
+	private final DatagramChannel channel;
+	// unicast receiver, null to send every universe to its multicast group
+	private final InetAddress address;
+	private final int port;
+	private final byte[] sourceName;
+	private final byte[] cid;
+	// universes of the show and their priorities
+	private final short[] priorityUniverses;
+	private final int[] priorities;
+	// universes seen so far and their packet buffers, destinations and sequence numbers
+	private short[] universes = new short[0];
+	private ByteBuffer[] packets = new ByteBuffer[0];
+	private InetSocketAddress[] targets = new InetSocketAddress[0];
+	private byte[] sequences = new byte[0];
+	private boolean sendFailed;
+
+	/**
+	 * Open a stream with the sACN settings of a show.
+	 */
+	public SacnDmxStream(CompiledShow show) throws IOException {
+		this(show.getOutput().getAddress(), show.getOutput().getNetworkInterface() == null
+				? null : findInterface(show.getOutput().getNetworkInterface()),
+				show.getOutput().getSourceName(), show.getOutput().getCid() == null ? null 
+				: UUID.fromString(show.getOutput().getCid()), show.getUniverses(),
+				show.getOutput().getPriorities(), SACN_PORT);
+	}
+
+	/**
+	 * @param address if not <code>null</code>, DMX is sent with unicast to this address
+	 * @param networkInterface the interface to send multicast on, <code>null</code> for the
+	 *        default interface
+	 * @param sourceName the name of this source shown by receivers
+	 * @param cid the component identifier of this source, <code>null</code> to use a random 
+	 *        one
+	 * @param priorityUniverses universes with a priority
+	 * @param priorities the priorities of the universes from 0 to 200
+	 * @param port the UDP port to send to
+	 */
+	SacnDmxStream(String address, NetworkInterface networkInterface, String sourceName,
+			UUID cid, short[] priorityUniverses, int[] priorities, int port) throws IOException {
+		this.address = address == null ? null : InetAddress.getByName(address);
+		this.port = port;
+		this.priorityUniverses = priorityUniverses;
+		this.priorities = priorities;
+		byte[] name = sourceName.getBytes(StandardCharsets.UTF_8);
+		// the name is null terminated
+		this.sourceName = Arrays.copyOf(name, Math.min(name.length, SOURCE_NAME_LENGTH - 1));
+		// every source needs its own component identifier, even if sources share their name
+		UUID uuid = cid;
+		if (uuid == null) {
+			uuid = UUID.randomUUID();
+			System.out.println("sACN cid: " + uuid + ", set cid in the show to keep it");
+		}
+		this.cid = ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits())
+				.putLong(uuid.getLeastSignificantBits()).array();
+		channel = DatagramChannel.open(StandardProtocolFamily.INET);
+		if (networkInterface != null) {
+			channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface);
+		}
+	}
+
+	private static NetworkInterface findInterface(String name) throws SocketException {
+		NetworkInterface networkInterface = NetworkInterface.getByName(name);
+		if (networkInterface == null) {
+			throw new SocketException("Network interface " + name + " does not exist");
+		}
+		return networkInterface;
+	}
+
+	@Override
+	public void streamDmx(short universe, short[] currentFrame) {
+		int index = indexOf(universe);
+		send(index, encode(index, currentFrame));
+	}
+
+	private void send(int index, ByteBuffer packet) {
+		try {
+			channel.send(packet, targets[index]);
+		} catch (IOException e) {
+			// report the first error only instead of flooding the console every frame
+			if (!sendFailed) {
+				sendFailed = true;
+				System.err.println("\nError sending sACN packet: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Write the next sequence number and the DMX data of a frame into the packet buffer of
+	 * the universe.
+	 *
+	 * @param index the index of the universe
+	 * @param currentFrame the DMX values of the frame
+	 * @return the packet buffer, ready to be sent
+	 */
+	private ByteBuffer encode(int index, short[] currentFrame) {
+		ByteBuffer packet = packets[index];
+		// sequence numbers wrap around from 255 to 0
+		sequences[index]++;
+		packet.put(SEQUENCE_OFFSET, sequences[index]);
+		int length = Math.min(currentFrame.length, DMX_LENGTH);
+		for (int i = 0; i < length; i++) {
+			packet.put(HEADER_LENGTH + i, (byte) currentFrame[i]);
+		}
+		packet.clear();
+		return packet;
+	}
+
+	/**
+	 * Find the packet buffer of a universe and create it on first use.
+	 */
+	private int indexOf(short universe) {
+		for (int i = 0; i < universes.length; i++) {
+			if (universes[i] == universe) {
+				return i;
+			}
+		}
+		int index = universes.length;
+		universes = Arrays.copyOf(universes, index + 1);
+		packets = Arrays.copyOf(packets, index + 1);
+		targets = Arrays.copyOf(targets, index + 1);
+		sequences = Arrays.copyOf(sequences, index + 1);
+		universes[index] = universe;
+		packets[index] = createPacket(universe);
+		targets[index] = new InetSocketAddress(address != null ? address
+				: multicastAddress(universe), port);
+		return index;
+	}
+
+	/**
+	 * @return the multicast group of a universe, 239.255.0.0 plus the universe number
+	 */
+	static InetAddress multicastAddress(short universe) {
+		try {
+			return InetAddress.getByAddress(new byte[] {
+					(byte) 239, (byte) 255, (byte) (universe >> 8), (byte) universe});
+		} catch (IOException e) {
+			// an address of four bytes is always valid
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private ByteBuffer createPacket(short universe) {
+		int priority = DEFAULT_PRIORITY;
+		for (int i = 0; i < priorityUniverses.length; i++) {
+			if (priorityUniverses[i] == universe) {
+				priority = priorities[i];
+			}
+		}
+		ByteBuffer packet = ByteBuffer.allocateDirect(HEADER_LENGTH + DMX_LENGTH);
+		// root layer: preamble size, postamble size and identifier
+		packet.putShort((short) 0x0010);
+		packet.putShort((short) 0);
+		packet.put(ID);
+		packet.putShort((short) (FLAGS | (packet.capacity() - packet.position())));
+		packet.putInt(VECTOR_ROOT_DATA);
+		packet.put(cid);
+		// framing layer
+		packet.putShort((short) (FLAGS | (packet.capacity() - packet.position())));
+		packet.putInt(VECTOR_FRAMING_DATA);
+		packet.put(sourceName);
+		packet.position(PRIORITY_OFFSET);
+		packet.put((byte) priority);
+		// synchronization address, sequence number and options
+		packet.putShort((short) 0);
+		packet.put((byte) 0);
+		packet.put((byte) 0);
+		packet.putShort(universe);
+		// DMP layer: one start code and 512 DMX values starting at property address 0
+		packet.putShort((short) (FLAGS | (packet.capacity() - packet.position())));
+		packet.put((byte) VECTOR_DMP_SET_PROPERTY);
+		packet.put((byte) 0xa1);
+		packet.putShort((short) 0);
+		packet.putShort((short) 1);
+		packet.putShort((short) (DMX_LENGTH + 1));
+		packet.put((byte) 0);
+		return packet;
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (int i = 0; i < universes.length; i++) {
+			packets[i].put(OPTIONS_OFFSET, OPTION_STREAM_TERMINATED);
+			for (int j = 0; j < TERMINATION_PACKETS; j++) {
+				sequences[i]++;
+				packets[i].put(SEQUENCE_OFFSET, sequences[i]);
+				packets[i].clear();
+				send(i, packets[i]);
+			}
+		}
+		channel.close();
+	}
+}
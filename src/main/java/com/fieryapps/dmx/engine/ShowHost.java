@@ -0,0 +1,216 @@
+package com.fieryapps.dmx.engine;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import com.fieryapps.dmx.DmxStream;
+import com.fieryapps.dmx.metrics.Metrics;
+import com.fieryapps.dmx.model.CompiledShow;
+
+/**
+ * Runs the engines of several shows, for example one show per room, in a single process.
+ *
+ * <p>Instead of a render thread per engine that sleeps until the next frame, all engines wait
+ * in a single queue ordered by the deadline of their next frame. A small number of host
+ * threads take the engine whose frame is due, render the frame and put the engine back with
+ * its next deadline. An engine is therefore never rendered by two threads at once, and a
+ * show that takes long to render only delays its own frames while the other shows continue
+ * on the remaining threads. Large shows render their universes in a single fork/join pool
+ * shared by all engines, which is only created once the first show that renders in
+ * parallel is added.</p>
+ *
+ * <p>Every engine keeps its own output, whose network I/O runs on a separate thread (see
+ * {@link DmxStreams}), so a slow or unreachable output of one room never stalls another
+ * room. Engines are controlled like a single engine, for example with
+ * {@link Engine#triggerKey(int)} or {@link Engine#stop()}. As frames are not rendered on a
+ * dedicated thread, the spin time of the shows is not used.</p>
+ *
+ * <p>Only rendering is shared. The output, trigger, timecode and monitor threads of every
+ * show are kept, so their number grows with the number of shows. They spend nearly all of
+ * their time blocked in I/O, and sharing them would let one room delay the others.</p>
+ */
+public final class ShowHost implements AutoCloseable {
+
+	// time to wait for the engines to render their last frame when the host is closed
+	private static final long STOP_TIMEOUT = 1000;
+
+	// all started engines
+	private final List<HostedEngine> engines = new CopyOnWriteArrayList<HostedEngine>();
+	// engines waiting for their next frame, ordered by its deadline
+	private final DelayQueue<HostedEngine> queue = new DelayQueue<HostedEngine>();
+	// pool shared by all shows rendering their universes in parallel, created on first use
+	private ForkJoinPool renderPool;
+	private final Thread[] threads;
+	private volatile boolean closed;
+
+	/**
+	 * Engine waiting in the queue of the host.
+	 */
+	private static final class HostedEngine implements Delayed {
+		private final Engine engine;
+		private final CountDownLatch stopped = new CountDownLatch(1);
+		// deadline of the next frame in nanoseconds
+		private long deadline;
+
+		HostedEngine(Engine engine) {
+			this.engine = engine;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			long difference = deadline - ((HostedEngine) other).deadline;
+			return difference < 0 ? -1 : difference > 0 ? 1 : 0;
+		}
+	}
+
+	/**
+	 * Start the host threads.
+	 *
+	 * @param threadCount the number of threads rendering the frames of all engines
+	 */
+	public ShowHost(int threadCount) {
+		if (threadCount < 1) {
+			throw new IllegalArgumentException("At least one thread is required: "
+					+ threadCount);
+		}
+		threads = new Thread[threadCount];
+		for (int i = 0; i < threadCount; i++) {
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					renderFrames();
+				}
+			}, "Show host " + (i + 1));
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+	}
+
+	/**
+	 * Create an engine for a show. The engine is not started until it is passed to
+	 * {@link #start(Engine)}, so trigger ports can be added first.
+	 *
+	 * @param show the compiled show
+	 * @param dmxStream the output of the show
+	 * @param metrics registry for the metrics of the show
+	 * @return the new engine
+	 */
+	public Engine createEngine(CompiledShow show, DmxStream dmxStream, Metrics metrics) {
+		ForkJoinPool pool = Engine.getRenderParallelism(show) > 1 ? getRenderPool() : null;
+		return new Engine(show, dmxStream, metrics, pool);
+	}
+
+	/**
+	 * @return <code>true</code> once a show rendering its universes in parallel was added
+	 */
+	synchronized boolean isRenderPoolCreated() {
+		return renderPool != null;
+	}
+
+	private synchronized ForkJoinPool getRenderPool() {
+		if (renderPool == null) {
+			renderPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		}
+		return renderPool;
+	}
+
+	/**
+	 * Start rendering the frames of an engine created by this host.
+	 *
+	 * @param engine the engine to start
+	 */
+	public void start(Engine engine) {
+		HostedEngine hosted = new HostedEngine(engine);
+		engine.startFrames();
+		hosted.deadline = engine.getNextDeadline();
+		engines.add(hosted);
+		queue.put(hosted);
+	}
+
+	/**
+	 * Wait until an engine has been stopped and rendered its last frame.
+	 *
+	 * @param engine the engine to wait for
+	 */
+	public void awaitStopped(Engine engine) throws InterruptedException {
+		HostedEngine hosted = find(engine);
+		if (hosted != null) {
+			hosted.stopped.await();
+		}
+	}
+
+	private HostedEngine find(Engine engine) {
+		for (HostedEngine hosted : engines) {
+			if (hosted.engine == engine) {
+				return hosted;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Render the frames of the engine due next, until the host is closed.
+	 */
+	private void renderFrames() {
+		while (!closed) {
+			HostedEngine hosted;
+			try {
+				hosted = queue.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			boolean running;
+			try {
+				running = hosted.engine.renderNextFrame(System.nanoTime());
+			} catch (RuntimeException e) {
+				// the other shows keep running
+				System.err.println("\nError rendering show: " + e.getMessage());
+				e.printStackTrace(System.err);
+				running = false;
+			}
+			if (running) {
+				hosted.deadline = hosted.engine.getNextDeadline();
+				queue.put(hosted);
+			} else {
+				hosted.engine.release();
+				hosted.stopped.countDown();
+			}
+		}
+	}
+
+	/**
+	 * Stop all engines, wait until they rendered their last frame and stop the host threads.
+	 */
+	@Override
+	public void close() throws InterruptedException {
+		if (closed) {
+			return;
+		}
+		for (HostedEngine hosted : engines) {
+			hosted.engine.stop();
+		}
+		for (HostedEngine hosted : engines) {
+			hosted.stopped.await(STOP_TIMEOUT, TimeUnit.MILLISECONDS);
+		}
+		closed = true;
+		for (Thread thread : threads) {
+			thread.interrupt();
+			thread.join(STOP_TIMEOUT);
+		}
+		synchronized (this) {
+			if (renderPool != null) {
+				renderPool.shutdown();
+			}
+		}
+	}
+}
@@ -0,0 +1,256 @@
+package com.fieryapps.dmx.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fieryapps.dmx.model.CompiledGroup;
+import com.fieryapps.dmx.model.CompiledShow;
+import com.fieryapps.dmx.model.ShowCompiler;
+
+/**
+ * The grand master and the submasters of all channel groups of a show.
+ *
+ * <p>The grand master scales all dimmer channels in 10 steps, every group submaster scales
+ * the channels of its group from 0 to 255. Addresses scaled by the same combination of
+ * masters share a lookup table with the scaled value of every DMX value, so scaling a value
+ * while rendering is a single array access, no matter how many groups a show has. Tables
+ * are only calculated again when one of their masters changes, which increases the version
+ * so renderers know that they have to scale their current values again.</p>
+ *
+ * <p>Masters are changed by the engine thread before a frame is rendered, so the render
+ * threads never read a table that is being modified.</p>
+ */
+final class Submasters {
+
+	/** highest value of the grand master */
+	static final int FULL_GRAND_MASTER = 10;
+	/** highest value of a group submaster */
+	static final int FULL_MASTER = 255;
+
+	private static final int VALUES = 256;
+	// lookup table of all addresses that are not scaled, never modified
+	private static final short[] IDENTITY = new short[VALUES];
+
+	static {
+		for (int i = 0; i < VALUES; i++) {
+			IDENTITY[i] = (short) i;
+		}
+	}
+
+	private final String[] groupNames;
+	private final int[] masters;
+	private int grandMaster = FULL_GRAND_MASTER;
+	// lookup table of every address of every universe, shared by addresses of the same class
+	private final short[][][] scaling;
+	// addresses of every universe which are scaled by at least one master
+	private final int[][] scaledAddresses;
+	// lookup table, scaling by the grand master and groups of every class
+	private final short[][] tables;
+	private final boolean[] classDimmed;
+	private final int[][] classGroups;
+	private int version;
+
+	/**
+	 * Create the masters of a show, all set to their initial values.
+	 */
+	Submasters(CompiledShow show) {
+		this(show, null);
+	}
+
+	/**
+	 * Create the masters of a reloaded show. The grand master and the submasters of groups
+	 * which still exist keep their values.
+	 *
+	 * @param show the show
+	 * @param previous the masters of the previous version of the show, may be
+	 *        <code>null</code>
+	 */
+	Submasters(CompiledShow show, Submasters previous) {
+		CompiledGroup[] groups = show.getGroups();
+		groupNames = new String[groups.length];
+		masters = new int[groups.length];
+		for (int i = 0; i < groups.length; i++) {
+			groupNames[i] = groups[i].getName();
+			int previousGroup = previous == null ? -1 : previous.indexOf(groupNames[i]);
+			masters[i] = previousGroup >= 0 ? previous.masters[previousGroup]
+					: groups[i].getMaster();
+		}
+		if (previous != null) {
+			grandMaster = previous.grandMaster;
+		}
+
+		int universes = show.getUniverses().length;
+		scaling = new short[universes][ShowCompiler.UNIVERSE_SIZE][];
+		scaledAddresses = new int[universes][];
+		// every class is identified by its dimmer flag followed by its groups
+		Map<List<Integer>, Integer> classes = new HashMap<List<Integer>, Integer>();
+		List<List<Integer>> classKeys = new ArrayList<List<Integer>>();
+		int[][] addressClasses = new int[universes][ShowCompiler.UNIVERSE_SIZE];
+		for (int universe = 0; universe < universes; universe++) {
+			List<List<Integer>> keys = new ArrayList<List<Integer>>();
+			for (int i = 0; i < ShowCompiler.UNIVERSE_SIZE; i++) {
+				keys.add(new ArrayList<Integer>(Arrays.asList(0)));
+			}
+			for (int address : show.getDimmerChannels(universe)) {
+				keys.get(address).set(0, 1);
+			}
+			for (int group = 0; group < groups.length; group++) {
+				if (groups[group].getUniverse() == universe) {
+					for (int address : groups[group].getAddresses()) {
+						List<Integer> key = keys.get(address);
+						if (!key.subList(1, key.size()).contains(group)) {
+							key.add(group);
+						}
+					}
+				}
+			}
+
+			int[] scaled = new int[ShowCompiler.UNIVERSE_SIZE];
+			int scaledCount = 0;
+			for (int address = 0; address < ShowCompiler.UNIVERSE_SIZE; address++) {
+				List<Integer> key = keys.get(address);
+				if (key.size() == 1 && key.get(0) == 0) {
+					continue;
+				}
+				Integer scaleClass = classes.get(key);
+				if (scaleClass == null) {
+					scaleClass = classKeys.size();
+					classes.put(key, scaleClass);
+					classKeys.add(key);
+				}
+				addressClasses[universe][address] = scaleClass;
+				scaled[scaledCount++] = address;
+			}
+			scaledAddresses[universe] = Arrays.copyOf(scaled, scaledCount);
+		}
+
+		tables = new short[classKeys.size()][VALUES];
+		classDimmed = new boolean[classKeys.size()];
+		classGroups = new int[classKeys.size()][];
+		for (int i = 0; i < tables.length; i++) {
+			List<Integer> key = classKeys.get(i);
+			classDimmed[i] = key.get(0) == 1;
+			classGroups[i] = new int[key.size() - 1];
+			for (int j = 0; j < classGroups[i].length; j++) {
+				classGroups[i][j] = key.get(j + 1);
+			}
+			calculateTable(i);
+		}
+		for (int universe = 0; universe < universes; universe++) {
+			Arrays.fill(scaling[universe], IDENTITY);
+			for (int address : scaledAddresses[universe]) {
+				scaling[universe][address] = tables[addressClasses[universe][address]];
+			}
+		}
+	}
+
+	/**
+	 * Calculate the lookup table of a class from the current values of its masters.
+	 */
+	private void calculateTable(int scaleClass) {
+		// the scale factor is kept as an exact fraction until the values are rounded
+		double numerator = classDimmed[scaleClass] ? grandMaster : 1;
+		double denominator = classDimmed[scaleClass] ? FULL_GRAND_MASTER : 1;
+		for (int group : classGroups[scaleClass]) {
+			numerator *= masters[group];
+			denominator *= FULL_MASTER;
+		}
+		short[] table = tables[scaleClass];
+		for (int value = 0; value < VALUES; value++) {
+			table[value] = (short) Math.round(value * numerator / denominator);
+		}
+	}
+
+	/**
+	 * @param universe the index of the universe within the show
+	 * @return the lookup table of every address of the universe
+	 */
+	short[][] getScaling(int universe) {
+		return scaling[universe];
+	}
+
+	/**
+	 * @param universe the index of the universe within the show
+	 * @return the addresses of the universe which are scaled by at least one master
+	 */
+	int[] getScaledAddresses(int universe) {
+		return scaledAddresses[universe];
+	}
+
+	/**
+	 * @return a number which changes whenever a master changes
+	 */
+	int getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return the grand master from 0 to 10
+	 */
+	int getGrandMaster() {
+		return grandMaster;
+	}
+
+	/**
+	 * Set the grand master and calculate the tables of all dimmer channels again.
+	 *
+	 * @param value the grand master from 0 to 10
+	 */
+	void setGrandMaster(int value) {
+		if (value == grandMaster) {
+			return;
+		}
+		grandMaster = value;
+		for (int i = 0; i < tables.length; i++) {
+			if (classDimmed[i]) {
+				calculateTable(i);
+			}
+		}
+		version++;
+	}
+
+	int getGroupCount() {
+		return masters.length;
+	}
+
+	/**
+	 * @param group the index of the group
+	 * @return the submaster of the group from 0 to 255
+	 */
+	int getMaster(int group) {
+		return masters[group];
+	}
+
+	/**
+	 * Set the submaster of a group and calculate the tables of its channels again.
+	 *
+	 * @param group the index of the group
+	 * @param value the submaster from 0 to 255
+	 */
+	void setMaster(int group, int value) {
+		if (value == masters[group]) {
+			return;
+		}
+		masters[group] = value;
+		for (int i = 0; i < tables.length; i++) {
+			for (int classGroup : classGroups[i]) {
+				if (classGroup == group) {
+					calculateTable(i);
+				}
+			}
+		}
+		version++;
+	}
+
+	private int indexOf(String groupName) {
+		for (int i = 0; i < groupNames.length; i++) {
+			if (groupNames[i].equals(groupName)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,165 @@
+package com.fieryapps.dmx.engine;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Receives the position of an external clock as Art-Net timecode (ArtTimeCode) datagrams,
+ * for example from the audio workstation playing the backing track of a show.
+ *
+ * <p>Timecode arrives once per timecode frame with some network jitter, so the listener does
+ * not jump to every received position. It keeps an anchor, a position and the time it was
+ * received, and runs the clock from the anchor with {@link System#nanoTime()}. A new anchor
+ * is only set when the received position differs by more than {@link #TOLERANCE} from the
+ * running clock, or when the timecode starts again after it stopped. If no timecode arrives
+ * for a timecode frame, the clock holds its position until timecode is received again.</p>
+ *
+ * <p>Drop frame timecode is treated as 30 frames per second, which differs from the real
+ * time by less than a frame.</p>
+ */
+final class TimecodeListener implements Runnable, AutoCloseable {
+
+	/** maximum difference in nanoseconds between the clock and the received timecode */
+	static final long TOLERANCE = 50000000L;
+
+	private static final int MAX_DATAGRAM_SIZE = 512;
+	private static final byte[] ID = {'A', 'r', 't', '-', 'N', 'e', 't', 0};
+	private static final int OP_TIME_CODE = 0x9700;
+	private static final int PACKET_LENGTH = 19;
+	// frames per second of the timecode types film, EBU, drop frame and SMPTE
+	private static final int[] FRAME_RATES = {24, 25, 30, 30};
+
+	private final DatagramChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+	private final Thread thread;
+	// arrival time of the last timecode, written before the anchor
+	private volatile long lastReceived;
+	private volatile Anchor anchor;
+
+	/**
+	 * Position of the timecode at a point in time, replaced when the timecode jumps.
+	 */
+	private static final class Anchor {
+		// position in nanoseconds
+		private final long position;
+		// time the position was received in nanoseconds
+		private final long time;
+		// duration of a timecode frame in nanoseconds
+		private final long framePeriod;
+
+		Anchor(long position, long time, long framePeriod) {
+			this.position = position;
+			this.time = time;
+			this.framePeriod = framePeriod;
+		}
+	}
+
+	/**
+	 * Bind the timecode port and start receiving datagrams.
+	 *
+	 * @param address local address to listen on
+	 */
+	TimecodeListener(InetSocketAddress address) throws IOException {
+		channel = DatagramChannel.open();
+		channel.bind(address);
+		thread = new Thread(this, "Timecode " + address.getPort());
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * @return the local port the listener is bound to
+	 */
+	int getPort() throws IOException {
+		return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+	}
+
+	/**
+	 * Calculate the position of the external clock. May be called from any thread.
+	 *
+	 * @param now the time in nanoseconds, see {@link System#nanoTime()}
+	 * @return the position in nanoseconds, or -1 if no timecode has been received yet
+	 */
+	long getPosition(long now) {
+		// the anchor is read first, so the arrival time is at least as new as the anchor
+		Anchor current = anchor;
+		if (current == null) {
+			return -1;
+		}
+		// run until the next timecode is overdue, then hold the position
+		long time = Math.min(now, lastReceived + current.framePeriod);
+		return current.position + Math.max(0, time - current.time);
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (true) {
+				buffer.clear();
+				channel.receive(buffer);
+				long timestamp = System.nanoTime();
+				buffer.flip();
+				parseTimecode(timestamp);
+			}
+		} catch (ClosedChannelException e) {
+			// the listener has been closed
+		} catch (IOException e) {
+			e.printStackTrace(System.err);
+		}
+	}
+
+	/**
+	 * Parse an ArtTimeCode packet, other packets are ignored.
+	 */
+	private void parseTimecode(long timestamp) {
+		if (buffer.remaining() < PACKET_LENGTH) {
+			return;
+		}
+		for (int i = 0; i < ID.length; i++) {
+			if (buffer.get(i) != ID[i]) {
+				return;
+			}
+		}
+		int opCode = (buffer.get(8) & 0xFF) | (buffer.get(9) & 0xFF) << 8;
+		int frames = buffer.get(14);
+		int seconds = buffer.get(15);
+		int minutes = buffer.get(16);
+		int hours = buffer.get(17);
+		int type = buffer.get(18);
+		if (opCode != OP_TIME_CODE || type < 0 || type >= FRAME_RATES.length
+				|| frames < 0 || frames >= FRAME_RATES[type] || seconds < 0 || seconds > 59
+				|| minutes < 0 || minutes > 59 || hours < 0 || hours > 23) {
+			return;
+		}
+		long framePeriod = 1000000000L / FRAME_RATES[type];
+		long position = ((hours * 60L + minutes) * 60 + seconds) * 1000000000L
+				+ frames * framePeriod;
+		received(position, timestamp, framePeriod);
+	}
+
+	/**
+	 * Move the clock to a received position, if it differs from the running clock.
+	 *
+	 * @param position the received position in nanoseconds
+	 * @param timestamp the arrival time in nanoseconds
+	 * @param framePeriod the duration of a timecode frame in nanoseconds
+	 */
+	void received(long position, long timestamp, long framePeriod) {
+		Anchor current = anchor;
+		boolean running = current != null && current.framePeriod == framePeriod
+				&& timestamp - lastReceived <= 2 * framePeriod;
+		long expected = current == null ? 0 : current.position + timestamp - current.time;
+		lastReceived = timestamp;
+		if (!running || Math.abs(position - expected) > TOLERANCE) {
+			anchor = new Anchor(position, timestamp, framePeriod);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,90 @@
+package com.fieryapps.dmx.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fieryapps.dmx.metrics.Counter;
+
+/**
+ * Bounded queue of trigger events from a single input thread to the engine thread.
+ *
+ * <p>Keys and their arrival times are stored in preallocated ring buffers. The input thread
+ * only writes the tail and the engine thread only writes the head, so neither side needs a
+ * lock and no objects are allocated per event. Events are dropped if the engine falls behind
+ * by more than the capacity of the queue.</p>
+ */
+final class TriggerQueue {
+	
+	private final int[] keys;
+	// arrival time of every key in nanoseconds, see System.nanoTime()
+	private final long[] timestamps;
+	private final int mask;
+	// number of events read by the engine thread
+	private final AtomicLong head = new AtomicLong();
+	// number of events written by the input thread
+	private final AtomicLong tail = new AtomicLong();
+	private final Counter droppedTriggers;
+	
+	/**
+	 * @param capacity maximum number of pending events, must be a power of two
+	 * @param droppedTriggers counts events dropped because the queue was full
+	 */
+	TriggerQueue(int capacity, Counter droppedTriggers) {
+		if (Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+		}
+		keys = new int[capacity];
+		timestamps = new long[capacity];
+		mask = capacity - 1;
+		this.droppedTriggers = droppedTriggers;
+	}
+	
+	/**
+	 * Add an event, called by the input thread only.
+	 * 
+	 * @param key the pressed key
+	 * @param timestamp the arrival time of the key in nanoseconds
+	 * @return <code>false</code> if the queue is full and the event was dropped
+	 */
+	boolean offer(int key, long timestamp) {
+		long position = tail.get();
+		if (position - head.get() > mask) {
+			droppedTriggers.increment();
+			return false;
+		}
+		int index = (int) position & mask;
+		keys[index] = key;
+		timestamps[index] = timestamp;
+		// publishes the event to the engine thread
+		tail.lazySet(position + 1);
+		return true;
+	}
+	
+	/**
+	 * @return <code>true</code> if there are no pending events, called by the engine thread 
+	 *         only
+	 */
+	boolean isEmpty() {
+		return head.get() == tail.get();
+	}
+	
+	/**
+	 * @return the key of the oldest pending event
+	 */
+	int peekKey() {
+		return keys[(int) head.get() & mask];
+	}
+	
+	/**
+	 * @return the arrival time of the oldest pending event in nanoseconds
+	 */
+	long peekTimestamp() {
+		return timestamps[(int) head.get() & mask];
+	}
+	
+	/**
+	 * Remove the oldest pending event, called by the engine thread only.
+	 */
+	void remove() {
+		head.lazySet(head.get() + 1);
+	}
+}
@@ -0,0 +1,143 @@
+package com.fieryapps.dmx.engine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * A scripted sequence of key presses, used to render a show headless.
+ *
+ * <p>Every line of a script contains the time of a key press followed by the key code, 
+ * separated by whitespace. Times are given in seconds, e.g. <code>90.5</code>, or as 
+ * <code>minutes:seconds</code> or <code>hours:minutes:seconds</code>, e.g. 
+ * <code>1:30.5</code>. Key codes are decimal numbers, like the trigger keys in the show 
+ * file. Empty lines and lines starting with <code>#</code> are ignored.</p>
+ *
+ * <pre>
+ * # start with the second scene, switch to blackout after one and a half minutes
+ * 0     47
+ * 1:30  9
+ * </pre>
+ */
+public final class TriggerScript {
+	
+	private static final long NANOS_PER_SECOND = 1000000000L;
+	
+	// times of all key presses in nanoseconds, in ascending order
+	private final long[] times;
+	// key codes in the same order as the times
+	private final int[] keys;
+	
+	private TriggerScript(long[] times, int[] keys) {
+		this.times = times;
+		this.keys = keys;
+	}
+	
+	/**
+	 * @return a script without any key presses
+	 */
+	public static TriggerScript empty() {
+		return new TriggerScript(new long[0], new int[0]);
+	}
+	
+	/**
+	 * Read a trigger script.
+	 * 
+	 * @param input the script
+	 * @return the parsed script, sorted by time
+	 * @throws IOException if the script cannot be read
+	 * @throws IllegalArgumentException if a line of the script is invalid
+	 */
+	public static TriggerScript parse(Reader input) throws IOException {
+		long[] times = new long[16];
+		int[] keys = new int[16];
+		int count = 0;
+		BufferedReader reader = new BufferedReader(input);
+		String line;
+		int lineNumber = 0;
+		while ((line = reader.readLine()) != null) {
+			lineNumber++;
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			String[] fields = line.split("\\s+");
+			if (fields.length != 2) {
+				throw new IllegalArgumentException("Line " + lineNumber 
+						+ " must contain a time and a key: " + line);
+			}
+			if (count == times.length) {
+				times = Arrays.copyOf(times, count * 2);
+				keys = Arrays.copyOf(keys, count * 2);
+			}
+			try {
+				times[count] = parseTime(fields[0]);
+				keys[count] = Integer.parseInt(fields[1]);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid time or key in line " + lineNumber 
+						+ ": " + line);
+			}
+			count++;
+		}
+		return sorted(Arrays.copyOf(times, count), Arrays.copyOf(keys, count));
+	}
+	
+	/**
+	 * Sort the key presses by time, keeping the order of key presses at the same time.
+	 */
+	private static TriggerScript sorted(long[] times, int[] keys) {
+		for (int i = 1; i < times.length; i++) {
+			long time = times[i];
+			int key = keys[i];
+			int j = i - 1;
+			while (j >= 0 && times[j] > time) {
+				times[j + 1] = times[j];
+				keys[j + 1] = keys[j];
+				j--;
+			}
+			times[j + 1] = time;
+			keys[j + 1] = key;
+		}
+		return new TriggerScript(times, keys);
+	}
+	
+	private static long parseTime(String value) {
+		String[] parts = value.split(":");
+		if (parts.length > 3) {
+			throw new NumberFormatException(value);
+		}
+		double seconds = 0;
+		for (String part : parts) {
+			double number = Double.parseDouble(part);
+			if (number < 0) {
+				throw new NumberFormatException(value);
+			}
+			seconds = seconds * 60 + number;
+		}
+		return Math.round(seconds * NANOS_PER_SECOND);
+	}
+	
+	/**
+	 * @return the number of key presses
+	 */
+	public int size() {
+		return times.length;
+	}
+	
+	/**
+	 * @param index the index of the key press
+	 * @return the time of the key press in nanoseconds since the start of the show
+	 */
+	public long getTime(int index) {
+		return times[index];
+	}
+	
+	/**
+	 * @param index the index of the key press
+	 * @return the key code
+	 */
+	public int getKey(int index) {
+		return keys[index];
+	}
+}
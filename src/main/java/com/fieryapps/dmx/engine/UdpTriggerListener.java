@@ -0,0 +1,88 @@
+package com.fieryapps.dmx.engine;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Receives trigger keys as UDP datagrams, for example from foot switches or drum pads.
+ *
+ * <p>Every datagram contains one or more key codes as ASCII decimal numbers, separated by
+ * any other character, e.g. <code>49</code> or <code>49,50</code>. Keys are handled exactly
+ * like key presses on the keyboard. The arrival time of every datagram is passed on with 
+ * its keys to measure the latency until the triggered frame is sent.</p>
+ */
+final class UdpTriggerListener implements Runnable, AutoCloseable {
+	
+	private static final int MAX_DATAGRAM_SIZE = 512;
+	
+	private final DatagramChannel channel;
+	private final TriggerQueue queue;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+	private final Thread thread;
+	
+	/**
+	 * Bind the trigger port and start receiving datagrams.
+	 * 
+	 * @param address local address to listen on
+	 * @param queue queue to pass received keys to the engine
+	 */
+	UdpTriggerListener(InetSocketAddress address, TriggerQueue queue) throws IOException {
+		this.queue = queue;
+		channel = DatagramChannel.open();
+		channel.bind(address);
+		thread = new Thread(this, "UDP trigger " + address.getPort());
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * @return the local port the listener is bound to
+	 */
+	int getPort() throws IOException {
+		return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+	}
+	
+	@Override
+	public void run() {
+		try {
+			while (true) {
+				buffer.clear();
+				channel.receive(buffer);
+				long timestamp = System.nanoTime();
+				buffer.flip();
+				parseKeys(timestamp);
+			}
+		} catch (ClosedChannelException e) {
+			// the listener has been closed
+		} catch (IOException e) {
+			e.printStackTrace(System.err);
+		}
+	}
+	
+	private void parseKeys(long timestamp) {
+		int key = 0;
+		boolean digits = false;
+		while (buffer.hasRemaining()) {
+			int c = buffer.get();
+			if (c >= '0' && c <= '9') {
+				key = key * 10 + (c - '0');
+				digits = true;
+			} else if (digits) {
+				queue.offer(key, timestamp);
+				key = 0;
+				digits = false;
+			}
+		}
+		if (digits) {
+			queue.offer(key, timestamp);
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,63 @@
+package com.fieryapps.dmx.engine;
+
+import java.util.Arrays;
+
+import com.fieryapps.dmx.metrics.Counter;
+import com.fieryapps.dmx.metrics.Metrics;
+
+/**
+ * A family of counters with one counter per universe.
+ *
+ * <p>Counters are registered when a universe is counted for the first time. After that, 
+ * looking up the counter of a universe neither allocates nor boxes the universe id.</p>
+ */
+final class UniverseCounters {
+	
+	private final Metrics metrics;
+	private final String name;
+	private final String output;
+	private short[] universes = new short[0];
+	private Counter[] counters = new Counter[0];
+	
+	/**
+	 * @param metrics registry for new counters
+	 * @param name name of all counters
+	 * @param output name of the output, added as a label to all counters
+	 */
+	UniverseCounters(Metrics metrics, String name, String output) {
+		this.metrics = metrics;
+		this.name = name;
+		this.output = output;
+	}
+	
+	/**
+	 * @param universe the universe id
+	 * @return the counter of the universe
+	 */
+	Counter get(short universe) {
+		for (int i = 0; i < universes.length; i++) {
+			if (universes[i] == universe) {
+				return counters[i];
+			}
+		}
+		int index = universes.length;
+		universes = Arrays.copyOf(universes, index + 1);
+		counters = Arrays.copyOf(counters, index + 1);
+		universes[index] = universe;
+		counters[index] = metrics.counter(name, "output", output, "universe", 
+				String.valueOf(universe));
+		return counters[index];
+	}
+	
+	/**
+	 * @return the sum of all counters
+	 */
+	long sum() {
+		Counter[] current = counters;
+		long sum = 0;
+		for (Counter counter : current) {
+			sum += counter.getCount();
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,510 @@
+package com.fieryapps.dmx.engine;
+
+import com.fieryapps.dmx.metrics.Counter;
+import com.fieryapps.dmx.model.CompiledEffect;
+import com.fieryapps.dmx.model.CompiledScene;
+import com.fieryapps.dmx.model.CompiledStep;
+import com.fieryapps.dmx.model.CompiledTrack;
+import com.fieryapps.dmx.model.FadeCurve;
+import com.fieryapps.dmx.model.ShowCompiler;
+import com.fieryapps.dmx.model.Waveform;
+
+/**
+ * Renders the DMX frames of a single universe.
+ *
+ * <p>Every universe plays the track of the current scene with its own step cursor, so
+ * renderers do not share any mutable state and can render their frames in parallel. If a
+ * scene does not contain a track for this universe, the renderer keeps playing the current
+ * step of the previous scene without progressing to the next step.</p>
+ *
+ * <p>Fades are calculated from the time since the start of the step, so late frames neither
+ * stretch a fade nor accumulate rounding errors. When a step starts, the addresses it sets 
+ * are sorted into switching addresses, which are set once, and addresses in transition. Only
+ * the addresses in transition are calculated while fading, all other addresses keep their
+ * values until a master changes. Effects are calculated from the time since 
+ * the start of the scene and are applied on top of the steps.</p>
+ *
+ * <p>Timeline tracks are not played step by step. Every frame the step at the position of the
+ * frame is found with a binary search, and whenever another step plays or the position moves
+ * backwards, the values are taken from the keyframe of that step. Seeking to any position of
+ * a timeline therefore takes as long as starting a step, no matter how many steps precede
+ * it.</p>
+ *
+ * <p>Values are scaled by the grand master and the group submasters with the lookup tables
+ * of {@link Submasters}. When a master changes, only the addresses scaled by a master are
+ * scaled again.</p>
+ */
+final class UniverseRenderer {
+
+	// added before shifting a weighted value to round to the nearest integer
+	private static final int ROUNDING = FadeCurve.FULL_WEIGHT >> 1;
+	// timeline step of a renderer that has to load the values of its step again
+	private static final int NO_STEP = -2;
+
+	private final short universe;
+	private final Counter stepChanges;
+	// values sent to the output, scaled by the masters
+	private final short[] currentFrame = new short[ShowCompiler.UNIVERSE_SIZE];
+	// values of the current frame before applying the masters
+	private final short[] rawFrame = new short[ShowCompiler.UNIVERSE_SIZE];
+	// raw values at the start of the current fade
+	private final short[] fadeStart = new short[ShowCompiler.UNIVERSE_SIZE];
+	// array indexes and target values of the addresses in transition to the current step
+	private final int[] fading = new int[ShowCompiler.UNIVERSE_SIZE];
+	private final short[] fadeTargets = new short[ShowCompiler.UNIVERSE_SIZE];
+	private int fadingCount;
+	// masters and their version the current frame is scaled with
+	private Submasters appliedMasters;
+	private int appliedVersion;
+	// lookup table of every address scaling a raw value by the masters
+	private short[][] scaling;
+	// index of this universe within the show
+	private int index;
+	private CompiledTrack track;
+	private boolean repeat;
+	private boolean random;
+	// false if the current scene does not contain a track for this universe
+	private boolean advancing;
+	// start time of the current step in nanoseconds
+	private long stepStart;
+	// start time of the current scene in nanoseconds
+	private long sceneStart;
+	// indicates that the current step starts with the next rendered frame
+	private boolean startPending;
+	private short nextStep;
+	// indicates whether the addresses in transition to the current step have been collected
+	private boolean prepared;
+	// indicates whether a new step was started since the last call to pollStepChanged()
+	private boolean stepChanged;
+	// state of the xorshift generator selecting random steps
+	private long randomState = 1;
+	// raw values when the timeline was started, kept by addresses the timeline does not set
+	private final short[] timelineStart = new short[ShowCompiler.UNIVERSE_SIZE];
+	// step of the timeline the current values belong to, NO_STEP to load them again
+	private int timelineStep = NO_STEP;
+	// indicates that the timeline repeats and has been played at least once
+	private boolean timelineRepeated;
+	// position of the timeline in the last frame in nanoseconds
+	private long timelinePosition;
+	// position of the timeline with the next frame in nanoseconds, -1 if not seeking
+	private long seekPosition = -1;
+
+	/**
+	 * @param universe the universe id
+	 * @param stepChanges counts all steps started in this universe
+	 */
+	UniverseRenderer(short universe, Counter stepChanges) {
+		this.universe = universe;
+		this.stepChanges = stepChanges;
+	}
+
+	/**
+	 * Seed the selection of random steps, so a show can be rendered reproducibly.
+	 *
+	 * @param seed the seed, any value
+	 */
+	void setRandomSeed(long seed) {
+		// the generator must not start with 0, mix the seed like SplitMix64
+		long state = seed + 0x9E3779B97F4A7C15L;
+		state = (state ^ (state >>> 30)) * 0xBF58476D1CE4E5B9L;
+		state = (state ^ (state >>> 27)) * 0x94D049BB133111EBL;
+		state ^= state >>> 31;
+		randomState = state == 0 ? 1 : state;
+	}
+
+	short getUniverse() {
+		return universe;
+	}
+
+	short[] getCurrentFrame() {
+		return currentFrame;
+	}
+
+	/**
+	 * @return <code>true</code> if the current scene contains a track for this universe
+	 */
+	boolean isAdvancing() {
+		return advancing;
+	}
+
+	/**
+	 * @return the number of the current step, starting with 1
+	 */
+	int getStep() {
+		return nextStep + 1;
+	}
+
+	/**
+	 * @return the track of the current scene, or of the previous scene if the current scene 
+	 *         does not play in this universe
+	 */
+	CompiledTrack getTrack() {
+		return track;
+	}
+	
+	int getStepCount() {
+		return track == null ? 0 : track.getSteps().length;
+	}
+
+	/**
+	 * Check whether a new step has been started and reset the flag.
+	 *
+	 * @return <code>true</code> if a new step was started since the last call
+	 */
+	boolean pollStepChanged() {
+		boolean changed = stepChanged;
+		stepChanged = false;
+		return changed;
+	}
+
+	/**
+	 * Start playing the track of a new scene in this universe.
+	 *
+	 * @param scene the triggered scene
+	 * @param index the index of this universe within the show
+	 */
+	void startScene(CompiledScene scene, int index) {
+		CompiledTrack sceneTrack = scene.getTracks()[index];
+		if (sceneTrack == null) {
+			// hold the current step of the previous scene
+			advancing = false;
+			return;
+		}
+		track = sceneTrack;
+		this.index = index;
+		repeat = scene.isRepeat();
+		random = scene.isRandom();
+		advancing = true;
+		if (sceneTrack.isTimeline()) {
+			System.arraycopy(rawFrame, 0, timelineStart, 0, rawFrame.length);
+			timelineStep = NO_STEP;
+			nextStep = 0;
+			startPending = true;
+			seekPosition = -1;
+		} else {
+			progressStep(true);
+		}
+	}
+
+	/**
+	 * Continue playing a modified version of the current scene after the show was reloaded.
+	 *
+	 * <p>The current step keeps its start time, so a running fade or hold continues at its
+	 * current position with the new values. If the track has fewer steps now, the last step
+	 * is played.</p>
+	 *
+	 * @param scene the modified version of the current scene
+	 * @param index the index of this universe within the show
+	 */
+	void reloadScene(CompiledScene scene, int index) {
+		CompiledTrack sceneTrack = scene.getTracks()[index];
+		if (sceneTrack == null) {
+			// the scene no longer plays in this universe
+			advancing = false;
+			return;
+		}
+		if (!advancing) {
+			// the scene did not play in this universe before
+			startScene(scene, index);
+			return;
+		}
+		if (sceneTrack.isTimeline() && !track.isTimeline()) {
+			System.arraycopy(rawFrame, 0, timelineStart, 0, rawFrame.length);
+		}
+		track = sceneTrack;
+		this.index = index;
+		repeat = scene.isRepeat();
+		random = scene.isRandom();
+		// the values of the current timeline step might have changed
+		timelineStep = NO_STEP;
+		if (nextStep >= sceneTrack.getSteps().length) {
+			nextStep = (short) Math.max(0, sceneTrack.getSteps().length - 1);
+		}
+		// collect the addresses of the current step again, they might have changed
+		prepared = false;
+	}
+
+	/**
+	 * Move the timeline of the current scene to a position with the next rendered frame. 
+	 * Tracks that are not a timeline ignore the position.
+	 *
+	 * @param position the time since the start of the timeline in nanoseconds
+	 */
+	void seek(long position) {
+		if (track != null && track.isTimeline() && advancing) {
+			seekPosition = Math.max(0, position);
+		}
+	}
+
+	/**
+	 * Switch to a new step in the current track.
+	 *
+	 * <p>If <code>newScene</code> is <code>true</code> we will activate the first step.
+	 * Else continue with the next step. If the scene is set to repeating mode, we will jump
+	 * back to step 0 once the last step has finished playing. If repeat is not enabled, the
+	 * last step will hold until the user selects a new scene.</p>
+	 *
+	 * @param newScene indicates whether the user has triggered a new scene
+	 */
+	private void progressStep(boolean newScene) {
+		int stepCount = track.getSteps().length;
+		CompiledStep previousStep = newScene ? null : track.getSteps()[nextStep];
+		if (newScene) {
+			// render first step in new scene
+			nextStep = 0;
+			startPending = true;
+		} else if (!advancing) {
+			// the current scene does not play in this universe
+			return;
+		} else if (random && stepCount > 1) {
+			// select a random next step excluding the current step
+			short step = (short) nextRandom(stepCount);
+			while (nextStep == step) {
+				step = (short) nextRandom(stepCount);
+			}
+			nextStep = step;
+		} else if (nextStep < (stepCount - 1)) {
+			// progress to next step
+			nextStep++;
+		} else if (repeat) {
+			// repeat the scene starting with the first step
+			nextStep = 0;
+		} else {
+			// remain in the last step of the scene
+			return;
+		}
+
+		if (!newScene) {
+			// the next step starts exactly when the previous one ends
+			stepStart += previousStep.getFadeTime() + previousStep.getHoldTime();
+		}
+		// we have a new step determined
+		prepared = false;
+		stepChanged = true;
+		stepChanges.increment();
+		System.arraycopy(rawFrame, 0, fadeStart, 0, rawFrame.length);
+	}
+
+	/**
+	 * Calculate the current DMX value for each DMX address in the current frame.
+	 *
+	 * <p>All values are read from the compiled show, so rendering a frame is a pass over 
+	 * primitive arrays without any allocation. While fading, the weight of the target values
+	 * is looked up once per frame from the fade curve of the step and only the addresses in
+	 * transition are calculated.</p>
+	 *
+	 * @param frameTime the deadline of the frame in nanoseconds
+	 * @param masters the grand master and group submasters of the show
+	 */
+	void render(long frameTime, Submasters masters) {
+		if (track == null) {
+			return;
+		}
+		if (startPending) {
+			stepStart = frameTime;
+			sceneStart = frameTime;
+			startPending = false;
+		}
+		if (seekPosition >= 0) {
+			if (track.isTimeline()) {
+				sceneStart = frameTime - seekPosition;
+			}
+			seekPosition = -1;
+		}
+		if (masters != appliedMasters) {
+			// the show was started or reloaded, scale all addresses with its tables
+			scaling = masters.getScaling(index);
+			for (int dmxAddress = 0; dmxAddress < currentFrame.length; dmxAddress++) {
+				currentFrame[dmxAddress] = scaling[dmxAddress][rawFrame[dmxAddress]];
+			}
+			appliedMasters = masters;
+			appliedVersion = masters.getVersion();
+		} else if (masters.getVersion() != appliedVersion) {
+			// a master changed, scale the addresses with recalculated tables again
+			for (int dmxAddress : masters.getScaledAddresses(index)) {
+				currentFrame[dmxAddress] = scaling[dmxAddress][rawFrame[dmxAddress]];
+			}
+			appliedVersion = masters.getVersion();
+		}
+		if (track.isTimeline()) {
+			if (advancing && track.getSteps().length > 0) {
+				renderTimeline(frameTime);
+			}
+		} else if (track.getSteps().length > 0) {
+			renderStep(frameTime);
+		}
+		if (track.getEffects().length > 0) {
+			renderEffects(frameTime - sceneStart);
+		}
+	}
+	
+	/**
+	 * Calculate the values of the current step.
+	 */
+	private void renderStep(long frameTime) {
+		CompiledStep targetStep = track.getSteps()[nextStep];
+		long elapsed = frameTime - stepStart;
+		if (!prepared) {
+			prepareStep(targetStep);
+			prepared = true;
+		}
+
+		if (fadingCount > 0) {
+			fade(targetStep, elapsed);
+		}
+		if (elapsed >= targetStep.getFadeTime() + targetStep.getHoldTime()) {
+			// hold time has elapsed, progress with next step
+			progressStep(false);
+		}
+	}
+	
+	/**
+	 * Calculate the addresses in transition to a step.
+	 */
+	private void fade(CompiledStep targetStep, long elapsed) {
+		if (elapsed < targetStep.getFadeTime()) {
+			// we are still fading to the target values
+			int weight = targetStep.getCurve().weightAt(elapsed, targetStep.getFadeTime());
+			for (int i = 0; i < fadingCount; i++) {
+				int dmxAddress = fading[i];
+				int start = fadeStart[dmxAddress];
+				setValue(dmxAddress, start + (((fadeTargets[i] - start) * weight 
+						+ ROUNDING) >> FadeCurve.WEIGHT_BITS));
+			}
+		} else {
+			// the fade is complete, set the target values
+			for (int i = 0; i < fadingCount; i++) {
+				setValue(fading[i], fadeTargets[i]);
+			}
+			fadingCount = 0;
+		}
+	}
+	
+	/**
+	 * Calculate the values of a timeline track at the position of the frame.
+	 */
+	private void renderTimeline(long frameTime) {
+		long position = frameTime - sceneStart;
+		long length = track.getTimelineLength();
+		boolean repeated = false;
+		if (repeat && length > 0 && position >= length) {
+			position %= length;
+			repeated = true;
+		}
+		int step = track.findStep(position);
+		if (step != timelineStep || repeated != timelineRepeated 
+				|| position < timelinePosition) {
+			loadTimelineStep(step, repeated);
+			if (step >= 0) {
+				stepStart = frameTime - (position - track.getStepTimes()[step]);
+			}
+		}
+		timelinePosition = position;
+		if (step >= 0 && fadingCount > 0) {
+			fade(track.getSteps()[step], position - track.getStepTimes()[step]);
+		}
+	}
+	
+	/**
+	 * Set the values at the start of a timeline step from its keyframe, without playing the
+	 * steps before it.
+	 *
+	 * @param step the step, -1 before the first step
+	 * @param repeated <code>true</code> if the timeline has been played before
+	 */
+	private void loadTimelineStep(int step, boolean repeated) {
+		CompiledStep[] keyframes = track.getKeyframes();
+		System.arraycopy(timelineStart, 0, rawFrame, 0, rawFrame.length);
+		if (repeated) {
+			// a repeated timeline starts with the values of its end
+			setRawValues(keyframes[keyframes.length - 1]);
+		}
+		if (step > 0) {
+			setRawValues(keyframes[step]);
+		}
+		for (int dmxAddress = 0; dmxAddress < rawFrame.length; dmxAddress++) {
+			currentFrame[dmxAddress] = scaling[dmxAddress][rawFrame[dmxAddress]];
+		}
+		System.arraycopy(rawFrame, 0, fadeStart, 0, rawFrame.length);
+		fadingCount = 0;
+		if (step >= 0) {
+			nextStep = (short) step;
+			prepareStep(track.getSteps()[step]);
+			stepChanged = true;
+			stepChanges.increment();
+		}
+		timelineStep = step;
+		timelineRepeated = repeated;
+	}
+	
+	private void setRawValues(CompiledStep keyframe) {
+		int[] addresses = keyframe.getAddresses();
+		byte[] values = keyframe.getValues();
+		for (int i = 0; i < values.length; i++) {
+			rawFrame[addresses[i]] = (short) (values[i] & 0xFF);
+		}
+	}
+	
+	/**
+	 * Set the switching addresses of a step and collect the addresses that fade to a new
+	 * value. Addresses the step does not set keep their values.
+	 */
+	private void prepareStep(CompiledStep step) {
+		int[] addresses = step.getAddresses();
+		byte[] values = step.getValues();
+		byte[] channelModes = track.getChannelModes();
+		boolean fade = step.getFadeTime() > 0;
+		fadingCount = 0;
+		for (int i = 0; i < values.length; i++) {
+			int dmxAddress = addresses[i];
+			int targetValue = values[i] & 0xFF;
+			if (fade && channelModes[dmxAddress] != CompiledTrack.MODE_SWITCH 
+					&& fadeStart[dmxAddress] != targetValue) {
+				fading[fadingCount] = dmxAddress;
+				fadeTargets[fadingCount] = (short) targetValue;
+				fadingCount++;
+			} else {
+				// don't fade this channel
+				setValue(dmxAddress, targetValue);
+			}
+		}
+	}
+	
+	private void setValue(int dmxAddress, int value) {
+		rawFrame[dmxAddress] = (short) value;
+		currentFrame[dmxAddress] = scaling[dmxAddress][value];
+	}
+
+	/**
+	 * Calculate the values of all effects of the track, overriding the values of the steps.
+	 * 
+	 * @param elapsed time since the start of the scene in nanoseconds
+	 */
+	private void renderEffects(long elapsed) {
+		for (CompiledEffect effect : track.getEffects()) {
+			int phase = effect.phaseAt(elapsed);
+			int[] table = effect.getTable();
+			int[] addresses = effect.getAddresses();
+			int[] offsets = effect.getOffsets();
+			int min = effect.getMin();
+			int range = effect.getRange();
+			for (int i = 0; i < addresses.length; i++) {
+				int weight = table[(phase + offsets[i]) & Waveform.PHASE_MASK];
+				int value = min + ((weight * range + ROUNDING) >> FadeCurve.WEIGHT_BITS);
+				int dmxAddress = addresses[i];
+				rawFrame[dmxAddress] = (short) value;
+				currentFrame[dmxAddress] = scaling[dmxAddress][value];
+			}
+		}
+	}
+	
+	/**
+	 * @return a random number from 0 (inclusive) to <code>bound</code> (exclusive)
+	 */
+	private int nextRandom(int bound) {
+		randomState ^= randomState << 13;
+		randomState ^= randomState >>> 7;
+		randomState ^= randomState << 17;
+		return (int) ((randomState >>> 1) % bound);
+	}
+}
@@ -0,0 +1,27 @@
+package com.fieryapps.dmx.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A monotonically increasing counter.
+ * 
+ * <p>Like the {@link Histogram}, a counter expects a single thread to update it, which keeps 
+ * increments as cheap as a plain field update. Any thread may read the count.</p>
+ */
+public final class Counter implements CounterMBean {
+	
+	private final AtomicLong count = new AtomicLong();
+	
+	public void increment() {
+		count.lazySet(count.get() + 1);
+	}
+	
+	public void add(long value) {
+		count.lazySet(count.get() + value);
+	}
+	
+	@Override
+	public long getCount() {
+		return count.get();
+	}
+}
@@ -0,0 +1,8 @@
+package com.fieryapps.dmx.metrics;
+
+/**
+ * JMX view of a {@link Counter}.
+ */
+public interface CounterMBean {
+	long getCount();
+}
@@ -0,0 +1,138 @@
+package com.fieryapps.dmx.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size histogram for positive long values like durations in nanoseconds.
+ * 
+ * <p>Values below 64 are counted exactly. Larger values are counted in 32 buckets per power 
+ * of two, so percentiles are accurate to about 3%. Recording a value does not allocate and 
+ * takes a few nanoseconds.</p>
+ * 
+ * <p>The histogram expects a single thread to record values. Other threads may read the 
+ * histogram at any time and will see a consistent enough view for monitoring purposes.</p>
+ */
+public final class Histogram implements HistogramMBean {
+	
+	private static final int SUB_BUCKET_BITS = 6;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+	private static final int MAX_SHIFT = 63 - SUB_BUCKET_BITS;
+	private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + MAX_SHIFT * SUB_BUCKET_HALF;
+	
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+	
+	/**
+	 * Record a single value. Negative values are recorded as 0.
+	 * 
+	 * @param value the value to record
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		int index = indexOf(value);
+		buckets.lazySet(index, buckets.get(index) + 1);
+		sum.lazySet(sum.get() + value);
+		if (value > max.get()) {
+			max.lazySet(value);
+		}
+		count.lazySet(count.get() + 1);
+	}
+	
+	@Override
+	public long getCount() {
+		return count.get();
+	}
+	
+	public long getSum() {
+		return sum.get();
+	}
+	
+	@Override
+	public long getMax() {
+		return max.get();
+	}
+	
+	@Override
+	public double getMean() {
+		long n = count.get();
+		return n == 0 ? 0 : sum.get() / (double) n;
+	}
+	
+	@Override
+	public long getMedian() {
+		return getPercentile(50);
+	}
+	
+	@Override
+	public long get90thPercentile() {
+		return getPercentile(90);
+	}
+	
+	@Override
+	public long get99thPercentile() {
+		return getPercentile(99);
+	}
+	
+	@Override
+	public long get999thPercentile() {
+		return getPercentile(99.9);
+	}
+	
+	/**
+	 * Calculate a percentile of all recorded values.
+	 * 
+	 * @param percentile the percentile from 0 to 100
+	 * @return the highest value that is equivalent to the requested percentile
+	 */
+	public long getPercentile(double percentile) {
+		long n = count.get();
+		if (n == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(percentile / 100d * n));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += buckets.get(i);
+			if (seen >= target) {
+				return Math.min(highestValueOf(i), max.get());
+			}
+		}
+		return max.get();
+	}
+	
+	/**
+	 * Remove all recorded values. Must not be called while another thread records values.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			buckets.set(i, 0);
+		}
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+	
+	static int indexOf(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF 
+				+ (int) (value >>> shift) - SUB_BUCKET_HALF;
+	}
+	
+	static long highestValueOf(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF + 1;
+		long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
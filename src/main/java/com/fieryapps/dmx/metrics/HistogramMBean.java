@@ -0,0 +1,20 @@
+package com.fieryapps.dmx.metrics;
+
+/**
+ * JMX view of a {@link Histogram}.
+ */
+public interface HistogramMBean {
+	long getCount();
+	
+	double getMean();
+	
+	long getMax();
+	
+	long getMedian();
+	
+	long get90thPercentile();
+	
+	long get99thPercentile();
+	
+	long get999thPercentile();
+}
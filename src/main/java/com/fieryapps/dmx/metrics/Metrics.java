@@ -0,0 +1,260 @@
+package com.fieryapps.dmx.metrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registry of all counters and histograms of the engine.
+ *
+ * <p>Metrics are created once, usually at startup or when a universe is seen for the first
+ * time, and then updated on the hot path without any allocation or locking. The registry
+ * publishes all metrics as MBeans and renders them in the Prometheus text format for the
+ * {@link MetricsHttpServer}.</p>
+ */
+public final class Metrics {
+
+	/** JMX domain of all metrics */
+	public static final String JMX_DOMAIN = "com.fieryapps.dmx";
+
+	private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+	private final List<Metric> metrics = new CopyOnWriteArrayList<Metric>();
+	private volatile MBeanServer mbeanServer;
+	// registry all metrics are registered in, this registry unless it was created by withLabel
+	private final Metrics root;
+	// label name and value pairs added to all metrics
+	private final String[] commonLabels;
+
+	/**
+	 * Create an empty registry.
+	 */
+	public Metrics() {
+		root = this;
+		commonLabels = new String[0];
+	}
+
+	private Metrics(Metrics root, String[] commonLabels) {
+		this.root = root;
+		this.commonLabels = commonLabels;
+	}
+
+	/**
+	 * Create a view of this registry which adds a label to all metrics it creates, for example
+	 * to tell the metrics of several shows apart.
+	 *
+	 * @param name the name of the label
+	 * @param value the value of the label
+	 * @return a registry registering all metrics with the label in this registry
+	 */
+	public Metrics withLabel(String name, String value) {
+		String[] labels = Arrays.copyOf(commonLabels, commonLabels.length + 2);
+		labels[labels.length - 2] = name;
+		labels[labels.length - 1] = value;
+		return new Metrics(root, labels);
+	}
+
+	/**
+	 * Create a new counter.
+	 *
+	 * @param name name of the counter, for example <code>dmx_frames_sent_total</code>
+	 * @param labels optional label name and value pairs
+	 * @return the new counter
+	 */
+	public Counter counter(String name, String... labels) {
+		Counter counter = new Counter();
+		register(new Metric(name, labels, counter));
+		return counter;
+	}
+
+	/**
+	 * Create a new counter which may be updated by several threads at once.
+	 *
+	 * @param name name of the counter, for example <code>dmx_triggers_dropped_total</code>
+	 * @param labels optional label name and value pairs
+	 * @return the new counter
+	 */
+	public SharedCounter sharedCounter(String name, String... labels) {
+		SharedCounter counter = new SharedCounter();
+		register(new Metric(name, labels, counter));
+		return counter;
+	}
+
+	/**
+	 * Create a new histogram.
+	 *
+	 * @param name name of the histogram, for example <code>dmx_render_time_nanoseconds</code>
+	 * @param labels optional label name and value pairs
+	 * @return the new histogram
+	 */
+	public Histogram histogram(String name, String... labels) {
+		return register(name, new Histogram(), labels);
+	}
+
+	/**
+	 * Register an existing histogram.
+	 *
+	 * @param name name of the histogram
+	 * @param histogram the histogram to publish
+	 * @param labels optional label name and value pairs
+	 * @return the histogram
+	 */
+	public Histogram register(String name, Histogram histogram, String... labels) {
+		register(new Metric(name, labels, histogram));
+		return histogram;
+	}
+
+	private void register(Metric metric) {
+		if (metric.labels.length % 2 != 0) {
+			throw new IllegalArgumentException("Labels of " + metric.name
+					+ " must be name and value pairs");
+		}
+		if (root != this) {
+			String[] labels = Arrays.copyOf(commonLabels, commonLabels.length
+					+ metric.labels.length);
+			System.arraycopy(metric.labels, 0, labels, commonLabels.length, metric.labels.length);
+			root.register(new Metric(metric.name, labels, metric.value));
+			return;
+		}
+		metrics.add(metric);
+		MBeanServer server = mbeanServer;
+		if (server != null) {
+			registerMBean(server, metric);
+		}
+	}
+
+	/**
+	 * Publish all current and future metrics in the platform MBean server.
+	 */
+	public synchronized void registerMBeans() {
+		if (root != this) {
+			root.registerMBeans();
+			return;
+		}
+		if (mbeanServer != null) {
+			return;
+		}
+		mbeanServer = ManagementFactory.getPlatformMBeanServer();
+		for (Metric metric : metrics) {
+			registerMBean(mbeanServer, metric);
+		}
+	}
+
+	private void registerMBean(MBeanServer server, Metric metric) {
+		StringBuilder name = new StringBuilder(JMX_DOMAIN).append(":type=")
+				.append(metric.value instanceof CounterMBean ? "Counter" : "Histogram")
+				.append(",name=").append(metric.name);
+		for (int i = 0; i < metric.labels.length; i += 2) {
+			name.append(',').append(metric.labels[i]).append('=')
+					.append(ObjectName.quote(metric.labels[i + 1]));
+		}
+		try {
+			ObjectName objectName = new ObjectName(name.toString());
+			if (!server.isRegistered(objectName)) {
+				server.registerMBean(metric.value, objectName);
+			}
+		} catch (JMException e) {
+			System.err.println("Error registering metric " + name + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Write all metrics in the Prometheus text format.
+	 *
+	 * @param out the target to write to
+	 */
+	public void writeText(Appendable out) throws IOException {
+		List<Metric> sorted = new ArrayList<Metric>(root.metrics);
+		Collections.sort(sorted, new Comparator<Metric>() {
+			@Override
+			public int compare(Metric a, Metric b) {
+				return a.name.compareTo(b.name);
+			}
+		});
+
+		String previousName = null;
+		for (Metric metric : sorted) {
+			if (!metric.name.equals(previousName)) {
+				out.append("# TYPE ").append(metric.name)
+						.append(metric.value instanceof CounterMBean ? " counter\n" : " summary\n");
+				previousName = metric.name;
+			}
+			if (metric.value instanceof CounterMBean) {
+				writeSample(out, metric.name, metric.labels, null,
+						((CounterMBean) metric.value).getCount());
+			} else {
+				Histogram histogram = (Histogram) metric.value;
+				for (double quantile : QUANTILES) {
+					writeSample(out, metric.name, metric.labels, String.valueOf(quantile),
+							histogram.getPercentile(quantile * 100));
+				}
+				writeSample(out, metric.name + "_max", metric.labels, null, histogram.getMax());
+				writeSample(out, metric.name + "_sum", metric.labels, null, histogram.getSum());
+				writeSample(out, metric.name + "_count", metric.labels, null,
+						histogram.getCount());
+			}
+		}
+	}
+
+	private static void writeSample(Appendable out, String name, String[] labels,
+			String quantile, long value) throws IOException {
+		out.append(name);
+		if (labels.length > 0 || quantile != null) {
+			char separator = '{';
+			for (int i = 0; i < labels.length; i += 2) {
+				out.append(separator).append(labels[i]).append("=\"");
+				writeLabelValue(out, labels[i + 1]);
+				out.append('"');
+				separator = ',';
+			}
+			if (quantile != null) {
+				out.append(separator).append("quantile=\"").append(quantile).append('"');
+			}
+			out.append('}');
+		}
+		out.append(' ').append(String.valueOf(value)).append('\n');
+	}
+
+	/**
+	 * Write a label value with backslashes, double quotes and line feeds escaped, as label
+	 * values like show file names may contain them.
+	 */
+	private static void writeLabelValue(Appendable out, String value) throws IOException {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\\') {
+				out.append("\\\\");
+			} else if (c == '"') {
+				out.append("\\\"");
+			} else if (c == '\n') {
+				out.append("\\n");
+			} else {
+				out.append(c);
+			}
+		}
+	}
+
+	/**
+	 * A registered counter or histogram.
+	 */
+	private static final class Metric {
+		private final String name;
+		private final String[] labels;
+		private final Object value;
+
+		Metric(String name, String[] labels, Object value) {
+			this.name = name;
+			this.labels = labels;
+			this.value = value;
+		}
+	}
+}
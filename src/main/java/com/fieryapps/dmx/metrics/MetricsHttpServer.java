@@ -0,0 +1,60 @@
+package com.fieryapps.dmx.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves all {@link Metrics} as plain text on the loopback interface.
+ *
+ * <p>Requests are handled on the HTTP server thread. Rendering the text reads the metrics
+ * without blocking the threads that update them.</p>
+ */
+public final class MetricsHttpServer implements AutoCloseable {
+
+	private final HttpServer server;
+
+	/**
+	 * Start serving metrics.
+	 *
+	 * @param metrics the metrics to serve
+	 * @param port the local TCP port to listen on
+	 */
+	public MetricsHttpServer(final Metrics metrics, int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+				0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				StringBuilder text = new StringBuilder(8192);
+				metrics.writeText(text);
+				byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().set("Content-Type",
+						"text/plain; version=0.0.4; charset=utf-8");
+				exchange.sendResponseHeaders(200, body.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(body);
+				}
+			}
+		});
+		server.start();
+	}
+
+	/**
+	 * @return the port the server listens on
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+	}
+}
@@ -0,0 +1,29 @@
+package com.fieryapps.dmx.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A monotonically increasing counter updated by any number of threads.
+ * 
+ * <p>Unlike the single writer {@link Counter}, every increment is an atomic read, modify and 
+ * write, so increments of threads updating the counter at the same time are never lost. Use 
+ * it only where several threads update the same counter, for example producers of a queue 
+ * counting dropped entries.</p>
+ */
+public final class SharedCounter implements CounterMBean {
+	
+	private final AtomicLong count = new AtomicLong();
+	
+	public void increment() {
+		count.incrementAndGet();
+	}
+	
+	public void add(long value) {
+		count.addAndGet(value);
+	}
+	
+	@Override
+	public long getCount() {
+		return count.get();
+	}
+}
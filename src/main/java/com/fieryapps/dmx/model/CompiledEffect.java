@@ -0,0 +1,83 @@
+package com.fieryapps.dmx.model;
+
+/**
+ * Immutable, render ready representation of an {@link com.fieryapps.dmx.beans.Effect} in a 
+ * single universe.
+ * 
+ * <p>An effect sets a list of DMX addresses to the value of a {@link Waveform} at a phase 
+ * offset per address. The value of address <code>getAddresses()[i]</code> at phase 
+ * <code>p</code> is <code>getMin() + getTable()[(p + getOffsets()[i]) &amp; 
+ * Waveform.PHASE_MASK] * getRange() / FadeCurve.FULL_WEIGHT</code>. Colors are expanded to 
+ * one address per component up front, so all effects are evaluated the same way.</p>
+ */
+public final class CompiledEffect {
+	private final Waveform waveform;
+	// number of table entries a square wave is high
+	private final int duty;
+	// weights of the waveform for a full cycle
+	private final int[] table;
+	// DMX addresses set by the effect, starting with 0
+	private final int[] addresses;
+	// phase offset of every address in table entries
+	private final int[] offsets;
+	// duration of a cycle in nanoseconds
+	private final long period;
+	private final int min;
+	// difference of the highest and lowest value, negative for inverted effects
+	private final int range;
+	
+	CompiledEffect(Waveform waveform, int duty, int[] addresses, int[] offsets, long period, 
+			int min, int range) {
+		this.waveform = waveform;
+		this.duty = duty;
+		this.table = waveform.table(duty);
+		this.addresses = addresses;
+		this.offsets = offsets;
+		this.period = period;
+		this.min = min;
+		this.range = range;
+	}
+	
+	public Waveform getWaveform() {
+		return waveform;
+	}
+	
+	public int getDuty() {
+		return duty;
+	}
+	
+	public int[] getTable() {
+		return table;
+	}
+	
+	public int[] getAddresses() {
+		return addresses;
+	}
+	
+	public int[] getOffsets() {
+		return offsets;
+	}
+	
+	/**
+	 * @return the duration of a cycle in nanoseconds
+	 */
+	public long getPeriod() {
+		return period;
+	}
+	
+	public int getMin() {
+		return min;
+	}
+	
+	public int getRange() {
+		return range;
+	}
+	
+	/**
+	 * @param elapsed time since the start of the scene in nanoseconds
+	 * @return the phase of the effect as table index
+	 */
+	public int phaseAt(long elapsed) {
+		return (int) (elapsed % period * Waveform.TABLE_SIZE / period);
+	}
+}
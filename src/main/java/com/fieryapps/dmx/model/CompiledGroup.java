@@ -0,0 +1,46 @@
+package com.fieryapps.dmx.model;
+
+/**
+ * Immutable, render ready representation of a {@link com.fieryapps.dmx.beans.Group}.
+ */
+public final class CompiledGroup {
+	private final String name;
+	// index of the universe within the show
+	private final int universe;
+	// DMX addresses of the channels, starting with 0
+	private final int[] addresses;
+	// initial value of the submaster from 0 to 255
+	private final int master;
+	
+	CompiledGroup(String name, int universe, int[] addresses, int master) {
+		this.name = name;
+		this.universe = universe;
+		this.addresses = addresses;
+		this.master = master;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * @return the index of the universe within the universes of the show
+	 */
+	public int getUniverse() {
+		return universe;
+	}
+	
+	/**
+	 * @return the DMX addresses of the channels in the group, starting with 0
+	 */
+	public int[] getAddresses() {
+		return addresses;
+	}
+	
+	/**
+	 * @return the initial value of the submaster from 0 to 255
+	 */
+	public int getMaster() {
+		return master;
+	}
+}
@@ -0,0 +1,119 @@
+package com.fieryapps.dmx.model;
+
+/**
+ * Immutable representation of the DMX output settings of a show.
+ */
+public final class CompiledOutput {
+	/** frames are sent with the OLA client */
+	public static final byte TYPE_OLA = 0;
+	/** frames are sent as Art-Net packets */
+	public static final byte TYPE_ARTNET = 1;
+	/** frames are sent as sACN (E1.31) packets */
+	public static final byte TYPE_SACN = 2;
+	
+	private final byte type;
+	// unicast address of the Art-Net node or sACN receiver, null to broadcast or multicast
+	private final String address;
+	// Art-Net subnet of all universes
+	private final int subnet;
+	// time in nanoseconds after which unchanged frames are sent again, 0 sends every frame
+	private final long keepAliveTime;
+	// universes sent to their own Art-Net node and the unicast addresses of these nodes
+	private final short[] routedUniverses;
+	private final String[] routeAddresses;
+	// send an ArtSync packet after the universes of every frame
+	private final boolean sync;
+	// sACN source name, network interface for multicast or null for the default interface
+	private final String sourceName;
+	// sACN component identifier as a UUID, null to use a random one
+	private final String cid;
+	private final String networkInterface;
+	// sACN priority of every universe, in the order of the universes of the show
+	private final int[] priorities;
+	
+	CompiledOutput(byte type, String address, int subnet, long keepAliveTime, 
+			short[] routedUniverses, String[] routeAddresses, boolean sync, String sourceName, 
+			String cid, String networkInterface, int[] priorities) {
+		this.type = type;
+		this.address = address;
+		this.subnet = subnet;
+		this.keepAliveTime = keepAliveTime;
+		this.routedUniverses = routedUniverses;
+		this.routeAddresses = routeAddresses;
+		this.sync = sync;
+		this.sourceName = sourceName;
+		this.cid = cid;
+		this.networkInterface = networkInterface;
+		this.priorities = priorities;
+	}
+	
+	public byte getType() {
+		return type;
+	}
+	
+	/**
+	 * @return the unicast address of the Art-Net node or sACN receiver, or <code>null</code> 
+	 *         to broadcast Art-Net or multicast sACN
+	 */
+	public String getAddress() {
+		return address;
+	}
+	
+	public int getSubnet() {
+		return subnet;
+	}
+	
+	/**
+	 * @return the time in nanoseconds after which unchanged frames are sent again or 
+	 *         <code>0</code> if every frame is sent
+	 */
+	public long getKeepAliveTime() {
+		return keepAliveTime;
+	}
+	
+	/**
+	 * @return the universes sent to their own Art-Net node, the address of the node of 
+	 *         <code>getRoutedUniverses()[i]</code> is <code>getRouteAddresses()[i]</code>
+	 */
+	public short[] getRoutedUniverses() {
+		return routedUniverses;
+	}
+	
+	public String[] getRouteAddresses() {
+		return routeAddresses;
+	}
+	
+	/**
+	 * @return <code>true</code> if every frame is followed by an ArtSync packet
+	 */
+	public boolean isSync() {
+		return sync;
+	}
+	
+	public String getSourceName() {
+		return sourceName;
+	}
+	
+	/**
+	 * @return the sACN component identifier of this source as a UUID, or <code>null</code> to 
+	 *         use a random one
+	 */
+	public String getCid() {
+		return cid;
+	}
+	
+	/**
+	 * @return the name of the network interface to send sACN multicast on, or 
+	 *         <code>null</code> for the default interface
+	 */
+	public String getNetworkInterface() {
+		return networkInterface;
+	}
+	
+	/**
+	 * @return the sACN priority of every universe, in the order of the universes of the show
+	 */
+	public int[] getPriorities() {
+		return priorities;
+	}
+}
@@ -0,0 +1,69 @@
+package com.fieryapps.dmx.model;
+
+/**
+ * Immutable, render ready representation of a {@link com.fieryapps.dmx.beans.Scene}.
+ * 
+ * <p>A scene contains one {@link CompiledTrack} for every universe of the show. Tracks are 
+ * indexed like {@link CompiledShow#getUniverses()}. Universes that are not used by the scene 
+ * have a <code>null</code> track.</p>
+ */
+public final class CompiledScene {
+	private final String name;
+	private final int[] triggerKeys;
+	private final boolean repeat;
+	private final boolean random;
+	// layer playing the scene, 0 is the base layer
+	private final int layer;
+	private final CompiledTrack[] tracks;
+	// hash of the settings the scene was compiled from, null if unknown
+	private final byte[] fingerprint;
+	
+	CompiledScene(String name, int[] triggerKeys, boolean repeat, boolean random, int layer, 
+			CompiledTrack[] tracks, byte[] fingerprint) {
+		this.name = name;
+		this.triggerKeys = triggerKeys;
+		this.repeat = repeat;
+		this.random = random;
+		this.layer = layer;
+		this.tracks = tracks;
+		this.fingerprint = fingerprint;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public int[] getTriggerKeys() {
+		return triggerKeys;
+	}
+	
+	public boolean isRepeat() {
+		return repeat;
+	}
+	
+	/**
+	 * @return <code>true</code> if steps are played in random order
+	 */
+	public boolean isRandom() {
+		return random;
+	}
+	
+	/**
+	 * @return the layer playing the scene, 0 for the base layer
+	 */
+	public int getLayer() {
+		return layer;
+	}
+	
+	public CompiledTrack[] getTracks() {
+		return tracks;
+	}
+	
+	/**
+	 * @return the hash of the settings the scene was compiled from, used to reuse unchanged 
+	 *         scenes when the show is reloaded
+	 */
+	byte[] getFingerprint() {
+		return fingerprint;
+	}
+}
@@ -0,0 +1,126 @@
+package com.fieryapps.dmx.model;
+
+/**
+ * Immutable, render ready representation of a {@link com.fieryapps.dmx.beans.Show}.
+ * 
+ * <p>Instances are created by the {@link ShowCompiler}. All arrays are shared with the 
+ * engine and must not be modified.</p>
+ */
+public final class CompiledShow {
+	private final String name;
+	// ids of all universes, the main universe of the show comes first
+	private final short[] universes;
+	// duration of a frame in nanoseconds
+	private final long framePeriod;
+	private final LatePolicy latePolicy;
+	// time in nanoseconds to busy wait before a frame
+	private final long spinTime;
+	// index of the first scene, starting with 0
+	private final int startScene;
+	// number of threads used to render universes, 0 selects the number of processors
+	private final int renderThreads;
+	private final CompiledOutput output;
+	// DMX addresses of the dimmer channels of every universe, starting with 0
+	private final int[][] dimmerChannels;
+	private final CompiledGroup[] groups;
+	private final CompiledScene[] scenes;
+	private final TriggerTable triggers;
+	// number of layers used by the scenes
+	private final int layers;
+	
+	CompiledShow(String name, short[] universes, long framePeriod, LatePolicy latePolicy, 
+			long spinTime, int startScene, int renderThreads, CompiledOutput output, 
+			int[][] dimmerChannels, CompiledGroup[] groups, CompiledScene[] scenes) {
+		this.name = name;
+		this.universes = universes;
+		this.framePeriod = framePeriod;
+		this.latePolicy = latePolicy;
+		this.spinTime = spinTime;
+		this.startScene = startScene;
+		this.renderThreads = renderThreads;
+		this.output = output;
+		this.dimmerChannels = dimmerChannels;
+		this.groups = groups;
+		this.scenes = scenes;
+		this.triggers = new TriggerTable(scenes);
+		int maxLayer = 0;
+		for (CompiledScene scene : scenes) {
+			maxLayer = Math.max(maxLayer, scene.getLayer());
+		}
+		this.layers = maxLayer + 1;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public short[] getUniverses() {
+		return universes;
+	}
+	
+	/**
+	 * @return the duration of a frame in nanoseconds
+	 */
+	public long getFramePeriod() {
+		return framePeriod;
+	}
+	
+	public LatePolicy getLatePolicy() {
+		return latePolicy;
+	}
+	
+	/**
+	 * @return the time in nanoseconds to busy wait for the start of a frame
+	 */
+	public long getSpinTime() {
+		return spinTime;
+	}
+	
+	public int getStartScene() {
+		return startScene;
+	}
+	
+	public int getRenderThreads() {
+		return renderThreads;
+	}
+	
+	public CompiledOutput getOutput() {
+		return output;
+	}
+	
+	/**
+	 * @param universe the index of the universe within the show
+	 * @return the DMX addresses of the dimmer channels of the universe, starting with 0
+	 */
+	public int[] getDimmerChannels(int universe) {
+		return dimmerChannels[universe];
+	}
+	
+	/**
+	 * @return the channel groups in the order of the show file
+	 */
+	public CompiledGroup[] getGroups() {
+		return groups;
+	}
+	
+	public CompiledScene[] getScenes() {
+		return scenes;
+	}
+	
+	/**
+	 * @return the number of layers, one more than the highest layer of all scenes
+	 */
+	public int getLayers() {
+		return layers;
+	}
+	
+	/**
+	 * Find the scene triggered by a key.
+	 * 
+	 * @param key the trigger key
+	 * @return the first scene with a matching trigger key or <code>null</code>
+	 */
+	public CompiledScene getSceneForKey(int key) {
+		return triggers.get(key);
+	}
+}
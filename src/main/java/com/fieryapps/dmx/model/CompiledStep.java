@@ -0,0 +1,83 @@
+package com.fieryapps.dmx.model;
+
+/**
+ * Immutable, render ready representation of a {@link com.fieryapps.dmx.beans.Step}.
+ * 
+ * <p>A step only contains the DMX addresses it sets, all other addresses keep the values of 
+ * the previous step or scene. DMX values are stored as unsigned bytes: 
+ * <code>values[i] &amp; 0xFF</code> is the value of the array index 
+ * <code>addresses[i]</code>, which is DMX address <code>addresses[i] + 1</code>. A step 
+ * setting the first <code>n</code> addresses of the universe shares 
+ * {@link #DENSE_ADDRESSES}, so only the first <code>values.length</code> entries of the 
+ * addresses are valid. The arrays are shared with the engine and must not be modified.</p>
+ */
+public final class CompiledStep {
+	/** the array indexes of all DMX addresses in ascending order */
+	public static final int[] DENSE_ADDRESSES = new int[ShowCompiler.UNIVERSE_SIZE];
+	
+	static {
+		for (int i = 0; i < DENSE_ADDRESSES.length; i++) {
+			DENSE_ADDRESSES[i] = i;
+		}
+	}
+	
+	// time to fade into this step in nanoseconds
+	private final long fadeTime;
+	// time to hold this step in nanoseconds
+	private final long holdTime;
+	private final FadeCurve curve;
+	// array indexes of the DMX addresses set by this step in ascending order
+	private final int[] addresses;
+	// DMX values of the addresses
+	private final byte[] values;
+	
+	CompiledStep(long fadeTime, long holdTime, FadeCurve curve, int[] addresses, 
+			byte[] values) {
+		this.fadeTime = fadeTime;
+		this.holdTime = holdTime;
+		this.curve = curve;
+		this.addresses = addresses;
+		this.values = values;
+	}
+	
+	/**
+	 * @return the time to fade into this step in nanoseconds
+	 */
+	public long getFadeTime() {
+		return fadeTime;
+	}
+	
+	/**
+	 * @return the time to hold this step after fading in nanoseconds
+	 */
+	public long getHoldTime() {
+		return holdTime;
+	}
+	
+	public FadeCurve getCurve() {
+		return curve;
+	}
+	
+	/**
+	 * @return the array indexes of the DMX addresses set by this step, only the first 
+	 *         <code>getValues().length</code> entries are valid
+	 */
+	public int[] getAddresses() {
+		return addresses;
+	}
+	
+	/**
+	 * @return the values of the DMX addresses set by this step
+	 */
+	public byte[] getValues() {
+		return values;
+	}
+	
+	/**
+	 * @return <code>true</code> if the step sets the first addresses of the universe without 
+	 *         gaps
+	 */
+	public boolean isDense() {
+		return addresses == DENSE_ADDRESSES;
+	}
+}
@@ -0,0 +1,195 @@
+package com.fieryapps.dmx.model;
+
+import java.util.Arrays;
+
+/**
+ * Immutable, render ready representation of the steps and effects a scene plays in a single 
+ * universe. A track that only plays effects does not contain any steps.
+ * 
+ * <p>Instead of looking up switch and dimmer channels in lists, every DMX address of the 
+ * track is classified up front. The engine reads the class of address <code>i + 1</code> 
+ * from <code>getChannelModes()[i]</code>.</p>
+ * 
+ * <p>The steps of a timeline track start at absolute times from the start of the scene. For
+ * every step the track keeps a keyframe with the values of all addresses set by the steps 
+ * before it, so the frame at any position of the timeline is calculated from a single 
+ * keyframe and step, which are found with a binary search over the start times.</p>
+ */
+public final class CompiledTrack {
+	/** the channel fades to its target value */
+	public static final byte MODE_FADE = 0;
+	/** the channel switches to its target value without fading */
+	public static final byte MODE_SWITCH = 1;
+	/** the channel fades and is scaled by the master dimmer */
+	public static final byte MODE_DIMMER = 2;
+	
+	// channel class for every DMX address, indexed by address - 1
+	private final byte[] channelModes;
+	// DMX addresses of all dimmer channels of the universe, starting with 0
+	private final int[] dimmerChannels;
+	private final CompiledStep[] steps;
+	private final CompiledEffect[] effects;
+	// -1 for every DMX address set by at least one step or effect and 0 for all others
+	private final short[] ownedMask;
+	// -1 for every dimmer channel and 0 for all others
+	private final short[] intensityMask;
+	// start of every step in nanoseconds from the start of the scene, null unless a timeline
+	private final long[] stepTimes;
+	// values set by all steps before every step, and by all steps after the last one
+	private final CompiledStep[] keyframes;
+	
+	CompiledTrack(byte[] channelModes, int[] dimmerChannels, CompiledStep[] steps, 
+			CompiledEffect[] effects, long[] stepTimes) {
+		this.channelModes = channelModes;
+		this.dimmerChannels = dimmerChannels;
+		this.steps = steps;
+		this.effects = effects;
+		this.stepTimes = stepTimes;
+		keyframes = stepTimes == null ? null : createKeyframes(steps);
+		ownedMask = new short[channelModes.length];
+		for (CompiledStep step : steps) {
+			int[] addresses = step.getAddresses();
+			for (int i = 0; i < step.getValues().length; i++) {
+				ownedMask[addresses[i]] = -1;
+			}
+		}
+		for (CompiledEffect effect : effects) {
+			for (int address : effect.getAddresses()) {
+				ownedMask[address] = -1;
+			}
+		}
+		intensityMask = new short[channelModes.length];
+		for (int address : dimmerChannels) {
+			intensityMask[address] = -1;
+		}
+	}
+	
+	public byte[] getChannelModes() {
+		return channelModes;
+	}
+	
+	public int[] getDimmerChannels() {
+		return dimmerChannels;
+	}
+	
+	public CompiledStep[] getSteps() {
+		return steps;
+	}
+	
+	/**
+	 * @return the effects played on top of the steps, in the order of the show file
+	 */
+	public CompiledEffect[] getEffects() {
+		return effects;
+	}
+	
+	/**
+	 * Masks for merging the tracks of several layers without branches: a value can be 
+	 * selected with <code>value &amp; mask[i]</code>.
+	 * 
+	 * @return -1 for every DMX address set by the track and 0 for all other addresses
+	 */
+	public short[] getOwnedMask() {
+		return ownedMask;
+	}
+	
+	/**
+	 * @return -1 for every dimmer channel, which is merged highest takes precedence, and 0 
+	 *         for all other addresses
+	 */
+	public short[] getIntensityMask() {
+		return intensityMask;
+	}
+	
+	/**
+	 * @return <code>true</code> if the steps start at absolute times of a timeline
+	 */
+	public boolean isTimeline() {
+		return stepTimes != null;
+	}
+	
+	/**
+	 * @return the start of every step in nanoseconds from the start of the scene in 
+	 *         ascending order, or <code>null</code> if the track is not a timeline
+	 */
+	public long[] getStepTimes() {
+		return stepTimes;
+	}
+	
+	/**
+	 * Keyframes of a timeline track. The keyframe of a step contains the values of all 
+	 * addresses set by the steps before it, once their fades are complete. The additional 
+	 * last keyframe contains the values after all steps.
+	 * 
+	 * @return <code>steps.length + 1</code> keyframes, or <code>null</code> if the track is
+	 *         not a timeline
+	 */
+	public CompiledStep[] getKeyframes() {
+		return keyframes;
+	}
+	
+	/**
+	 * @return the time in nanoseconds until the last step of a timeline track has been held
+	 */
+	public long getTimelineLength() {
+		if (stepTimes == null || steps.length == 0) {
+			return 0;
+		}
+		CompiledStep last = steps[steps.length - 1];
+		return stepTimes[steps.length - 1] + last.getFadeTime() + last.getHoldTime();
+	}
+	
+	/**
+	 * Find the step of a timeline track playing at a position with a binary search.
+	 * 
+	 * @param position the time since the start of the scene in nanoseconds
+	 * @return the index of the last step starting at or before the position, or -1 if the 
+	 *         first step starts after the position
+	 */
+	public int findStep(long position) {
+		int low = 0;
+		int high = stepTimes.length - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (stepTimes[middle] <= position) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return high;
+	}
+	
+	private static CompiledStep[] createKeyframes(CompiledStep[] steps) {
+		CompiledStep[] keyframes = new CompiledStep[steps.length + 1];
+		// value of every address after the steps so far, -1 for addresses not set yet
+		int[] values = new int[ShowCompiler.UNIVERSE_SIZE];
+		Arrays.fill(values, -1);
+		for (int i = 0; i <= steps.length; i++) {
+			int count = 0;
+			for (int value : values) {
+				if (value >= 0) {
+					count++;
+				}
+			}
+			int[] keyAddresses = new int[count];
+			byte[] keyValues = new byte[count];
+			count = 0;
+			for (int address = 0; address < values.length; address++) {
+				if (values[address] >= 0) {
+					keyAddresses[count] = address;
+					keyValues[count++] = (byte) values[address];
+				}
+			}
+			keyframes[i] = new CompiledStep(0, 0, FadeCurve.LINEAR, keyAddresses, keyValues);
+			if (i < steps.length) {
+				int[] addresses = steps[i].getAddresses();
+				byte[] stepValues = steps[i].getValues();
+				for (int j = 0; j < stepValues.length; j++) {
+					values[addresses[j]] = stepValues[j] & 0xFF;
+				}
+			}
+		}
+		return keyframes;
+	}
+}
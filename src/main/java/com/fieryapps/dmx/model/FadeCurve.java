@@ -0,0 +1,87 @@
+package com.fieryapps.dmx.model;
+
+/**
+ * Easing curves for fading from one step to the next.
+ * 
+ * <p>Every curve is precomputed into a fixed point lookup table. The engine looks up the 
+ * weight of the target values once per frame and then needs a single multiplication per 
+ * DMX address to calculate the faded value.</p>
+ */
+public enum FadeCurve {
+	/** constant fading speed */
+	LINEAR {
+		@Override
+		double apply(double progress) {
+			return progress;
+		}
+	},
+	/** slow start and end, fast in the middle */
+	S_CURVE {
+		@Override
+		double apply(double progress) {
+			return (1 - Math.cos(Math.PI * progress)) / 2;
+		}
+	},
+	/** square law, compensates the response of incandescent dimmers */
+	SQUARE {
+		@Override
+		double apply(double progress) {
+			return progress * progress;
+		}
+	};
+	
+	/** number of fixed point fraction bits of a weight */
+	public static final int WEIGHT_BITS = 16;
+	/** weight of the target value once the fade is complete */
+	public static final int FULL_WEIGHT = 1 << WEIGHT_BITS;
+	
+	private static final int RESOLUTION = 1024;
+	
+	private final int[] table;
+	
+	private FadeCurve() {
+		table = new int[RESOLUTION + 1];
+		for (int i = 0; i <= RESOLUTION; i++) {
+			table[i] = (int) Math.round(apply(i / (double) RESOLUTION) * FULL_WEIGHT);
+		}
+	}
+	
+	abstract double apply(double progress);
+	
+	/**
+	 * Look up the weight of the target value at a point in time of a fade.
+	 * 
+	 * @param elapsed time since the start of the fade
+	 * @param duration duration of the fade in the same unit, must be greater than 0
+	 * @return the weight of the target value from 0 to {@link #FULL_WEIGHT}
+	 */
+	public int weightAt(long elapsed, long duration) {
+		if (elapsed <= 0) {
+			return 0;
+		}
+		if (elapsed >= duration) {
+			return FULL_WEIGHT;
+		}
+		return table[(int) (elapsed * RESOLUTION / duration)];
+	}
+	
+	/**
+	 * Parse the curve from the show file.
+	 * 
+	 * @param name <code>linear</code>, <code>s-curve</code> or <code>square</code>
+	 * @param defaultCurve returned if name is <code>null</code>
+	 * @return the matching curve
+	 * @throws IllegalArgumentException if the name is unknown
+	 */
+	public static FadeCurve parse(String name, FadeCurve defaultCurve) {
+		if (name == null) {
+			return defaultCurve;
+		}
+		for (FadeCurve curve : values()) {
+			if (curve.name().replace('_', '-').equalsIgnoreCase(name)) {
+				return curve;
+			}
+		}
+		throw new IllegalArgumentException("Unknown fade curve '" + name + "'");
+	}
+}
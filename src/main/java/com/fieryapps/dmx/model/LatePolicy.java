@@ -0,0 +1,29 @@
+package com.fieryapps.dmx.model;
+
+/**
+ * Defines how the engine handles frames that could not be rendered in time.
+ */
+public enum LatePolicy {
+	/** render missed frames back to back until the engine is on schedule again */
+	CATCH_UP,
+	/** skip missed frames and continue with the next frame on schedule */
+	DROP;
+	
+	/**
+	 * Parse the policy from the show file.
+	 * 
+	 * @param name <code>catch-up</code> or <code>drop</code>, <code>null</code> selects 
+	 *        {@link #DROP}
+	 * @return the matching policy
+	 * @throws IllegalArgumentException if the name is unknown
+	 */
+	public static LatePolicy parse(String name) {
+		if (name == null || name.equalsIgnoreCase("drop")) {
+			return DROP;
+		}
+		if (name.equalsIgnoreCase("catch-up")) {
+			return CATCH_UP;
+		}
+		throw new IllegalArgumentException("Unknown latePolicy '" + name + "'");
+	}
+}
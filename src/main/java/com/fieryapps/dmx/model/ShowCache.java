@@ -0,0 +1,366 @@
+package com.fieryapps.dmx.model;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Stores a {@link CompiledShow} in a compact binary file next to its YAML show file.
+ *
+ * <p>The cache file starts with a format version and the SHA-256 hash of the YAML file it
+ * was compiled from. A cached show is only used if both match, so any change of the show
+ * file falls back to parsing the YAML. The file is memory mapped and read with bulk copies,
+ * which is much faster than parsing large shows with SnakeYAML.</p>
+ *
+ * <p>Bump {@link #FORMAT_VERSION} whenever the compiled model or its encoding changes.</p>
+ */
+public final class ShowCache {
+	/** extension appended to the name of the show file */
+	public static final String EXTENSION = ".dmxc";
+
+	private static final int MAGIC = 0x444D5843;
+	private static final int FORMAT_VERSION = 10;
+	private static final int HASH_LENGTH = 32;
+
+	private ShowCache() {
+	}
+
+	/**
+	 * @param showFile the YAML show file
+	 * @return the cache file of the show file
+	 */
+	public static File cacheFileFor(File showFile) {
+		return new File(showFile.getPath() + EXTENSION);
+	}
+
+	/**
+	 * Calculate the hash that identifies the content of a show file.
+	 *
+	 * @param content the content of the YAML show file
+	 * @return the SHA-256 hash of the content
+	 */
+	public static byte[] hash(byte[] content) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(content);
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform supports SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Load a cached show.
+	 *
+	 * @param cacheFile the cache file to read
+	 * @param hash the hash of the current show file
+	 * @return the cached show or <code>null</code> if the file does not exist, was written by
+	 *         another version or for another show file
+	 * @throws IOException if the cache file cannot be read
+	 */
+	public static CompiledShow read(File cacheFile, byte[] hash) throws IOException {
+		if (!cacheFile.isFile()) {
+			return null;
+		}
+		try (RandomAccessFile file = new RandomAccessFile(cacheFile, "r");
+				FileChannel channel = file.getChannel()) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+			if (buffer.remaining() < 8 + HASH_LENGTH || buffer.getInt() != MAGIC
+					|| buffer.getInt() != FORMAT_VERSION) {
+				return null;
+			}
+			byte[] cachedHash = new byte[HASH_LENGTH];
+			buffer.get(cachedHash);
+			if (!Arrays.equals(hash, cachedHash)) {
+				return null;
+			}
+			return readShow(buffer);
+		} catch (BufferUnderflowException | IllegalArgumentException
+				| IndexOutOfBoundsException e) {
+			// truncated or corrupt cache file, compile the show again
+			return null;
+		}
+	}
+
+	/**
+	 * Write a show to its cache file.
+	 *
+	 * <p>The file is written to a temporary file first and then renamed, so a concurrently
+	 * starting engine never reads a partially written cache file.</p>
+	 *
+	 * @param cacheFile the cache file to write
+	 * @param hash the hash of the show file the show was compiled from
+	 * @param show the compiled show
+	 * @throws IOException if the cache file cannot be written
+	 */
+	public static void write(File cacheFile, byte[] hash, CompiledShow show) throws IOException {
+		File directory = cacheFile.getAbsoluteFile().getParentFile();
+		File tempFile = File.createTempFile(cacheFile.getName(), ".tmp", directory);
+		try {
+			try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tempFile))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.write(hash);
+				writeShow(out, show);
+			}
+			try {
+				Files.move(tempFile.toPath(), cacheFile.toPath(),
+						StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile.toPath(), cacheFile.toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tempFile.toPath());
+		}
+	}
+
+	private static void writeShow(DataOutputStream out, CompiledShow show) throws IOException {
+		writeString(out, show.getName());
+		out.writeInt(show.getUniverses().length);
+		for (short universe : show.getUniverses()) {
+			out.writeShort(universe);
+		}
+		out.writeLong(show.getFramePeriod());
+		out.writeByte(show.getLatePolicy().ordinal());
+		out.writeLong(show.getSpinTime());
+		out.writeInt(show.getStartScene());
+		out.writeInt(show.getRenderThreads());
+
+		CompiledOutput output = show.getOutput();
+		out.writeByte(output.getType());
+		writeString(out, output.getAddress());
+		out.writeInt(output.getSubnet());
+		out.writeLong(output.getKeepAliveTime());
+		out.writeInt(output.getRoutedUniverses().length);
+		for (int i = 0; i < output.getRoutedUniverses().length; i++) {
+			out.writeShort(output.getRoutedUniverses()[i]);
+			writeString(out, output.getRouteAddresses()[i]);
+		}
+		out.writeBoolean(output.isSync());
+		writeString(out, output.getSourceName());
+		writeString(out, output.getCid());
+		writeString(out, output.getNetworkInterface());
+		writeInts(out, output.getPriorities());
+
+		for (int i = 0; i < show.getUniverses().length; i++) {
+			writeInts(out, show.getDimmerChannels(i));
+		}
+		out.writeInt(show.getGroups().length);
+		for (CompiledGroup group : show.getGroups()) {
+			writeString(out, group.getName());
+			out.writeInt(group.getUniverse());
+			writeInts(out, group.getAddresses());
+			out.writeInt(group.getMaster());
+		}
+
+		out.writeInt(show.getScenes().length);
+		for (CompiledScene scene : show.getScenes()) {
+			writeString(out, scene.getName());
+			out.write(scene.getFingerprint());
+			writeInts(out, scene.getTriggerKeys());
+			out.writeBoolean(scene.isRepeat());
+			out.writeBoolean(scene.isRandom());
+			out.writeInt(scene.getLayer());
+			// one track for every universe, null tracks are marked with a single byte
+			for (CompiledTrack track : scene.getTracks()) {
+				out.writeBoolean(track != null);
+				if (track != null) {
+					writeTrack(out, track);
+				}
+			}
+		}
+	}
+
+	private static void writeTrack(DataOutputStream out, CompiledTrack track)
+			throws IOException {
+		out.write(track.getChannelModes());
+		writeInts(out, track.getDimmerChannels());
+		out.writeInt(track.getSteps().length);
+		for (CompiledStep step : track.getSteps()) {
+			out.writeLong(step.getFadeTime());
+			out.writeLong(step.getHoldTime());
+			out.writeByte(step.getCurve().ordinal());
+			out.writeInt(step.getValues().length);
+			out.write(step.getValues());
+			// dense steps share their addresses, so only sparse addresses are written
+			out.writeBoolean(step.isDense());
+			if (!step.isDense()) {
+				writeInts(out, step.getAddresses());
+			}
+		}
+		out.writeBoolean(track.isTimeline());
+		if (track.isTimeline()) {
+			for (long stepTime : track.getStepTimes()) {
+				out.writeLong(stepTime);
+			}
+		}
+		out.writeInt(track.getEffects().length);
+		for (CompiledEffect effect : track.getEffects()) {
+			out.writeByte(effect.getWaveform().ordinal());
+			out.writeInt(effect.getDuty());
+			writeInts(out, effect.getAddresses());
+			writeInts(out, effect.getOffsets());
+			out.writeLong(effect.getPeriod());
+			out.writeInt(effect.getMin());
+			out.writeInt(effect.getRange());
+		}
+	}
+
+	private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+		out.writeInt(values.length);
+		for (int value : values) {
+			out.writeInt(value);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static CompiledShow readShow(ByteBuffer in) {
+		String name = readString(in);
+		short[] universes = new short[readLength(in, 2)];
+		for (int i = 0; i < universes.length; i++) {
+			universes[i] = in.getShort();
+		}
+		long framePeriod = in.getLong();
+		LatePolicy latePolicy = LatePolicy.values()[in.get()];
+		long spinTime = in.getLong();
+		int startScene = in.getInt();
+		int renderThreads = in.getInt();
+
+		byte type = in.get();
+		String address = readString(in);
+		int subnet = in.getInt();
+		long keepAliveTime = in.getLong();
+		short[] routedUniverses = new short[readLength(in, 2)];
+		String[] routeAddresses = new String[routedUniverses.length];
+		for (int i = 0; i < routedUniverses.length; i++) {
+			routedUniverses[i] = in.getShort();
+			routeAddresses[i] = readString(in);
+		}
+		boolean sync = in.get() != 0;
+		String sourceName = readString(in);
+		String cid = readString(in);
+		String networkInterface = readString(in);
+		int[] priorities = readInts(in);
+		CompiledOutput output = new CompiledOutput(type, address, subnet, keepAliveTime,
+				routedUniverses, routeAddresses, sync, sourceName, cid, networkInterface, 
+				priorities);
+
+		int[][] dimmerChannels = new int[universes.length][];
+		for (int i = 0; i < universes.length; i++) {
+			dimmerChannels[i] = readInts(in);
+		}
+		CompiledGroup[] groups = new CompiledGroup[readLength(in, 1)];
+		for (int i = 0; i < groups.length; i++) {
+			groups[i] = new CompiledGroup(readString(in), in.getInt(), readInts(in), 
+					in.getInt());
+		}
+
+		CompiledScene[] scenes = new CompiledScene[readLength(in, 1)];
+		for (int i = 0; i < scenes.length; i++) {
+			String sceneName = readString(in);
+			byte[] fingerprint = new byte[HASH_LENGTH];
+			in.get(fingerprint);
+			int[] triggerKeys = readInts(in);
+			boolean repeat = in.get() != 0;
+			boolean random = in.get() != 0;
+			int layer = in.getInt();
+			CompiledTrack[] tracks = new CompiledTrack[universes.length];
+			for (int j = 0; j < tracks.length; j++) {
+				if (in.get() != 0) {
+					tracks[j] = readTrack(in);
+				}
+			}
+			scenes[i] = new CompiledScene(sceneName, triggerKeys, repeat, random, layer, 
+					tracks, fingerprint);
+		}
+		return new CompiledShow(name, universes, framePeriod, latePolicy, spinTime,
+				startScene, renderThreads, output, dimmerChannels, groups, scenes);
+	}
+
+	private static CompiledTrack readTrack(ByteBuffer in) {
+		byte[] channelModes = new byte[ShowCompiler.UNIVERSE_SIZE];
+		in.get(channelModes);
+		int[] dimmerChannels = readInts(in);
+		CompiledStep[] steps = new CompiledStep[readLength(in, 1)];
+		FadeCurve[] curves = FadeCurve.values();
+		for (int i = 0; i < steps.length; i++) {
+			long fadeTime = in.getLong();
+			long holdTime = in.getLong();
+			FadeCurve curve = curves[in.get()];
+			byte[] values = new byte[readLength(in, 1)];
+			in.get(values);
+			int[] addresses = in.get() != 0 ? CompiledStep.DENSE_ADDRESSES : readInts(in);
+			steps[i] = new CompiledStep(fadeTime, holdTime, curve, addresses, values);
+		}
+		long[] stepTimes = null;
+		if (in.get() != 0) {
+			// the keyframes of a timeline are created again from its steps
+			stepTimes = new long[steps.length];
+			in.asLongBuffer().get(stepTimes);
+			in.position(in.position() + stepTimes.length * 8);
+		}
+		CompiledEffect[] effects = new CompiledEffect[readLength(in, 1)];
+		Waveform[] waveforms = Waveform.values();
+		for (int i = 0; i < effects.length; i++) {
+			Waveform waveform = waveforms[in.get()];
+			int duty = in.getInt();
+			int[] addresses = readInts(in);
+			int[] offsets = readInts(in);
+			effects[i] = new CompiledEffect(waveform, duty, addresses, offsets, in.getLong(), 
+					in.getInt(), in.getInt());
+		}
+		return new CompiledTrack(channelModes, dimmerChannels, steps, effects, stepTimes);
+	}
+
+	private static int[] readInts(ByteBuffer in) {
+		int[] values = new int[readLength(in, 4)];
+		in.asIntBuffer().get(values);
+		in.position(in.position() + values.length * 4);
+		return values;
+	}
+
+	/**
+	 * Read the length of an array and make sure the remaining file can hold it, so a corrupt
+	 * cache file cannot trigger huge allocations.
+	 */
+	private static int readLength(ByteBuffer in, int elementSize) {
+		int length = in.getInt();
+		if (length < 0 || length > in.remaining() / elementSize) {
+			throw new IllegalArgumentException("Invalid length " + length);
+		}
+		return length;
+	}
+
+	private static String readString(ByteBuffer in) {
+		if (in.getInt(in.position()) == -1) {
+			in.getInt();
+			return null;
+		}
+		byte[] bytes = new byte[readLength(in, 1)];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,745 @@
+package com.fieryapps.dmx.model;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+import com.fieryapps.dmx.beans.Artnet;
+import com.fieryapps.dmx.beans.ArtnetNode;
+import com.fieryapps.dmx.beans.Effect;
+import com.fieryapps.dmx.beans.Group;
+import com.fieryapps.dmx.beans.Sacn;
+import com.fieryapps.dmx.beans.Scene;
+import com.fieryapps.dmx.beans.Show;
+import com.fieryapps.dmx.beans.Step;
+import com.fieryapps.dmx.beans.UniverseSettings;
+import com.fieryapps.dmx.beans.UniverseSteps;
+
+/**
+ * Turns the Java Beans loaded from the YAML show file into a {@link CompiledShow}.
+ *
+ * <p>The compiler validates the show once, converts all boxed values into primitive arrays
+ * and classifies every DMX address of a scene, so the engine does not need to unbox values
+ * or search lists while rendering frames.</p>
+ */
+public final class ShowCompiler {
+	/** number of addresses in a DMX universe */
+	public static final int UNIVERSE_SIZE = 512;
+	/** maximum number of layers playing scenes at the same time */
+	public static final int MAX_LAYERS = 8;
+	
+	// universes and priorities supported by sACN
+	private static final int MIN_SACN_UNIVERSE = 1;
+	// sACN allows universes up to 63999, but universes are stored as short
+	private static final int MAX_SACN_UNIVERSE = Short.MAX_VALUE;
+	private static final int MAX_SACN_PRIORITY = 200;
+	// refresh unchanged frames once per second by default
+	private static final int DEFAULT_KEEP_ALIVE = 1000;
+
+	private ShowCompiler() {
+	}
+
+	/**
+	 * Compile a show loaded from a YAML file.
+	 *
+	 * @param show the show to compile
+	 * @return the compiled show
+	 * @throws IllegalArgumentException if the show contains invalid settings
+	 */
+	public static CompiledShow compile(Show show) {
+		return compile(show, null);
+	}
+
+	/**
+	 * Compile a modified version of a show.
+	 *
+	 * <p>Scenes are identified by a fingerprint of their settings and the universe settings
+	 * of the show. Scenes with the same fingerprint as a scene of the previous show are not
+	 * compiled again, the previous compiled scene is used instead.</p>
+	 *
+	 * @param show the show to compile
+	 * @param previous the previously compiled version of the show, may be <code>null</code>
+	 * @return the compiled show
+	 * @throws IllegalArgumentException if the show contains invalid settings
+	 */
+	public static CompiledShow compile(Show show, CompiledShow previous) {
+		if (show == null) {
+			throw new NullPointerException("Show must not be null");
+		}
+		if (show.getFrameDuration() <= 0 && show.getFrameRate() <= 0) {
+			throw new IllegalArgumentException("frameDuration must be greater than 0");
+		}
+		if (show.getSpinMicros() < 0) {
+			throw new IllegalArgumentException("spinMicros must not be negative");
+		}
+		if (show.getScenes() == null || show.getScenes().isEmpty()) {
+			throw new IllegalArgumentException("Show does not contain any scenes");
+		}
+		if (show.getStartScene() < 1 || show.getStartScene() > show.getScenes().size()) {
+			throw new IllegalArgumentException("startScene " + show.getStartScene()
+					+ " does not exist");
+		}
+		if (show.getRenderThreads() < 0) {
+			throw new IllegalArgumentException("renderThreads must not be negative");
+		}
+		
+		long framePeriod = show.getFrameRate() > 0 ? Math.round(1e9 / show.getFrameRate()) 
+				: show.getFrameDuration() * 1000000L;
+		LatePolicy latePolicy = LatePolicy.parse(show.getLatePolicy());
+		
+		// the main universe of the show is always the first one
+		int universeCount = 1 + (show.getUniverses() == null ? 0 : show.getUniverses().size());
+		short[] universes = new short[universeCount];
+		int[][] dimmerChannels = new int[universeCount][];
+		universes[0] = show.getUniverse();
+		dimmerChannels[0] = toAddresses(show.getDimmerChannels(), "dimmerChannels");
+		for (int i = 1; i < universeCount; i++) {
+			UniverseSettings settings = show.getUniverses().get(i - 1);
+			if (indexOf(universes, i, settings.getUniverse()) >= 0) {
+				throw new IllegalArgumentException("Universe " + settings.getUniverse() 
+						+ " is declared more than once");
+			}
+			universes[i] = settings.getUniverse();
+			dimmerChannels[i] = toAddresses(settings.getDimmerChannels(), 
+					"dimmerChannels of universe " + settings.getUniverse());
+		}
+		
+		Map<ByteBuffer, CompiledScene> previousScenes = new HashMap<ByteBuffer, CompiledScene>();
+		if (previous != null) {
+			for (CompiledScene scene : previous.getScenes()) {
+				if (scene.getFingerprint() != null) {
+					previousScenes.put(ByteBuffer.wrap(scene.getFingerprint()), scene);
+				}
+			}
+		}
+		CompiledScene[] scenes = new CompiledScene[show.getScenes().size()];
+		for (int i = 0; i < scenes.length; i++) {
+			Scene scene = show.getScenes().get(i);
+			byte[] fingerprint = fingerprint(scene, universes, dimmerChannels);
+			scenes[i] = previousScenes.get(ByteBuffer.wrap(fingerprint));
+			if (scenes[i] == null) {
+				scenes[i] = compileScene(scene, universes, dimmerChannels, fingerprint);
+			}
+		}
+		if (scenes[show.getStartScene() - 1].getLayer() != 0) {
+			throw new IllegalArgumentException("startScene must be played in layer 0");
+		}
+
+		return new CompiledShow(show.getName(), universes, framePeriod, latePolicy,
+				show.getSpinMicros() * 1000L, show.getStartScene() - 1, show.getRenderThreads(), 
+				compileOutput(show, universes), dimmerChannels, compileGroups(show, universes),
+				scenes);
+	}
+	
+	private static CompiledGroup[] compileGroups(Show show, short[] universes) {
+		if (show.getGroups() == null) {
+			return new CompiledGroup[0];
+		}
+		CompiledGroup[] groups = new CompiledGroup[show.getGroups().size()];
+		for (int i = 0; i < groups.length; i++) {
+			Group group = show.getGroups().get(i);
+			if (group.getName() == null) {
+				throw new IllegalArgumentException("Group " + (i + 1) + " needs a name");
+			}
+			for (int j = 0; j < i; j++) {
+				if (groups[j].getName().equals(group.getName())) {
+					throw new IllegalArgumentException("Group " + group.getName() 
+							+ " is declared more than once");
+				}
+			}
+			String description = "group " + group.getName();
+			int universe = group.getUniverse() == null ? 0 
+					: indexOf(universes, universes.length, group.getUniverse());
+			if (universe < 0) {
+				throw new IllegalArgumentException("Undeclared universe " + group.getUniverse() 
+						+ " in " + description);
+			}
+			if (group.getMaster() < 0 || group.getMaster() > 255) {
+				throw new IllegalArgumentException("Master " + group.getMaster() + " of " 
+						+ description + " is not within 0 - 255");
+			}
+			groups[i] = new CompiledGroup(group.getName(), universe, 
+					toAddresses(group.getChannels(), description), group.getMaster());
+		}
+		return groups;
+	}
+	
+	private static CompiledOutput compileOutput(Show show, short[] universes) {
+		int keepAlive = show.getKeepAlive() == null ? DEFAULT_KEEP_ALIVE : show.getKeepAlive();
+		long keepAliveTime = Math.max(0, keepAlive) * 1000000L;
+		Artnet artnet = show.getArtnet();
+		if (artnet != null && show.getSacn() != null) {
+			throw new IllegalArgumentException("A show can either send Art-Net or sACN");
+		}
+		if (show.getSacn() != null) {
+			return compileSacn(show, universes, keepAliveTime);
+		}
+		if (artnet == null) {
+			return new CompiledOutput(CompiledOutput.TYPE_OLA, null, 0, keepAliveTime, 
+					new short[0], new String[0], false, null, null, null, new int[0]);
+		}
+		
+		List<Short> routedUniverses = new ArrayList<>();
+		List<String> routeAddresses = new ArrayList<>();
+		if (artnet.getNodes() != null) {
+			for (ArtnetNode node : artnet.getNodes()) {
+				if (node.getAddress() == null || node.getUniverses() == null) {
+					throw new IllegalArgumentException(
+							"Art-Net nodes need an address and a list of universes");
+				}
+				for (Short universe : node.getUniverses()) {
+					if (indexOf(universes, universes.length, universe) < 0) {
+						throw new IllegalArgumentException("Art-Net node " + node.getAddress()
+								+ " receives undeclared universe " + universe);
+					}
+					if (routedUniverses.contains(universe)) {
+						throw new IllegalArgumentException("Universe " + universe 
+								+ " is sent to more than one Art-Net node");
+					}
+					routedUniverses.add(universe);
+					routeAddresses.add(node.getAddress());
+				}
+			}
+		}
+		short[] routes = new short[routedUniverses.size()];
+		for (int i = 0; i < routes.length; i++) {
+			routes[i] = routedUniverses.get(i);
+		}
+		return new CompiledOutput(CompiledOutput.TYPE_ARTNET, artnet.getAddress(), 
+				artnet.getSubnet(), keepAliveTime, routes, 
+				routeAddresses.toArray(new String[routeAddresses.size()]), artnet.isSync(), 
+				null, null, null, new int[0]);
+	}
+	
+	private static CompiledOutput compileSacn(Show show, short[] universes, 
+			long keepAliveTime) {
+		Sacn sacn = show.getSacn();
+		for (short universe : universes) {
+			if (universe < MIN_SACN_UNIVERSE || universe > MAX_SACN_UNIVERSE) {
+				throw new IllegalArgumentException("Universe " + universe 
+						+ " is not a valid sACN universe, use universes from " 
+						+ MIN_SACN_UNIVERSE + " to " + MAX_SACN_UNIVERSE);
+			}
+		}
+		int[] priorities = new int[universes.length];
+		Arrays.fill(priorities, checkPriority(sacn.getPriority(), "sACN priority"));
+		Map<? extends Number, ? extends Number> universePriorities = sacn.getPriorities();
+		if (universePriorities != null) {
+			for (Map.Entry<? extends Number, ? extends Number> entry 
+					: universePriorities.entrySet()) {
+				int index = entry.getKey() == null ? -1 
+						: indexOf(universes, universes.length, entry.getKey().shortValue());
+				if (index < 0) {
+					throw new IllegalArgumentException("sACN priority of undeclared universe " 
+							+ entry.getKey());
+				}
+				priorities[index] = checkPriority(entry.getValue(), 
+						"sACN priority of universe " + entry.getKey());
+			}
+		}
+		String sourceName = sacn.getSourceName() == null ? show.getName() 
+				: sacn.getSourceName();
+		String cid = null;
+		if (sacn.getCid() != null) {
+			try {
+				cid = UUID.fromString(sacn.getCid()).toString();
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("sACN cid " + sacn.getCid() 
+						+ " is not a UUID", e);
+			}
+		}
+		return new CompiledOutput(CompiledOutput.TYPE_SACN, sacn.getAddress(), 0, 
+				keepAliveTime, new short[0], new String[0], false, 
+				sourceName == null ? "SimpleDmxEngine" : sourceName, cid, 
+				sacn.getNetworkInterface(), priorities);
+	}
+	
+	private static int checkPriority(Number priority, String description) {
+		int value = priority == null ? -1 : priority.intValue();
+		if (value < 0 || value > MAX_SACN_PRIORITY) {
+			throw new IllegalArgumentException(description + " " + priority 
+					+ " is not within 0 - " + MAX_SACN_PRIORITY);
+		}
+		return value;
+	}
+
+	private static CompiledScene compileScene(Scene scene, short[] universes, 
+			int[][] dimmerChannels, byte[] fingerprint) {
+		String description = "scene '" + scene.getName() + "'";
+		FadeCurve curve = FadeCurve.parse(scene.getCurve(), FadeCurve.LINEAR);
+		CompiledTrack[] tracks = new CompiledTrack[universes.length];
+		CompiledEffect[][] effects = compileEffects(scene.getEffects(), universes, description);
+		boolean empty = true;
+		
+		if (scene.getSteps() != null && !scene.getSteps().isEmpty()) {
+			tracks[0] = compileTrack(curve, scene.getSteps(), scene.getSwitchChannels(), 
+					dimmerChannels[0], effects[0], scene.isTimeline(), description);
+			empty = false;
+		}
+		if (scene.getUniverses() != null) {
+			for (UniverseSteps universeSteps : scene.getUniverses()) {
+				String trackDescription = "universe " + universeSteps.getUniverse() + " of " 
+						+ description;
+				int index = indexOf(universes, universes.length, universeSteps.getUniverse());
+				if (index < 0) {
+					throw new IllegalArgumentException("Undeclared " + trackDescription);
+				}
+				if (tracks[index] != null) {
+					throw new IllegalArgumentException("Steps defined more than once for " 
+							+ trackDescription);
+				}
+				if (universeSteps.getSteps() == null || universeSteps.getSteps().isEmpty()) {
+					throw new IllegalArgumentException("No steps defined for " 
+							+ trackDescription);
+				}
+				tracks[index] = compileTrack(curve, universeSteps.getSteps(), 
+						universeSteps.getSwitchChannels(), dimmerChannels[index], 
+						effects[index], scene.isTimeline(), trackDescription);
+				empty = false;
+			}
+		}
+		for (int i = 0; i < universes.length; i++) {
+			if (tracks[i] == null && effects[i].length > 0) {
+				// the universe only plays effects
+				tracks[i] = compileTrack(curve, Collections.<Step>emptyList(), null, 
+						dimmerChannels[i], effects[i], scene.isTimeline(), description);
+				empty = false;
+			}
+		}
+		if (empty) {
+			throw new IllegalArgumentException("Scene '" + scene.getName()
+					+ "' does not contain any steps or effects");
+		}
+		if (scene.isTimeline() && "random".equalsIgnoreCase(scene.getOrder())) {
+			throw new IllegalArgumentException("The steps of timeline " + description 
+					+ " cannot be played in random order");
+		}
+		if (scene.getLayer() < 0 || scene.getLayer() >= MAX_LAYERS) {
+			throw new IllegalArgumentException("layer of " + description 
+					+ " must be within 0 - " + (MAX_LAYERS - 1));
+		}
+
+		int[] triggerKeys = new int[scene.getTriggerKeys() == null ? 0
+				: scene.getTriggerKeys().size()];
+		for (int i = 0; i < triggerKeys.length; i++) {
+			triggerKeys[i] = scene.getTriggerKeys().get(i);
+		}
+
+		return new CompiledScene(scene.getName(), triggerKeys, scene.isRepeat(),
+				"random".equalsIgnoreCase(scene.getOrder()), scene.getLayer(), tracks, 
+				fingerprint);
+	}
+	
+	/**
+	 * Calculate a hash of all settings a compiled scene depends on.
+	 *
+	 * <p>Every property of a {@link Scene} and its steps must be part of the fingerprint, 
+	 * otherwise changes to this property are not picked up when reloading the show.</p>
+	 */
+	private static byte[] fingerprint(Scene scene, short[] universes, int[][] dimmerChannels) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			DataOutputStream out = new DataOutputStream(new DigestOutputStream(
+					new OutputStream() {
+						@Override
+						public void write(int b) {
+						}
+					}, digest));
+			for (int i = 0; i < universes.length; i++) {
+				out.writeShort(universes[i]);
+				writeNumbers(out, dimmerChannels[i]);
+			}
+			writeString(out, scene.getName());
+			writeNumbers(out, scene.getTriggerKeys());
+			out.writeBoolean(scene.isRepeat());
+			writeString(out, scene.getOrder());
+			writeString(out, scene.getCurve());
+			out.writeInt(scene.getLayer());
+			out.writeBoolean(scene.isTimeline());
+			writeNumbers(out, scene.getSwitchChannels());
+			writeSteps(out, scene.getSteps());
+			if (scene.getUniverses() == null) {
+				out.writeInt(-1);
+			} else {
+				out.writeInt(scene.getUniverses().size());
+				for (UniverseSteps universeSteps : scene.getUniverses()) {
+					out.writeShort(universeSteps.getUniverse());
+					writeNumbers(out, universeSteps.getSwitchChannels());
+					writeSteps(out, universeSteps.getSteps());
+				}
+			}
+			writeEffects(out, scene.getEffects());
+			out.flush();
+			return digest.digest();
+		} catch (IOException | NoSuchAlgorithmException e) {
+			// writing to a digest does not fail and every Java platform supports SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	private static void writeSteps(DataOutputStream out, List<Step> steps) throws IOException {
+		if (steps == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(steps.size());
+		for (Step step : steps) {
+			out.writeLong(step.getFade());
+			out.writeLong(step.getHold());
+			writeString(out, step.getCurve());
+			writeNumbers(out, step.getValues());
+			writeNumbers(out, step.getSet());
+			out.writeLong(step.getAt() == null ? -1 : step.getAt());
+		}
+	}
+	
+	private static void writeEffects(DataOutputStream out, List<Effect> effects) 
+			throws IOException {
+		if (effects == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(effects.size());
+		for (Effect effect : effects) {
+			writeString(out, effect.getType());
+			out.writeBoolean(effect.getUniverse() != null);
+			if (effect.getUniverse() != null) {
+				out.writeShort(effect.getUniverse());
+			}
+			writeNumbers(out, effect.getChannels());
+			out.writeLong(effect.getPeriod());
+			out.writeBoolean(effect.getSpread() != null);
+			if (effect.getSpread() != null) {
+				out.writeDouble(effect.getSpread());
+			}
+			out.writeShort(effect.getMin());
+			out.writeShort(effect.getMax());
+			out.writeInt(effect.getWidth());
+		}
+	}
+	
+	private static void writeNumbers(DataOutputStream out, List<? extends Number> numbers) 
+			throws IOException {
+		if (numbers == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(numbers.size());
+		for (Number number : numbers) {
+			out.writeInt(number.intValue());
+		}
+	}
+	
+	private static void writeNumbers(DataOutputStream out, 
+			Map<? extends Number, ? extends Number> numbers) throws IOException {
+		if (numbers == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(numbers.size());
+		for (Map.Entry<? extends Number, ? extends Number> entry : numbers.entrySet()) {
+			out.writeInt(entry.getKey().intValue());
+			out.writeInt(entry.getValue().intValue());
+		}
+	}
+	
+	private static void writeNumbers(DataOutputStream out, int[] numbers) throws IOException {
+		out.writeInt(numbers.length);
+		for (int number : numbers) {
+			out.writeInt(number);
+		}
+	}
+	
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+	
+	/**
+	 * Compile the effects of a scene.
+	 * 
+	 * @return the effects of every universe, indexed like the universes of the show
+	 */
+	private static CompiledEffect[][] compileEffects(List<Effect> effects, short[] universes, 
+			String description) {
+		List<List<CompiledEffect>> universeEffects = new ArrayList<List<CompiledEffect>>();
+		for (int i = 0; i < universes.length; i++) {
+			universeEffects.add(new ArrayList<CompiledEffect>());
+		}
+		if (effects != null) {
+			for (int i = 0; i < effects.size(); i++) {
+				Effect effect = effects.get(i);
+				String effectDescription = "effect " + (i + 1) + " of " + description;
+				int index = 0;
+				if (effect.getUniverse() != null) {
+					index = indexOf(universes, universes.length, effect.getUniverse());
+					if (index < 0) {
+						throw new IllegalArgumentException("Undeclared universe " 
+								+ effect.getUniverse() + " in " + effectDescription);
+					}
+				}
+				universeEffects.get(index).add(compileEffect(effect, effectDescription));
+			}
+		}
+		CompiledEffect[][] compiled = new CompiledEffect[universes.length][];
+		for (int i = 0; i < compiled.length; i++) {
+			compiled[i] = universeEffects.get(i).toArray(new CompiledEffect[0]);
+		}
+		return compiled;
+	}
+	
+	private static CompiledEffect compileEffect(Effect effect, String description) {
+		String type = effect.getType() == null ? "" 
+				: effect.getType().toLowerCase(Locale.ENGLISH);
+		Waveform waveform;
+		// chases and rainbows run across all channels by default
+		double defaultSpread = 360;
+		// number of consecutive addresses set per channel
+		int components = 1;
+		switch (type) {
+			case "sine":
+				waveform = Waveform.SINE;
+				defaultSpread = 0;
+				break;
+			case "saw":
+				waveform = Waveform.SAW;
+				defaultSpread = 0;
+				break;
+			case "square":
+				waveform = Waveform.SQUARE;
+				defaultSpread = 0;
+				break;
+			case "chase":
+				waveform = Waveform.SQUARE;
+				break;
+			case "rainbow":
+				// red, green and blue address of every fixture
+				waveform = Waveform.HUE;
+				components = 3;
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown type '" + effect.getType() 
+						+ "' of " + description);
+		}
+		
+		int[] channels = toAddresses(effect.getChannels(), "channels of " + description);
+		if (channels.length == 0) {
+			throw new IllegalArgumentException("No channels defined for " + description);
+		}
+		if (effect.getPeriod() <= 0) {
+			throw new IllegalArgumentException("period of " + description 
+					+ " must be greater than 0");
+		}
+		if (effect.getMin() < 0 || effect.getMin() > 255 || effect.getMax() < 0 
+				|| effect.getMax() > 255) {
+			throw new IllegalArgumentException("min and max of " + description 
+					+ " must be within 0 - 255");
+		}
+		int duty = Waveform.HALF_CYCLE;
+		if ("chase".equals(type)) {
+			if (effect.getWidth() < 1 || effect.getWidth() > channels.length) {
+				throw new IllegalArgumentException("width of " + description 
+						+ " must be within 1 - " + channels.length);
+			}
+			duty = effect.getWidth() * Waveform.TABLE_SIZE / channels.length;
+		}
+		
+		double spread = effect.getSpread() == null ? defaultSpread : effect.getSpread();
+		int[] addresses = new int[channels.length * components];
+		int[] offsets = new int[addresses.length];
+		for (int i = 0; i < channels.length; i++) {
+			if (channels[i] + components > UNIVERSE_SIZE) {
+				throw new IllegalArgumentException("Color channels of address " 
+						+ (channels[i] + 1) + " in " + description + " exceed the universe");
+			}
+			// later channels follow the wave, so it travels from the first to the last channel
+			int offset = (int) -Math.round(spread / 360 * Waveform.TABLE_SIZE * i 
+					/ channels.length);
+			for (int c = 0; c < components; c++) {
+				addresses[i * components + c] = channels[i] + c;
+				offsets[i * components + c] = (offset - c * Waveform.TABLE_SIZE / components) 
+						& Waveform.PHASE_MASK;
+			}
+		}
+		return new CompiledEffect(waveform, duty, addresses, offsets, 
+				effect.getPeriod() * 1000000L, effect.getMin(), effect.getMax() - effect.getMin());
+	}
+	
+	private static CompiledTrack compileTrack(FadeCurve curve, List<Step> steps, 
+			List<Short> switchChannels, int[] dimmerChannels, CompiledEffect[] effects, 
+			boolean timeline, String description) {
+		byte[] channelModes = new byte[UNIVERSE_SIZE];
+		for (int address : toAddresses(switchChannels, "switchChannels of " + description)) {
+			channelModes[address] = CompiledTrack.MODE_SWITCH;
+		}
+		// dimmer channels always fade, even if they are listed as switch channels
+		for (int address : dimmerChannels) {
+			channelModes[address] = CompiledTrack.MODE_DIMMER;
+		}
+
+		CompiledStep[] compiledSteps = new CompiledStep[steps.size()];
+		for (int i = 0; i < compiledSteps.length; i++) {
+			compiledSteps[i] = compileStep(curve, steps.get(i), 
+					"step " + (i + 1) + " of " + description);
+			if (!timeline && steps.get(i).getAt() != null) {
+				throw new IllegalArgumentException("Start time in step " + (i + 1) + " of " 
+						+ description + ", which is not a timeline");
+			}
+		}
+		long[] stepTimes = timeline ? compileStepTimes(steps, compiledSteps, description) 
+				: null;
+		return new CompiledTrack(channelModes, dimmerChannels, compiledSteps, effects, 
+				stepTimes);
+	}
+	
+	/**
+	 * Calculate the start of every step of a timeline. A step without <code>at</code> starts 
+	 * when the previous step has been held. A step with <code>at</code> ends the hold of the 
+	 * previous step, which is replaced by the time until the step starts.
+	 */
+	private static long[] compileStepTimes(List<Step> steps, CompiledStep[] compiledSteps, 
+			String description) {
+		long[] stepTimes = new long[compiledSteps.length];
+		long time = 0;
+		for (int i = 0; i < compiledSteps.length; i++) {
+			Long at = steps.get(i).getAt();
+			if (at != null) {
+				if (at < 0) {
+					throw new IllegalArgumentException("Negative start time in step " 
+							+ (i + 1) + " of " + description);
+				}
+				if (i > 0 && at * 1000000L < stepTimes[i - 1] 
+						+ compiledSteps[i - 1].getFadeTime()) {
+					throw new IllegalArgumentException("Step " + (i + 1) + " of " 
+							+ description + " starts at " + at 
+							+ " ms, before the previous step has faded in");
+				}
+				time = at * 1000000L;
+				if (i > 0) {
+					CompiledStep previous = compiledSteps[i - 1];
+					compiledSteps[i - 1] = new CompiledStep(previous.getFadeTime(), 
+							time - stepTimes[i - 1] - previous.getFadeTime(), 
+							previous.getCurve(), previous.getAddresses(), previous.getValues());
+				}
+			}
+			stepTimes[i] = time;
+			time += compiledSteps[i].getFadeTime() + compiledSteps[i].getHoldTime();
+		}
+		return stepTimes;
+	}
+	
+	private static int indexOf(short[] universes, int length, short universe) {
+		for (int i = 0; i < length; i++) {
+			if (universes[i] == universe) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Compile a step. The dense <code>values</code> start with address 1, the sparse 
+	 * <code>set</code> values override or extend them. Only the addresses set this way are 
+	 * part of the compiled step.
+	 */
+	private static CompiledStep compileStep(FadeCurve curve, Step step, String description) {
+		List<? extends Number> values = step.getValues();
+		Map<? extends Number, ? extends Number> set = step.getSet();
+		if (values == null && set == null) {
+			throw new IllegalArgumentException("No values defined for " + description);
+		}
+		if (values != null && values.size() > UNIVERSE_SIZE) {
+			throw new IllegalArgumentException("Too many values defined for " + description);
+		}
+
+		// value of every address of the universe, -1 for addresses not set by the step
+		int[] universe = new int[UNIVERSE_SIZE];
+		Arrays.fill(universe, -1);
+		int count = 0;
+		if (values != null) {
+			for (int i = 0; i < values.size(); i++) {
+				universe[i] = checkValue(values.get(i), i + 1, description);
+			}
+			count = values.size();
+		}
+		if (set != null) {
+			for (Map.Entry<? extends Number, ? extends Number> entry : set.entrySet()) {
+				int address = entry.getKey() == null ? 0 : entry.getKey().intValue();
+				if (address < 1 || address > UNIVERSE_SIZE) {
+					throw new IllegalArgumentException("Invalid DMX address " + address 
+							+ " in " + description);
+				}
+				if (universe[address - 1] < 0) {
+					count++;
+				}
+				universe[address - 1] = checkValue(entry.getValue(), address, description);
+			}
+		}
+
+		// a step setting the first addresses without gaps shares the dense addresses
+		int prefix = 0;
+		while (prefix < count && universe[prefix] >= 0) {
+			prefix++;
+		}
+		boolean dense = prefix == count;
+		int[] addresses = dense ? CompiledStep.DENSE_ADDRESSES : new int[count];
+		byte[] dmxValues = new byte[count];
+		int index = 0;
+		for (int i = 0; i < universe.length && index < count; i++) {
+			if (universe[i] >= 0) {
+				if (!dense) {
+					addresses[index] = i;
+				}
+				dmxValues[index++] = (byte) universe[i];
+			}
+		}
+
+		if (step.getFade() < 0 || step.getHold() < 0) {
+			throw new IllegalArgumentException("Negative fade or hold time in " + description);
+		}
+		return new CompiledStep(step.getFade() * 1000000L, step.getHold() * 1000000L,
+				FadeCurve.parse(step.getCurve(), curve), addresses, dmxValues);
+	}
+	
+	private static int checkValue(Number number, int address, String description) {
+		int value = number == null ? -1 : number.intValue();
+		if (value < 0 || value > 255) {
+			throw new IllegalArgumentException("Value " + value + " at address " + address
+					+ " of " + description + " is not within 0 - 255");
+		}
+		return value;
+	}
+
+	/**
+	 * Convert a list of DMX addresses starting with 1 into array indexes starting with 0.
+	 */
+	private static int[] toAddresses(List<? extends Number> channels, String description) {
+		if (channels == null) {
+			return new int[0];
+		}
+		int[] addresses = new int[channels.size()];
+		for (int i = 0; i < addresses.length; i++) {
+			int address = channels.get(i).intValue();
+			if (address < 1 || address > UNIVERSE_SIZE) {
+				throw new IllegalArgumentException("Invalid DMX address " + address + " in "
+						+ description);
+			}
+			addresses[i] = address - 1;
+		}
+		return addresses;
+	}
+}
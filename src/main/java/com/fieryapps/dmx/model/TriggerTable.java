@@ -0,0 +1,57 @@
+package com.fieryapps.dmx.model;
+
+/**
+ * Maps trigger keys to scenes with a single hash lookup.
+ *
+ * <p>The table uses open addressing with linear probing in primitive arrays, so looking up 
+ * a key neither boxes the key nor allocates any memory. If several scenes use the same 
+ * trigger key, the first scene of the show wins.</p>
+ */
+final class TriggerTable {
+	private final int[] keys;
+	// scene of the key at the same index, null for empty slots
+	private final CompiledScene[] scenes;
+	private final int mask;
+	
+	TriggerTable(CompiledScene[] showScenes) {
+		int count = 0;
+		for (CompiledScene scene : showScenes) {
+			count += scene.getTriggerKeys().length;
+		}
+		// keep the table at most half full to keep probe sequences short
+		int capacity = Integer.highestOneBit(Math.max(2, count) * 2 - 1) << 1;
+		keys = new int[capacity];
+		scenes = new CompiledScene[capacity];
+		mask = capacity - 1;
+		
+		for (CompiledScene scene : showScenes) {
+			for (int key : scene.getTriggerKeys()) {
+				int slot = slotOf(key);
+				if (scenes[slot] == null) {
+					keys[slot] = key;
+					scenes[slot] = scene;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @param key the trigger key
+	 * @return the scene triggered by the key or <code>null</code>
+	 */
+	CompiledScene get(int key) {
+		return scenes[slotOf(key)];
+	}
+	
+	/**
+	 * Find the slot of a key, which is either the slot holding the key or the empty slot 
+	 * where the key would be inserted.
+	 */
+	private int slotOf(int key) {
+		int slot = (key * 0x9E3779B9) >>> 16 & mask;
+		while (scenes[slot] != null && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+}
@@ -0,0 +1,81 @@
+package com.fieryapps.dmx.model;
+
+/**
+ * Periodic waveforms played by effects.
+ * 
+ * <p>Every waveform is precomputed once into a table of {@link #TABLE_SIZE} weights from 0 to 
+ * {@link FadeCurve#FULL_WEIGHT}, so evaluating an effect costs a table lookup per channel.</p>
+ */
+public enum Waveform {
+	/** smooth wave starting and ending at the lowest value */
+	SINE {
+		@Override
+		double apply(double phase, double duty) {
+			return (1 - Math.cos(2 * Math.PI * phase)) / 2;
+		}
+	},
+	/** rises linearly and drops back to the lowest value at the end of the cycle */
+	SAW {
+		@Override
+		double apply(double phase, double duty) {
+			return phase;
+		}
+	},
+	/** highest value for the duty cycle, then lowest value */
+	SQUARE {
+		@Override
+		double apply(double phase, double duty) {
+			return phase < duty ? 1 : 0;
+		}
+	},
+	/** red component of the color wheel, green and blue follow one and two thirds later */
+	HUE {
+		@Override
+		double apply(double phase, double duty) {
+			double sextant = phase * 6;
+			return Math.max(0, Math.min(1, Math.abs(sextant - 3) - 1));
+		}
+	};
+	
+	/** number of fixed point bits of a phase */
+	public static final int TABLE_BITS = 10;
+	/** number of entries of a table, a full cycle */
+	public static final int TABLE_SIZE = 1 << TABLE_BITS;
+	/** mask to wrap a phase into a cycle */
+	public static final int PHASE_MASK = TABLE_SIZE - 1;
+	/** default duty cycle of square waves */
+	public static final int HALF_CYCLE = TABLE_SIZE / 2;
+	
+	private final int[] table;
+	
+	private Waveform() {
+		table = createTable(HALF_CYCLE);
+	}
+	
+	/**
+	 * @param phase position within the cycle from 0 (inclusive) to 1 (exclusive)
+	 * @param duty fraction of the cycle a square wave is high
+	 * @return the value of the wave from 0 to 1
+	 */
+	abstract double apply(double phase, double duty);
+	
+	private int[] createTable(int duty) {
+		int[] weights = new int[TABLE_SIZE];
+		for (int i = 0; i < TABLE_SIZE; i++) {
+			weights[i] = (int) Math.round(apply(i / (double) TABLE_SIZE, 
+					duty / (double) TABLE_SIZE) * FadeCurve.FULL_WEIGHT);
+		}
+		return weights;
+	}
+	
+	/**
+	 * Get the table of the waveform. Only square waves depend on the duty cycle, all other 
+	 * waveforms share a single table.
+	 * 
+	 * @param duty number of table entries a square wave is high
+	 * @return the weights of a full cycle
+	 */
+	int[] table(int duty) {
+		return this == SQUARE && duty != HALF_CYCLE ? createTable(duty) : table;
+	}
+}
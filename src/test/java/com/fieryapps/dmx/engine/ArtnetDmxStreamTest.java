@@ -0,0 +1,139 @@
+package com.fieryapps.dmx.engine;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link ArtnetDmxStream} against a loopback UDP receiver.
+ */
+public class ArtnetDmxStreamTest extends TestCase {
+	
+	private DatagramChannel receiver;
+	private ArtnetDmxStream stream;
+	
+	@Override
+	protected void setUp() throws Exception {
+		receiver = DatagramChannel.open();
+		receiver.bind(new InetSocketAddress("127.0.0.1", 0));
+		int port = ((InetSocketAddress) receiver.getLocalAddress()).getPort();
+		stream = new ArtnetDmxStream("127.0.0.1", 1, port);
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		stream.close();
+		receiver.close();
+	}
+	
+	private ByteBuffer receive() throws Exception {
+		ByteBuffer packet = ByteBuffer.allocate(1024);
+		receiver.receive(packet);
+		packet.flip();
+		return packet;
+	}
+	
+	public void testEncodesArtDmxPackets() throws Exception {
+		short[] frame = new short[512];
+		frame[0] = 255;
+		frame[511] = 17;
+		stream.streamDmx((short) 2, frame);
+		stream.flush();
+		frame[0] = 128;
+		stream.streamDmx((short) 2, frame);
+		stream.flush();
+		
+		ByteBuffer packet = receive();
+		assertEquals(530, packet.remaining());
+		byte[] id = new byte[8];
+		packet.get(id);
+		assertEquals("Art-Net\0", new String(id, "US-ASCII"));
+		// opcode is little endian, protocol version big endian
+		assertEquals(0x00, packet.get(8));
+		assertEquals(0x50, packet.get(9));
+		assertEquals(14, packet.get(11));
+		assertEquals(1, packet.get(12));
+		// subnet 1, universe 2
+		assertEquals(0x12, packet.get(14));
+		assertEquals(0, packet.get(15));
+		assertEquals(2, packet.get(16));
+		assertEquals(0, packet.get(17));
+		assertEquals(255, packet.get(18) & 0xFF);
+		assertEquals(17, packet.get(529));
+		
+		packet = receive();
+		assertEquals(2, packet.get(12));
+		assertEquals(128, packet.get(18) & 0xFF);
+	}
+	
+	public void testStreamingDoesNotAllocate() throws Exception {
+		com.sun.management.ThreadMXBean threads = 
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		short[] frame = new short[512];
+		ByteBuffer packet = ByteBuffer.allocateDirect(1024);
+		receiver.configureBlocking(false);
+		
+		for (int i = 0; i < 20000; i++) {
+			frame[i % 512] = (short) (i & 0xFF);
+			stream.streamDmx((short) (i & 3), frame);
+			stream.flush();
+			packet.clear();
+			receiver.receive(packet);
+		}
+		long before = threads.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < 1000; i++) {
+			frame[i % 512] = (short) (i & 0xFF);
+			stream.streamDmx((short) (i & 3), frame);
+			stream.flush();
+			packet.clear();
+			receiver.receive(packet);
+		}
+		long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+		assertTrue("Allocated " + allocated + " bytes", allocated < 1000);
+	}
+	
+	public void testSendsBatchesToNodesAndSyncs() throws Exception {
+		int port = ((InetSocketAddress) receiver.getLocalAddress()).getPort();
+		DatagramChannel node = DatagramChannel.open();
+		node.bind(new InetSocketAddress("127.0.0.2", port));
+		ArtnetDmxStream synced = new ArtnetDmxStream("127.0.0.1", 0, new short[] {3}, 
+				new String[] {"127.0.0.2"}, true, port);
+		try {
+			short[] frame = new short[512];
+			synced.streamDmx((short) 1, frame);
+			synced.streamDmx((short) 3, frame);
+			// nothing is sent before the batch is complete
+			receiver.configureBlocking(false);
+			assertNull(receiver.receive(ByteBuffer.allocate(1024)));
+			receiver.configureBlocking(true);
+			synced.flush();
+			
+			ByteBuffer packet = receive();
+			assertEquals(0x50, packet.get(9));
+			assertEquals(1, packet.get(14));
+			assertSync(receive());
+			ByteBuffer nodePacket = ByteBuffer.allocate(1024);
+			node.receive(nodePacket);
+			nodePacket.flip();
+			assertEquals(3, nodePacket.get(14));
+			nodePacket.clear();
+			node.receive(nodePacket);
+			nodePacket.flip();
+			assertSync(nodePacket);
+		} finally {
+			synced.close();
+			node.close();
+		}
+	}
+	
+	private static void assertSync(ByteBuffer packet) {
+		assertEquals(14, packet.remaining());
+		assertEquals(0x00, packet.get(8));
+		assertEquals(0x52, packet.get(9));
+		assertEquals(14, packet.get(11));
+	}
+}
@@ -0,0 +1,69 @@
+package com.fieryapps.dmx.engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import com.fieryapps.dmx.DmxStream;
+import com.fieryapps.dmx.metrics.Metrics;
+
+/**
+ * Tests for the {@link AsyncDmxStream}.
+ */
+public class AsyncDmxStreamTest extends TestCase {
+
+	/**
+	 * Fails every flush like a recording whose file can no longer be written.
+	 */
+	private static class FailingStream implements DmxStream {
+		final AtomicInteger flushes = new AtomicInteger();
+
+		@Override
+		public void streamDmx(short universe, short[] currentFrame) {
+		}
+
+		@Override
+		public void flush() {
+			flushes.incrementAndGet();
+			throw new IllegalStateException("Output failed");
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	public void testCountsErrorsAndReportsTheFirstOnly() throws Exception {
+		Metrics metrics = new Metrics();
+		FailingStream output = new FailingStream();
+		ByteArrayOutputStream errors = new ByteArrayOutputStream();
+		PrintStream err = System.err;
+		System.setErr(new PrintStream(errors, true));
+		try {
+			AsyncDmxStream stream = new AsyncDmxStream(output, "test", metrics);
+			short[] frame = new short[512];
+			for (int i = 1; i <= 3; i++) {
+				stream.streamDmx((short) 1, frame);
+				stream.flush();
+				// wait for the sender, so no frame is dropped
+				for (int j = 0; j < 200 && output.flushes.get() < i; j++) {
+					Thread.sleep(10);
+				}
+				assertEquals(i, output.flushes.get());
+			}
+			stream.close();
+		} finally {
+			System.setErr(err);
+		}
+
+		String printed = errors.toString("UTF-8");
+		int first = printed.indexOf("Error sending frames to output test");
+		assertTrue(printed, first >= 0);
+		assertEquals(printed, -1, printed.indexOf("Error sending", first + 1));
+		StringBuilder text = new StringBuilder();
+		metrics.writeText(text);
+		assertTrue(text.toString(), text.indexOf("dmx_send_errors_total{output=\"test\"} 3") >= 0);
+	}
+}
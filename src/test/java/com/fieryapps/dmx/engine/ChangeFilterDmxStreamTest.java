@@ -0,0 +1,71 @@
+package com.fieryapps.dmx.engine;
+
+import junit.framework.TestCase;
+
+import com.fieryapps.dmx.DmxStream;
+import com.fieryapps.dmx.metrics.Metrics;
+
+/**
+ * Tests for the {@link ChangeFilterDmxStream}.
+ */
+public class ChangeFilterDmxStreamTest extends TestCase {
+	
+	/**
+	 * Counts the frames that reach the output.
+	 */
+	private static class CountingStream implements DmxStream {
+		int frames;
+		int flushes;
+		
+		@Override
+		public void streamDmx(short universe, short[] currentFrame) {
+			frames++;
+		}
+		
+		@Override
+		public void flush() {
+			flushes++;
+		}
+		
+		@Override
+		public void close() {
+		}
+	}
+	
+	public void testSuppressesUnchangedFrames() {
+		CountingStream output = new CountingStream();
+		ChangeFilterDmxStream filter = new ChangeFilterDmxStream(output, 60000000000L, 
+				new Metrics(), "test");
+		short[] first = new short[512];
+		short[] second = new short[512];
+		
+		for (int i = 0; i < 10; i++) {
+			filter.streamDmx((short) 1, first);
+			filter.streamDmx((short) 2, second);
+			filter.flush();
+		}
+		assertEquals(2, output.frames);
+		assertEquals(10, output.flushes);
+		
+		second[100] = 42;
+		filter.streamDmx((short) 1, first);
+		filter.streamDmx((short) 2, second);
+		assertEquals(3, output.frames);
+		assertEquals(3, filter.getSentFrames());
+		assertEquals(19, filter.getSuppressedFrames());
+	}
+	
+	public void testRefreshesUnchangedFramesAfterKeepAlive() throws Exception {
+		CountingStream output = new CountingStream();
+		ChangeFilterDmxStream filter = new ChangeFilterDmxStream(output, 10000000L, 
+				new Metrics(), "test");
+		short[] frame = new short[512];
+		
+		filter.streamDmx((short) 1, frame);
+		filter.streamDmx((short) 1, frame);
+		assertEquals(1, output.frames);
+		Thread.sleep(20);
+		filter.streamDmx((short) 1, frame);
+		assertEquals(2, output.frames);
+	}
+}
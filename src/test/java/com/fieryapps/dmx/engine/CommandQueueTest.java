@@ -0,0 +1,101 @@
+package com.fieryapps.dmx.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.TestCase;
+
+import com.fieryapps.dmx.metrics.SharedCounter;
+
+/**
+ * Tests for the {@link CommandQueue}.
+ */
+public class CommandQueueTest extends TestCase {
+	
+	public void testDropsCommandsWhenFull() {
+		SharedCounter dropped = new SharedCounter();
+		CommandQueue queue = new CommandQueue(2, dropped);
+		assertTrue(queue.isEmpty());
+		assertTrue(queue.offer(CommandQueue.SET_DIMMER, 5, 10));
+		assertTrue(queue.offer(CommandQueue.STEP, 0, 20));
+		assertFalse(queue.offer(CommandQueue.STOP, 0, 30));
+		assertEquals(1, dropped.getCount());
+		
+		assertEquals(CommandQueue.SET_DIMMER, queue.peekCommand());
+		assertEquals(5, queue.peekArgument());
+		assertEquals(10, queue.peekTimestamp());
+		queue.remove();
+		// the slot can be used again once it has been read
+		assertTrue(queue.offer(CommandQueue.STOP, 0, 30));
+		assertEquals(CommandQueue.STEP, queue.peekCommand());
+		queue.remove();
+		assertEquals(CommandQueue.STOP, queue.peekCommand());
+		queue.remove();
+		assertTrue(queue.isEmpty());
+	}
+	
+	public void testDeliversCommandsOfConcurrentProducers() throws Exception {
+		final int producers = 4;
+		final int commands = 100000;
+		final CommandQueue queue = new CommandQueue(64, new SharedCounter());
+		Thread[] threads = new Thread[producers];
+		for (int i = 0; i < producers; i++) {
+			final int producer = i;
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int j = 0; j < commands; j++) {
+						while (!queue.offer(producer, j, 0)) {
+							Thread.yield();
+						}
+					}
+				}
+			});
+			threads[i].start();
+		}
+		
+		// the commands of every producer arrive complete and in order
+		int[] next = new int[producers];
+		for (int received = 0; received < producers * commands; received++) {
+			while (queue.isEmpty()) {
+				Thread.yield();
+			}
+			int producer = queue.peekCommand();
+			assertEquals(next[producer]++, queue.peekArgument());
+			queue.remove();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertTrue(queue.isEmpty());
+	}
+	
+	public void testCountsDropsOfConcurrentProducers() throws Exception {
+		final int producers = 4;
+		final int commands = 100000;
+		final SharedCounter dropped = new SharedCounter();
+		final CommandQueue queue = new CommandQueue(2, dropped);
+		queue.offer(CommandQueue.STEP, 0, 0);
+		queue.offer(CommandQueue.STEP, 0, 0);
+		final AtomicLong rejected = new AtomicLong();
+		Thread[] threads = new Thread[producers];
+		for (int i = 0; i < producers; i++) {
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int j = 0; j < commands; j++) {
+						if (!queue.offer(CommandQueue.STEP, j, 0)) {
+							rejected.incrementAndGet();
+						}
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		// the queue is never drained, so every offer is dropped and counted
+		assertEquals(producers * commands, rejected.get());
+		assertEquals(producers * commands, dropped.getCount());
+	}
+}
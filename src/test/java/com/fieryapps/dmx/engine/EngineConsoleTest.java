@@ -0,0 +1,98 @@
+package com.fieryapps.dmx.engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import junit.framework.TestCase;
+
+import org.yaml.snakeyaml.Yaml;
+
+import com.fieryapps.dmx.DmxStream;
+import com.fieryapps.dmx.beans.Show;
+import com.fieryapps.dmx.metrics.Metrics;
+import com.fieryapps.dmx.model.ShowCompiler;
+
+/**
+ * Tests printing the status of an {@link Engine} with the {@link EngineConsole}.
+ */
+public class EngineConsoleTest extends TestCase {
+
+	private static final long FRAME = 40000000L;
+
+	private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+	private Engine engine;
+	private EngineConsole console;
+	private long frameTime;
+
+	@Override
+	protected void setUp() {
+		// the start scene has no name
+		Show show = new Yaml().loadAs("name: Console\n"
+				+ "universe: 1\n"
+				+ "frameDuration: 40\n"
+				+ "startScene: 1\n"
+				+ "scenes:\n"
+				+ "- triggerKeys: [49]\n"
+				+ "  steps: [{fade: 0, hold: 0, values: [0]}]\n"
+				+ "- name: Full\n"
+				+ "  triggerKeys: [50]\n"
+				+ "  steps: [{fade: 0, hold: 0, values: [255]}]\n", Show.class);
+		DmxStream dmxStream = new DmxStream() {
+			@Override
+			public void streamDmx(short universe, short[] currentFrame) {
+			}
+
+			@Override
+			public void flush() {
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+		engine = new Engine(ShowCompiler.compile(show), dmxStream, new Metrics());
+		console = new EngineConsole(engine, new PrintStream(output, true), false);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		console.close();
+		engine.shutdownRenderPool();
+	}
+
+	/**
+	 * Wait until the console printed a text after a position of its output.
+	 *
+	 * @return the length of the output including the text
+	 */
+	private int awaitOutput(String text, int from) throws Exception {
+		for (int i = 0; i < 200; i++) {
+			String printed = output.toString("UTF-8");
+			int index = printed.indexOf(text, from);
+			if (index >= 0) {
+				return index + text.length();
+			}
+			Thread.sleep(10);
+		}
+		fail("Not printed: " + text + " in " + output.toString("UTF-8").substring(from));
+		return -1;
+	}
+
+	private void renderFrame() {
+		engine.renderFrame(frameTime);
+		frameTime += FRAME;
+	}
+
+	public void testPrintsScenesWithoutName() throws Exception {
+		renderFrame();
+		int printed = awaitOutput("Playing scene: null", 0);
+
+		// the status keeps being printed after comparing with the nameless scene
+		assertTrue(engine.triggerKey(50));
+		renderFrame();
+		printed = awaitOutput("Playing scene: Full", printed);
+		assertTrue(engine.triggerKey(49));
+		renderFrame();
+		awaitOutput("Playing scene: null", printed);
+	}
+}
@@ -0,0 +1,148 @@
+package com.fieryapps.dmx.engine;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import junit.framework.TestCase;
+
+import org.yaml.snakeyaml.Yaml;
+
+import com.fieryapps.dmx.DmxStream;
+import com.fieryapps.dmx.beans.Show;
+import com.fieryapps.dmx.metrics.Metrics;
+import com.fieryapps.dmx.model.ShowCompiler;
+
+/**
+ * Tests controlling the {@link Engine} with commands.
+ */
+public class EngineTest extends TestCase {
+	
+	private static final long FRAME = 40000000L;
+	
+	private final short[] sent = new short[1];
+	private Engine engine;
+	private long frameTime;
+	
+	@Override
+	protected void setUp() {
+		Show show = new Yaml().loadAs("name: Commands\n"
+				+ "universe: 1\n"
+				+ "frameDuration: 40\n"
+				+ "startScene: 1\n"
+				+ "dimmerChannels: [1]\n"
+				+ "scenes:\n"
+				+ "- name: Fade\n"
+				+ "  triggerKeys: [49]\n"
+				+ "  steps:\n"
+				+ "  - {fade: 0, hold: 0, values: [0]}\n"
+				+ "  - {fade: 400, hold: 1000, values: [200]}\n"
+				+ "- name: Full\n"
+				+ "  triggerKeys: [50]\n"
+				+ "  steps: [{fade: 0, hold: 0, values: [255]}]\n", Show.class);
+		DmxStream output = new DmxStream() {
+			@Override
+			public void streamDmx(short universe, short[] currentFrame) {
+				sent[0] = currentFrame[0];
+			}
+			
+			@Override
+			public void flush() {
+			}
+			
+			@Override
+			public void close() {
+			}
+		};
+		engine = new Engine(ShowCompiler.compile(show), output, new Metrics());
+	}
+	
+	@Override
+	protected void tearDown() {
+		engine.shutdownRenderPool();
+	}
+	
+	private int renderFrame() {
+		engine.renderFrame(frameTime);
+		frameTime += FRAME;
+		return sent[0];
+	}
+	
+	public void testPauseFreezesTheShowAndStepAdvancesIt() {
+		// the first step ends at once, the fade is at 100 after 200 ms
+		for (int i = 0; i < 5; i++) {
+			renderFrame();
+		}
+		assertEquals(100, renderFrame());
+		
+		assertTrue(engine.pause());
+		assertEquals(100, renderFrame());
+		assertEquals(100, renderFrame());
+		assertTrue(engine.getStatus().isPaused());
+		assertTrue(engine.step());
+		assertEquals(120, renderFrame());
+		assertEquals(120, renderFrame());
+		
+		// the fade continues where it was paused
+		assertTrue(engine.resume());
+		assertEquals(140, renderFrame());
+		assertFalse(engine.getStatus().isPaused());
+	}
+	
+	public void testCommandsUpdateTheStatus() {
+		renderFrame();
+		long sequence = engine.getStatus().getSequence();
+		assertTrue(engine.triggerScene(2));
+		assertTrue(engine.setDimmer(5));
+		assertEquals("Fade", engine.getStatus().getScene());
+		
+		// commands are applied with the next frame
+		assertEquals(128, renderFrame());
+		EngineStatus status = engine.getStatus();
+		assertEquals("Full", status.getScene());
+		assertEquals(5, status.getDimmer());
+		assertTrue(status.getSequence() > sequence);
+		
+		assertTrue(engine.triggerKey('x'));
+		renderFrame();
+		assertEquals("Unknown key pressed: 120", engine.getStatus().getMessage());
+		assertTrue(engine.setGroupMaster(1, 128));
+		renderFrame();
+		assertEquals("Unknown group: 1", engine.getStatus().getMessage());
+		assertTrue(engine.stop());
+		renderFrame();
+		assertTrue(engine.getStatus().isStopped());
+		assertTrue(engine.isStopped());
+	}
+	
+	public void testConcurrentTriggersDoNotStallFrames() throws Exception {
+		final AtomicBoolean running = new AtomicBoolean(true);
+		Thread[] producers = new Thread[4];
+		for (int i = 0; i < producers.length; i++) {
+			producers[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					while (running.get()) {
+						engine.triggerKey(49);
+					}
+				}
+			});
+			producers[i].start();
+		}
+		try {
+			// every frame handles a bounded number of triggers while producers keep adding
+			for (int i = 0; i < 200; i++) {
+				renderFrame();
+				engine.recordTriggerLatency(System.nanoTime());
+			}
+			// triggers are still recorded when the latency is not recorded after every frame
+			for (int i = 0; i < 20; i++) {
+				renderFrame();
+			}
+		} finally {
+			running.set(false);
+			for (Thread producer : producers) {
+				producer.join();
+			}
+		}
+		assertEquals("Fade", engine.getStatus().getScene());
+	}
+}
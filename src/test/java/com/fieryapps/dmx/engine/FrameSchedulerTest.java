@@ -0,0 +1,56 @@
+package com.fieryapps.dmx.engine;
+
+import junit.framework.TestCase;
+
+import com.fieryapps.dmx.model.LatePolicy;
+
+/**
+ * Tests for the {@link FrameScheduler}.
+ */
+public class FrameSchedulerTest extends TestCase {
+	
+	private static final long FRAME_PERIOD = 5000000L;
+	
+	public void testDeadlinesDoNotDrift() {
+		FrameScheduler scheduler = new FrameScheduler(FRAME_PERIOD, LatePolicy.CATCH_UP, 0);
+		scheduler.start();
+		long first = scheduler.awaitNextFrame();
+		long last = first;
+		for (int i = 0; i < 40; i++) {
+			last = scheduler.awaitNextFrame();
+		}
+		
+		// deadlines are exact multiples of the frame period, sleeping only adds lateness
+		assertEquals(40 * FRAME_PERIOD, last - first);
+		assertTrue(System.nanoTime() - first >= 40 * FRAME_PERIOD);
+		assertEquals(41, scheduler.getFrames());
+		assertEquals(41, scheduler.getLateness().getCount());
+	}
+	
+	public void testDropSkipsMissedFrames() throws Exception {
+		FrameScheduler scheduler = new FrameScheduler(FRAME_PERIOD, LatePolicy.DROP, 0);
+		scheduler.start();
+		long first = scheduler.awaitNextFrame();
+		Thread.sleep(4 * FRAME_PERIOD / 1000000L);
+		scheduler.awaitNextFrame();
+		long next = scheduler.awaitNextFrame();
+		
+		assertTrue(scheduler.getDroppedFrames() >= 2);
+		assertEquals(0, (next - first) % FRAME_PERIOD);
+		assertTrue(next - first >= 4 * FRAME_PERIOD);
+	}
+	
+	public void testCatchUpRendersMissedFrames() throws Exception {
+		FrameScheduler scheduler = new FrameScheduler(FRAME_PERIOD, LatePolicy.CATCH_UP, 
+				FRAME_PERIOD);
+		scheduler.start();
+		long first = scheduler.awaitNextFrame();
+		Thread.sleep(4 * FRAME_PERIOD / 1000000L);
+		long second = scheduler.awaitNextFrame();
+		long third = scheduler.awaitNextFrame();
+		
+		assertEquals(0, scheduler.getDroppedFrames());
+		assertEquals(FRAME_PERIOD, second - first);
+		assertEquals(2 * FRAME_PERIOD, third - first);
+	}
+}
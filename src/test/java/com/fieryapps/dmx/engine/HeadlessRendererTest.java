@@ -0,0 +1,101 @@
+package com.fieryapps.dmx.engine;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.yaml.snakeyaml.Yaml;
+
+import com.fieryapps.dmx.DmxStream;
+import com.fieryapps.dmx.beans.Show;
+import com.fieryapps.dmx.model.CompiledShow;
+import com.fieryapps.dmx.model.ShowCompiler;
+
+/**
+ * Tests for the {@link HeadlessRenderer} and {@link TriggerScript}.
+ */
+public class HeadlessRendererTest extends TestCase {
+	
+	private static final long SECOND = 1000000000L;
+	
+	private final CompiledShow show = ShowCompiler.compile(new Yaml().loadAs("name: Headless\n"
+			+ "universe: 1\n"
+			+ "frameDuration: 100\n"
+			+ "startScene: 1\n"
+			+ "scenes:\n"
+			+ "- name: Random\n"
+			+ "  triggerKeys: [49]\n"
+			+ "  repeat: yes\n"
+			+ "  order: random\n"
+			+ "  steps:\n"
+			+ "  - {fade: 0, hold: 100, values: [10]}\n"
+			+ "  - {fade: 0, hold: 100, values: [20]}\n"
+			+ "  - {fade: 0, hold: 100, values: [30]}\n"
+			+ "  - {fade: 0, hold: 100, values: [40]}\n"
+			+ "- name: Full\n"
+			+ "  triggerKeys: [50]\n"
+			+ "  steps:\n"
+			+ "  - {fade: 0, hold: 0, values: [255]}\n", Show.class));
+	
+	private String checksum(String script, long seed) throws Exception {
+		ChecksumDmxStream output = new ChecksumDmxStream(null);
+		new HeadlessRenderer(show, output, seed).render(
+				TriggerScript.parse(new StringReader(script)), 60 * SECOND);
+		return output.getChecksum();
+	}
+	
+	public void testRenderingIsReproducible() throws Exception {
+		String script = "30 50\n40 49\n";
+		assertEquals(checksum(script, 1), checksum(script, 1));
+		assertFalse(checksum(script, 1).equals(checksum(script, 2)));
+		assertFalse(checksum(script, 1).equals(checksum("30 50\n", 1)));
+	}
+	
+	public void testScriptTriggersScenesAtTheirTime() throws Exception {
+		final List<Short> values = new ArrayList<Short>();
+		DmxStream output = new DmxStream() {
+			@Override
+			public void streamDmx(short universe, short[] currentFrame) {
+				values.add(currentFrame[0]);
+			}
+			
+			@Override
+			public void flush() {
+			}
+			
+			@Override
+			public void close() {
+			}
+		};
+		long frames = new HeadlessRenderer(show, output, 0).render(
+				TriggerScript.parse(new StringReader("0:01.05 50\n0:02 113\n")), 60 * SECOND);
+		
+		// quitting with q ends the show in the frame at 2 seconds
+		assertEquals(21, frames);
+		// the trigger at 1.05 seconds is handled in the frame at 1.1 seconds
+		assertTrue(values.get(10) != 255);
+		assertEquals(255, (int) values.get(11));
+	}
+	
+	public void testParsesScript() throws Exception {
+		TriggerScript script = TriggerScript.parse(new StringReader("# comment\n"
+				+ "1:00:00 9\n"
+				+ "\n"
+				+ "  1:30.5\t47\n"
+				+ "2 49\n"));
+		assertEquals(3, script.size());
+		assertEquals(2 * SECOND, script.getTime(0));
+		assertEquals(49, script.getKey(0));
+		assertEquals(90500000000L, script.getTime(1));
+		assertEquals(3600 * SECOND, script.getTime(2));
+		
+		try {
+			TriggerScript.parse(new StringReader("1 49\nsoon 50\n"));
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("line 2"));
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.fieryapps.dmx.engine;
+
+import junit.framework.TestCase;
+
+import org.yaml.snakeyaml.Yaml;
+
+import com.fieryapps.dmx.DmxStream;
+import com.fieryapps.dmx.beans.Show;
+import com.fieryapps.dmx.metrics.Metrics;
+import com.fieryapps.dmx.model.ShowCompiler;
+
+/**
+ * Tests for merging layers in the {@link LayerMixer}.
+ */
+public class LayerMixerTest extends TestCase {
+
+	private static final long FRAME = 40000000L;
+
+	private final short[][] sent = new short[2][];
+	private Engine engine;
+	private long frameTime;
+
+	@Override
+	protected void setUp() {
+		Show show = new Yaml().loadAs("name: Layers\n"
+				+ "universe: 1\n"
+				+ "frameDuration: 40\n"
+				+ "startScene: 1\n"
+				+ "dimmerChannels: [1]\n"
+				+ "universes:\n"
+				+ "- universe: 2\n"
+				+ "scenes:\n"
+				+ "- name: Base\n"
+				+ "  triggerKeys: [49]\n"
+				+ "  steps: [{fade: 0, hold: 0, values: [100, 50, 50]}]\n"
+				+ "  universes:\n"
+				+ "  - universe: 2\n"
+				+ "    steps: [{fade: 0, hold: 0, values: [30]}]\n"
+				+ "- name: Dark\n"
+				+ "  triggerKeys: [50]\n"
+				+ "  steps: [{fade: 0, hold: 0, values: [20, 60, 60]}]\n"
+				+ "- name: Strobe\n"
+				+ "  triggerKeys: [51]\n"
+				+ "  layer: 1\n"
+				+ "  steps: [{fade: 0, hold: 0, values: [80, 200]}]\n"
+				+ "- name: Color\n"
+				+ "  triggerKeys: [52]\n"
+				+ "  layer: 2\n"
+				+ "  universes:\n"
+				+ "  - universe: 2\n"
+				+ "    steps: [{fade: 0, hold: 0, values: [90]}]\n", Show.class);
+		DmxStream output = new DmxStream() {
+			@Override
+			public void streamDmx(short universe, short[] currentFrame) {
+				sent[universe - 1] = currentFrame.clone();
+			}
+
+			@Override
+			public void flush() {
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+		engine = new Engine(ShowCompiler.compile(show), output, new Metrics());
+	}
+
+	private void assertFrame(int key, int... values) {
+		if (key != 0) {
+			engine.trigger(key, frameTime);
+		}
+		engine.renderFrame(frameTime);
+		frameTime += FRAME;
+		for (int i = 0; i < values.length; i++) {
+			assertEquals("address " + (i + 1), values[i], sent[0][i]);
+		}
+	}
+
+	public void testMergesDimmerChannelsHighestAndOthersLatest() {
+		assertFrame(0, 100, 50, 50);
+		// the strobe sets the dimmer channel and the first color channel
+		assertFrame('3', 100, 200, 50);
+		// the base layer was started last, its dimmer channel is lower than the strobe
+		assertFrame('2', 80, 60, 60);
+		// triggering the strobe again stops its layer
+		assertFrame('3', 20, 60, 60);
+		engine.shutdownRenderPool();
+	}
+
+	public void testLayersOnlySetTheirUniverses() {
+		assertFrame('4', 100, 50, 50);
+		assertEquals(90, sent[1][0]);
+		assertFrame('4', 100, 50, 50);
+		assertEquals(30, sent[1][0]);
+		engine.shutdownRenderPool();
+	}
+}
@@ -0,0 +1,152 @@
+package com.fieryapps.dmx.engine;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+import com.fieryapps.dmx.metrics.Metrics;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link MonitorDmxStream} with a viewer connected over the loopback interface.
+ */
+public class MonitorDmxStreamTest extends TestCase {
+
+	private Metrics metrics;
+	private MonitorDmxStream stream;
+	private Socket viewer;
+	private DataInputStream in;
+	private DataOutputStream out;
+	private short[] frame = new short[512];
+
+	@Override
+	protected void setUp() throws Exception {
+		metrics = new Metrics();
+		stream = new MonitorDmxStream(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+				new short[] {1, 2}, null, metrics);
+		viewer = new Socket(InetAddress.getLoopbackAddress(), stream.getPort());
+		viewer.setSoTimeout(2000);
+		in = new DataInputStream(viewer.getInputStream());
+		out = new DataOutputStream(viewer.getOutputStream());
+		assertEquals(MonitorDmxStream.MAGIC, in.readInt());
+		assertEquals(MonitorDmxStream.PROTOCOL_VERSION, in.readInt());
+		// frames are only published while viewers are connected
+		for (int i = 0; i < 400 && stream.getViewers() == 0; i++) {
+			Thread.sleep(5);
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		viewer.close();
+		stream.close();
+	}
+
+	private void streamFrame() {
+		stream.streamDmx((short) 1, frame);
+		stream.streamDmx((short) 2, new short[512]);
+		stream.flush();
+	}
+
+	private ByteBuffer readFrame() throws Exception {
+		byte[] message = new byte[in.readInt()];
+		in.readFully(message);
+		return ByteBuffer.wrap(message);
+	}
+
+	private void assertMetric(String line) throws Exception {
+		StringBuilder text = new StringBuilder();
+		metrics.writeText(text);
+		assertTrue(text.toString(), text.indexOf(line) >= 0);
+	}
+
+	public void testSendsChangedValuesOnly() throws Exception {
+		frame[0] = 255;
+		frame[1] = 128;
+		frame[511] = 17;
+		streamFrame();
+
+		ByteBuffer message = readFrame();
+		assertEquals(1, message.getLong());
+		// universe 2 did not change
+		assertEquals(1, message.getShort());
+		assertEquals(1, message.getShort());
+		// a run of the first two values and a run of the last value
+		assertEquals(2, message.getShort());
+		assertEquals(0, message.getShort());
+		assertEquals(2, message.getShort());
+		assertEquals((byte) 255, message.get());
+		assertEquals((byte) 128, message.get());
+		assertEquals(511, message.getShort());
+		assertEquals(1, message.getShort());
+		assertEquals(17, message.get());
+		assertFalse(message.hasRemaining());
+		out.writeLong(1);
+
+		frame[1] = 0;
+		streamFrame();
+		message = readFrame();
+		assertEquals(2, message.getLong());
+		assertEquals(1, message.getShort());
+		assertEquals(1, message.getShort());
+		assertEquals(1, message.getShort());
+		assertEquals(1, message.getShort());
+		assertEquals(1, message.getShort());
+		assertEquals(0, message.get());
+		assertFalse(message.hasRemaining());
+		assertMetric("dmx_monitor_frames_sent_total 2\n");
+	}
+
+	public void testSkipsFramesUntilAcknowledged() throws Exception {
+		frame[0] = 1;
+		streamFrame();
+		assertEquals(1, readFrame().getLong());
+
+		for (int i = 2; i <= 5; i++) {
+			frame[0] = (short) i;
+			streamFrame();
+		}
+		Thread.sleep(100);
+		assertEquals("Frames sent before the acknowledgement", 0, in.available());
+
+		out.writeLong(1);
+		ByteBuffer message = readFrame();
+		// only the latest frame is sent, compared to the acknowledged frame
+		assertEquals(5, message.getLong());
+		assertEquals(1, message.getShort());
+		assertEquals(1, message.getShort());
+		assertEquals(1, message.getShort());
+		assertEquals(0, message.getShort());
+		assertEquals(1, message.getShort());
+		assertEquals(5, message.get());
+		assertMetric("dmx_monitor_frames_skipped_total 3\n");
+	}
+
+	public void testStreamingDoesNotAllocate() throws Exception {
+		com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		short[] empty = new short[512];
+
+		for (int i = 0; i < 20000; i++) {
+			frame[i % 512] = (short) (i & 0xFF);
+			stream.streamDmx((short) 1, frame);
+			stream.streamDmx((short) 2, empty);
+			stream.flush();
+		}
+		long before = threads.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < 1000; i++) {
+			frame[i % 512] = (short) (i & 0xFF);
+			stream.streamDmx((short) 1, frame);
+			stream.streamDmx((short) 2, empty);
+			stream.flush();
+		}
+		long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+		assertTrue("Allocated " + allocated + " bytes", allocated < 1000);
+	}
+}
@@ -0,0 +1,159 @@
+package com.fieryapps.dmx.engine;
+
+import java.io.DataInputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import junit.framework.TestCase;
+import ola.proto.Ola.DmxData;
+import ola.rpc.Rpc.RpcMessage;
+import ola.rpc.Rpc.Type;
+
+import com.fieryapps.dmx.metrics.Metrics;
+
+/**
+ * Tests the {@link OlaClientDmxStream} against a stand-in RPC server on the loopback
+ * interface, which never answers like olad does for stream requests.
+ */
+public class OlaClientDmxStreamTest extends TestCase {
+
+	private Metrics metrics;
+	private ServerSocket server;
+	private OlaClientDmxStream stream;
+	private Socket client;
+	private DataInputStream in;
+	private short[] frame = new short[512];
+
+	@Override
+	protected void setUp() throws Exception {
+		metrics = new Metrics();
+		server = listen(0);
+		stream = new OlaClientDmxStream(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+				server.getLocalPort()), metrics);
+		accept();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		stream.close();
+		client.close();
+		server.close();
+	}
+
+	private static ServerSocket listen(int port) throws Exception {
+		ServerSocket socket = new ServerSocket();
+		socket.setReuseAddress(true);
+		socket.setSoTimeout(5000);
+		socket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+		return socket;
+	}
+
+	private void accept() throws Exception {
+		client = server.accept();
+		client.setSoTimeout(2000);
+		in = new DataInputStream(client.getInputStream());
+	}
+
+	/**
+	 * Read the next RPC request and decode its DMX data.
+	 */
+	private DmxData readDmxData() throws Exception {
+		byte[] header = new byte[4];
+		in.readFully(header);
+		int value = ByteBuffer.wrap(header).order(ByteOrder.nativeOrder()).getInt();
+		assertEquals(1, value >>> 28);
+		byte[] payload = new byte[value & 0x0FFFFFFF];
+		in.readFully(payload);
+		RpcMessage message = RpcMessage.parseFrom(payload);
+		assertEquals(Type.STREAM_REQUEST, message.getType());
+		assertEquals("StreamDmxData", message.getName());
+		return DmxData.parseFrom(message.getBuffer());
+	}
+
+	private void assertMetric(String line) throws Exception {
+		StringBuilder text = new StringBuilder();
+		metrics.writeText(text);
+		assertTrue(text.toString(), text.indexOf(line) >= 0);
+	}
+
+	public void testSendsAllStreamedUniversesWithoutWaiting() throws Exception {
+		frame[0] = 255;
+		frame[511] = 17;
+		stream.streamDmx((short) 1, frame);
+		frame[0] = 128;
+		stream.streamDmx((short) 300, frame);
+		stream.flush();
+		// only the universe streamed since the last batch is sent
+		frame[0] = 64;
+		stream.streamDmx((short) 1, frame);
+		stream.flush();
+
+		DmxData data = readDmxData();
+		assertEquals(1, data.getUniverse());
+		assertEquals(512, data.getData().size());
+		assertEquals(255, data.getData().byteAt(0) & 0xFF);
+		assertEquals(17, data.getData().byteAt(511));
+		data = readDmxData();
+		assertEquals(300, data.getUniverse());
+		assertEquals(128, data.getData().byteAt(0) & 0xFF);
+		data = readDmxData();
+		assertEquals(1, data.getUniverse());
+		assertEquals(64, data.getData().byteAt(0) & 0xFF);
+		assertEquals(0, in.available());
+	}
+
+	public void testSendsUniverseIdsAsUnsigned() throws Exception {
+		frame[511] = 99;
+		stream.streamDmx((short) -1, frame);
+		stream.flush();
+
+		DmxData data = readDmxData();
+		assertEquals(65535, data.getUniverse());
+		assertEquals(99, data.getData().byteAt(511));
+	}
+
+	public void testReconnectsWhenServerRestarts() throws Exception {
+		stream.streamDmx((short) 1, frame);
+		frame[0] = 200;
+		stream.streamDmx((short) 2, frame);
+		stream.flush();
+		assertEquals(1, readDmxData().getUniverse());
+		assertEquals(2, readDmxData().getUniverse());
+
+		int port = server.getLocalPort();
+		client.close();
+		server.close();
+		server = listen(port);
+		// frames are dropped until the stream notices and connects again after the backoff
+		frame[0] = 10;
+		long deadline = System.currentTimeMillis() + 5000;
+		server.setSoTimeout(10);
+		client = null;
+		while (client == null && System.currentTimeMillis() < deadline) {
+			stream.streamDmx((short) 1, frame);
+			stream.flush();
+			try {
+				client = server.accept();
+			} catch (SocketTimeoutException e) {
+				// not connected yet
+			}
+		}
+		assertNotNull("Stream did not reconnect", client);
+		client.setSoTimeout(2000);
+		in = new DataInputStream(client.getInputStream());
+
+		// the last frame of every universe is sent again after connecting
+		DmxData data = readDmxData();
+		assertEquals(1, data.getUniverse());
+		assertEquals(10, data.getData().byteAt(0));
+		data = readDmxData();
+		assertEquals(2, data.getUniverse());
+		assertEquals(200, data.getData().byteAt(0) & 0xFF);
+		assertMetric("dmx_ola_reconnects_total 1");
+	}
+}
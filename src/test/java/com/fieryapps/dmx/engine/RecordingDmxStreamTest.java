@@ -0,0 +1,143 @@
+package com.fieryapps.dmx.engine;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.fieryapps.dmx.DmxStream;
+
+/**
+ * Tests for the {@link RecordingDmxStream} and {@link RecordingPlayer}.
+ */
+public class RecordingDmxStreamTest extends TestCase {
+	
+	private static final long FRAME_PERIOD = 10000000L;
+	private static final int FRAMES = 300;
+	// universe 3 is added to the show after this frame
+	private static final int NEW_UNIVERSE = 150;
+	
+	private File file;
+	
+	@Override
+	protected void setUp() throws Exception {
+		file = File.createTempFile("recording", ".dmxr");
+		file.deleteOnExit();
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+	}
+	
+	/**
+	 * @return the value of a DMX channel in a frame of the test recording
+	 */
+	private static short value(int frame, int universe, int channel) {
+		if (universe == 2) {
+			// a universe holding a step
+			return (short) (channel == 0 ? 255 : 0);
+		}
+		// a fade of a few channels
+		return (short) (channel < 8 ? (frame + channel + universe) % 256 : 42);
+	}
+	
+	private void record(long framePeriod, int frames) throws Exception {
+		short[] frame = new short[512];
+		try (RecordingDmxStream recorder = new RecordingDmxStream(file, null, framePeriod)) {
+			for (int i = 0; i < frames; i++) {
+				for (short universe = 1; universe <= (i > NEW_UNIVERSE ? 3 : 2); universe++) {
+					for (int channel = 0; channel < frame.length; channel++) {
+						frame[channel] = value(i, universe, channel);
+					}
+					recorder.streamDmx(universe, frame);
+				}
+				recorder.flush();
+			}
+			assertEquals(frames, recorder.getFrames());
+		}
+	}
+	
+	private static void assertFrame(int frame, RecordingPlayer player) {
+		for (short universe = 1; universe <= 3; universe++) {
+			short[] values = player.getValues(universe);
+			if (universe == 3 && frame <= NEW_UNIVERSE) {
+				assertNull(values);
+				continue;
+			}
+			for (int channel = 0; channel < 512; channel++) {
+				assertEquals("frame " + frame + ", universe " + universe + ", channel " 
+						+ channel, value(frame, universe, channel), values[channel]);
+			}
+		}
+	}
+	
+	public void testDecodesAllFrames() throws Exception {
+		record(FRAME_PERIOD, FRAMES);
+		
+		RecordingPlayer player = new RecordingPlayer(file);
+		assertEquals(FRAMES, player.getFrames());
+		assertEquals((FRAMES - 1) * FRAME_PERIOD, player.getDuration());
+		for (int i = 0; i < FRAMES; i++) {
+			assertEquals(i * FRAME_PERIOD, player.getPosition());
+			player.decodeFrame();
+			assertFrame(i, player);
+		}
+		// three keyframes with all values and one frame with a new universe, the other
+		// frames only contain the eight changed channels of two universes
+		assertTrue(file.length() < 4 * 3 * 512 + FRAMES * 2 * 30);
+	}
+	
+	public void testSeeksToKeyframesAndDeltas() throws Exception {
+		record(FRAME_PERIOD, FRAMES);
+		
+		RecordingPlayer player = new RecordingPlayer(file);
+		player.seek(205 * FRAME_PERIOD + 1);
+		assertEquals(206 * FRAME_PERIOD, player.getPosition());
+		assertFrame(205, player);
+		
+		// seeking back forgets universes that were added later
+		player.seek(50 * FRAME_PERIOD);
+		assertEquals(50 * FRAME_PERIOD, player.getPosition());
+		assertFrame(49, player);
+		
+		player.seek(0);
+		assertEquals(0, player.getPosition());
+		assertNull(player.getValues((short) 1));
+	}
+	
+	public void testPlaysAtRecordedTimes() throws Exception {
+		record(FRAME_PERIOD, 10);
+		
+		final List<Long> times = new ArrayList<Long>();
+		final List<Short> values = new ArrayList<Short>();
+		RecordingPlayer player = new RecordingPlayer(file);
+		player.seek(5 * FRAME_PERIOD);
+		long start = System.nanoTime();
+		long frames = player.play(new DmxStream() {
+			@Override
+			public void streamDmx(short universe, short[] currentFrame) {
+				if (universe == 1) {
+					values.add(currentFrame[0]);
+				}
+			}
+			
+			@Override
+			public void flush() {
+				times.add(System.nanoTime());
+			}
+			
+			@Override
+			public void close() {
+			}
+		});
+		
+		assertEquals(5, frames);
+		for (int i = 0; i < 5; i++) {
+			assertEquals(value(5 + i, 1, 0), (short) values.get(i));
+			assertTrue(times.get(i) - start >= i * FRAME_PERIOD);
+		}
+		assertEquals(player.getDuration(), player.getPosition());
+	}
+}
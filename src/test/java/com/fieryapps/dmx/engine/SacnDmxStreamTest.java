@@ -0,0 +1,125 @@
+package com.fieryapps.dmx.engine;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.UUID;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link SacnDmxStream} with multicast over the loopback interface.
+ */
+public class SacnDmxStreamTest extends TestCase {
+	
+	private DatagramChannel receiver;
+	private static final UUID CID = UUID.fromString("6ba7b810-9dad-11d1-80b4-00c04fd430c8");
+	
+	private SacnDmxStream stream;
+	
+	@Override
+	protected void setUp() throws Exception {
+		NetworkInterface loopback = NetworkInterface.getByName("lo");
+		if (loopback == null) {
+			loopback = NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress());
+		}
+		receiver = DatagramChannel.open(StandardProtocolFamily.INET);
+		receiver.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+		receiver.bind(new InetSocketAddress(0));
+		receiver.join(SacnDmxStream.multicastAddress((short) 1), loopback);
+		receiver.join(SacnDmxStream.multicastAddress((short) 258), loopback);
+		int port = ((InetSocketAddress) receiver.getLocalAddress()).getPort();
+		stream = new SacnDmxStream(null, loopback, "Test Show", CID, new short[] {1, 258}, 
+				new int[] {150, 20}, port);
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		receiver.close();
+	}
+	
+	private ByteBuffer receive() throws Exception {
+		ByteBuffer packet = ByteBuffer.allocate(1024);
+		receiver.receive(packet);
+		packet.flip();
+		return packet;
+	}
+	
+	public void testEncodesDataPackets() throws Exception {
+		short[] frame = new short[512];
+		frame[0] = 255;
+		frame[511] = 17;
+		stream.streamDmx((short) 1, frame);
+		stream.streamDmx((short) 258, frame);
+		
+		ByteBuffer packet = receive();
+		assertEquals(638, packet.remaining());
+		assertEquals(0x0010, packet.getShort(0));
+		byte[] id = new byte[9];
+		packet.position(4);
+		packet.get(id);
+		assertEquals("ASC-E1.17", new String(id, "US-ASCII"));
+		// flags and length of the root, framing and DMP layers
+		assertEquals(0x7000 | 622, packet.getShort(16));
+		assertEquals(4, packet.getInt(18));
+		assertEquals(CID.getMostSignificantBits(), packet.getLong(22));
+		assertEquals(CID.getLeastSignificantBits(), packet.getLong(30));
+		assertEquals(0x7000 | 600, packet.getShort(38));
+		assertEquals(2, packet.getInt(40));
+		assertEquals('T', packet.get(44));
+		assertEquals(0, packet.get(44 + 9));
+		assertEquals(150, packet.get(108) & 0xFF);
+		assertEquals(1, packet.get(111));
+		assertEquals(1, packet.getShort(113));
+		assertEquals(0x7000 | 523, packet.getShort(115));
+		assertEquals(513, packet.getShort(123));
+		assertEquals(0, packet.get(125));
+		assertEquals(255, packet.get(126) & 0xFF);
+		assertEquals(17, packet.get(637));
+		
+		// the second universe is sent to its own group with its own priority
+		packet = receive();
+		assertEquals(20, packet.get(108));
+		assertEquals(258, packet.getShort(113));
+		
+		stream.streamDmx((short) 1, frame);
+		assertEquals(2, receive().get(111));
+		
+		// closing the stream terminates both universes
+		stream.close();
+		for (int i = 0; i < 6; i++) {
+			assertEquals(0x40, receive().get(112));
+		}
+	}
+	
+	public void testStreamingDoesNotAllocate() throws Exception {
+		com.sun.management.ThreadMXBean threads = 
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		short[] frame = new short[512];
+		ByteBuffer packet = ByteBuffer.allocateDirect(1024);
+		receiver.configureBlocking(false);
+		
+		for (int i = 0; i < 20000; i++) {
+			frame[i % 512] = (short) (i & 0xFF);
+			stream.streamDmx((i & 1) == 0 ? (short) 1 : (short) 258, frame);
+			packet.clear();
+			receiver.receive(packet);
+		}
+		long before = threads.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < 1000; i++) {
+			frame[i % 512] = (short) (i & 0xFF);
+			stream.streamDmx((i & 1) == 0 ? (short) 1 : (short) 258, frame);
+			packet.clear();
+			receiver.receive(packet);
+		}
+		long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+		assertTrue("Allocated " + allocated + " bytes", allocated < 1000);
+		stream.close();
+	}
+}
@@ -0,0 +1,116 @@
+package com.fieryapps.dmx.engine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.yaml.snakeyaml.Yaml;
+
+import com.fieryapps.dmx.DmxStream;
+import com.fieryapps.dmx.beans.Show;
+import com.fieryapps.dmx.metrics.Metrics;
+import com.fieryapps.dmx.model.CompiledShow;
+import com.fieryapps.dmx.model.ShowCompiler;
+
+/**
+ * Tests running several engines on a {@link ShowHost}.
+ */
+public class ShowHostTest extends TestCase {
+
+	private CompiledShow show;
+	private ShowHost host;
+
+	@Override
+	protected void setUp() {
+		show = ShowCompiler.compile(new Yaml().loadAs("name: Room\n"
+				+ "universe: 1\n"
+				+ "frameDuration: 20\n"
+				+ "startScene: 1\n"
+				+ "scenes:\n"
+				+ "- name: Full\n"
+				+ "  steps: [{fade: 0, hold: 0, values: [255]}]\n", Show.class));
+		host = new ShowHost(2);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		host.close();
+	}
+
+	/**
+	 * Output counting flushed frames, optionally blocking the thread sending them.
+	 */
+	private static DmxStream output(final AtomicInteger frames, final long delay) {
+		return new DmxStream() {
+			@Override
+			public void streamDmx(short universe, short[] currentFrame) {
+			}
+
+			@Override
+			public void flush() {
+				frames.incrementAndGet();
+				if (delay > 0) {
+					try {
+						Thread.sleep(delay);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+	}
+
+	public void testSlowShowDoesNotStallOtherShows() throws Exception {
+		AtomicInteger slowFrames = new AtomicInteger();
+		AtomicInteger fastFrames = new AtomicInteger();
+		Engine slow = host.createEngine(show, output(slowFrames, 200), new Metrics());
+		Engine fast = host.createEngine(show, output(fastFrames, 0), new Metrics());
+		host.start(slow);
+		host.start(fast);
+
+		Thread.sleep(500);
+		// the fast show renders a frame every 20 ms while the slow show blocks a thread
+		assertTrue("Slow frames: " + slowFrames.get(), slowFrames.get() <= 3);
+		assertTrue("Fast frames: " + fastFrames.get(), fastFrames.get() >= 15);
+	}
+
+	public void testStoppingAShowKeepsOthersRunning() throws Exception {
+		AtomicInteger first = new AtomicInteger();
+		AtomicInteger second = new AtomicInteger();
+		Engine stopped = host.createEngine(show, output(first, 0), new Metrics());
+		Engine running = host.createEngine(show, output(second, 0), new Metrics());
+		host.start(stopped);
+		host.start(running);
+
+		assertTrue(stopped.stop());
+		host.awaitStopped(stopped);
+		assertTrue(stopped.getStatus().isStopped());
+		int frames = first.get();
+		int before = second.get();
+		Thread.sleep(200);
+		assertEquals(frames, first.get());
+		assertTrue(second.get() > before + 5);
+		assertFalse(running.getStatus().isStopped());
+	}
+
+	public void testCreatesRenderPoolForParallelShowsOnly() throws Exception {
+		host.createEngine(show, output(new AtomicInteger(), 0), new Metrics());
+		assertFalse(host.isRenderPoolCreated());
+
+		CompiledShow large = ShowCompiler.compile(new Yaml().loadAs("name: Hall\n"
+				+ "universe: 1\n"
+				+ "universes: [{universe: 2}, {universe: 3}, {universe: 4}]\n"
+				+ "renderThreads: 2\n"
+				+ "frameDuration: 20\n"
+				+ "startScene: 1\n"
+				+ "scenes:\n"
+				+ "- name: Full\n"
+				+ "  steps: [{fade: 0, hold: 0, values: [255]}]\n", Show.class));
+		host.createEngine(large, output(new AtomicInteger(), 0), new Metrics());
+		assertTrue(host.isRenderPoolCreated());
+	}
+}
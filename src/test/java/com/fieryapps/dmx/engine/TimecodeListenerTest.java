@@ -0,0 +1,72 @@
+package com.fieryapps.dmx.engine;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link TimecodeListener} with Art-Net timecode sent over the loopback interface.
+ */
+public class TimecodeListenerTest extends TestCase {
+	
+	private static final long MS = 1000000L;
+	private static final long FRAME = 40 * MS;
+	
+	private TimecodeListener listener;
+	private DatagramChannel sender;
+	
+	@Override
+	protected void setUp() throws Exception {
+		listener = new TimecodeListener(new InetSocketAddress("127.0.0.1", 0));
+		sender = DatagramChannel.open();
+		sender.connect(new InetSocketAddress("127.0.0.1", listener.getPort()));
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		sender.close();
+		listener.close();
+	}
+	
+	public void testReceivesArtTimeCode() throws Exception {
+		assertEquals(-1, listener.getPosition(System.nanoTime()));
+		ByteBuffer packet = ByteBuffer.wrap(new byte[] {'A', 'r', 't', '-', 'N', 'e', 't', 0, 
+				0x00, (byte) 0x97, 0, 14, 0, 0, 
+				// 01:02:03 and 12 frames of EBU timecode with 25 frames per second
+				12, 3, 2, 1, 1});
+		long before = System.nanoTime();
+		sender.write(packet);
+		long deadline = System.currentTimeMillis() + 5000;
+		while (listener.getPosition(before) < 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(1);
+		}
+		long after = System.nanoTime();
+		
+		long position = 3723000 * MS + 12 * FRAME;
+		assertEquals(position, listener.getPosition(before));
+		// the clock runs on until the next timecode is overdue and then holds
+		long running = listener.getPosition(after);
+		assertTrue(running >= position && running <= position + FRAME);
+		assertEquals(listener.getPosition(after + FRAME), listener.getPosition(after + 1000 * MS));
+	}
+	
+	public void testFollowsJumpsOnly() {
+		long time = 1000 * MS;
+		listener.received(0, time, FRAME);
+		// jitter within the tolerance keeps the running clock
+		listener.received(FRAME, time + FRAME + 5 * MS, FRAME);
+		assertEquals(2 * FRAME, listener.getPosition(time + 2 * FRAME));
+		
+		// the timecode jumped, the clock follows
+		listener.received(60000 * MS, time + 2 * FRAME, FRAME);
+		assertEquals(60000 * MS + FRAME, listener.getPosition(time + 3 * FRAME));
+		
+		// the timecode stopped and continues at the same position later
+		listener.received(60000 * MS + FRAME, time + 3 * FRAME, FRAME);
+		assertEquals(60000 * MS + 2 * FRAME, listener.getPosition(time + 5000 * MS));
+		listener.received(60000 * MS + 2 * FRAME, time + 6000 * MS, FRAME);
+		assertEquals(60000 * MS + 3 * FRAME, listener.getPosition(time + 6000 * MS + FRAME));
+	}
+}
@@ -0,0 +1,69 @@
+package com.fieryapps.dmx.engine;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+import junit.framework.TestCase;
+
+import com.fieryapps.dmx.metrics.Counter;
+
+/**
+ * Tests the {@link UdpTriggerListener} and its {@link TriggerQueue}.
+ */
+public class UdpTriggerListenerTest extends TestCase {
+	
+	private TriggerQueue queue;
+	private UdpTriggerListener listener;
+	private DatagramChannel sender;
+	
+	@Override
+	protected void setUp() throws Exception {
+		queue = new TriggerQueue(4, new Counter());
+		listener = new UdpTriggerListener(new InetSocketAddress("127.0.0.1", 0), queue);
+		sender = DatagramChannel.open();
+		sender.connect(new InetSocketAddress("127.0.0.1", listener.getPort()));
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		sender.close();
+		listener.close();
+	}
+	
+	private void awaitKeys() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (queue.isEmpty() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(1);
+		}
+	}
+	
+	public void testReceivesKeysWithTimestamp() throws Exception {
+		long before = System.nanoTime();
+		sender.write(ByteBuffer.wrap("49, 9\n".getBytes("US-ASCII")));
+		awaitKeys();
+		
+		assertEquals(49, queue.peekKey());
+		assertTrue(queue.peekTimestamp() >= before);
+		queue.remove();
+		awaitKeys();
+		assertEquals(9, queue.peekKey());
+		queue.remove();
+		assertTrue(queue.isEmpty());
+	}
+	
+	public void testDropsEventsWhenFull() {
+		Counter dropped = new Counter();
+		TriggerQueue fullQueue = new TriggerQueue(2, dropped);
+		assertTrue(fullQueue.offer(1, 0));
+		assertTrue(fullQueue.offer(2, 0));
+		assertFalse(fullQueue.offer(3, 0));
+		assertEquals(1, dropped.getCount());
+		
+		fullQueue.remove();
+		assertTrue(fullQueue.offer(4, 0));
+		assertEquals(2, fullQueue.peekKey());
+		fullQueue.remove();
+		assertEquals(4, fullQueue.peekKey());
+	}
+}
@@ -0,0 +1,280 @@
+package com.fieryapps.dmx.engine;
+
+import junit.framework.TestCase;
+
+import org.yaml.snakeyaml.Yaml;
+
+import com.fieryapps.dmx.beans.Show;
+import com.fieryapps.dmx.metrics.Counter;
+import com.fieryapps.dmx.model.CompiledShow;
+import com.fieryapps.dmx.model.ShowCompiler;
+
+/**
+ * Tests for the {@link UniverseRenderer}.
+ */
+public class UniverseRendererTest extends TestCase {
+	
+	private static final long MS = 1000000L;
+	
+	private Submasters masters;
+	
+	private CompiledShow compile(String curve) {
+		return ShowCompiler.compile(new Yaml().loadAs("name: Fades\n"
+				+ "universe: 1\n"
+				+ "frameDuration: 40\n"
+				+ "startScene: 1\n"
+				+ "dimmerChannels: [3]\n"
+				+ "scenes:\n"
+				+ "- name: Fade\n"
+				+ "  triggerKeys: [49]\n"
+				+ "  repeat: no\n"
+				+ "  curve: " + curve + "\n"
+				+ "  switchChannels: [2]\n"
+				+ "  steps:\n"
+				+ "  - fade: 0\n"
+				+ "    hold: 100\n"
+				+ "    values: [0, 0, 0]\n"
+				+ "  - fade: 1000\n"
+				+ "    hold: 0\n"
+				+ "    values: [200, 100, 200]\n", Show.class));
+	}
+	
+	private UniverseRenderer startRenderer(CompiledShow show) {
+		masters = new Submasters(show);
+		UniverseRenderer renderer = new UniverseRenderer((short) 1, new Counter());
+		renderer.startScene(show.getScenes()[0], 0);
+		renderer.render(0, masters);
+		// the first step ends after 100 ms and the fade starts
+		renderer.render(100 * MS, masters);
+		assertEquals(2, renderer.getStep());
+		return renderer;
+	}
+	
+	public void testLinearFadeDependsOnTimeOnly() {
+		UniverseRenderer renderer = startRenderer(compile("linear"));
+		
+		// a late frame does not stretch the fade
+		renderer.render(600 * MS, masters);
+		assertEquals(100, renderer.getCurrentFrame()[0]);
+		// switch channels jump to the target value
+		assertEquals(100, renderer.getCurrentFrame()[1]);
+		renderer.render(850 * MS, masters);
+		assertEquals(150, renderer.getCurrentFrame()[0]);
+		renderer.render(1100 * MS, masters);
+		assertEquals(200, renderer.getCurrentFrame()[0]);
+	}
+	
+	public void testCurvesShapeTheFade() {
+		UniverseRenderer sCurve = startRenderer(compile("s-curve"));
+		sCurve.render(350 * MS, masters);
+		// (1 - cos(pi / 4)) / 2 * 200
+		assertEquals(29, sCurve.getCurrentFrame()[0]);
+		
+		UniverseRenderer square = startRenderer(compile("square"));
+		square.render(600 * MS, masters);
+		assertEquals(50, square.getCurrentFrame()[0]);
+	}
+	
+	public void testDimmerScalesDimmerChannels() {
+		UniverseRenderer renderer = startRenderer(compile("linear"));
+		masters.setGrandMaster(5);
+		renderer.render(1100 * MS, masters);
+		assertEquals(200, renderer.getCurrentFrame()[0]);
+		assertEquals(100, renderer.getCurrentFrame()[2]);
+	}
+	
+	public void testReloadKeepsPosition() {
+		UniverseRenderer renderer = startRenderer(compile("linear"));
+		renderer.render(600 * MS, masters);
+		assertEquals(100, renderer.getCurrentFrame()[0]);
+		
+		// the fade continues with the modified curve instead of starting again
+		renderer.reloadScene(compile("square").getScenes()[0], 0);
+		renderer.render(600 * MS, masters);
+		assertEquals(2, renderer.getStep());
+		assertEquals(50, renderer.getCurrentFrame()[0]);
+		renderer.render(1100 * MS, masters);
+		assertEquals(200, renderer.getCurrentFrame()[0]);
+	}
+	
+	public void testSparseStepsKeepOtherAddresses() {
+		CompiledShow show = ShowCompiler.compile(new Yaml().loadAs("name: Sparse\n"
+				+ "universe: 1\n"
+				+ "frameDuration: 40\n"
+				+ "startScene: 1\n"
+				+ "dimmerChannels: [1]\n"
+				+ "scenes:\n"
+				+ "- name: Sparse\n"
+				+ "  triggerKeys: [49]\n"
+				+ "  repeat: yes\n"
+				+ "  steps:\n"
+				+ "  - {fade: 0, hold: 100, values: [100, 10, 20, 30]}\n"
+				+ "  - {fade: 1000, hold: 0, set: {3: 120}}\n"
+				+ "  - {fade: 0, hold: 100, set: {1: 50, 300: 7}}\n", Show.class));
+		masters = new Submasters(show);
+		UniverseRenderer renderer = new UniverseRenderer((short) 1, new Counter());
+		renderer.startScene(show.getScenes()[0], 0);
+		short[] frame = renderer.getCurrentFrame();
+		renderer.render(0, masters);
+		renderer.render(100 * MS, masters);
+		
+		// only the third address fades, the others keep the values of the first step
+		renderer.render(600 * MS, masters);
+		assertEquals(70, frame[2]);
+		assertEquals(100, frame[0]);
+		assertEquals(10, frame[1]);
+		assertEquals(30, frame[3]);
+		// addresses that are not in transition still follow the master dimmer
+		masters.setGrandMaster(5);
+		renderer.render(800 * MS, masters);
+		assertEquals(50, frame[0]);
+		
+		masters.setGrandMaster(10);
+		renderer.render(1100 * MS, masters);
+		assertEquals(3, renderer.getStep());
+		renderer.render(1140 * MS, masters);
+		assertEquals(50, frame[0]);
+		assertEquals(120, frame[2]);
+		assertEquals(7, frame[299]);
+		// the repeated first step sets its addresses again but keeps address 300
+		renderer.render(1200 * MS, masters);
+		assertEquals(1, renderer.getStep());
+		renderer.render(1240 * MS, masters);
+		assertEquals(100, frame[0]);
+		assertEquals(20, frame[2]);
+		assertEquals(7, frame[299]);
+	}
+	
+	public void testEffectsFollowTheirWaveforms() {
+		CompiledShow show = ShowCompiler.compile(new Yaml().loadAs("name: Effects\n"
+				+ "universe: 1\n"
+				+ "frameDuration: 40\n"
+				+ "startScene: 1\n"
+				+ "dimmerChannels: [1]\n"
+				+ "scenes:\n"
+				+ "- name: Effects\n"
+				+ "  triggerKeys: [49]\n"
+				+ "  effects:\n"
+				+ "  - {type: sine, channels: [1], period: 1000, max: 200}\n"
+				+ "  - {type: chase, channels: [2, 3, 4, 5], period: 400}\n"
+				+ "  - {type: rainbow, channels: [6], period: 3000}\n", Show.class));
+		masters = new Submasters(show);
+		UniverseRenderer renderer = new UniverseRenderer((short) 1, new Counter());
+		renderer.startScene(show.getScenes()[0], 0);
+		short[] frame = renderer.getCurrentFrame();
+		
+		renderer.render(0, masters);
+		assertEquals(0, frame[0]);
+		assertEquals(255, frame[1]);
+		assertEquals(0, frame[2]);
+		assertEquals(255, frame[5]);
+		assertEquals(0, frame[6]);
+		assertEquals(0, frame[7]);
+		
+		renderer.render(250 * MS, masters);
+		assertEquals(100, frame[0]);
+		
+		// the chase is at the third channel, the rainbow is green after a third of its period
+		masters.setGrandMaster(5);
+		renderer.render(1000 * MS, masters);
+		assertEquals(0, frame[1]);
+		assertEquals(255, frame[3]);
+		assertEquals(0, frame[5]);
+		assertEquals(255, frame[6]);
+		// the sine wave is at its top, scaled by the master dimmer
+		renderer.render(1500 * MS, masters);
+		assertEquals(100, frame[0]);
+	}
+	
+	public void testGroupMastersScaleTheirChannels() {
+		CompiledShow show = ShowCompiler.compile(new Yaml().loadAs("name: Groups\n"
+				+ "universe: 1\n"
+				+ "frameDuration: 40\n"
+				+ "startScene: 1\n"
+				+ "dimmerChannels: [1]\n"
+				+ "groups:\n"
+				+ "- {name: Front, channels: [1, 2], master: 128}\n"
+				+ "- {name: Back, channels: [2, 3]}\n"
+				+ "scenes:\n"
+				+ "- name: Full\n"
+				+ "  steps: [{fade: 0, hold: 0, values: [200, 200, 200, 200]}]\n", Show.class));
+		masters = new Submasters(show);
+		UniverseRenderer renderer = new UniverseRenderer((short) 1, new Counter());
+		renderer.startScene(show.getScenes()[0], 0);
+		short[] frame = renderer.getCurrentFrame();
+		renderer.render(0, masters);
+		// 200 * 128 / 255
+		assertEquals(100, frame[0]);
+		assertEquals(100, frame[1]);
+		assertEquals(200, frame[2]);
+		assertEquals(200, frame[3]);
+		
+		// the grand master only scales dimmer channels, channels in two groups are scaled twice
+		masters.setGrandMaster(5);
+		masters.setMaster(1, 51);
+		renderer.render(40 * MS, masters);
+		assertEquals(50, frame[0]);
+		assertEquals(20, frame[1]);
+		assertEquals(40, frame[2]);
+		assertEquals(200, frame[3]);
+		
+		// a reloaded show keeps the masters of groups with the same name
+		Submasters reloaded = new Submasters(show, masters);
+		assertEquals(5, reloaded.getGrandMaster());
+		assertEquals(51, reloaded.getMaster(1));
+		renderer.render(80 * MS, reloaded);
+		assertEquals(50, frame[0]);
+		assertEquals(40, frame[2]);
+	}
+	
+	public void testSeeksTimelineWithoutPlayingPreviousSteps() {
+		CompiledShow show = ShowCompiler.compile(new Yaml().loadAs("name: Timeline\n"
+				+ "universe: 1\n"
+				+ "frameDuration: 40\n"
+				+ "startScene: 1\n"
+				+ "scenes:\n"
+				+ "- name: Song\n"
+				+ "  timeline: yes\n"
+				+ "  repeat: yes\n"
+				+ "  steps:\n"
+				+ "  - {fade: 0, hold: 1000, values: [100]}\n"
+				+ "  - {fade: 1000, hold: 1000, set: {2: 200}}\n"
+				+ "  - {at: 2000, fade: 0, hold: 1000, values: [0]}\n", Show.class));
+		masters = new Submasters(show);
+		UniverseRenderer renderer = new UniverseRenderer((short) 1, new Counter());
+		renderer.startScene(show.getScenes()[0], 0);
+		short[] frame = renderer.getCurrentFrame();
+		renderer.render(0, masters);
+		assertEquals(100, frame[0]);
+		assertEquals(0, frame[1]);
+		
+		// halfway through the fade of the second step
+		renderer.seek(1500 * MS);
+		renderer.render(40 * MS, masters);
+		assertEquals(2, renderer.getStep());
+		assertEquals(100, frame[0]);
+		assertEquals(100, frame[1]);
+		renderer.render(60 * MS, masters);
+		assertEquals(104, frame[1]);
+		
+		renderer.seek(2500 * MS);
+		renderer.render(80 * MS, masters);
+		assertEquals(3, renderer.getStep());
+		assertEquals(0, frame[0]);
+		assertEquals(200, frame[1]);
+		
+		// seeking backwards restores the values the timeline started with
+		renderer.seek(500 * MS);
+		renderer.render(120 * MS, masters);
+		assertEquals(1, renderer.getStep());
+		assertEquals(100, frame[0]);
+		assertEquals(0, frame[1]);
+		
+		// a repeated timeline starts with the values of its end
+		renderer.seek(3500 * MS);
+		renderer.render(160 * MS, masters);
+		assertEquals(1, renderer.getStep());
+		assertEquals(100, frame[0]);
+		assertEquals(200, frame[1]);
+	}
+}
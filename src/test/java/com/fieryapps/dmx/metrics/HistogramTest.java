@@ -0,0 +1,71 @@
+package com.fieryapps.dmx.metrics;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the {@link Histogram} and its text output.
+ */
+public class HistogramTest extends TestCase {
+	
+	public void testPercentilesAreAccurate() {
+		Histogram histogram = new Histogram();
+		for (int i = 1; i <= 100000; i++) {
+			histogram.record(i * 1000L);
+		}
+		
+		assertEquals(100000, histogram.getCount());
+		assertEquals(100000000L, histogram.getMax());
+		assertEquals(50000500d, histogram.getMean(), 0.1);
+		assertEquals(50000000d, histogram.getMedian(), 50000000d * 0.03);
+		assertEquals(99000000d, histogram.get99thPercentile(), 99000000d * 0.03);
+	}
+	
+	public void testSmallValuesAreExact() {
+		Histogram histogram = new Histogram();
+		for (int i = 0; i < 10; i++) {
+			histogram.record(i);
+		}
+		histogram.record(-5);
+		
+		assertEquals(0, histogram.getPercentile(0));
+		assertEquals(4, histogram.getMedian());
+		assertEquals(9, histogram.getPercentile(100));
+	}
+	
+	public void testWritesPrometheusText() throws Exception {
+		Metrics metrics = new Metrics();
+		metrics.counter("dmx_frames_sent_total", "universe", "1").add(3);
+		metrics.histogram("dmx_render_time_nanoseconds").record(10);
+		
+		StringBuilder text = new StringBuilder();
+		metrics.writeText(text);
+		assertTrue(text.indexOf("# TYPE dmx_frames_sent_total counter\n") >= 0);
+		assertTrue(text.indexOf("dmx_frames_sent_total{universe=\"1\"} 3\n") >= 0);
+		assertTrue(text.indexOf("dmx_render_time_nanoseconds{quantile=\"0.99\"} 10\n") >= 0);
+		assertTrue(text.indexOf("dmx_render_time_nanoseconds_count 1\n") >= 0);
+	}
+	
+	public void testAddsCommonLabels() throws Exception {
+		Metrics metrics = new Metrics();
+		metrics.withLabel("show", "a.yml").counter("dmx_frames_sent_total", "universe", "1")
+				.add(3);
+		metrics.withLabel("show", "b.yml").counter("dmx_frames_sent_total").add(4);
+		
+		StringBuilder text = new StringBuilder();
+		metrics.writeText(text);
+		assertTrue(text.indexOf("dmx_frames_sent_total{show=\"a.yml\",universe=\"1\"} 3\n") >= 0);
+		assertTrue(text.indexOf("dmx_frames_sent_total{show=\"b.yml\"} 4\n") >= 0);
+		assertEquals(text.indexOf("# TYPE"), text.lastIndexOf("# TYPE"));
+	}
+	
+	public void testEscapesLabelValues() throws Exception {
+		Metrics metrics = new Metrics();
+		metrics.withLabel("show", "C:\\shows\\\"new\"\n.yml").counter("dmx_frames_sent_total")
+				.add(5);
+		
+		StringBuilder text = new StringBuilder();
+		metrics.writeText(text);
+		assertTrue(text.toString(), text.indexOf(
+				"dmx_frames_sent_total{show=\"C:\\\\shows\\\\\\\"new\\\"\\n.yml\"} 5\n") >= 0);
+	}
+}
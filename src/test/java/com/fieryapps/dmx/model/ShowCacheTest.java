@@ -0,0 +1,129 @@
+package com.fieryapps.dmx.model;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.yaml.snakeyaml.Yaml;
+
+import com.fieryapps.dmx.beans.Show;
+
+/**
+ * Tests for the {@link ShowCache}.
+ */
+public class ShowCacheTest extends TestCase {
+	
+	private File cacheFile;
+	private byte[] hash;
+	private CompiledShow show;
+	
+	@Override
+	protected void setUp() throws Exception {
+		byte[] content = Files.readAllBytes(Paths.get("shows/example-show.yml"));
+		hash = ShowCache.hash(content);
+		show = ShowCompiler.compile(new Yaml().loadAs(new String(content, "UTF-8"), 
+				Show.class));
+		cacheFile = File.createTempFile("show", ShowCache.EXTENSION);
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		cacheFile.delete();
+	}
+	
+	public void testReadsWrittenShow() throws Exception {
+		ShowCache.write(cacheFile, hash, show);
+		CompiledShow cached = ShowCache.read(cacheFile, hash);
+		
+		assertNotNull(cached);
+		assertEquals(show.getName(), cached.getName());
+		assertTrue(Arrays.equals(show.getUniverses(), cached.getUniverses()));
+		assertEquals(show.getFramePeriod(), cached.getFramePeriod());
+		assertEquals(show.getLatePolicy(), cached.getLatePolicy());
+		assertEquals(show.getStartScene(), cached.getStartScene());
+		assertEquals(show.getOutput().getType(), cached.getOutput().getType());
+		assertEquals(show.getOutput().getAddress(), cached.getOutput().getAddress());
+		assertEquals(show.getOutput().getKeepAliveTime(), 
+				cached.getOutput().getKeepAliveTime());
+		assertTrue(Arrays.equals(show.getDimmerChannels(0), cached.getDimmerChannels(0)));
+		assertEquals(show.getGroups().length, cached.getGroups().length);
+		for (int i = 0; i < show.getGroups().length; i++) {
+			CompiledGroup group = show.getGroups()[i];
+			CompiledGroup cachedGroup = cached.getGroups()[i];
+			assertEquals(group.getName(), cachedGroup.getName());
+			assertEquals(group.getUniverse(), cachedGroup.getUniverse());
+			assertTrue(Arrays.equals(group.getAddresses(), cachedGroup.getAddresses()));
+			assertEquals(group.getMaster(), cachedGroup.getMaster());
+		}
+		assertEquals(show.getScenes().length, cached.getScenes().length);
+		
+		for (int i = 0; i < show.getScenes().length; i++) {
+			CompiledScene scene = show.getScenes()[i];
+			CompiledScene cachedScene = cached.getScenes()[i];
+			assertEquals(scene.getName(), cachedScene.getName());
+			assertTrue(Arrays.equals(scene.getTriggerKeys(), cachedScene.getTriggerKeys()));
+			assertEquals(scene.isRepeat(), cachedScene.isRepeat());
+			assertEquals(scene.isRandom(), cachedScene.isRandom());
+			
+			CompiledTrack track = scene.getTracks()[0];
+			CompiledTrack cachedTrack = cachedScene.getTracks()[0];
+			assertTrue(Arrays.equals(track.getChannelModes(), cachedTrack.getChannelModes()));
+			assertTrue(Arrays.equals(track.getDimmerChannels(), 
+					cachedTrack.getDimmerChannels()));
+			assertEquals(track.getSteps().length, cachedTrack.getSteps().length);
+			for (int j = 0; j < track.getSteps().length; j++) {
+				CompiledStep step = track.getSteps()[j];
+				CompiledStep cachedStep = cachedTrack.getSteps()[j];
+				assertEquals(step.getFadeTime(), cachedStep.getFadeTime());
+				assertEquals(step.getHoldTime(), cachedStep.getHoldTime());
+				assertEquals(step.getCurve(), cachedStep.getCurve());
+				assertTrue(Arrays.equals(step.getValues(), cachedStep.getValues()));
+			}
+		}
+	}
+	
+	public void testReadsEffects() throws Exception {
+		Show yaml = new Yaml().loadAs("name: Effects\n"
+				+ "universe: 1\n"
+				+ "frameDuration: 40\n"
+				+ "startScene: 1\n"
+				+ "scenes:\n"
+				+ "- name: Chase\n"
+				+ "  effects:\n"
+				+ "  - {type: chase, channels: [1, 2, 3, 4], period: 1000, width: 2}\n", 
+				Show.class);
+		ShowCache.write(cacheFile, hash, ShowCompiler.compile(yaml));
+		CompiledTrack track = ShowCache.read(cacheFile, hash).getScenes()[0].getTracks()[0];
+		
+		assertEquals(0, track.getSteps().length);
+		CompiledEffect effect = track.getEffects()[0];
+		assertEquals(Waveform.SQUARE, effect.getWaveform());
+		assertEquals(Waveform.HALF_CYCLE, effect.getDuty());
+		assertTrue(Arrays.equals(new int[] {0, 1, 2, 3}, effect.getAddresses()));
+		assertEquals(255, effect.getRange());
+		assertEquals(-1, track.getOwnedMask()[3]);
+		assertEquals(0, track.getOwnedMask()[4]);
+	}
+	
+	public void testIgnoresCacheOfChangedShow() throws Exception {
+		ShowCache.write(cacheFile, hash, show);
+		
+		byte[] otherHash = ShowCache.hash("name: Other show".getBytes("UTF-8"));
+		assertNull(ShowCache.read(cacheFile, otherHash));
+	}
+	
+	public void testIgnoresMissingAndTruncatedCache() throws Exception {
+		ShowCache.write(cacheFile, hash, show);
+		try (RandomAccessFile file = new RandomAccessFile(cacheFile, "rw")) {
+			file.setLength(file.length() / 2);
+		}
+		assertNull(ShowCache.read(cacheFile, hash));
+		
+		cacheFile.delete();
+		assertNull(ShowCache.read(cacheFile, hash));
+	}
+}
@@ -0,0 +1,371 @@
+package com.fieryapps.dmx.model;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.yaml.snakeyaml.Yaml;
+
+import com.fieryapps.dmx.beans.Effect;
+import com.fieryapps.dmx.beans.Show;
+import com.fieryapps.dmx.beans.Step;
+import com.fieryapps.dmx.beans.UniverseSteps;
+
+/**
+ * Tests for the {@link ShowCompiler}.
+ */
+public class ShowCompilerTest extends TestCase {
+	
+	private static final long MS = 1000000L;
+	
+	private Show loadShow(String showFile) throws Exception {
+		try (InputStream input = new FileInputStream(showFile)) {
+			return new Yaml().loadAs(input, Show.class);
+		}
+	}
+	
+	public void testCompileExampleShow() throws Exception {
+		Show show = loadShow("shows/example-show.yml");
+		CompiledShow compiled = ShowCompiler.compile(show);
+		
+		assertEquals(show.getScenes().size(), compiled.getScenes().length);
+		assertEquals(show.getStartScene() - 1, compiled.getStartScene());
+		assertTrue(Arrays.equals(new short[] {1}, compiled.getUniverses()));
+		
+		CompiledScene blackout = compiled.getScenes()[0];
+		assertEquals("Blackout", blackout.getName());
+		assertTrue(Arrays.equals(new int[] {9}, blackout.getTriggerKeys()));
+		
+		CompiledTrack track = blackout.getTracks()[0];
+		assertTrue(Arrays.equals(new int[] {3, 9}, track.getDimmerChannels()));
+		assertEquals(CompiledTrack.MODE_FADE, track.getChannelModes()[0]);
+		assertEquals(CompiledTrack.MODE_DIMMER, track.getChannelModes()[3]);
+		assertEquals(CompiledTrack.MODE_SWITCH, track.getChannelModes()[4]);
+		
+		byte[] values = track.getSteps()[0].getValues();
+		assertEquals(30, values.length);
+		assertEquals(251, values[24] & 0xFF);
+		assertEquals(128, values[25] & 0xFF);
+	}
+	
+	public void testStepTimesAreConvertedToNanoseconds() throws Exception {
+		Show show = loadShow("shows/example-show.yml");
+		show.getScenes().get(2).setCurve("s-curve");
+		show.getScenes().get(2).getSteps().get(1).setCurve("square");
+		CompiledShow compiled = ShowCompiler.compile(show);
+		
+		assertEquals(40000000L, compiled.getFramePeriod());
+		CompiledStep[] steps = compiled.getScenes()[2].getTracks()[0].getSteps();
+		assertEquals(5000000000L, steps[0].getFadeTime());
+		assertEquals(5000000000L, steps[0].getHoldTime());
+		assertEquals(FadeCurve.S_CURVE, steps[0].getCurve());
+		assertEquals(FadeCurve.SQUARE, steps[1].getCurve());
+		assertEquals(FadeCurve.LINEAR, compiled.getScenes()[0].getTracks()[0].getSteps()[0]
+				.getCurve());
+	}
+	
+	public void testCompileAdditionalUniverses() throws Exception {
+		Show show = new Yaml().loadAs("name: Multi\n"
+				+ "universe: 1\n"
+				+ "frameDuration: 40\n"
+				+ "startScene: 1\n"
+				+ "universes:\n"
+				+ "- universe: 2\n"
+				+ "  dimmerChannels: [2]\n"
+				+ "scenes:\n"
+				+ "- name: Second only\n"
+				+ "  triggerKeys: [49]\n"
+				+ "  universes:\n"
+				+ "  - universe: 2\n"
+				+ "    steps:\n"
+				+ "    - fade: 0\n"
+				+ "      hold: 0\n"
+				+ "      values: [10, 20]\n", Show.class);
+		CompiledShow compiled = ShowCompiler.compile(show);
+		
+		assertTrue(Arrays.equals(new short[] {1, 2}, compiled.getUniverses()));
+		CompiledTrack[] tracks = compiled.getScenes()[0].getTracks();
+		assertNull(tracks[0]);
+		assertEquals(CompiledTrack.MODE_DIMMER, tracks[1].getChannelModes()[1]);
+		assertEquals(20, tracks[1].getSteps()[0].getValues()[1]);
+	}
+	
+	public void testFindsScenesByTriggerKey() throws Exception {
+		Show show = loadShow("shows/example-show.yml");
+		// a duplicate trigger key is ignored, the first scene wins
+		show.getScenes().get(1).setTriggerKeys(Arrays.asList(47, 9));
+		CompiledShow compiled = ShowCompiler.compile(show);
+		
+		assertSame(compiled.getScenes()[0], compiled.getSceneForKey(9));
+		assertSame(compiled.getScenes()[1], compiled.getSceneForKey(47));
+		assertNull(compiled.getSceneForKey(1000));
+		for (CompiledScene scene : compiled.getScenes()) {
+			for (int key : scene.getTriggerKeys()) {
+				assertNotNull(compiled.getSceneForKey(key));
+			}
+		}
+	}
+	
+	public void testRecompilesChangedScenesOnly() throws Exception {
+		Show show = loadShow("shows/example-show.yml");
+		CompiledShow previous = ShowCompiler.compile(show);
+		
+		show.getScenes().get(1).getSteps().get(0).setHold(500);
+		CompiledShow compiled = ShowCompiler.compile(show, previous);
+		assertSame(previous.getScenes()[0], compiled.getScenes()[0]);
+		assertNotSame(previous.getScenes()[1], compiled.getScenes()[1]);
+		assertEquals(500000000L, compiled.getScenes()[1].getTracks()[0].getSteps()[0]
+				.getHoldTime());
+		
+		// dimmer channels are part of every track
+		show.setDimmerChannels(Arrays.asList((short) 4));
+		CompiledShow dimmed = ShowCompiler.compile(show, compiled);
+		assertNotSame(compiled.getScenes()[0], dimmed.getScenes()[0]);
+	}
+	
+	public void testRejectsUndeclaredUniverse() throws Exception {
+		Show show = loadShow("shows/example-show.yml");
+		UniverseSteps universeSteps = new UniverseSteps();
+		universeSteps.setUniverse((short) 7);
+		universeSteps.setSteps(show.getScenes().get(0).getSteps());
+		show.getScenes().get(0).setUniverses(Collections.singletonList(universeSteps));
+		try {
+			ShowCompiler.compile(show);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("universe 7"));
+		}
+	}
+	
+	public void testRejectsValuesOutOfRange() throws Exception {
+		Show show = loadShow("shows/example-show.yml");
+		show.getScenes().get(0).getSteps().get(0).getValues().set(0, (short) 256);
+		try {
+			ShowCompiler.compile(show);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("256"));
+		}
+	}
+	
+	public void testCompilesLayers() throws Exception {
+		Show show = loadShow("shows/example-show.yml");
+		show.getScenes().get(2).setLayer(3);
+		CompiledShow compiled = ShowCompiler.compile(show);
+		assertEquals(3, compiled.getScenes()[2].getLayer());
+		assertEquals(4, compiled.getLayers());
+		// scenes set the addresses of their longest step
+		short[] owned = compiled.getScenes()[2].getTracks()[0].getOwnedMask();
+		int length = show.getScenes().get(2).getSteps().get(0).getValues().size();
+		assertEquals(-1, owned[length - 1]);
+		assertEquals(0, owned[owned.length - 1]);
+		
+		show.getScenes().get(2).setLayer(ShowCompiler.MAX_LAYERS);
+		try {
+			ShowCompiler.compile(show);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("layer"));
+		}
+	}
+	
+	public void testCompilesEffects() throws Exception {
+		Show show = loadShow("shows/example-show.yml");
+		Effect rainbow = new Effect();
+		rainbow.setType("rainbow");
+		rainbow.setChannels(Arrays.asList((short) 10, (short) 13));
+		rainbow.setPeriod(2000);
+		show.getScenes().get(0).setEffects(Collections.singletonList(rainbow));
+		CompiledTrack track = ShowCompiler.compile(show).getScenes()[0].getTracks()[0];
+		
+		CompiledEffect effect = track.getEffects()[0];
+		assertEquals(Waveform.HUE, effect.getWaveform());
+		assertEquals(2000000000L, effect.getPeriod());
+		// red, green and blue of both fixtures, the second fixture half a cycle later
+		assertTrue(Arrays.equals(new int[] {9, 10, 11, 12, 13, 14}, effect.getAddresses()));
+		int third = Waveform.TABLE_SIZE / 3;
+		int half = Waveform.TABLE_SIZE / 2;
+		assertTrue(Arrays.equals(new int[] {0, Waveform.TABLE_SIZE - third, 
+				Waveform.TABLE_SIZE - 2 * third, half, half - third, 
+				(half - 2 * third) & Waveform.PHASE_MASK}, effect.getOffsets()));
+		
+		rainbow.setType("plasma");
+		try {
+			ShowCompiler.compile(show);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("plasma"));
+		}
+	}
+	
+	public void testCompilesSparseSteps() throws Exception {
+		Show show = loadShow("shows/example-show.yml");
+		Step step = show.getScenes().get(0).getSteps().get(0);
+		int length = step.getValues().size();
+		Map<Short, Short> set = new LinkedHashMap<>();
+		set.put((short) 1, (short) 42);
+		step.setSet(set);
+		CompiledStep dense = ShowCompiler.compile(show).getScenes()[0].getTracks()[0]
+				.getSteps()[0];
+		// overriding a value keeps the step dense
+		assertTrue(dense.isDense());
+		assertEquals(length, dense.getValues().length);
+		assertEquals(42, dense.getValues()[0]);
+		
+		step.setValues(null);
+		set.put((short) 200, (short) 255);
+		set.put((short) 100, (short) 7);
+		CompiledStep sparse = ShowCompiler.compile(show).getScenes()[0].getTracks()[0]
+				.getSteps()[0];
+		assertFalse(sparse.isDense());
+		assertTrue(Arrays.equals(new int[] {0, 99, 199}, sparse.getAddresses()));
+		assertTrue(Arrays.equals(new byte[] {42, 7, (byte) 255}, sparse.getValues()));
+		
+		set.put((short) 513, (short) 1);
+		try {
+			ShowCompiler.compile(show);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("513"));
+		}
+	}
+	
+	public void testCompilesArtnetRoutes() throws Exception {
+		Show show = new Yaml().loadAs("name: Nodes\n"
+				+ "universe: 1\n"
+				+ "frameDuration: 40\n"
+				+ "startScene: 1\n"
+				+ "artnet:\n"
+				+ "  sync: yes\n"
+				+ "  nodes:\n"
+				+ "  - {address: 10.0.0.2, universes: [2, 3]}\n"
+				+ "universes:\n"
+				+ "- universe: 2\n"
+				+ "- universe: 3\n"
+				+ "scenes:\n"
+				+ "- name: Dark\n"
+				+ "  steps: [{fade: 0, hold: 0, values: [0]}]\n", Show.class);
+		CompiledOutput output = ShowCompiler.compile(show).getOutput();
+		assertTrue(output.isSync());
+		assertTrue(Arrays.equals(new short[] {2, 3}, output.getRoutedUniverses()));
+		assertEquals("10.0.0.2", output.getRouteAddresses()[1]);
+		
+		show.getArtnet().getNodes().get(0).setUniverses(Arrays.asList((short) 2, (short) 4));
+		try {
+			ShowCompiler.compile(show);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("universe 4"));
+		}
+	}
+	
+	public void testCompilesSacnPriorities() throws Exception {
+		Show show = new Yaml().loadAs("name: Priorities\n"
+				+ "universe: 1\n"
+				+ "frameDuration: 40\n"
+				+ "startScene: 1\n"
+				+ "sacn:\n"
+				+ "  priority: 120\n"
+				+ "  priorities: {3: 180}\n"
+				+ "universes:\n"
+				+ "- universe: 3\n"
+				+ "scenes:\n"
+				+ "- name: Dark\n"
+				+ "  steps: [{fade: 0, hold: 0, values: [0]}]\n", Show.class);
+		CompiledOutput output = ShowCompiler.compile(show).getOutput();
+		assertEquals(CompiledOutput.TYPE_SACN, output.getType());
+		assertEquals("Priorities", output.getSourceName());
+		assertNull(output.getCid());
+		assertTrue(Arrays.equals(new int[] {120, 180}, output.getPriorities()));
+		
+		show.getSacn().setCid("6BA7B810-9DAD-11D1-80B4-00C04FD430C8");
+		assertEquals("6ba7b810-9dad-11d1-80b4-00c04fd430c8", 
+				ShowCompiler.compile(show).getOutput().getCid());
+		show.getSacn().setCid("Priorities");
+		try {
+			ShowCompiler.compile(show);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("cid"));
+		}
+		show.getSacn().setCid(null);
+		
+		show.getSacn().setPriority((short) 201);
+		try {
+			ShowCompiler.compile(show);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("201"));
+		}
+	}
+	
+	public void testCompilesGroups() throws Exception {
+		Show show = new Yaml().loadAs("name: Groups\n"
+				+ "universe: 1\n"
+				+ "frameDuration: 40\n"
+				+ "startScene: 1\n"
+				+ "groups:\n"
+				+ "- {name: Front, channels: [1, 2]}\n"
+				+ "- {name: Back, universe: 3, channels: [5], master: 128}\n"
+				+ "universes:\n"
+				+ "- universe: 3\n"
+				+ "scenes:\n"
+				+ "- name: Dark\n"
+				+ "  steps: [{fade: 0, hold: 0, values: [0]}]\n", Show.class);
+		CompiledGroup[] groups = ShowCompiler.compile(show).getGroups();
+		assertEquals(2, groups.length);
+		assertEquals("Front", groups[0].getName());
+		assertEquals(0, groups[0].getUniverse());
+		assertTrue(Arrays.equals(new int[] {0, 1}, groups[0].getAddresses()));
+		assertEquals(255, groups[0].getMaster());
+		assertEquals(1, groups[1].getUniverse());
+		assertEquals(128, groups[1].getMaster());
+		
+		show.getGroups().get(1).setName("Front");
+		try {
+			ShowCompiler.compile(show);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("Front"));
+		}
+	}
+	
+	public void testCompilesTimelines() throws Exception {
+		Show show = new Yaml().loadAs("name: Timeline\n"
+				+ "universe: 1\n"
+				+ "frameDuration: 40\n"
+				+ "startScene: 1\n"
+				+ "scenes:\n"
+				+ "- name: Song\n"
+				+ "  timeline: yes\n"
+				+ "  steps:\n"
+				+ "  - {fade: 0, hold: 500, values: [10]}\n"
+				+ "  - {fade: 100, hold: 5000, set: {2: 20}}\n"
+				+ "  - {at: 2000, fade: 200, hold: 300, values: [30]}\n", Show.class);
+		CompiledTrack track = ShowCompiler.compile(show).getScenes()[0].getTracks()[0];
+		assertTrue(Arrays.equals(new long[] {0, 500 * MS, 2000 * MS}, track.getStepTimes()));
+		// the start time of the third step ends the hold of the second step
+		assertEquals(1400 * MS, track.getSteps()[1].getHoldTime());
+		assertEquals(2500 * MS, track.getTimelineLength());
+		assertEquals(-1, track.findStep(-1));
+		assertEquals(1, track.findStep(1999 * MS));
+		assertEquals(2, track.findStep(2000 * MS));
+		// the keyframe of a step holds the values of all steps before it
+		CompiledStep keyframe = track.getKeyframes()[2];
+		assertTrue(Arrays.equals(new int[] {0, 1}, keyframe.getAddresses()));
+		assertTrue(Arrays.equals(new byte[] {10, 20}, keyframe.getValues()));
+		
+		show.getScenes().get(0).getSteps().get(2).setAt(550L);
+		try {
+			ShowCompiler.compile(show);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("before the previous step has faded in"));
+		}
+	}
+}